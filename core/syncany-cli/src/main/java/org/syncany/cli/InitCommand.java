@@ -23,6 +23,10 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
+import org.syncany.chunk.Chunker;
+import org.syncany.chunk.FastCdcChunker;
+import org.syncany.chunk.FixedChunker;
+import org.syncany.chunk.TttdChunker;
 import org.syncany.config.to.ConfigTO;
 import org.syncany.config.to.DefaultRepoTOFactory;
 import org.syncany.config.to.RepoTO;
@@ -97,6 +101,7 @@ public class InitCommand extends AbstractInitCommand {
 		OptionSpec<Void> optionShortUrl = parser.acceptsAll(asList("s", "short"));
 		OptionSpec<Void> optionHeadlessMode = parser.acceptsAll(asList("l", "headless"));
 		OptionSpec<String> optionPassword = parser.acceptsAll(asList("password")).withRequiredArg();
+		OptionSpec<String> optionChunker = parser.acceptsAll(asList("chunker")).withRequiredArg();
 
 		OptionSet options = parser.parse(operationArguments);
 
@@ -118,9 +123,12 @@ public class InitCommand extends AbstractInitCommand {
 		// Cipher specs: --no-encryption, --advanced
 		List<CipherSpec> cipherSpecs = getCipherSpecs(encryptionEnabled, advancedModeEnabled);
 
+		// Chunker: --chunker
+		String chunkerType = getChunkerType(options, optionChunker);
+
 		// Compression: --no-compression
 		// DefaultRepoTOFactory also creates default chunkers
-		RepoTOFactory repoTOFactory = new DefaultRepoTOFactory(compressionEnabled, cipherSpecs);
+		RepoTOFactory repoTOFactory = new DefaultRepoTOFactory(compressionEnabled, cipherSpecs, chunkerType);
 
 		// Genlink options: --short
 		GenlinkOperationOptions genlinkOptions = new GenlinkOperationOptions();
@@ -147,6 +155,21 @@ public class InitCommand extends AbstractInitCommand {
 		return operationOptions;
 	}
 
+	private String getChunkerType(OptionSet options, OptionSpec<String> optionChunker) {
+		if (!options.has(optionChunker)) {
+			return null;
+		}
+
+		String chunkerType = options.valueOf(optionChunker);
+
+		if (Chunker.getInstance(chunkerType) == null) {
+			throw new IllegalArgumentException("Invalid chunker type: " + chunkerType + ". Valid types are: " + FixedChunker.TYPE + ", "
+					+ TttdChunker.TYPE + ", " + FastCdcChunker.TYPE);
+		}
+
+		return chunkerType;
+	}
+
 	private String validateAndGetPassword(OptionSet options, OptionSpec<Void> optionNoEncryption, OptionSpec<String> optionPassword) {
 		if (!isInteractive) {
 			if (options.has(optionPassword) && options.has(optionNoEncryption)) {
@@ -21,6 +21,9 @@ package org.syncany.chunk;
  * A chunk represents a certain part of a file. It is created during the
  * deduplication process by a {@link Chunker}. 
  * 
+ * <p>Chunkers may re-use the content buffer for the next chunk. Only the
+ * first {@link #getSize()} bytes of {@link #getContent()} belong to the chunk.
+ * 
  * @author Philipp C. Heckel <philipp.heckel@gmail.com>
  */
 public class Chunk {
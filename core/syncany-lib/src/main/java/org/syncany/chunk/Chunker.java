@@ -20,6 +20,11 @@ package org.syncany.chunk;
 import java.io.File;
 import java.io.IOException;
 import java.util.Enumeration;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.syncany.util.StringUtil;
 
 /**
  * The chunker implements a core part of the deduplication process by breaking
@@ -32,12 +37,23 @@ import java.util.Enumeration;
  * @author Philipp C. Heckel <philipp.heckel@gmail.com>
  */
 public abstract class Chunker {	
+	private static final Logger logger = Logger.getLogger(Chunker.class.getSimpleName());
+
 	/**
 	 * Property used by the config to indicate the exact or 
 	 * approximate size of a chunk. In bytes. 
 	 */
 	public static final String PROPERTY_SIZE = "size";
 	
+	/**
+	 * Initializes the chunker using a settings map. Chunkers created via
+	 * {@link #getInstance(String) getInstance()} must be initialized with this
+	 * method before use. The default implementation does nothing.
+	 */
+	public void init(Map<String, String> settings) {
+		// Nothing.
+	}
+
     /**
      * Opens the given file and creates enumeration of {@link Chunk}s. This method 
      * should not read the file into memory at once, but instead read and emit new 
@@ -64,6 +80,33 @@ public abstract class Chunker {
      */
     public abstract String getChecksumAlgorithm();
     
+	/**
+	 * Instantiates a chunker by its name using the default constructor. 
+	 * <br>
+	 * After creating a new chunker, it must be initialized using the 
+	 * {@link #init(Map) init()} method. The given type attribute is mapped to fully 
+	 * qualified class name (FQCN) of the form <tt>org.syncany.chunk.XChunker</tt>, 
+	 * where <tt>X</tt> is the camel-cased type attribute.  
+	 * 
+	 * @param type Type/name of the chunker (corresponds to its camel case class name)
+	 * @return a new chunker, or <tt>null</tt> if the chunker cannot be found
+	 */
+	public static Chunker getInstance(String type) {
+		String thisPackage = Chunker.class.getPackage().getName();
+		String camelCaseName = StringUtil.toCamelCase(type);
+		String fqClassName = thisPackage + "." + camelCaseName + Chunker.class.getSimpleName();
+
+		// Try to load!
+		try {
+			Class<?> clazz = Class.forName(fqClassName);
+			return (Chunker) clazz.newInstance();
+		}
+		catch (Exception ex) {
+			logger.log(Level.INFO, "Could not find chunker FQCN " + fqClassName, ex);
+			return null;
+		}
+	}
+    
     /**
      * The chunk enumeration is implemented by the actual chunkers and emits a new
      * chunk when {@link ChunkEnumeration#nextElement() nextElement()} is called. When no more 
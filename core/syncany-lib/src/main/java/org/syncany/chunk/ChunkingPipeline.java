@@ -0,0 +1,377 @@
+/*
+ * Syncany, www.syncany.org
+ * Copyright (C) 2011-2016 Philipp C. Heckel <philipp.heckel@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.syncany.chunk;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.syncany.chunk.Chunker.ChunkEnumeration;
+
+/**
+ * The chunking pipeline is used by the {@link Deduper} to read, chunk and fingerprint
+ * multiple files in parallel. It keeps a window of upcoming files in flight on a pool of
+ * worker threads, while the deduper consumes the files strictly in the original order.
+ * Since all {@link DeduperListener} callbacks and all multichunk writes still happen on the
+ * deduper's thread, the result of the deduplication is identical to the serial path.
+ *
+ * <p>Each prefetched file buffers at most {@link #PREFETCH_BUFFER_SIZE} bytes of chunk data,
+ * so memory usage is bounded by the number of threads times the buffer size.
+ *
+ * <p>Files are only read ahead if {@link DeduperListener#onFilePrefetch(File) onFilePrefetch()}
+ * allows it, so that files the deduper is going to skip are not read at all.
+ *
+ * <p>A prefetched file is only used if its size and last modified date did not change
+ * between the start of the prefetch and the time the deduper processes the file.
+ * Otherwise, the file is re-chunked by the deduper itself, exactly like in the serial path.
+ *
+ * @author Philipp C. Heckel <philipp.heckel@gmail.com>
+ */
+class ChunkingPipeline {
+	private static final Logger logger = Logger.getLogger(ChunkingPipeline.class.getSimpleName());
+
+	private static final int PREFETCH_BUFFER_SIZE = 4 * 1024 * 1024;
+	private static final long QUEUE_POLL_INTERVAL_MS = 100;
+
+	private static final Chunk END_OF_FILE = new Chunk(null, null, 0, null);
+	private static final Chunk CHUNKER_ERROR = new Chunk(null, null, 0, null);
+
+	private final Chunker chunker;
+	private final List<File> files;
+	private final DeduperListener listener;
+	private final int windowSize;
+
+	private final ExecutorService executor;
+	private final LinkedList<PrefetchedFile> prefetchedFiles;
+
+	public ChunkingPipeline(Chunker chunker, List<File> files, DeduperListener listener, int threads) {
+		this.chunker = chunker;
+		this.files = files;
+		this.listener = listener;
+		this.windowSize = threads;
+
+		this.executor = Executors.newFixedThreadPool(threads, new ChunkingThreadFactory());
+		this.prefetchedFiles = new LinkedList<PrefetchedFile>();
+
+		fillWindow();
+	}
+
+	/**
+	 * Returns the prefetched file for the given file, i.e. the head of the
+	 * file list that was just removed by the deduper, and schedules more files
+	 * to fill up the prefetch window.
+	 *
+	 * <p>This method must be called for every file that is removed from the
+	 * file list, in order, even if the file is not deduplicated afterwards.
+	 */
+	public PrefetchedFile next(File file) {
+		PrefetchedFile prefetchedFile = prefetchedFiles.pollFirst();
+
+		if (prefetchedFile == null || prefetchedFile.file != file) {
+			// Should not happen; the file list was modified by someone else
+			logger.log(Level.WARNING, "Prefetch window out of sync with file list; resetting window at " + file);
+
+			cancelAll();
+			prefetchedFile = submit(file);
+		}
+
+		fillWindow();
+		return prefetchedFile;
+	}
+
+	/**
+	 * Cancels all pending prefetches and stops the worker threads.
+	 */
+	public void shutdown() {
+		cancelAll();
+		executor.shutdownNow();
+	}
+
+	private void fillWindow() {
+		int nextFileIndex = prefetchedFiles.size();
+
+		while (prefetchedFiles.size() < windowSize && nextFileIndex < files.size()) {
+			prefetchedFiles.add(submit(files.get(nextFileIndex++)));
+		}
+	}
+
+	private PrefetchedFile submit(File file) {
+		PrefetchedFile prefetchedFile = new PrefetchedFile(file);
+
+		if (listener.onFilePrefetch(file)) {
+			executor.execute(prefetchedFile);
+		}
+		else {
+			prefetchedFile.skip(); // Deduper decides later, and chunks the file itself if needed
+		}
+
+		return prefetchedFile;
+	}
+
+	private void cancelAll() {
+		for (PrefetchedFile prefetchedFile : prefetchedFiles) {
+			prefetchedFile.cancel();
+		}
+
+		prefetchedFiles.clear();
+	}
+
+	/**
+	 * A prefetched file is chunked by a worker thread, and consumed by the
+	 * deduper through the {@link ChunkEnumeration} returned by {@link #createChunks()}.
+	 */
+	class PrefetchedFile implements Runnable {
+		private final File file;
+		private final BlockingQueue<Chunk> chunkQueue;
+		private final Semaphore bufferPermits;
+
+		private final CountDownLatch startLatch;
+
+		private volatile boolean cancelled;
+		private volatile boolean started;
+
+		private long expectedSize;
+		private long expectedLastModified;
+
+		public PrefetchedFile(File file) {
+			this.file = file;
+			this.chunkQueue = new LinkedBlockingQueue<Chunk>();
+			this.bufferPermits = new Semaphore(PREFETCH_BUFFER_SIZE);
+			this.startLatch = new CountDownLatch(1);
+
+			this.cancelled = false;
+			this.started = false;
+
+			this.expectedSize = -1;
+			this.expectedLastModified = -1;
+		}
+
+		@Override
+		public void run() {
+			try {
+				if (!cancelled) {
+					prefetch();
+				}
+			}
+			catch (InterruptedException e) {
+				cancelled = true;
+			}
+			finally {
+				startLatch.countDown();
+			}
+		}
+
+		private void prefetch() throws InterruptedException {
+			BasicFileAttributes fileAttributes = readAttributes(file);
+
+			// Only regular files are chunked; everything else is left
+			// to the deduper (and probably not chunked at all)
+
+			if (fileAttributes == null || !fileAttributes.isRegularFile()) {
+				cancelled = true;
+				return;
+			}
+
+			expectedSize = fileAttributes.size();
+			expectedLastModified = fileAttributes.lastModifiedTime().toMillis();
+
+			ChunkEnumeration chunksEnum = null;
+
+			try {
+				chunksEnum = chunker.createChunks(file);
+
+				started = true;
+				startLatch.countDown();
+
+				while (!cancelled && chunksEnum.hasMoreElements()) {
+					Chunk chunk = chunksEnum.nextElement();
+
+					if (chunk == null) {
+						put(CHUNKER_ERROR);
+						return;
+					}
+
+					// Chunkers might re-use the content buffer for the next chunk
+					put(new Chunk(chunk.getChecksum(), Arrays.copyOf(chunk.getContent(), chunk.getSize()), chunk.getSize(), chunk.getFileChecksum()));
+				}
+
+				put(END_OF_FILE);
+			}
+			catch (IOException | RuntimeException e) {
+				logger.log(Level.FINE, "Cannot prefetch file " + file + ".", e);
+
+				if (started) {
+					put(CHUNKER_ERROR);
+				}
+				else {
+					cancelled = true; // Deduper falls back to serial chunking
+				}
+			}
+			finally {
+				if (chunksEnum != null) {
+					chunksEnum.close();
+				}
+			}
+		}
+
+		/**
+		 * Returns a chunk enumeration for this file. If the prefetch could not be started,
+		 * or if the file changed in the mean time, the file is chunked by the calling thread
+		 * using the regular {@link Chunker}.
+		 */
+		public ChunkEnumeration createChunks() throws IOException {
+			if (!cancelled && isUnchanged()) {
+				return new PrefetchedChunkEnumeration();
+			}
+			else {
+				cancel();
+				return chunker.createChunks(file);
+			}
+		}
+
+		public void cancel() {
+			cancelled = true;
+			chunkQueue.clear();
+		}
+
+		private void skip() {
+			cancelled = true;
+			startLatch.countDown();
+		}
+
+		private boolean isUnchanged() throws IOException {
+			// Wait for the worker to either open the file or give up
+			try {
+				startLatch.await();
+			}
+			catch (InterruptedException e) {
+				throw new IOException("Interrupted while waiting for chunking worker.", e);
+			}
+
+			if (!started || cancelled) {
+				return false;
+			}
+
+			BasicFileAttributes fileAttributes = readAttributes(file);
+
+			return fileAttributes != null && fileAttributes.size() == expectedSize
+					&& fileAttributes.lastModifiedTime().toMillis() == expectedLastModified;
+		}
+
+		private void put(Chunk chunk) throws InterruptedException {
+			while (!cancelled && !bufferPermits.tryAcquire(permitsFor(chunk), QUEUE_POLL_INTERVAL_MS, TimeUnit.MILLISECONDS)) {
+				// Wait for the deduper to consume chunks
+			}
+
+			if (!cancelled) {
+				chunkQueue.add(chunk);
+			}
+		}
+
+		private int permitsFor(Chunk chunk) {
+			return Math.min(chunk.getSize(), PREFETCH_BUFFER_SIZE);
+		}
+
+		private class PrefetchedChunkEnumeration implements ChunkEnumeration {
+			private Chunk nextChunk;
+
+			public PrefetchedChunkEnumeration() {
+				this.nextChunk = null;
+			}
+
+			@Override
+			public boolean hasMoreElements() {
+				if (nextChunk == null) {
+					nextChunk = takeChunk();
+				}
+
+				return nextChunk != END_OF_FILE;
+			}
+
+			@Override
+			public Chunk nextElement() {
+				if (!hasMoreElements()) {
+					return null;
+				}
+
+				Chunk chunk = nextChunk;
+
+				// Errors are reported like the chunkers do: by returning null,
+				// and not emitting any more elements afterwards
+
+				nextChunk = (chunk == CHUNKER_ERROR) ? END_OF_FILE : null;
+				return (chunk != CHUNKER_ERROR) ? chunk : null;
+			}
+
+			@Override
+			public void close() {
+				cancel();
+			}
+
+			private Chunk takeChunk() {
+				try {
+					Chunk chunk = chunkQueue.take();
+					bufferPermits.release(permitsFor(chunk));
+
+					return chunk;
+				}
+				catch (InterruptedException e) {
+					logger.log(Level.SEVERE, "Interrupted while waiting for next chunk.", e);
+					return CHUNKER_ERROR;
+				}
+			}
+		}
+	}
+
+	private static BasicFileAttributes readAttributes(File file) {
+		try {
+			return Files.readAttributes(file.toPath(), BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+		}
+		catch (IOException e) {
+			return null;
+		}
+	}
+
+	private static class ChunkingThreadFactory implements ThreadFactory {
+		private final AtomicInteger threadNumber = new AtomicInteger(1);
+
+		@Override
+		public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, "Chunker/" + threadNumber.getAndIncrement());
+			thread.setDaemon(true);
+
+			return thread;
+		}
+	}
+}
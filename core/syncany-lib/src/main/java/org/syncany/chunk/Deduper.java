@@ -23,6 +23,7 @@ import java.io.IOException;
 import java.util.List;
 
 import org.syncany.chunk.Chunker.ChunkEnumeration;
+import org.syncany.chunk.ChunkingPipeline.PrefetchedFile;
 import org.syncany.database.MultiChunkEntry.MultiChunkId;
 
 /**
@@ -36,6 +37,10 @@ import org.syncany.database.MultiChunkEntry.MultiChunkId;
  * <p>This class does not maintain a chunk index itself. Instead, it calls a listener to
  * lookup a chunk, and skips further chunk processing if the chunk already exists. 
  * 
+ * <p>If more than one chunking thread is configured, upcoming files are read and chunked 
+ * in parallel by a {@link ChunkingPipeline}. Listener callbacks and multichunk writes are 
+ * still performed by the calling thread and in the original file order.
+ * 
  * <p>For a detailed description of the algorithm, please refer to chapter 5.3 of the thesis:
  * <i>"Minimizing remote storage usage and synchronization time using deduplication and
  * multichunking: Syncany as an example"</i>
@@ -49,13 +54,19 @@ public class Deduper {
 	private Transformer transformer;
 	private long maxTotalSize;
 	private long maxNumberOfFiles;
+	private int chunkingThreads;
 
 	public Deduper(Chunker chunker, MultiChunker multiChunker, Transformer transformer, long maxTotalSize, long maxNumberOfFiles) {
+		this(chunker, multiChunker, transformer, maxTotalSize, maxNumberOfFiles, 1);
+	}
+
+	public Deduper(Chunker chunker, MultiChunker multiChunker, Transformer transformer, long maxTotalSize, long maxNumberOfFiles, int chunkingThreads) {
 		this.chunker = chunker;
 		this.multiChunker = multiChunker;
 		this.transformer = transformer;
 		this.maxTotalSize = maxTotalSize;
 		this.maxNumberOfFiles = maxNumberOfFiles;
+		this.chunkingThreads = chunkingThreads;
 	}
 	
 	/**
@@ -69,6 +80,19 @@ public class Deduper {
 	 * @throws IOException If a file cannot be read or an unexpected exception occurs
 	 */
 	public void deduplicate(List<File> files, DeduperListener listener) throws IOException {
+		ChunkingPipeline chunkingPipeline = (chunkingThreads > 1) ? new ChunkingPipeline(chunker, files, listener, chunkingThreads) : null;
+		
+		try {
+			deduplicate(files, listener, chunkingPipeline);
+		}
+		finally {
+			if (chunkingPipeline != null) {
+				chunkingPipeline.shutdown();
+			}
+		}
+	}
+	
+	private void deduplicate(List<File> files, DeduperListener listener, ChunkingPipeline chunkingPipeline) throws IOException {
 		Chunk chunk = null;
 		MultiChunk multiChunk = null;
 		long totalMultiChunkSize = 0L;
@@ -76,12 +100,14 @@ public class Deduper {
 		
 		while (!files.isEmpty()) {
 			File file = files.remove(0);
+			PrefetchedFile prefetchedFile = (chunkingPipeline != null) ? chunkingPipeline.next(file) : null;
 			totalNumFiles++;
 			
 			// Filter ignored files
 			boolean fileAccepted = listener.onFileFilter(file);
 			
 			if (!fileAccepted) {
+				cancelPrefetch(prefetchedFile);
 				continue;
 			}
 			
@@ -90,7 +116,7 @@ public class Deduper {
 
 			if (dedupContents) {
 				// Create chunks from file
-				ChunkEnumeration chunksEnum = chunker.createChunks(file);
+				ChunkEnumeration chunksEnum = (prefetchedFile != null) ? prefetchedFile.createChunks() : chunker.createChunks(file);
 
 				while (chunksEnum.hasMoreElements()) {
 					chunk = chunksEnum.nextElement();
@@ -135,6 +161,9 @@ public class Deduper {
 				chunksEnum.close();
 
 			}
+			else {
+				cancelPrefetch(prefetchedFile);
+			}
 
 			if (chunk != null) {			
 				listener.onFileEnd(file, chunk.getFileChecksum());
@@ -172,4 +201,10 @@ public class Deduper {
 
 		return;
 	}	
+	
+	private void cancelPrefetch(PrefetchedFile prefetchedFile) {
+		if (prefetchedFile != null) {
+			prefetchedFile.cancel();
+		}
+	}
 }
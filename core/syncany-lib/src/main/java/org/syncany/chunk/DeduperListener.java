@@ -41,6 +41,21 @@ public interface DeduperListener {
 	 */
 	public boolean onFileFilter(File file);
 	
+	/**
+	 * Called by {@link Deduper} for upcoming files before they are read ahead by the chunking
+	 * threads, i.e. before {@link #onFileFilter(File) onFileFilter()} and {@link #onFileStart(File) onFileStart()}
+	 * are called for the file. The method is only called if files are chunked in parallel. It must
+	 * return <tt>false</tt> if the file will certainly not be deduplicated (e.g. because its content is
+	 * already known), so that it is not read needlessly, and <tt>true</tt> otherwise.
+	 * 
+	 * <p>The method must not change any state; files for which it returns <tt>false</tt> are still passed
+	 * to {@link #onFileFilter(File) onFileFilter()} and {@link #onFileStart(File) onFileStart()} later.
+	 * 
+	 * @param file File that is about to be read ahead
+	 * @return Returns <tt>true</tt> if the given file may be read ahead, <tt>false</tt> otherwise
+	 */
+	public boolean onFilePrefetch(File file);
+	
 	/**
 	 * Called by {@link Deduper} before the deduplication process is started, and before the
 	 * file is opened. The method must return <tt>true</tt> if the deduplication process should 
@@ -0,0 +1,309 @@
+/*
+ * Syncany, www.syncany.org
+ * Copyright (C) 2011-2016 Philipp C. Heckel <philipp.heckel@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.syncany.chunk;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The FastCDC chunker is a content-based {@link Chunker} based on the paper of Wen Xia
+ * et al., 2016. Like the {@link TttdChunker}, it determines breakpoints on the content
+ * rather than on the offset, so that inserting or removing bytes only affects the chunks
+ * around the change.
+ *
+ * <p>Instead of a windowed fingerprint, it uses a gear hash, which only needs a shift, an
+ * addition and a table lookup per byte. Breakpoints are only searched after a minimum
+ * chunk size (cut-point skipping). Up to the average chunk size, a stricter mask is
+ * used, and a looser one afterwards (normalized chunking), so that chunk sizes are
+ * concentrated around the average size. Chunks are cut at the maximum size at the latest.
+ *
+ * <p>The gear table is generated from a fixed seed, so that all clients of a
+ * repository find the same breakpoints.
+ *
+ * @see <a href="https://www.usenix.org/conference/atc16/technical-sessions/presentation/xia">FastCDC: a Fast and Efficient Content-Defined Chunking Approach for Data Deduplication (2016, Wen Xia et al.)</a>
+ * @author Philipp C. Heckel <philipp.heckel@gmail.com>
+ */
+public class FastCdcChunker extends Chunker {
+	private static final Logger logger = Logger.getLogger(FastCdcChunker.class.getSimpleName());
+
+	public static final String TYPE = "fast-cdc";
+	public static final int DEFAULT_AVG_CHUNK_SIZE = 512 * 1024;
+	public static final String DEFAULT_DIGEST_ALG = "SHA1";
+
+	private static final long GEAR_SEED = 0x5379636e616e7921L;
+	private static final long[] GEAR = createGearTable(GEAR_SEED);
+
+	private int minChunkSize;
+	private int avgChunkSize;
+	private int maxChunkSize;
+	private long maskSmall;
+	private long maskLarge;
+	private String checksumAlgorithm;
+
+	/**
+	 * Creates a FastCDC chunker with the default average chunk size. Used by
+	 * {@link Chunker#getInstance(String)}, and re-configured by {@link #init(Map)}.
+	 */
+	public FastCdcChunker() {
+		this(DEFAULT_AVG_CHUNK_SIZE);
+	}
+
+	/**
+	 * Creates a FastCDC chunker with the given average chunk size. Chunks are at least
+	 * a quarter and at most four times as big as the average chunk size.
+	 *
+	 * @param avgChunkSize Average chunk size in bytes; rounded down to a power of two
+	 */
+	public FastCdcChunker(int avgChunkSize) {
+		init(avgChunkSize);
+	}
+
+	/**
+	 * Initializes the chunker using a settings map. The optional setting
+	 * {@link Chunker#PROPERTY_SIZE} is the average chunk size in bytes.
+	 */
+	@Override
+	public void init(Map<String, String> settings) {
+		String avgChunkSize = settings.get(PROPERTY_SIZE);
+
+		try {
+			init((avgChunkSize != null) ? Integer.parseInt(avgChunkSize) : DEFAULT_AVG_CHUNK_SIZE);
+		}
+		catch (NumberFormatException e) {
+			throw new IllegalArgumentException(String.format("Property %s could not be parsed as Integer.", PROPERTY_SIZE), e);
+		}
+	}
+
+	private void init(int avgChunkSize) {
+		if (avgChunkSize < 256) {
+			throw new IllegalArgumentException("Average chunk size must be at least 256 bytes.");
+		}
+
+		int avgChunkSizeBits = 31 - Integer.numberOfLeadingZeros(avgChunkSize);
+
+		this.avgChunkSize = 1 << avgChunkSizeBits;
+		this.minChunkSize = this.avgChunkSize / 4;
+		this.maxChunkSize = this.avgChunkSize * 4;
+
+		// Normalization level 2: Two more bits before the average size, two less after
+		this.maskSmall = createMask(avgChunkSizeBits + 2);
+		this.maskLarge = createMask(avgChunkSizeBits - 2);
+
+		this.checksumAlgorithm = DEFAULT_DIGEST_ALG;
+	}
+
+	@Override
+	public ChunkEnumeration createChunks(File file) throws IOException {
+		return new FastCdcEnumeration(new FileInputStream(file));
+	}
+
+	@Override
+	public String getChecksumAlgorithm() {
+		return checksumAlgorithm;
+	}
+
+	@Override
+	public String toString() {
+		return "FastCDC-" + avgChunkSize + "-" + checksumAlgorithm;
+	}
+
+	/**
+	 * Returns the length of the next chunk in the given buffer, i.e. the position
+	 * after the breakpoint, relative to the start of the buffer.
+	 */
+	private int findBreakpoint(byte[] buffer, int length) {
+		if (length <= minChunkSize) {
+			return length;
+		}
+
+		int normalSizeEnd = Math.min(avgChunkSize, length);
+		int maxSizeEnd = Math.min(maxChunkSize, length);
+
+		long hash = 0;
+		int i = minChunkSize;
+
+		for (; i < normalSizeEnd; i++) {
+			hash = (hash << 1) + GEAR[buffer[i] & 0xff];
+
+			if ((hash & maskSmall) == 0) {
+				return i + 1;
+			}
+		}
+
+		for (; i < maxSizeEnd; i++) {
+			hash = (hash << 1) + GEAR[buffer[i] & 0xff];
+
+			if ((hash & maskLarge) == 0) {
+				return i + 1;
+			}
+		}
+
+		return i;
+	}
+
+	/**
+	 * Creates a mask of the given number of most significant bits. Because the gear
+	 * hash is shifted left with every byte, these bits depend on the last 64 bytes.
+	 */
+	private static long createMask(int bits) {
+		return -1L << (64 - bits);
+	}
+
+	/**
+	 * Creates the gear table with a SplitMix64 generator, so that the table
+	 * does not depend on the random number generator of the JVM.
+	 */
+	private static long[] createGearTable(long seed) {
+		long[] gearTable = new long[256];
+		long state = seed;
+
+		for (int i = 0; i < gearTable.length; i++) {
+			state += 0x9e3779b97f4a7c15L;
+
+			long value = state;
+			value = (value ^ (value >>> 30)) * 0xbf58476d1ce4e5b9L;
+			value = (value ^ (value >>> 27)) * 0x94d049bb133111ebL;
+
+			gearTable[i] = value ^ (value >>> 31);
+		}
+
+		return gearTable;
+	}
+
+	public class FastCdcEnumeration implements ChunkEnumeration {
+		private InputStream in;
+		private boolean closed;
+		private boolean endOfStream;
+
+		private byte[] buffer;
+		private int bufferLength;
+		private int chunkLength;
+
+		private MessageDigest chunkDigest;
+		private MessageDigest fileDigest;
+
+		public FastCdcEnumeration(InputStream in) {
+			this.in = in;
+			this.closed = false;
+			this.endOfStream = false;
+
+			// One byte more than the max. chunk size: If a chunk ends at the end of
+			// the buffered data, the buffer was not full, i.e. the stream has ended.
+			this.buffer = new byte[maxChunkSize + 1];
+			this.bufferLength = 0;
+			this.chunkLength = 0;
+
+			try {
+				chunkDigest = MessageDigest.getInstance(checksumAlgorithm);
+				fileDigest = MessageDigest.getInstance(checksumAlgorithm);
+			}
+			catch (Exception e) {
+				throw new RuntimeException(e);
+			}
+		}
+
+		@Override
+		public boolean hasMoreElements() {
+			if (closed) {
+				return false;
+			}
+
+			try {
+				fillBuffer();
+			}
+			catch (IOException e) {
+				logger.log(Level.WARNING, "Error while reading from file input stream.", e);
+				return false;
+			}
+
+			if (bufferLength == 0) {
+				close();
+				closed = true;
+			}
+
+			return !closed;
+		}
+
+		/**
+		 * Returns the next chunk. The content buffer of the returned chunk is re-used
+		 * for the next chunk, so callers must copy it if they need it for longer.
+		 */
+		@Override
+		public Chunk nextElement() {
+			if (!hasMoreElements()) {
+				return null;
+			}
+
+			chunkLength = findBreakpoint(buffer, bufferLength);
+
+			chunkDigest.reset();
+			chunkDigest.update(buffer, 0, chunkLength);
+
+			// Close if this was the last bytes
+			if (endOfStream && chunkLength == bufferLength) {
+				close();
+				closed = true;
+			}
+
+			byte[] fileChecksum = (closed) ? fileDigest.digest() : null;
+			return new Chunk(chunkDigest.digest(), buffer, chunkLength, fileChecksum);
+		}
+
+		@Override
+		public void close() {
+			try {
+				in.close();
+			}
+			catch (IOException e) {
+				logger.log(Level.INFO, "Error while closing", e);
+			}
+		}
+
+		/**
+		 * Removes the last returned chunk from the buffer, and fills the buffer
+		 * until it is full or the stream ends. Short reads (as with cipher streams)
+		 * are repeated until one of the two happens.
+		 */
+		private void fillBuffer() throws IOException {
+			if (chunkLength > 0) {
+				System.arraycopy(buffer, chunkLength, buffer, 0, bufferLength - chunkLength);
+
+				bufferLength -= chunkLength;
+				chunkLength = 0;
+			}
+
+			while (!endOfStream && bufferLength < buffer.length) {
+				int read = in.read(buffer, bufferLength, buffer.length - bufferLength);
+
+				if (read == -1) {
+					endOfStream = true;
+				}
+				else {
+					fileDigest.update(buffer, bufferLength, read);
+					bufferLength += read;
+				}
+			}
+		}
+	}
+}
@@ -22,6 +22,7 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.security.MessageDigest;
+import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -44,9 +45,24 @@ public class FixedChunker extends Chunker {
 	public static final String DEFAULT_DIGEST_ALG = "SHA1";
 	public static final String TYPE = "fixed";
 
+	/**
+	 * Chunk size used for repositories configured with the {@link #TYPE fixed}
+	 * chunker. The size setting in the repository config was never honoured for
+	 * this chunker type, so all existing repositories are chunked with this size.
+	 */
+	public static final int DEFAULT_CHUNK_SIZE = 512 * 1024;
+
 	private int chunkSize;
 	private String checksumAlgorithm;
 
+	/**
+	 * Creates a new fixed offset chunker with the default chunk size and 
+	 * the default file/chunk checksum algorithm SHA1.
+	 */
+	public FixedChunker() {
+		this(DEFAULT_CHUNK_SIZE);
+	}
+
 	/**
 	 * Creates a new fixed offset chunker with the default file/chunk 
 	 * checksum algorithm SHA1.
@@ -68,6 +84,16 @@ public class FixedChunker extends Chunker {
 		this.checksumAlgorithm = checksumAlgorithm;
 	}
 
+	/**
+	 * Ignores the given settings on purpose: Existing repositories specify a size
+	 * setting that was never used. Honouring it now would change the chunk boundaries
+	 * of all files and lose the deduplication against existing chunks.
+	 */
+	@Override
+	public void init(Map<String, String> settings) {
+		// Nothing.
+	}
+
 	@Override
 	public ChunkEnumeration createChunks(File file) throws IOException {
 		return new FixedChunkEnumeration(new FileInputStream(file));
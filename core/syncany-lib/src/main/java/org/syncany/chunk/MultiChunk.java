@@ -19,7 +19,9 @@ package org.syncany.chunk;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 
+import org.apache.commons.io.IOUtils;
 import org.syncany.database.MultiChunkEntry.MultiChunkId;
 
 /**
@@ -117,6 +119,34 @@ public abstract class MultiChunk {
 	// TODO [low] Method should be named 'read(checksum)' and return a Chunk object, not an input stream, right?!
 	public abstract InputStream getChunkInputStream(byte[] checksum) throws IOException;
 
+	/**
+	 * In read mode, this method can be used to read the data of a chunk in <b>random access mode</b>
+	 * as a {@link ByteBuffer}, using a chunk checksum as identifier. The method returns <tt>null</tt>
+	 * if the chunk cannot be found.
+	 *
+	 * <p>The default implementation reads the {@link #getChunkInputStream(byte[]) chunk input stream}
+	 * into a new buffer. Implementations may override this method to return the chunk data
+	 * without copying it, e.g. as a slice of a memory-mapped file.
+	 *
+	 * @param checksum The checksum identifying a chunk instance
+	 * @return Returns the chunk data if the chunk can be found in the multichunk, or <tt>null</tt> otherwise
+	 * @throws IOException If an exception occurs when reading from the multichunk
+	 */
+	public ByteBuffer getChunkBuffer(byte[] checksum) throws IOException {
+		InputStream chunkInputStream = getChunkInputStream(checksum);
+
+		if (chunkInputStream == null) {
+			return null;
+		}
+
+		try {
+			return ByteBuffer.wrap(IOUtils.toByteArray(chunkInputStream));
+		}
+		finally {
+			chunkInputStream.close();
+		}
+	}
+
 	/**
 	 * Closes a multichunk after writing/reading.
 	 *
@@ -22,6 +22,7 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.security.MessageDigest;
+import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -56,6 +57,8 @@ import java.util.logging.Logger;
 public class TttdChunker extends Chunker {
 	private static final Logger logger = Logger.getLogger(TttdChunker.class.getSimpleName());
 
+	public static final String TYPE = "tttd";
+	public static final int DEFAULT_AVG_CHUNK_SIZE = 512 * 1024;
 	public static final int DEFAULT_WINDOW_SIZE = 48; // like LBFS
 	public static final String DEFAULT_DIGEST_ALG = "SHA1";
 	public static final String DEFAULT_FINGERPRINT_ALG = "Adler32";
@@ -69,6 +72,14 @@ public class TttdChunker extends Chunker {
 	private String fingerprintAlgorithm;
 	private String name;
 
+	/**
+	 * Creates a TTTD chunker with the default average chunk size. Used by
+	 * {@link Chunker#getInstance(String)}, and re-configured by {@link #init(Map)}.
+	 */
+	public TttdChunker() {
+		this(DEFAULT_AVG_CHUNK_SIZE);
+	}
+
 	public TttdChunker(int Tmin, int Tmax, int D, int Ddash, int windowSize) {
 		this(Tmin, Tmax, D, Ddash, windowSize, DEFAULT_DIGEST_ALG, DEFAULT_FINGERPRINT_ALG);
 	}
@@ -86,7 +97,34 @@ public class TttdChunker extends Chunker {
 	 * LBFS: avg. chunk size = 1015 bytes --> Tmin = 460, Tmax = 2800, D = 540, Ddash = 270
 	 */
 	public TttdChunker(int avgChunkSize, int windowSize, String digestAlg, String fingerprintAlg) {
-		this(
+		init(avgChunkSize, windowSize, digestAlg, fingerprintAlg);
+	}
+
+	public TttdChunker(int Tmin, int Tmax, int D, int Ddash, int windowSize, String digestAlg, String fingerprintAlg) {
+		init(Tmin, Tmax, D, Ddash, windowSize, digestAlg, fingerprintAlg, "TTTD-" + Tmin + "-" + Tmax + "-" + D + "-" + Ddash + "-" + digestAlg + "-"
+				+ fingerprintAlg);
+	}
+
+	/**
+	 * Initializes the chunker using a settings map. The optional setting
+	 * {@link Chunker#PROPERTY_SIZE} is the average chunk size in bytes; the
+	 * other parameters are inferred from it as in {@link #TttdChunker(int)}.
+	 */
+	@Override
+	public void init(Map<String, String> settings) {
+		String avgChunkSize = settings.get(PROPERTY_SIZE);
+
+		try {
+			int avgChunkSizeInt = (avgChunkSize != null) ? Integer.parseInt(avgChunkSize) : DEFAULT_AVG_CHUNK_SIZE;
+			init(avgChunkSizeInt, DEFAULT_WINDOW_SIZE, DEFAULT_DIGEST_ALG, DEFAULT_FINGERPRINT_ALG);
+		}
+		catch (NumberFormatException e) {
+			throw new IllegalArgumentException(String.format("Property %s could not be parsed as Integer.", PROPERTY_SIZE), e);
+		}
+	}
+
+	private void init(int avgChunkSize, int windowSize, String digestAlg, String fingerprintAlg) {
+		init(
 				/* Tmin */(int) Math.round(460.0 * avgChunkSize / 1015.0),
 				/* Tmax */(int) Math.round(2800.0 * avgChunkSize / 1015.0),
 				/*   D  */(int) Math.round(540.0 * avgChunkSize / 1015.0),
@@ -94,12 +132,7 @@ public class TttdChunker extends Chunker {
 				/* rest */windowSize, digestAlg, fingerprintAlg, "TTTD-" + avgChunkSize + "-" + digestAlg + "-" + fingerprintAlg);
 	}
 
-	public TttdChunker(int Tmin, int Tmax, int D, int Ddash, int windowSize, String digestAlg, String fingerprintAlg) {
-		this(Tmin, Tmax, D, Ddash, windowSize, digestAlg, fingerprintAlg, "TTTD-" + Tmin + "-" + Tmax + "-" + D + "-" + Ddash + "-" + digestAlg + "-"
-				+ fingerprintAlg);
-	}
-
-	private TttdChunker(int Tmin, int Tmax, int D, int Ddash, int windowSize, String digestAlg, String fingerprintAlg, String name) {
+	private void init(int Tmin, int Tmax, int D, int Ddash, int windowSize, String digestAlg, String fingerprintAlg, String name) {
 		this.Tmin = Tmin;
 		this.Tmax = Tmax;
 		this.D = D;
@@ -130,11 +163,14 @@ public class TttdChunker extends Chunker {
 	}
 
 	public class TTTDEnumeration implements ChunkEnumeration {
+		private static final int READ_BUFFER_SIZE = 64 * 1024;
+
 		private InputStream in;
 		private boolean closed;
 		private byte[] c;
 		private int clen;
 		private int cpos;
+		private byte[] buf;
 
 		private MessageDigest chunkDigest;
 		private MessageDigest fileDigest;
@@ -143,9 +179,10 @@ public class TttdChunker extends Chunker {
 		public TTTDEnumeration(InputStream in) throws IOException {
 			this.in = in;
 			this.closed = false;
-			this.c = new byte[8192];
-			this.clen = -1;
-			this.cpos = -1;
+			this.c = new byte[READ_BUFFER_SIZE];
+			this.clen = 0;
+			this.cpos = 0;
+			this.buf = new byte[Tmax];
 
 			try {
 				fingerprinter = Fingerprinter.getInstance(fingerprintAlgorithm);
@@ -164,6 +201,16 @@ public class TttdChunker extends Chunker {
 			return !closed;
 		}
 
+		/**
+		 * Returns the next chunk. The content buffer of the returned chunk is re-used
+		 * for the next chunk, so callers must copy it if they need it for longer.
+		 *
+		 * <p>Bytes are copied in bulk from the read buffer to the chunk buffer, and only the
+		 * bytes from position <tt>Tmin</tt> on are fingerprinted. A chunk ends at the first
+		 * breakpoint found by <i>D</i>, at <tt>Tmax</tt> or at the end of the file. The backup
+		 * breakpoint of <i>D'</i> is not evaluated, because it never took effect in previous
+		 * versions either; this keeps the chunk boundaries unchanged.
+		 */
 		@Override
 		public Chunk nextElement() {
 			if (closed) {
@@ -174,16 +221,13 @@ public class TttdChunker extends Chunker {
 			fingerprinter.reset();
 
 			try {
-				int backupBreak = 0;
-				int breakpoint = -1;
-
-				byte[] buf = new byte[Tmax];
-				int bufpos = -1;
+				int bufLength = 0;
+				boolean breakpointFound = false;
 
-				while (bufpos < buf.length - 1) {
-					if (cpos == -1 || cpos == clen - 1) {
-						cpos = -1;
-						clen = readFromInputStreamFixed(c, in);//in.read(c);
+				while (!breakpointFound && bufLength < Tmax) {
+					if (cpos == clen) {
+						cpos = 0;
+						clen = readFromInputStreamFixed(c, in);
 
 						if (clen == -1) {
 							break;
@@ -192,44 +236,31 @@ public class TttdChunker extends Chunker {
 						fileDigest.update(c, 0, clen);
 					}
 
-					bufpos++;
-					cpos++;
-					buf[bufpos] = c[cpos];
+					int copyLength = Math.min(clen - cpos, Tmax - bufLength);
+					System.arraycopy(c, cpos, buf, bufLength, copyLength);
 
-					if (bufpos < Tmin) {
-						continue;
-					}
-					else if (bufpos == Tmin) {
-						fingerprinter.check(buf, bufpos - windowSize, windowSize);
-					}
-					else {
-						fingerprinter.roll(buf[bufpos]);
-					}
+					int copyEnd = bufLength + copyLength;
+					int bufpos = Math.max(bufLength, Tmin);
 
-					int hash = fingerprinter.getValue();
-
-					// The value of r (right side) plays no role! #39  
-					if ((hash % Ddash) == Ddash - 1) {
-						backupBreak = bufpos;
-					}
+					for (; bufpos < copyEnd; bufpos++) {
+						if (bufpos == Tmin) {
+							fingerprinter.check(buf, bufpos - windowSize, windowSize);
+						}
+						else {
+							fingerprinter.roll(buf[bufpos]);
+						}
 
-					if ((hash % D) == D - 1) {
-						breakpoint = bufpos;
-						break;
+						// The value of r (right side) plays no role! #39  
+						if ((fingerprinter.getValue() % D) == D - 1) {
+							breakpointFound = true;
+							break;
+						}
 					}
 
-					if (bufpos < Tmax) {
-						continue;
-					}
+					int consumedLength = (breakpointFound) ? bufpos + 1 - bufLength : copyLength;
 
-					if (backupBreak != 0) {
-						breakpoint = backupBreak;
-						break;
-					}
-					else {
-						breakpoint = bufpos;
-						break;
-					}
+					cpos += consumedLength;
+					bufLength += consumedLength;
 				}
 
 				// Close if this was the last bytes
@@ -238,23 +269,13 @@ public class TttdChunker extends Chunker {
 					closed = true;
 				}
 
-				// EOF as breakpoint
-				if (breakpoint == -1) {
-					breakpoint = bufpos;
-				}
-
-				// Increase breakpoint
-				breakpoint++;
-
 				// Create chunk
-				chunkDigest.update(buf, 0, breakpoint);
+				chunkDigest.update(buf, 0, bufLength);
 
 				byte[] chunkChecksum = chunkDigest.digest();
-				byte[] chunkContents = buf;
-				int chunkSize = breakpoint;
 				byte[] fileChecksum = (clen == -1) ? fileDigest.digest() : null;
 
-				return new Chunk(chunkChecksum, chunkContents, chunkSize, fileChecksum);
+				return new Chunk(chunkChecksum, buf, bufLength, fileChecksum);
 			}
 			catch (IOException ex) {
 				logger.log(Level.SEVERE, "Error while retrieving next chunk.", ex);
@@ -273,21 +294,21 @@ public class TttdChunker extends Chunker {
 		}
 
 		/**
-		 * Fixes the read errors occurring with Cipher streams in the standard
-		 * Java read implementation.
+		 * Fills the given buffer in bulk. Cipher streams may return fewer bytes than
+		 * requested (or none at all) before the end of the stream, so this method reads
+		 * until the buffer is full or the stream ends.
 		 */
 		private int readFromInputStreamFixed(byte[] readToBuffer, InputStream inputStream) throws IOException {
 			int bytesRead = 0;
 
 			while (bytesRead < readToBuffer.length) {
-				int byteRead = inputStream.read();
+				int read = inputStream.read(readToBuffer, bytesRead, readToBuffer.length - bytesRead);
 
-				if (byteRead == -1) {
-					return (bytesRead != 0) ? bytesRead : -1;
+				if (read == -1) {
+					break;
 				}
 
-				readToBuffer[bytesRead] = (byte) byteRead;
-				bytesRead++;
+				bytesRead += read;
 			}
 
 			return (bytesRead != 0) ? bytesRead : -1;
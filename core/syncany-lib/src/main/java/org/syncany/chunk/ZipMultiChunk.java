@@ -17,28 +17,58 @@
  */
 package org.syncany.chunk;
 
-import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipException;
 import java.util.zip.ZipFile;
 import java.util.zip.ZipInputStream;
 import java.util.zip.ZipOutputStream;
 
+import org.apache.commons.io.IOUtils;
 import org.syncany.database.MultiChunkEntry.MultiChunkId;
+import org.syncany.util.EnvironmentUtil;
 import org.syncany.util.StringUtil;
 
 /**
+ * The zip multichunk stores chunks as entries of a ZIP file, using the hex
+ * representation of the chunk checksum as entry name.
+ * 
+ * <p>Chunks are written uncompressed (method <tt>STORED</tt>). When such a multichunk
+ * is opened from a file, the file is memory-mapped and the central directory is indexed
+ * once, so that chunks can be returned as zero-copy slices of the mapped buffer
+ * (see {@link #getChunkBuffer(byte[]) getChunkBuffer()}). Entries that are not stored,
+ * e.g. in multichunks written by older versions, are read through {@link ZipFile}.
+ * 
+ * <p>On Windows, mapped files cannot be deleted until the mapping is garbage collected,
+ * so the file is read into a heap buffer instead.
  *
  * @author Philipp C. Heckel <philipp.heckel@gmail.com>
  */
 public class ZipMultiChunk extends MultiChunk {
+	private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+	private static final int CENTRAL_DIR_SIGNATURE = 0x02014b50;
+	private static final int END_OF_CENTRAL_DIR_SIGNATURE = 0x06054b50;
+	private static final int END_OF_CENTRAL_DIR_SIZE = 22;
+	
     private ZipOutputStream zipOut;
     private ZipInputStream zipIn;
     private ZipFile zipFile;
+    
+	private File file;
+	private ByteBuffer zipBuffer;
+	private Map<String, StoredEntry> storedEntries;
 
     public ZipMultiChunk(InputStream is) {
         super(0);
@@ -47,14 +77,23 @@ public class ZipMultiChunk extends MultiChunk {
     
     public ZipMultiChunk(File file) throws ZipException, IOException {
 		super(0);
-		this.zipFile = new ZipFile(file);
+		
+		this.file = file;
+		this.zipBuffer = readZipBuffer(file);
+		this.storedEntries = indexStoredEntries(zipBuffer);
+		
+		// Fall back to zip file if index cannot be read (e.g. ZIP64, or invalid file)
+		if (storedEntries == null) {
+			this.storedEntries = new LinkedHashMap<String, StoredEntry>();
+			this.zipFile = new ZipFile(file);
+		}
 	}    
     
     public ZipMultiChunk(MultiChunkId id, int minSize, OutputStream os) throws IOException {
         super(id, minSize);        
         
         this.zipOut = new ZipOutputStream(os);
-        this.zipOut.setLevel(ZipOutputStream.STORED); // No compression        
+        this.zipOut.setMethod(ZipOutputStream.STORED); // No compression        
     }                
 
 	@Override
@@ -68,6 +107,8 @@ public class ZipMultiChunk extends MultiChunk {
        
         ZipEntry entry = new ZipEntry(StringUtil.toHex(chunk.getChecksum()));
         entry.setSize(chunk.getSize());
+        entry.setCompressedSize(chunk.getSize());
+        entry.setCrc(calculateCrc(chunk));
 
         zipOut.putNextEntry(entry);
         zipOut.write(chunk.getContent(), 0, chunk.getSize());
@@ -76,12 +117,36 @@ public class ZipMultiChunk extends MultiChunk {
     
     @Override
     public InputStream getChunkInputStream(byte[] checksum) throws IOException {
-    	ZipEntry chunkEntry = zipFile.getEntry(StringUtil.toHex(checksum));
-    	InputStream chunkInputStream = zipFile.getInputStream(chunkEntry);
-    	
-    	return chunkInputStream;
+		ByteBuffer storedChunkBuffer = getStoredChunkBuffer(checksum);
+		
+		if (storedChunkBuffer != null) {
+			return new ByteBufferInputStream(storedChunkBuffer);
+		}
+		
+		ZipEntry chunkEntry = getZipFile().getEntry(StringUtil.toHex(checksum));
+		
+		if (chunkEntry == null) {
+			return null;
+		}
+		
+		return getZipFile().getInputStream(chunkEntry);
     }
     
+	/**
+	 * Returns the chunk data as a read-only slice of the multichunk file (no copy),
+	 * if the chunk is stored uncompressed. Otherwise, the chunk is read into a new buffer.
+	 */
+	@Override
+	public ByteBuffer getChunkBuffer(byte[] checksum) throws IOException {
+		ByteBuffer storedChunkBuffer = getStoredChunkBuffer(checksum);
+		
+		if (storedChunkBuffer != null) {
+			return storedChunkBuffer;
+		}
+		
+		return super.getChunkBuffer(checksum);
+	}
+    
     @Override
     public Chunk read() throws IOException {
         ZipEntry entry = zipIn.getNextEntry();
@@ -90,14 +155,17 @@ public class ZipMultiChunk extends MultiChunk {
             return null;
         }
         
-        int read;
-        ByteArrayOutputStream contentByteArray = new ByteArrayOutputStream();
+		byte[] content;
+		
+		if (entry.getSize() >= 0) {
+			content = new byte[(int) entry.getSize()];
+			IOUtils.readFully(zipIn, content);
+		}
+		else {
+			content = IOUtils.toByteArray(zipIn);
+		}
         
-        while (-1 != (read = zipIn.read())) {
-        	contentByteArray.write(read);
-        }       
-        
-        return new Chunk(StringUtil.fromHex(entry.getName()), contentByteArray.toByteArray(), contentByteArray.size(), null);
+		return new Chunk(StringUtil.fromHex(entry.getName()), content, content.length, null);
     }
    
 
@@ -119,6 +187,192 @@ public class ZipMultiChunk extends MultiChunk {
         if (zipFile != null) {
             zipFile.close();
         }
+        
+		zipBuffer = null;
     }
+    
+	private ByteBuffer getStoredChunkBuffer(byte[] checksum) {
+		StoredEntry storedEntry = (storedEntries != null) ? storedEntries.get(StringUtil.toHex(checksum)) : null;
+		
+		if (storedEntry == null) {
+			return null;
+		}
+		
+		ByteBuffer chunkBuffer = zipBuffer.duplicate();
+		
+		chunkBuffer.limit(storedEntry.offset + storedEntry.size);
+		chunkBuffer.position(storedEntry.offset);
+		
+		return chunkBuffer.slice();
+	}
+	
+	private ZipFile getZipFile() throws IOException {
+		if (zipFile == null) {
+			zipFile = new ZipFile(file);
+		}
+		
+		return zipFile;
+	}
+	
+	private long calculateCrc(Chunk chunk) {
+		CRC32 crc = new CRC32();
+		crc.update(chunk.getContent(), 0, chunk.getSize());
+		
+		return crc.getValue();
+	}
+	
+	private static ByteBuffer readZipBuffer(File file) throws IOException {
+		try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r")) {
+			FileChannel fileChannel = randomAccessFile.getChannel();
+			
+			if (fileChannel.size() > Integer.MAX_VALUE) {
+				throw new IOException("Multichunk too large: " + file);
+			}
+			
+			ByteBuffer zipBuffer;
+			
+			if (EnvironmentUtil.isWindows()) {
+				zipBuffer = ByteBuffer.allocate((int) fileChannel.size());
+				
+				while (zipBuffer.hasRemaining() && fileChannel.read(zipBuffer) != -1) {
+					// Read until buffer is full
+				}
+				
+				zipBuffer.flip();
+				zipBuffer = zipBuffer.asReadOnlyBuffer();
+			}
+			else {
+				zipBuffer = fileChannel.map(MapMode.READ_ONLY, 0, fileChannel.size());
+			}
+			
+			return zipBuffer.order(ByteOrder.LITTLE_ENDIAN);
+		}
+	}
+	
+	/**
+	 * Reads the central directory of the given ZIP file buffer and returns the
+	 * offsets of all uncompressed entries, or <tt>null</tt> if the central directory 
+	 * cannot be read.
+	 */
+	private static Map<String, StoredEntry> indexStoredEntries(ByteBuffer zipBuffer) {
+		try {
+			int endOfCentralDirOffset = findEndOfCentralDirectory(zipBuffer);
+			
+			if (endOfCentralDirOffset < 0) {
+				return null;
+			}
+			
+			int entryCount = zipBuffer.getShort(endOfCentralDirOffset + 10) & 0xffff;
+			long centralDirOffset = zipBuffer.getInt(endOfCentralDirOffset + 16) & 0xffffffffL;
+			
+			if (entryCount == 0xffff || centralDirOffset >= zipBuffer.limit()) { // ZIP64
+				return null;
+			}
+			
+			Map<String, StoredEntry> storedEntries = new LinkedHashMap<String, StoredEntry>();
+			int entryOffset = (int) centralDirOffset;
+			
+			for (int i = 0; i < entryCount; i++) {
+				if (zipBuffer.getInt(entryOffset) != CENTRAL_DIR_SIGNATURE) {
+					return null;
+				}
+				
+				int method = zipBuffer.getShort(entryOffset + 10) & 0xffff;
+				long compressedSize = zipBuffer.getInt(entryOffset + 20) & 0xffffffffL;
+				long size = zipBuffer.getInt(entryOffset + 24) & 0xffffffffL;
+				int nameLength = zipBuffer.getShort(entryOffset + 28) & 0xffff;
+				int extraLength = zipBuffer.getShort(entryOffset + 30) & 0xffff;
+				int commentLength = zipBuffer.getShort(entryOffset + 32) & 0xffff;
+				long localHeaderOffset = zipBuffer.getInt(entryOffset + 42) & 0xffffffffL;
+				
+				String name = readString(zipBuffer, entryOffset + 46, nameLength);
+				
+				if (method == ZipEntry.STORED && compressedSize == size && localHeaderOffset < zipBuffer.limit()) {
+					int localHeader = (int) localHeaderOffset;
+					
+					if (zipBuffer.getInt(localHeader) != LOCAL_HEADER_SIGNATURE) {
+						return null;
+					}
+					
+					long dataOffset = localHeader + 30 + (zipBuffer.getShort(localHeader + 26) & 0xffff) + (zipBuffer.getShort(localHeader + 28) & 0xffff);
+					
+					if (dataOffset + size > zipBuffer.limit()) {
+						return null;
+					}
+					
+					storedEntries.put(name, new StoredEntry((int) dataOffset, (int) size));
+				}
+				
+				entryOffset += 46 + nameLength + extraLength + commentLength;
+			}
+			
+			return storedEntries;
+		}
+		catch (IndexOutOfBoundsException e) {
+			return null;
+		}
+	}
+	
+	private static int findEndOfCentralDirectory(ByteBuffer zipBuffer) {
+		int minOffset = Math.max(0, zipBuffer.limit() - END_OF_CENTRAL_DIR_SIZE - 0xffff); // Max. comment length
+		
+		for (int offset = zipBuffer.limit() - END_OF_CENTRAL_DIR_SIZE; offset >= minOffset; offset--) {
+			if (zipBuffer.getInt(offset) == END_OF_CENTRAL_DIR_SIGNATURE) {
+				return offset;
+			}
+		}
+		
+		return -1;
+	}
+	
+	private static String readString(ByteBuffer zipBuffer, int offset, int length) {
+		byte[] stringBytes = new byte[length];
+		
+		ByteBuffer stringBuffer = zipBuffer.duplicate();
+		stringBuffer.position(offset);
+		stringBuffer.get(stringBytes);
+		
+		return new String(stringBytes, StandardCharsets.UTF_8);
+	}
+	
+	private static class StoredEntry {
+		private final int offset;
+		private final int size;
+		
+		public StoredEntry(int offset, int size) {
+			this.offset = offset;
+			this.size = size;
+		}
+	}
+	
+	private static class ByteBufferInputStream extends InputStream {
+		private final ByteBuffer buffer;
+		
+		public ByteBufferInputStream(ByteBuffer buffer) {
+			this.buffer = buffer;
+		}
+		
+		@Override
+		public int read() throws IOException {
+			return (buffer.hasRemaining()) ? buffer.get() & 0xff : -1;
+		}
+		
+		@Override
+		public int read(byte[] bytes, int offset, int length) throws IOException {
+			if (!buffer.hasRemaining()) {
+				return -1;
+			}
+			
+			int read = Math.min(length, buffer.remaining());
+			buffer.get(bytes, offset, read);
+			
+			return read;
+		}
+		
+		@Override
+		public int available() throws IOException {
+			return buffer.remaining();
+		}
+	}
 }
 
@@ -19,7 +19,9 @@ package org.syncany.config;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.syncany.chunk.Chunker;
 import org.syncany.chunk.CipherTransformer;
@@ -29,11 +31,15 @@ import org.syncany.chunk.NoTransformer;
 import org.syncany.chunk.Transformer;
 import org.syncany.config.to.ConfigTO;
 import org.syncany.config.to.RepoTO;
+import org.syncany.config.to.RepoTO.ChunkerTO;
 import org.syncany.config.to.RepoTO.MultiChunkerTO;
 import org.syncany.config.to.RepoTO.TransformerTO;
 import org.syncany.crypto.SaltedSecretKey;
 import org.syncany.database.DatabaseConnectionFactory;
+import org.syncany.database.DatabaseConnectionPool;
 import org.syncany.database.VectorClock;
+import org.syncany.database.dao.DatabaseXmlSerializer.DatabaseFormat;
+import org.syncany.operations.status.StatCache;
 import org.syncany.plugins.Plugins;
 import org.syncany.plugins.transfer.TransferPlugin;
 import org.syncany.plugins.transfer.TransferSettings;
@@ -75,6 +81,7 @@ public class Config {
 	public static final String FILE_TRANSACTION_PATTERN = "transaction-actions.%010d.xml";
 	public static final String FILE_TRANSACTION_DATABASE_PATTERN = "transaction-database.%010d.xml";
 	public static final String FILE_TRANSACTION_LIST = "transaction-list.txt";
+	public static final String FILE_STAT_CACHE = "stat-cache.bin";
 
 	private byte[] repoId;
 	private String machineName;
@@ -94,7 +101,11 @@ public class Config {
 	private Chunker chunker;
 	private MultiChunker multiChunker;
 	private Transformer transformer;
+	private DatabaseFormat databaseFormat;
 	private IgnoredFiles ignoredFiles;
+	private int statusThreads;
+	private DatabaseConnectionPool databaseConnectionPool;
+	private StatCache statCache;
 
 	static {
 		UserConfig.init();
@@ -110,6 +121,7 @@ public class Config {
 		initMasterKey(configTO);
 		initDirectories(aLocalDir);
 		initCache(configTO);
+		initStatusThreads(configTO);
 		initIgnoredFile();
 		initRepo(repoTO);
 		initConnection(configTO);
@@ -141,6 +153,11 @@ public class Config {
 		}
 	}
 
+	private void initStatusThreads(ConfigTO configTO) {
+		// Number of threads walking the local folder in the status operation; 1 walks it sequentially
+		statusThreads = (configTO.getStatusThreads() != null && configTO.getStatusThreads() > 0) ? configTO.getStatusThreads() : 1;
+	}
+
 	private void initIgnoredFile() throws ConfigException {
 		File ignoreFile = new File(localDir, FILE_IGNORE);
 		ignoredFiles = new IgnoredFiles(ignoreFile);
@@ -152,6 +169,7 @@ public class Config {
 			initChunker(repoTO);
 			initMultiChunker(repoTO);
 			initTransformers(repoTO);
+			initDatabaseFormat(repoTO);
 		}
 		catch (Exception e) {
 			throw new ConfigException("Unable to initialize repository information from config.", e);
@@ -162,11 +180,28 @@ public class Config {
 		repoId = repoTO.getRepoId();
 	}
 
-	private void initChunker(RepoTO repoTO) throws Exception {
-		// TODO [feature request] make chunking options configurable, something like described in #29
-		// See: https://github.com/syncany/syncany/issues/29#issuecomment-43425647
+	private void initChunker(RepoTO repoTO) throws ConfigException {
+		ChunkerTO chunkerTO = repoTO.getChunkerTO();
+
+		if (chunkerTO == null) {
+			chunker = new FixedChunker();
+			return;
+		}
+
+		chunker = Chunker.getInstance(chunkerTO.getType());
 
-		chunker = new FixedChunker(512 * 1024, "SHA1");
+		if (chunker == null) {
+			throw new ConfigException("Invalid chunker type or settings: " + chunkerTO.getType());
+		}
+
+		Map<String, String> chunkerSettings = (chunkerTO.getSettings() != null) ? chunkerTO.getSettings() : new HashMap<String, String>();
+
+		try {
+			chunker.init(chunkerSettings);
+		}
+		catch (IllegalArgumentException e) {
+			throw new ConfigException("Invalid chunker settings for type " + chunkerTO.getType() + ": " + e.getMessage(), e);
+		}
 	}
 
 	private void initMultiChunker(RepoTO repoTO) throws ConfigException {
@@ -185,6 +220,20 @@ public class Config {
 		multiChunker.init(multiChunkerTO.getSettings());
 	}
 
+	private void initDatabaseFormat(RepoTO repoTO) throws ConfigException {
+		if (repoTO.getDatabaseFormat() == null) {
+			databaseFormat = DatabaseFormat.XML;
+		}
+		else {
+			try {
+				databaseFormat = DatabaseFormat.valueOf(repoTO.getDatabaseFormat().toUpperCase());
+			}
+			catch (IllegalArgumentException e) {
+				throw new ConfigException("Invalid database format in repository config: " + repoTO.getDatabaseFormat(), e);
+			}
+		}
+	}
+
 	private void initTransformers(RepoTO repoTO) throws Exception {
 		if (repoTO.getTransformers() == null || repoTO.getTransformers().size() == 0) {
 			transformer = new NoTransformer();
@@ -237,11 +286,41 @@ public class Config {
 	}
 
 	public java.sql.Connection createDatabaseConnection() {
-		return DatabaseConnectionFactory.createConnection(getDatabaseFile(), false);
+		return createDatabaseConnection(false);
 	}
 
+	/**
+	 * Creates a connection to the local database, or takes one from the
+	 * {@link DatabaseConnectionPool} if one is set (e.g. by the daemon).
+	 */
 	public java.sql.Connection createDatabaseConnection(boolean readOnly) {
-		return DatabaseConnectionFactory.createConnection(getDatabaseFile(), readOnly);
+		if (databaseConnectionPool != null) {
+			return databaseConnectionPool.getConnection(readOnly);
+		}
+		else {
+			return DatabaseConnectionFactory.createConnection(getDatabaseFile(), readOnly);
+		}
+	}
+
+	public DatabaseConnectionPool getDatabaseConnectionPool() {
+		return databaseConnectionPool;
+	}
+
+	public void setDatabaseConnectionPool(DatabaseConnectionPool databaseConnectionPool) {
+		this.databaseConnectionPool = databaseConnectionPool;
+	}
+
+	/**
+	 * Returns the {@link StatCache} that is kept in memory across status runs (e.g. by
+	 * the watch operation), or <tt>null</tt> if the status operation should load it
+	 * from the stat cache file every time.
+	 */
+	public StatCache getStatCache() {
+		return statCache;
+	}
+
+	public void setStatCache(StatCache statCache) {
+		this.statCache = statCache;
 	}
 
 	public File getCacheDir() {
@@ -296,6 +375,14 @@ public class Config {
 		return cache;
 	}
 
+	public int getStatusThreads() {
+		return statusThreads;
+	}
+
+	public void setStatusThreads(int statusThreads) {
+		this.statusThreads = statusThreads;
+	}
+
 	public IgnoredFiles getIgnoredFiles() {
 		return ignoredFiles;
 	}
@@ -304,6 +391,10 @@ public class Config {
 		return multiChunker;
 	}
 
+	public DatabaseFormat getDatabaseFormat() {
+		return databaseFormat;
+	}
+
 	public Transformer getTransformer() {
 		return transformer;
 	}
@@ -352,6 +443,10 @@ public class Config {
 		return new File(stateDir, FILE_TRANSACTION_LIST);
 	}
 
+	public File getStatCacheFile() {
+		return new File(stateDir, FILE_STAT_CACHE);
+	}
+
 	public File getTransactionFile(long databaseVersionNumber) {
 		return new File(stateDir, String.format(FILE_TRANSACTION_PATTERN, databaseVersionNumber));
 	}
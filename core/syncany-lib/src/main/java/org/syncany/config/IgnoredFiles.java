@@ -19,29 +19,45 @@ package org.syncany.config;
 
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Scanner;
 import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
 
 /**
  * This class serves as a container of patterns of filenames
  * that should be ignored.
  *
+ * <p>Exact paths and names are looked up in a hash set, and regular expressions
+ * and wildcards are compiled once when the ignore file is loaded. The ignore file
+ * is only re-read by {@link #reloadPatternsIfModified()} if its modified date or
+ * size has changed.
+ *
+ * <p>The loaded patterns are never modified, but replaced when the file is
+ * reloaded, so {@link #isFileIgnored(String, String)} can be called concurrently.
+ *
  * @author Pim Otte
  */
 public class IgnoredFiles {
 	private static final Logger logger = Logger.getLogger(ConfigHelper.class.getSimpleName());
 
-	private Set<String> ignorePatterns;
-	private Set<String> ignorePaths;
+	private volatile List<Pattern> ignorePatterns;
+	private volatile Set<String> ignorePaths;
 	private File ignoreFile;
 
+	private long ignoreFileLastModified;
+	private long ignoreFileSize;
+
 	public IgnoredFiles(File ignoreFile) {
 		this.ignoreFile = ignoreFile;
-		this.ignorePatterns = new HashSet<String>();
-		this.ignorePaths = new HashSet<String>();
+		this.ignorePatterns = Collections.emptyList();
+		this.ignorePaths = Collections.emptySet();
 
 		loadPatterns();
 	}
@@ -51,23 +67,16 @@ public class IgnoredFiles {
 	 * Should only be called at indexing time.
 	 */
 	public boolean isFileIgnored(String filePath, String fileName) {
-		// Check all exact paths
-		for (String path : ignorePaths) {
-			if (path.equals(filePath)) {
-				return true;
-			}
-		}
+		// Check all exact paths and recursive names
+		Set<String> currentIgnorePaths = ignorePaths;
 
-        // Check all recursive
-		for (String path : ignorePaths) {
-			if (path.equals(fileName)) {
-				return true;
-			}
+		if (currentIgnorePaths.contains(filePath) || currentIgnorePaths.contains(fileName)) {
+			return true;
 		}
 
 		// Check all regular expressions
-		for (String pattern : ignorePatterns) {
-			if (filePath.matches(pattern)) {
+		for (Pattern pattern : ignorePatterns) {
+			if (pattern.matcher(filePath).matches()) {
 				return true;
 			}
 		}
@@ -75,8 +84,35 @@ public class IgnoredFiles {
 		return false;
 	}
 
-	public void loadPatterns() {
+	/**
+	 * Reloads the ignore file if its modified date or size differs from when it was
+	 * last loaded, or if it has been created or deleted since. Returns <tt>true</tt>
+	 * if the patterns were reloaded.
+	 */
+	public synchronized boolean reloadPatternsIfModified() {
+		if (ignoreFile == null) {
+			return false;
+		}
+
+		if (ignoreFile.lastModified() == ignoreFileLastModified && ignoreFile.length() == ignoreFileSize) {
+			return false;
+		}
+
+		logger.log(Level.INFO, "Ignore file " + ignoreFile + " has changed. Reloading patterns.");
+		loadPatterns();
+
+		return true;
+	}
+
+	public synchronized void loadPatterns() {
+		List<Pattern> newIgnorePatterns = new ArrayList<Pattern>();
+		Set<String> newIgnorePaths = new HashSet<String>();
+
+		// In case the ignoreFile has been deleted, patterns are reset
 		if (ignoreFile != null && ignoreFile.exists()) {
+			ignoreFileLastModified = ignoreFile.lastModified();
+			ignoreFileSize = ignoreFile.length();
+
 			try {
 				Scanner scanner = new Scanner(ignoreFile);
 
@@ -84,7 +120,7 @@ public class IgnoredFiles {
 					String ignorePatternLine = scanner.nextLine().trim();
 
 					if (!ignorePatternLine.isEmpty()) {
-						parseIgnoreFileLine(ignorePatternLine);
+						parseIgnoreFileLine(ignorePatternLine, newIgnorePatterns, newIgnorePaths);
 					}
 				}
 
@@ -95,28 +131,39 @@ public class IgnoredFiles {
 			}
 		}
 		else {
-			// In case the ignoreFile has been deleted, reset patterns
-			ignorePatterns = new HashSet<String>();
-			ignorePaths = new HashSet<String>();
+			ignoreFileLastModified = 0;
+			ignoreFileSize = 0;
 		}
+
+		ignorePatterns = newIgnorePatterns;
+		ignorePaths = newIgnorePaths;
 	}
 
-	private void parseIgnoreFileLine(String ignorePattern) {
+	private void parseIgnoreFileLine(String ignorePattern, List<Pattern> newIgnorePatterns, Set<String> newIgnorePaths) {
 		if (ignorePattern.startsWith("regex:")) {
 			// Chop off regex: indicator
-			ignorePatterns.add(ignorePattern.substring(6));
+			addIgnorePattern(ignorePattern.substring(6), newIgnorePatterns);
 		}
 		else {
 			if (ignorePattern.contains("*") || ignorePattern.contains("?")) {
 				// wildcards handling, converting them to regexps
-				ignorePatterns.add(convertWildcardsToRegexp(ignorePattern));
+				addIgnorePattern(convertWildcardsToRegexp(ignorePattern), newIgnorePatterns);
 			}
 			else {
-				ignorePaths.add(ignorePattern);
+				newIgnorePaths.add(ignorePattern);
 			}
 		}
 	}
 
+	private void addIgnorePattern(String regex, List<Pattern> newIgnorePatterns) {
+		try {
+			newIgnorePatterns.add(Pattern.compile(regex));
+		}
+		catch (PatternSyntaxException e) {
+			logger.log(Level.WARNING, "Invalid pattern in ignore file: " + regex + ". Ignoring pattern.", e);
+		}
+	}
+
 	private static String convertWildcardsToRegexp(String in) {
 		StringBuilder out = new StringBuilder("^");
 
@@ -63,6 +63,9 @@ public class ConfigTO {
 	@Element(name = "cacheKeepBytes", required = false)
 	private Long cacheKeepBytes;
 
+	@Element(name = "statusThreads", required = false)
+	private Integer statusThreads;
+
 	public static ConfigTO load(File file) throws ConfigException {
 		try {
 			Registry registry = new Registry();
@@ -144,4 +147,12 @@ public class ConfigTO {
 		this.cacheKeepBytes = cacheKeepBytes;
 	}
 
+	public Integer getStatusThreads() {
+		return statusThreads;
+	}
+
+	public void setStatusThreads(Integer statusThreads) {
+		this.statusThreads = statusThreads;
+	}
+
 }
@@ -49,7 +49,16 @@ public class DefaultRepoTOFactory implements RepoTOFactory {
 	private List<TransformerTO> transformersTO;
 
 	public DefaultRepoTOFactory(boolean gzipEnabled, List<CipherSpec> cipherSpecs) {
-		chunkerTO = getDefaultChunkerTO();
+		this(gzipEnabled, cipherSpecs, null);
+	}
+
+	/**
+	 * Creates a factory for repositories using the given chunker type (e.g. <tt>fixed</tt>,
+	 * <tt>tttd</tt> or <tt>fast-cdc</tt>) with its default chunk size. If the chunker type
+	 * is <tt>null</tt>, the default (fixed) chunker is used.
+	 */
+	public DefaultRepoTOFactory(boolean gzipEnabled, List<CipherSpec> cipherSpecs, String chunkerType) {
+		chunkerTO = (chunkerType != null) ? getChunkerTO(chunkerType) : getDefaultChunkerTO();
 		multiChunkerTO = getDefaultMultiChunkerTO();
 		transformersTO = getTransformersTO(gzipEnabled, cipherSpecs);
 	}
@@ -101,6 +110,19 @@ public class DefaultRepoTOFactory implements RepoTOFactory {
 		return chunkerTO;
 	}
 
+	protected ChunkerTO getChunkerTO(String chunkerType) {
+		if (FixedChunker.TYPE.equals(chunkerType)) {
+			return getDefaultChunkerTO();
+		}
+
+		ChunkerTO chunkerTO = new ChunkerTO();
+
+		chunkerTO.setType(chunkerType);
+		chunkerTO.setSettings(new HashMap<String, String>());
+
+		return chunkerTO;
+	}
+
 	protected MultiChunkerTO getDefaultMultiChunkerTO() {
 		MultiChunkerTO multichunkerTO = new MultiChunkerTO();
 
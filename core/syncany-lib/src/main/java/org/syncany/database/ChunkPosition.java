@@ -0,0 +1,73 @@
+/*
+ * Syncany, www.syncany.org
+ * Copyright (C) 2011-2016 Philipp C. Heckel <philipp.heckel@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.syncany.database;
+
+import org.syncany.database.ChunkEntry.ChunkChecksum;
+
+/**
+ * The chunk position describes where a chunk can be found in a local file,
+ * according to the local database: the file at the given path (relative to the
+ * local folder) contains the chunk at the given offset, if the file has not
+ * been changed since it was indexed.
+ *
+ * <p>To quickly detect changed files, the position also contains the size of the
+ * file when it was last indexed. Since the position is only a hint, the chunk data
+ * must always be verified using the chunk checksum when it is read.
+ *
+ * @author Philipp C. Heckel <philipp.heckel@gmail.com>
+ */
+public class ChunkPosition {
+	private ChunkChecksum checksum;
+	private int size;
+	private String path;
+	private long offset;
+	private long fileSize;
+
+	public ChunkPosition(ChunkChecksum checksum, int size, String path, long offset, long fileSize) {
+		this.checksum = checksum;
+		this.size = size;
+		this.path = path;
+		this.offset = offset;
+		this.fileSize = fileSize;
+	}
+
+	public ChunkChecksum getChecksum() {
+		return checksum;
+	}
+
+	public int getSize() {
+		return size;
+	}
+
+	public String getPath() {
+		return path;
+	}
+
+	public long getOffset() {
+		return offset;
+	}
+
+	public long getFileSize() {
+		return fileSize;
+	}
+
+	@Override
+	public String toString() {
+		return "ChunkPosition [checksum=" + checksum + ", size=" + size + ", path=" + path + ", offset=" + offset + "]";
+	}
+}
@@ -52,6 +52,8 @@ public class DatabaseConnectionFactory {
 	public static final String DATABASE_CONNECTION_FILE_STRING = "jdbc:hsqldb:file:%DATABASEFILE%;user=sa;password=;create=true;write_delay=false;hsqldb.write_delay=false";
 	public static final String DATABASE_RESOURCE_PATTERN = "/org/syncany/database/sql/%s";
 	public static final String DATABASE_RESOURCE_CREATE_ALL = "script.create.all.sql";
+	public static final String DATABASE_RESOURCE_CREATE_FILEVERSION_PARENT = "script.update.all.createFileVersionParent.sql";
+	public static final String DATABASE_SETTING_FILEVERSION_PARENT = "schema.fileVersionParent";
 
 	public static final Map<String, String> DATABASE_STATEMENTS = new HashMap<String, String>();
 
@@ -127,7 +129,6 @@ public class DatabaseConnectionFactory {
 		try {
 			Connection connection = DriverManager.getConnection(connectionString);
 			connection.setAutoCommit(false);
-			connection.setReadOnly(readOnly);
 
 			// We use UNCOMMITTED read to enable operations to alter the database and continue
 			// with those changes, but still roll back the database if something goes wrong later.
@@ -138,6 +139,10 @@ public class DatabaseConnectionFactory {
 				createTables(connection);
 			}
 
+			// Upgrade tables of existing databases (and create them for new ones)
+			upgradeTables(connection);
+
+			connection.setReadOnly(readOnly);
 			return connection;
 		}
 		catch (Exception e) {
@@ -164,10 +169,41 @@ public class DatabaseConnectionFactory {
 		}
 	}
 
+	/**
+	 * Runs the upgrade scripts that have not been completed yet. Each upgrade script
+	 * writes a marker to the <tt>general_settings</tt> table in its last transaction, so an
+	 * upgrade that was interrupted (e.g. by a crash) is run again on the next start. The
+	 * scripts must therefore be idempotent.
+	 *
+	 * <p>This method is synchronized, so that connections opened at the same time
+	 * do not run the same upgrade concurrently.
+	 */
+	private static synchronized void upgradeTables(Connection connection) throws SQLException, IOException {
+		if (!settingExists(connection, DATABASE_SETTING_FILEVERSION_PARENT)) {
+			runUpgradeScript(connection, DATABASE_RESOURCE_CREATE_FILEVERSION_PARENT);
+		}
+	}
+
+	private static boolean settingExists(Connection connection, String key) throws SQLException {
+		try (PreparedStatement preparedStatement = connection.prepareStatement("SELECT COUNT(*) FROM general_settings WHERE key=?")) {
+			preparedStatement.setString(1, key);
+
+			try (ResultSet resultSet = preparedStatement.executeQuery()) {
+				resultSet.next();
+				return resultSet.getInt(1) > 0;
+			}
+		}
+	}
+
 	private static void createTables(Connection connection) throws SQLException, IOException {
 		logger.log(Level.INFO, "Database has no tables. Creating tables from " + DATABASE_RESOURCE_CREATE_ALL);
+		runScript(connection, DATABASE_RESOURCE_CREATE_ALL);
+	}
+
+	private static void runScript(Connection connection, String resourceIdentifier) throws SQLException, IOException {
+		logger.log(Level.INFO, "Running database script " + resourceIdentifier + " ...");
 
-		String fullResourcePath = String.format(DATABASE_RESOURCE_PATTERN, DATABASE_RESOURCE_CREATE_ALL);
+		String fullResourcePath = String.format(DATABASE_RESOURCE_PATTERN, resourceIdentifier);
 		InputStream inputStream = DatabaseConnectionFactory.class.getResourceAsStream(fullResourcePath);
 
 		connection.setAutoCommit(true);
@@ -177,6 +213,27 @@ public class DatabaseConnectionFactory {
 		connection.setAutoCommit(false);
 	}
 
+	/**
+	 * Runs an upgrade script without autocommit. Note that HSQLDB commits implicitly
+	 * before each DDL statement, so only the statements after the last DDL statement
+	 * (back-filling data and writing the upgrade marker) are run in one transaction.
+	 */
+	private static void runUpgradeScript(Connection connection, String resourceIdentifier) throws SQLException, IOException {
+		logger.log(Level.INFO, "Running database upgrade script " + resourceIdentifier + " ...");
+
+		String fullResourcePath = String.format(DATABASE_RESOURCE_PATTERN, resourceIdentifier);
+		InputStream inputStream = DatabaseConnectionFactory.class.getResourceAsStream(fullResourcePath);
+
+		try {
+			SqlRunner.runScript(connection, inputStream);
+			connection.commit();
+		}
+		catch (SQLException | IOException e) {
+			connection.rollback();
+			throw e;
+		}
+	}
+
 	// TODO [low] Shouldn't the SqlRunner be used here? If so, the SqlRunner also needs refactoring.
 	private static String readDatabaseStatement(InputStream inputStream) {
 		try {
@@ -0,0 +1,291 @@
+/*
+ * Syncany, www.syncany.org
+ * Copyright (C) 2011-2016 Philipp C. Heckel <philipp.heckel@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.syncany.database;
+
+import java.io.File;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.syncany.config.Config;
+
+/**
+ * The database connection pool keeps the connections to the local database of one
+ * folder open, so that operations and request handlers do not have to create a new
+ * connection (and run the table checks of the {@link DatabaseConnectionFactory}) every
+ * time they create an {@link SqlDatabase}. If a pool is set in the {@link Config}, all
+ * connections created via {@link Config#createDatabaseConnection(boolean)} are taken
+ * from the pool.
+ *
+ * <p>Read-only and read-write connections are pooled separately. A connection is used
+ * exclusively by its borrower until it is closed; closing it rolls back uncommitted
+ * changes, resets the transaction isolation and returns it to the pool. If no idle
+ * connection is available, a new connection is created -- the pool never blocks, because
+ * operations often hold more than one connection at a time. At most <tt>maxIdleConnections</tt>
+ * connections per type are kept open.
+ *
+ * <p>Each pooled connection has a {@link PreparedStatementCache}, so that statements
+ * prepared by the data access objects are re-used across borrowers. Connection and
+ * statement re-use are recorded in the {@link DatabaseConnectionPoolMetrics}. Since the
+ * pool never blocks, no wait times are recorded.
+ *
+ * @author Philipp C. Heckel <philipp.heckel@gmail.com>
+ */
+public class DatabaseConnectionPool {
+	private static final Logger logger = Logger.getLogger(DatabaseConnectionPool.class.getSimpleName());
+	public static final int DEFAULT_MAX_IDLE_CONNECTIONS = 4;
+
+	private final File databaseFile;
+	private final int maxIdleConnections;
+	private final DatabaseConnectionPoolMetrics metrics;
+
+	private final Deque<PooledConnection> idleReadOnlyConnections;
+	private final Deque<PooledConnection> idleReadWriteConnections;
+	private boolean closed;
+
+	public DatabaseConnectionPool(File databaseFile) {
+		this(databaseFile, DEFAULT_MAX_IDLE_CONNECTIONS);
+	}
+
+	public DatabaseConnectionPool(File databaseFile, int maxIdleConnections) {
+		this.databaseFile = databaseFile;
+		this.maxIdleConnections = Math.max(1, maxIdleConnections);
+		this.metrics = new DatabaseConnectionPoolMetrics();
+
+		this.idleReadOnlyConnections = new ArrayDeque<PooledConnection>();
+		this.idleReadWriteConnections = new ArrayDeque<PooledConnection>();
+		this.closed = false;
+	}
+
+	/**
+	 * Returns an idle connection of the given type, or creates a new one if there
+	 * is none. The returned connection must be closed to return it to the pool.
+	 */
+	public Connection getConnection(boolean readOnly) {
+		PooledConnection pooledConnection = pollIdleConnection(readOnly);
+		boolean reused = pooledConnection != null;
+
+		if (!reused) {
+			logger.log(Level.FINE, "Creating new " + ((readOnly) ? "read-only" : "read-write") + " pooled database connection ...");
+
+			Connection connection = DatabaseConnectionFactory.createConnection(databaseFile, readOnly);
+			pooledConnection = new PooledConnection(connection, readOnly);
+		}
+
+		metrics.recordConnection(reused);
+		return pooledConnection.checkOut();
+	}
+
+	/**
+	 * Closes all idle connections. Connections that are still in use are
+	 * closed when they are returned.
+	 */
+	public void close() {
+		synchronized (this) {
+			closed = true;
+		}
+
+		closeIdleConnections(idleReadOnlyConnections);
+		closeIdleConnections(idleReadWriteConnections);
+
+		logger.log(Level.INFO, "Closed database connection pool for " + databaseFile + "; " + metrics);
+	}
+
+	public DatabaseConnectionPoolMetrics getMetrics() {
+		return metrics;
+	}
+
+	private PooledConnection pollIdleConnection(boolean readOnly) {
+		while (true) {
+			PooledConnection pooledConnection;
+
+			synchronized (this) {
+				pooledConnection = getIdleConnections(readOnly).poll();
+			}
+
+			if (pooledConnection == null) {
+				return null;
+			}
+			else if (pooledConnection.isValid()) {
+				return pooledConnection;
+			}
+			else {
+				// E.g. closed by a 'SHUTDOWN' statement
+				pooledConnection.closeQuietly();
+			}
+		}
+	}
+
+	private void checkIn(PooledConnection pooledConnection) {
+		boolean resetSuccessful = pooledConnection.reset();
+
+		synchronized (this) {
+			Deque<PooledConnection> idleConnections = getIdleConnections(pooledConnection.readOnly);
+
+			if (resetSuccessful && !closed && idleConnections.size() < maxIdleConnections) {
+				idleConnections.push(pooledConnection);
+				return;
+			}
+		}
+
+		pooledConnection.closeQuietly();
+	}
+
+	private Deque<PooledConnection> getIdleConnections(boolean readOnly) {
+		return (readOnly) ? idleReadOnlyConnections : idleReadWriteConnections;
+	}
+
+	private void closeIdleConnections(Deque<PooledConnection> idleConnections) {
+		PooledConnection pooledConnection;
+
+		while (true) {
+			synchronized (this) {
+				pooledConnection = idleConnections.poll();
+			}
+
+			if (pooledConnection == null) {
+				break;
+			}
+
+			pooledConnection.closeQuietly();
+		}
+	}
+
+	private class PooledConnection {
+		private final Connection connection;
+		private final boolean readOnly;
+		private final PreparedStatementCache statementCache;
+
+		public PooledConnection(Connection connection, boolean readOnly) {
+			this.connection = connection;
+			this.readOnly = readOnly;
+			this.statementCache = new PreparedStatementCache(connection, metrics);
+		}
+
+		public Connection checkOut() {
+			return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[] { Connection.class },
+					new PooledConnectionHandle(this));
+		}
+
+		public boolean isValid() {
+			try {
+				return !connection.isClosed();
+			}
+			catch (SQLException e) {
+				return false;
+			}
+		}
+
+		/**
+		 * Ends the current transaction and restores the settings of a newly
+		 * created connection. Returns <tt>false</tt> if the connection cannot
+		 * be re-used.
+		 */
+		public boolean reset() {
+			try {
+				if (connection.isClosed()) {
+					return false;
+				}
+
+				if (!connection.getAutoCommit()) {
+					connection.rollback();
+				}
+
+				connection.setAutoCommit(false);
+				connection.setTransactionIsolation(Connection.TRANSACTION_READ_UNCOMMITTED);
+				return true;
+			}
+			catch (SQLException e) {
+				logger.log(Level.FINE, "Unable to reset pooled database connection; discarding it.", e);
+				return false;
+			}
+		}
+
+		public void closeQuietly() {
+			statementCache.close();
+
+			try {
+				connection.close();
+			}
+			catch (SQLException e) {
+				logger.log(Level.FINE, "Unable to close pooled database connection.", e);
+			}
+		}
+	}
+
+	/**
+	 * Handle for one use of a pooled connection. Closing the handle returns the
+	 * connection to the pool; the handle cannot be used afterwards. Statements are
+	 * prepared via the {@link PreparedStatementCache} of the connection.
+	 */
+	private class PooledConnectionHandle implements InvocationHandler {
+		private final PooledConnection pooledConnection;
+		private boolean closed;
+
+		public PooledConnectionHandle(PooledConnection pooledConnection) {
+			this.pooledConnection = pooledConnection;
+			this.closed = false;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			String methodName = method.getName();
+
+			if ("close".equals(methodName)) {
+				if (!closed) {
+					closed = true;
+					checkIn(pooledConnection);
+				}
+
+				return null;
+			}
+			else if ("isClosed".equals(methodName)) {
+				return closed || pooledConnection.connection.isClosed();
+			}
+			else if ("equals".equals(methodName)) {
+				return proxy == args[0];
+			}
+			else if ("hashCode".equals(methodName)) {
+				return System.identityHashCode(proxy);
+			}
+			else if ("toString".equals(methodName)) {
+				return "Pooled" + pooledConnection.connection;
+			}
+			else if (closed) {
+				throw new SQLException("Connection is closed.");
+			}
+			else if ("prepareStatement".equals(methodName) && args.length == 1) {
+				return pooledConnection.statementCache.prepareStatement((String) args[0]);
+			}
+
+			try {
+				return method.invoke(pooledConnection.connection, args);
+			}
+			catch (InvocationTargetException e) {
+				throw e.getCause();
+			}
+		}
+	}
+}
@@ -0,0 +1,73 @@
+/*
+ * Syncany, www.syncany.org
+ * Copyright (C) 2011-2016 Philipp C. Heckel <philipp.heckel@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.syncany.database;
+
+/**
+ * Collects the metrics of a {@link DatabaseConnectionPool}: How many connections had
+ * to be created, and how often connections and prepared statements were re-used from
+ * the pool and the {@link PreparedStatementCache} of a connection.
+ *
+ * @author Philipp C. Heckel <philipp.heckel@gmail.com>
+ */
+public class DatabaseConnectionPoolMetrics {
+	private long connectionsCreated;
+	private long connectionsReused;
+
+	private long statementsPrepared;
+	private long statementsReused;
+
+	public synchronized void recordConnection(boolean reused) {
+		if (reused) {
+			connectionsReused++;
+		}
+		else {
+			connectionsCreated++;
+		}
+	}
+
+	public synchronized void recordStatement(boolean reused) {
+		if (reused) {
+			statementsReused++;
+		}
+		else {
+			statementsPrepared++;
+		}
+	}
+
+	public synchronized long getConnectionsCreated() {
+		return connectionsCreated;
+	}
+
+	public synchronized long getConnectionsReused() {
+		return connectionsReused;
+	}
+
+	public synchronized long getStatementsPrepared() {
+		return statementsPrepared;
+	}
+
+	public synchronized long getStatementsReused() {
+		return statementsReused;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "connections: " + connectionsCreated + " created, " + connectionsReused + " reused; statements: " + statementsPrepared
+				+ " prepared, " + statementsReused + " reused";
+	}
+}
@@ -0,0 +1,129 @@
+/*
+ * Syncany, www.syncany.org
+ * Copyright (C) 2011-2016 Philipp C. Heckel <philipp.heckel@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.syncany.database;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A group commit batches the commits of one operation into a single durable
+ * commit point. By default, the local database is opened with <tt>write_delay=false</tt>
+ * (see {@link DatabaseConnectionFactory}), so that every commit syncs the HSQLDB
+ * log to disk. While a group commit is active, the log is only synced every
+ * <tt>writeDelayMillis</tt>, no matter how many commits happen in between. Ending the
+ * group commit switches back to synchronous commits and commits once more, i.e.
+ * everything committed so far is durable once {@link #end()} returns.
+ *
+ * <p>The log is written sequentially, so a crash during a group commit only loses
+ * the most recent commits; the database is always restored to an earlier commit
+ * point. Callers must therefore only use a group commit for changes that can be
+ * redone, and must not have side effects outside of the local database (such as
+ * deleting remote files) that depend on a commit being durable.
+ *
+ * <p>The write delay is a setting of the entire database, but it is changed via
+ * the connection of the operation that writes, so no additional connection is
+ * needed. In particular, no <tt>CHECKPOINT</tt> is written: A checkpoint waits for
+ * the transactions of all other connections (e.g. of the daemon) to end.
+ *
+ * @author Philipp C. Heckel <philipp.heckel@gmail.com>
+ */
+public class DatabaseGroupCommit {
+	private static final Logger logger = Logger.getLogger(DatabaseGroupCommit.class.getSimpleName());
+	public static final int DEFAULT_WRITE_DELAY_MILLIS = 500;
+
+	private final Connection connection;
+	private final int writeDelayMillis;
+
+	private long startTime;
+	private boolean active;
+
+	public DatabaseGroupCommit(Connection connection) {
+		this(connection, DEFAULT_WRITE_DELAY_MILLIS);
+	}
+
+	public DatabaseGroupCommit(Connection connection, int writeDelayMillis) {
+		this.connection = connection;
+		this.writeDelayMillis = Math.max(1, writeDelayMillis);
+		this.active = false;
+	}
+
+	/**
+	 * Starts the group commit: Commits of all connections to the local
+	 * database are no longer synced to disk one by one. Pending changes of
+	 * the group commit's connection are committed.
+	 */
+	public void begin() throws SQLException {
+		if (active) {
+			return;
+		}
+
+		logger.log(Level.INFO, "Starting group commit (write delay " + writeDelayMillis + " ms) ...");
+
+		runStatement("SET FILES WRITE DELAY " + writeDelayMillis + " MILLIS");
+
+		startTime = System.currentTimeMillis();
+		active = true;
+	}
+
+	/**
+	 * Ends the group commit, i.e. switches back to synchronous commits and
+	 * makes all committed changes durable. Uncommitted changes of the group
+	 * commit's connection are committed as well; changes of other connections
+	 * that are not committed when this method is called are not part of the
+	 * durable commit point.
+	 */
+	public void end() throws SQLException {
+		if (!active) {
+			return;
+		}
+
+		long duration = System.currentTimeMillis() - startTime;
+		logger.log(Level.INFO, "Ending group commit after " + duration + " ms; at most " + getMaxLogSyncs(duration)
+				+ " log sync(s) plus one final sync ...");
+
+		active = false;
+		runStatement("SET FILES WRITE DELAY FALSE");
+	}
+
+	public boolean isActive() {
+		return active;
+	}
+
+	public int getWriteDelayMillis() {
+		return writeDelayMillis;
+	}
+
+	/**
+	 * Returns the maximum number of times the HSQLDB log is synced
+	 * by the write delay timer during a group commit of the given duration.
+	 */
+	public long getMaxLogSyncs(long durationMillis) {
+		return durationMillis / writeDelayMillis + 1;
+	}
+
+	private void runStatement(String sqlStatement) throws SQLException {
+		try (PreparedStatement preparedStatement = connection.prepareStatement(sqlStatement)) {
+			preparedStatement.execute();
+		}
+
+		connection.commit();
+	}
+}
@@ -0,0 +1,113 @@
+/*
+ * Syncany, www.syncany.org
+ * Copyright (C) 2011-2016 Philipp C. Heckel <philipp.heckel@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.syncany.database;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.syncany.database.FileContent.FileChecksum;
+
+/**
+ * The file checksum cache remembers the checksums of local files that were calculated
+ * during one sync, so that the content of a file is only read once. It is filled by
+ * whichever component reads a file first -- the {@link FileVersionComparator} in the
+ * status operation (if force checksum is enabled), or the indexer while chunking --
+ * and queried by the others.
+ *
+ * <p>Entries are keyed by the relative path of the file, and are only valid if the size
+ * and the last modified date of the file still match the values at the time the checksum
+ * was calculated. Unlike the stat cache of the status operation, the cache is not
+ * persisted; a new instance must be used for every sync.
+ *
+ * <p>All methods are synchronized, so that the cache can be used by the parallel file
+ * tree walk of the status operation and the indexer thread at the same time.
+ *
+ * @author Philipp C. Heckel <philipp.heckel@gmail.com>
+ */
+public class FileChecksumCache {
+	private Map<String, FileChecksumCacheEntry> entries;
+	private int hits;
+	private int misses;
+
+	public FileChecksumCache() {
+		this.entries = new HashMap<String, FileChecksumCacheEntry>();
+		this.hits = 0;
+		this.misses = 0;
+	}
+
+	/**
+	 * Returns the cached checksum of the given file, or <tt>null</tt> if the
+	 * checksum is not known, or if the file's size or last modified date have
+	 * changed since the checksum was calculated.
+	 */
+	public synchronized FileChecksum get(String relativePath, long size, long lastModified) {
+		FileChecksumCacheEntry entry = entries.get(relativePath);
+
+		if (entry != null && entry.size == size && entry.lastModified == lastModified) {
+			hits++;
+			return entry.checksum;
+		}
+		else {
+			misses++;
+			return null;
+		}
+	}
+
+	/**
+	 * Remembers the checksum of the given file, along with the size and last modified
+	 * date that the file had while the checksum was calculated. <tt>null</tt> checksums
+	 * (e.g. for empty files) are ignored.
+	 */
+	public synchronized void put(String relativePath, long size, long lastModified, FileChecksum checksum) {
+		if (checksum != null) {
+			entries.put(relativePath, new FileChecksumCacheEntry(size, lastModified, checksum));
+		}
+	}
+
+	/**
+	 * Forgets the checksum of the given file, e.g. because the file
+	 * has changed while its checksum was calculated.
+	 */
+	public synchronized void remove(String relativePath) {
+		entries.remove(relativePath);
+	}
+
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	public synchronized int getHits() {
+		return hits;
+	}
+
+	public synchronized int getMisses() {
+		return misses;
+	}
+
+	private static class FileChecksumCacheEntry {
+		private long size;
+		private long lastModified;
+		private FileChecksum checksum;
+
+		public FileChecksumCacheEntry(long size, long lastModified, FileChecksum checksum) {
+			this.size = size;
+			this.lastModified = lastModified;
+			this.checksum = checksum;
+		}
+	}
+}
@@ -62,6 +62,7 @@ public class FileVersionComparator {
 	private static final Logger logger = Logger.getLogger(FileVersionComparator.class.getSimpleName());
 	private File rootFolder;
 	private String checksumAlgorithm;
+	private FileChecksumCache checksumCache;
 
 	/**
 	 * Creates a new file version comparator helper class.
@@ -74,8 +75,25 @@ public class FileVersionComparator {
 	 * @param checksumAlgorithm Digest algorithm for checksum calculation, e.g. "SHA1" or "MD5"
 	 */
 	public FileVersionComparator(File rootFolder, String checksumAlgorithm) {
+		this(rootFolder, checksumAlgorithm, null);
+	}
+
+	/**
+	 * Creates a new file version comparator helper class that shares calculated and
+	 * known file checksums with other components using the given {@link FileChecksumCache}.
+	 *
+	 * <p>If a checksum must be calculated for a local file, the cache is queried first.
+	 * Calculated checksums, as well as checksums passed to {@link #captureFileProperties(File, FileChecksum, boolean)
+	 * captureFileProperties()} as known checksum, are added to the cache.
+	 *
+	 * @param rootFolder Base folder to determine a relative path to
+	 * @param checksumAlgorithm Digest algorithm for checksum calculation, e.g. "SHA1" or "MD5"
+	 * @param checksumCache Checksum cache shared within one sync, or <tt>null</tt> to disable caching
+	 */
+	public FileVersionComparator(File rootFolder, String checksumAlgorithm, FileChecksumCache checksumCache) {
 		this.rootFolder = rootFolder;
 		this.checksumAlgorithm = checksumAlgorithm;
+		this.checksumCache = checksumCache;
 	}
 
 	/**
@@ -129,7 +147,8 @@ public class FileVersionComparator {
 			boolean actualFileForceChecksum) {
 
 		FileProperties expectedLocalFileVersionProperties = captureFileProperties(expectedLocalFileVersion);
-		FileProperties actualFileProperties = captureFileProperties(actualLocalFile, actualFileKnownChecksum, actualFileForceChecksum);
+		FileProperties actualFileProperties = captureFileProperties(actualLocalFile, actualFileKnownChecksum, actualFileForceChecksum,
+				expectedLocalFileVersionProperties);
 
 		return compare(expectedLocalFileVersionProperties, actualFileProperties, actualFileForceChecksum);
 	}
@@ -393,6 +412,16 @@ public class FileVersionComparator {
 	}
 
 	public FileProperties captureFileProperties(File file, FileChecksum knownChecksum, boolean forceChecksum) {
+		return captureFileProperties(file, knownChecksum, forceChecksum, null);
+	}
+
+	/**
+	 * Captures the properties of the given file. If <tt>expectedFileProperties</tt> is given, the checksum
+	 * is only calculated if it is needed to compare the file to these properties, i.e. if the size and type
+	 * do not already show a change. Changed files are read by the chunker anyway, so hashing them here would
+	 * read them twice.
+	 */
+	private FileProperties captureFileProperties(File file, FileChecksum knownChecksum, boolean forceChecksum, FileProperties expectedFileProperties) {
 		FileProperties fileProperties = new FileProperties();
 		fileProperties.relativePath = FileUtil.getRelativeDatabasePath(rootFolder, file);
 
@@ -457,12 +486,18 @@ public class FileVersionComparator {
 			// Checksum
 			if (knownChecksum != null) {
 				fileProperties.checksum = knownChecksum;
+				putCachedChecksum(fileProperties);
 			}
 			else {
-				if (fileProperties.type == FileType.FILE && forceChecksum) {
+				if (fileProperties.type == FileType.FILE && forceChecksum && isChecksumNeeded(fileProperties, expectedFileProperties)) {
 					try {
 						if (fileProperties.size > 0) {
-							fileProperties.checksum = new FileChecksum(FileUtil.createChecksum(file, checksumAlgorithm));
+							fileProperties.checksum = getCachedChecksum(fileProperties);
+
+							if (fileProperties.checksum == null) {
+								fileProperties.checksum = new FileChecksum(FileUtil.createChecksum(file, checksumAlgorithm));
+								putCachedChecksum(fileProperties);
+							}
 						}
 						else {
 							fileProperties.checksum = null;
@@ -496,6 +531,33 @@ public class FileVersionComparator {
 		}
 	}
 
+	private boolean isChecksumNeeded(FileProperties actualFileProperties, FileProperties expectedFileProperties) {
+		if (expectedFileProperties == null) {
+			return true;
+		}
+
+		// See performCancellingTests() and compareFile(): if the file is new, has
+		// changed its type or its size, the checksum is never compared
+
+		return expectedFileProperties.exists() && expectedFileProperties.getType() == FileType.FILE
+				&& expectedFileProperties.getSize() == actualFileProperties.size;
+	}
+
+	private FileChecksum getCachedChecksum(FileProperties fileProperties) {
+		if (checksumCache != null) {
+			return checksumCache.get(fileProperties.relativePath, fileProperties.size, fileProperties.lastModified);
+		}
+		else {
+			return null;
+		}
+	}
+
+	private void putCachedChecksum(FileProperties fileProperties) {
+		if (checksumCache != null && fileProperties.type == FileType.FILE) {
+			checksumCache.put(fileProperties.relativePath, fileProperties.size, fileProperties.lastModified, fileProperties.checksum);
+		}
+	}
+
 	public FileProperties captureFileProperties(FileVersion fileVersion) {
 		if (fileVersion == null) {
 			return null;
@@ -0,0 +1,203 @@
+/*
+ * Syncany, www.syncany.org
+ * Copyright (C) 2011-2016 Philipp C. Heckel <philipp.heckel@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.syncany.database;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The prepared statement cache keeps the {@link PreparedStatement}s of a single
+ * pooled connection open, so that the data access objects do not have to prepare
+ * the same SQL statements again and again.
+ *
+ * <p>The statements handed out by the cache behave like regular statements, except
+ * that closing them does not close the underlying statement, but only returns it to
+ * the cache. A cached statement is only handed out once at a time: If the same SQL
+ * statement is prepared again while the cached statement is still in use (e.g. in
+ * nested queries), a new, uncached statement is returned.
+ *
+ * @author Philipp C. Heckel <philipp.heckel@gmail.com>
+ */
+public class PreparedStatementCache {
+	private static final Logger logger = Logger.getLogger(PreparedStatementCache.class.getSimpleName());
+	private static final int MAX_CACHED_STATEMENTS = 256;
+
+	private final Connection connection;
+	private final DatabaseConnectionPoolMetrics metrics;
+	private final Map<String, CachedStatement> statements;
+
+	public PreparedStatementCache(Connection connection, DatabaseConnectionPoolMetrics metrics) {
+		this.connection = connection;
+		this.metrics = metrics;
+		this.statements = new HashMap<String, CachedStatement>();
+	}
+
+	/**
+	 * Returns a prepared statement for the given SQL statement, either from the
+	 * cache or newly prepared. The returned statement must be closed by the caller.
+	 */
+	public synchronized PreparedStatement prepareStatement(String sql) throws SQLException {
+		CachedStatement cachedStatement = statements.get(sql);
+
+		if (cachedStatement != null && !cachedStatement.inUse) {
+			metrics.recordStatement(true);
+			return cachedStatement.checkOut();
+		}
+
+		PreparedStatement preparedStatement = connection.prepareStatement(sql);
+		metrics.recordStatement(false);
+
+		if (cachedStatement == null && statements.size() < MAX_CACHED_STATEMENTS) {
+			cachedStatement = new CachedStatement(sql, preparedStatement);
+			statements.put(sql, cachedStatement);
+
+			return cachedStatement.checkOut();
+		}
+		else {
+			return preparedStatement;
+		}
+	}
+
+	/**
+	 * Closes all cached statements. Statements that are currently
+	 * in use are closed as well.
+	 */
+	public synchronized void close() {
+		for (CachedStatement cachedStatement : statements.values()) {
+			try {
+				cachedStatement.preparedStatement.close();
+			}
+			catch (SQLException e) {
+				logger.log(Level.FINE, "Unable to close prepared statement.", e);
+			}
+		}
+
+		statements.clear();
+	}
+
+	public synchronized int size() {
+		return statements.size();
+	}
+
+	private synchronized void checkIn(CachedStatement cachedStatement) {
+		try {
+			cachedStatement.preparedStatement.clearParameters();
+			cachedStatement.preparedStatement.clearBatch();
+
+			// Callers may change limits for one query, e.g. setMaxRows() for paging
+			cachedStatement.preparedStatement.setMaxRows(0);
+			cachedStatement.preparedStatement.setFetchSize(cachedStatement.defaultFetchSize);
+			cachedStatement.preparedStatement.setQueryTimeout(cachedStatement.defaultQueryTimeout);
+
+			cachedStatement.inUse = false;
+		}
+		catch (SQLException e) {
+			logger.log(Level.FINE, "Unable to reset prepared statement; removing it from the cache.", e);
+			statements.remove(cachedStatement.sql);
+
+			try {
+				cachedStatement.preparedStatement.close();
+			}
+			catch (SQLException e2) {
+				logger.log(Level.FINE, "Unable to close prepared statement.", e2);
+			}
+		}
+	}
+
+	private class CachedStatement {
+		private final String sql;
+		private final PreparedStatement preparedStatement;
+		private final int defaultFetchSize;
+		private final int defaultQueryTimeout;
+		private boolean inUse;
+
+		public CachedStatement(String sql, PreparedStatement preparedStatement) throws SQLException {
+			this.sql = sql;
+			this.preparedStatement = preparedStatement;
+			this.defaultFetchSize = preparedStatement.getFetchSize();
+			this.defaultQueryTimeout = preparedStatement.getQueryTimeout();
+			this.inUse = false;
+		}
+
+		public PreparedStatement checkOut() {
+			inUse = true;
+
+			return (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(), new Class<?>[] { PreparedStatement.class },
+					new CachedStatementHandle(this));
+		}
+	}
+
+	/**
+	 * Handle for one use of a cached statement. Closing the handle returns the
+	 * statement to the cache; the handle cannot be used afterwards.
+	 */
+	private class CachedStatementHandle implements InvocationHandler {
+		private final CachedStatement cachedStatement;
+		private boolean closed;
+
+		public CachedStatementHandle(CachedStatement cachedStatement) {
+			this.cachedStatement = cachedStatement;
+			this.closed = false;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			String methodName = method.getName();
+
+			if ("close".equals(methodName)) {
+				if (!closed) {
+					closed = true;
+					checkIn(cachedStatement);
+				}
+
+				return null;
+			}
+			else if ("isClosed".equals(methodName)) {
+				return closed || cachedStatement.preparedStatement.isClosed();
+			}
+			else if ("equals".equals(methodName)) {
+				return proxy == args[0];
+			}
+			else if ("hashCode".equals(methodName)) {
+				return System.identityHashCode(proxy);
+			}
+			else if ("toString".equals(methodName)) {
+				return "Cached" + cachedStatement.preparedStatement;
+			}
+			else if (closed) {
+				throw new SQLException("Statement is closed.");
+			}
+
+			try {
+				return method.invoke(cachedStatement.preparedStatement, args);
+			}
+			catch (InvocationTargetException e) {
+				throw e.getCause();
+			}
+		}
+	}
+}
@@ -60,7 +60,7 @@ import org.syncany.plugins.transfer.files.DatabaseRemoteFile;
  * @see DatabaseVersionSqlDao
  * @author Philipp C. Heckel <philipp.heckel@gmail.com>
  */
-public class SqlDatabase {
+public class SqlDatabase implements AutoCloseable {
 	protected static final Logger logger = Logger.getLogger(SqlDatabase.class.getSimpleName());
 
 	protected Connection connection;
@@ -98,8 +98,13 @@ public class SqlDatabase {
 		connection.commit();
 	}
 
+	/**
+	 * Commits the current transaction and closes the underlying database connection
+	 * (or returns it to the connection pool). Calling this method more than once has
+	 * no effect.
+	 */
 	@Override
-	public void finalize() {
+	public void close() {
 		try {
 			if (!connection.isClosed()) {
 				connection.commit();
@@ -111,8 +116,16 @@ public class SqlDatabase {
 		}
 	}
 
+	@Override
+	public void finalize() {
+		close();
+	}
+
 	public void rollback() throws SQLException {
 		connection.rollback();
+		
+		// Uncommitted chunks might have been added to the chunk cache
+		databaseVersionDao.clearCaches();
 	}
 
 	public void removeUnreferencedDatabaseEntities() {
@@ -162,9 +175,18 @@ public class SqlDatabase {
 	public void writeCleanupTime(long cleanupTime) {
 		applicationDao.writeCleanupTime(cleanupTime);		
 	}
+	
+	public Long getSnapshotClientVersion(DatabaseRemoteFile snapshotDatabaseFile) {
+		return applicationDao.getSnapshotClientVersion(snapshotDatabaseFile);
+	}
+	
+	public void writeSnapshotDatabase(DatabaseRemoteFile snapshotDatabaseFile, long maxLocalClientVersion) {
+		applicationDao.writeSnapshotDatabase(snapshotDatabaseFile, maxLocalClientVersion);
+	}
 
 	public void deleteAll() {
 		applicationDao.deleteAll();
+		databaseVersionDao.clearCaches();
 	}
 
 	public void shutdown() {
@@ -181,6 +203,10 @@ public class SqlDatabase {
 		return databaseVersionDao.getDatabaseVersionsTo(machineName, maxLocalClientVersion);
 	}
 
+	public Iterator<DatabaseVersion> getDatabaseVersionsAfter(String machineName, long minLocalClientVersionExclusive) {
+		return databaseVersionDao.getDatabaseVersionsAfter(machineName, minLocalClientVersionExclusive);
+	}
+
 	public Iterator<DatabaseVersion> getLastDatabaseVersions(int maxDatabaseVersionCount, int startDatabaseVersionIndex, int maxFileHistoryCount) {
 		return databaseVersionDao.getLastDatabaseVersions(maxDatabaseVersionCount, startDatabaseVersionIndex, maxFileHistoryCount);
 	}
@@ -273,6 +299,12 @@ public class SqlDatabase {
 		return fileVersionDao.getFileList(pathExpression, date, fileHistoryId, recursive, deleted, fileTypes);
 	}
 
+	public List<FileVersion> getFileList(String pathExpression, Date date, boolean fileHistoryId, boolean recursive, boolean deleted,
+			Set<FileType> fileTypes, String afterPath, String afterFileHistoryId, int maxCount) {
+		
+		return fileVersionDao.getFileList(pathExpression, date, fileHistoryId, recursive, deleted, fileTypes, afterPath, afterFileHistoryId, maxCount);
+	}
+
 	public List<FileVersion> getFileHistory(FileHistoryId fileHistoryId) {
 		return fileVersionDao.getFileHistory(fileHistoryId);
 	}
@@ -357,6 +389,10 @@ public class SqlDatabase {
 		chunkDao.removeUnreferencedChunks();
 	}
 
+	public Map<ChunkChecksum, ChunkPosition> getChunkPositions(List<ChunkChecksum> chunkChecksums) {
+		return chunkDao.getChunkPositions(chunkChecksums);
+	}
+
 	// File Content
 
 	public FileContent getFileContent(FileChecksum fileChecksum, boolean includeChunkChecksums) {
@@ -0,0 +1,162 @@
+/*
+ * Syncany, www.syncany.org
+ * Copyright (C) 2011-2016 Philipp C. Heckel <philipp.heckel@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.syncany.database;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.syncany.config.Config;
+
+/**
+ * The SQL database pool hands out read-only {@link SqlDatabase} instances to
+ * threads that query the local database concurrently to a running operation.
+ * Since the underlying JDBC connections are not thread-safe, each database is only
+ * ever used by one thread at a time.
+ *
+ * <p>Unlike the connections used by the operations, which read uncommitted data
+ * to see their own changes across connections, the pooled connections use the
+ * <tt>READ COMMITTED</tt> isolation level: A query never sees a half-written database
+ * version, and waits for the writing operation to commit instead. Each
+ * {@link #release(SqlDatabase) release} ends the current transaction.
+ *
+ * <p>Databases are created lazily. At most <tt>maxSize</tt> databases exist at a time;
+ * a database that is discarded (because its transaction could not be ended) frees
+ * its slot, so a waiting thread creates a replacement.
+ * If the {@link Config} has a {@link DatabaseConnectionPool}, their connections are
+ * taken from (and returned to) its read-only connections.
+ *
+ * @author Philipp C. Heckel <philipp.heckel@gmail.com>
+ */
+public class SqlDatabasePool {
+	private static final Logger logger = Logger.getLogger(SqlDatabasePool.class.getSimpleName());
+	private static final int ACQUIRE_POLL_INTERVAL_MILLIS = 500;
+
+	private final Config config;
+	private final int maxSize;
+
+	private final BlockingQueue<SqlDatabase> idleDatabases;
+	private final List<SqlDatabase> databases;
+	private volatile boolean closed;
+
+	public SqlDatabasePool(Config config, int maxSize) {
+		this.config = config;
+		this.maxSize = Math.max(1, maxSize);
+
+		this.idleDatabases = new LinkedBlockingQueue<SqlDatabase>();
+		this.databases = new ArrayList<SqlDatabase>();
+		this.closed = false;
+	}
+
+	/**
+	 * Returns an idle read-only database, creates a new one if the pool has not
+	 * reached its maximum size, or waits until another thread releases one.
+	 * While waiting, the pool checks periodically whether a slot was freed by a
+	 * discarded database, or whether the pool was closed.
+	 */
+	public SqlDatabase acquire() throws SQLException, InterruptedException {
+		SqlDatabase idleDatabase = idleDatabases.poll();
+
+		while (idleDatabase == null) {
+			synchronized (databases) {
+				if (closed) {
+					throw new SQLException("Database pool is closed.");
+				}
+				else if (databases.size() < maxSize) {
+					SqlDatabase newDatabase = createDatabase();
+					databases.add(newDatabase);
+
+					return newDatabase;
+				}
+			}
+
+			idleDatabase = idleDatabases.poll(ACQUIRE_POLL_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+		}
+
+		return idleDatabase;
+	}
+
+	/**
+	 * Ends the current transaction of the given database and returns it to
+	 * the pool, so it can be used by other threads.
+	 */
+	public void release(SqlDatabase database) {
+		if (closed) {
+			closeQuietly(database);
+			return;
+		}
+
+		try {
+			database.rollback(); // Read-only, nothing to commit
+			idleDatabases.add(database);
+		}
+		catch (SQLException e) {
+			logger.log(Level.WARNING, "Unable to end transaction; discarding pooled database.", e);
+			discard(database);
+		}
+	}
+
+	/**
+	 * Closes all databases created by this pool. Errors are logged
+	 * and otherwise ignored.
+	 */
+	public void close() {
+		synchronized (databases) {
+			closed = true;
+
+			for (SqlDatabase database : databases) {
+				closeQuietly(database);
+			}
+
+			databases.clear();
+			idleDatabases.clear();
+		}
+	}
+
+	private SqlDatabase createDatabase() throws SQLException {
+		logger.log(Level.INFO, "Creating read-only database connection (max. " + maxSize + ") ...");
+
+		SqlDatabase database = new SqlDatabase(config, true);
+		database.getConnection().setTransactionIsolation(Connection.TRANSACTION_READ_COMMITTED);
+
+		return database;
+	}
+
+	private void discard(SqlDatabase database) {
+		synchronized (databases) {
+			databases.remove(database);
+		}
+
+		closeQuietly(database);
+	}
+
+	private void closeQuietly(SqlDatabase database) {
+		try {
+			database.getConnection().close();
+		}
+		catch (SQLException e) {
+			logger.log(Level.FINE, "Unable to close database connection.", e);
+		}
+	}
+}
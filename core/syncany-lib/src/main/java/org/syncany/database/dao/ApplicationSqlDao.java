@@ -172,6 +172,33 @@ public class ApplicationSqlDao extends AbstractSqlDao {
 		writeSetting("cleanupTime", "" + cleanupTime);
 	}
 
+	/**
+	 * Returns the last vector clock value of the client of the given database file that is 
+	 * contained in this file, if the file has been remembered as this client's snapshot 
+	 * (see {@link #writeSnapshotDatabase(DatabaseRemoteFile, long)}). Returns <tt>null</tt>
+	 * if the snapshot of the client is not known, or if it is a different file.
+	 */
+	public Long getSnapshotClientVersion(DatabaseRemoteFile snapshotDatabaseFile) {
+		String snapshotName = readSetting("snapshot." + snapshotDatabaseFile.getClientName() + ".name");
+		
+		if (snapshotDatabaseFile.getName().equals(snapshotName)) {
+			return readSettingAsLong("snapshot." + snapshotDatabaseFile.getClientName() + ".clientVersion");
+		}
+		else {
+			return null;
+		}
+	}
+
+	/**
+	 * Remembers the given database file as the snapshot of its client, i.e. as the oldest database
+	 * file of this client that contains all of the client's database versions up to the given vector 
+	 * clock value. The cleanup operation uses this to only merge the database files after the snapshot. 
+	 */
+	public void writeSnapshotDatabase(DatabaseRemoteFile snapshotDatabaseFile, long maxLocalClientVersion) {
+		writeSetting("snapshot." + snapshotDatabaseFile.getClientName() + ".name", snapshotDatabaseFile.getName());
+		writeSetting("snapshot." + snapshotDatabaseFile.getClientName() + ".clientVersion", "" + maxLocalClientVersion);
+	}
+
 	public Long readSettingAsLong(String key) {
 		try {
 			String strValue = readSetting(key);
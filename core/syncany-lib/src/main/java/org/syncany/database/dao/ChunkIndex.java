@@ -0,0 +1,293 @@
+/*
+ * Syncany, www.syncany.org
+ * Copyright (C) 2011-2016 Philipp C. Heckel <philipp.heckel@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.syncany.database.dao;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.syncany.database.ChunkEntry;
+import org.syncany.database.ChunkEntry.ChunkChecksum;
+
+/**
+ * The chunk index is a compact, off-heap lookup table mapping chunk checksums
+ * to chunk sizes. It is used by the {@link ChunkSqlDao} as a replacement for a
+ * regular {@link HashMap} of {@link ChunkEntry}s, which needs well over a hundred
+ * bytes per chunk on the heap.
+ *
+ * <p>The index is an open-addressing hash table (linear probing) stored in a single
+ * direct {@link ByteBuffer}. Each slot consists of the raw 20-byte SHA1 checksum,
+ * followed by a 4-byte integer holding the chunk size. Since chunk checksums are
+ * cryptographic hashes, the first four bytes of the checksum are used as hash code.
+ *
+ * <p>Checksums that are not exactly {@link #KEY_LENGTH} bytes long are not expected
+ * in practice, but are supported through a small on-heap overflow map.
+ *
+ * <p><b>Note:</b> This class is not thread-safe. Callers must synchronize access.
+ *
+ * @author Philipp C. Heckel <philipp.heckel@gmail.com>
+ */
+public class ChunkIndex {
+	public static final int KEY_LENGTH = 20;
+
+	private static final int SLOT_LENGTH = KEY_LENGTH + 4;
+	private static final int MIN_CAPACITY = 1024;
+	private static final float MAX_LOAD_FACTOR = 0.7f;
+
+	private static final int SLOT_EMPTY = 0;
+	private static final int SLOT_DELETED = -1;
+
+	private ByteBuffer slots;
+	private int capacity;
+	private int size;
+	private int deleted;
+
+	private Map<ChunkChecksum, Integer> overflowEntries;
+
+	public ChunkIndex() {
+		this(MIN_CAPACITY);
+	}
+
+	public ChunkIndex(int expectedSize) {
+		this.capacity = capacityFor(expectedSize);
+		this.slots = ByteBuffer.allocateDirect(capacity * SLOT_LENGTH);
+		this.size = 0;
+		this.deleted = 0;
+		this.overflowEntries = new HashMap<ChunkChecksum, Integer>();
+	}
+
+	/**
+	 * Returns the chunk entry for the given checksum, or <tt>null</tt> if
+	 * the chunk is not in the index.
+	 */
+	public ChunkEntry get(ChunkChecksum checksum) {
+		byte[] key = checksum.getBytes();
+
+		if (key.length != KEY_LENGTH) {
+			Integer chunkSize = overflowEntries.get(checksum);
+			return (chunkSize != null) ? new ChunkEntry(checksum, chunkSize) : null;
+		}
+
+		int slot = findSlot(key);
+		return (slot >= 0) ? new ChunkEntry(checksum, decodeSize(slots.getInt(slot * SLOT_LENGTH + KEY_LENGTH))) : null;
+	}
+
+	/**
+	 * Adds a chunk to the index, or updates its size if the chunk
+	 * is already present.
+	 */
+	public void put(ChunkChecksum checksum, int chunkSize) {
+		if (chunkSize < 0 || chunkSize == Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Invalid chunk size: " + chunkSize);
+		}
+
+		byte[] key = checksum.getBytes();
+
+		if (key.length != KEY_LENGTH) {
+			if (overflowEntries.put(checksum, chunkSize) == null) {
+				size++;
+			}
+
+			return;
+		}
+
+		int existingSlot = findSlot(key);
+
+		if (existingSlot >= 0) {
+			slots.putInt(existingSlot * SLOT_LENGTH + KEY_LENGTH, encodeSize(chunkSize));
+			return;
+		}
+
+		if (size + deleted + 1 > capacity * MAX_LOAD_FACTOR) {
+			resize();
+		}
+
+		int slot = findFreeSlot(key);
+
+		if (slots.getInt(slot * SLOT_LENGTH + KEY_LENGTH) == SLOT_DELETED) {
+			deleted--;
+		}
+
+		writeSlot(slots, slot, key, encodeSize(chunkSize));
+		size++;
+	}
+
+	/**
+	 * Removes a chunk from the index. Returns <tt>true</tt> if the
+	 * chunk was present, <tt>false</tt> otherwise.
+	 */
+	public boolean remove(ChunkChecksum checksum) {
+		byte[] key = checksum.getBytes();
+
+		if (key.length != KEY_LENGTH) {
+			if (overflowEntries.remove(checksum) != null) {
+				size--;
+				return true;
+			}
+
+			return false;
+		}
+
+		int slot = findSlot(key);
+
+		if (slot < 0) {
+			return false;
+		}
+
+		slots.putInt(slot * SLOT_LENGTH + KEY_LENGTH, SLOT_DELETED);
+
+		size--;
+		deleted++;
+
+		return true;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns the number of bytes occupied by the off-heap slot table. This
+	 * does not include the (usually empty) overflow map.
+	 */
+	public long getMemoryUsage() {
+		return (long) capacity * SLOT_LENGTH;
+	}
+
+	private int findSlot(byte[] key) {
+		int slot = hash(key) % capacity;
+
+		for (int probes = 0; probes < capacity; probes++) {
+			int state = slots.getInt(slot * SLOT_LENGTH + KEY_LENGTH);
+
+			if (state == SLOT_EMPTY) {
+				return -1;
+			}
+			else if (state != SLOT_DELETED && keyEquals(slot, key)) {
+				return slot;
+			}
+
+			slot = (slot + 1) % capacity;
+		}
+
+		return -1;
+	}
+
+	private int findFreeSlot(byte[] key) {
+		int slot = hash(key) % capacity;
+
+		while (true) {
+			int state = slots.getInt(slot * SLOT_LENGTH + KEY_LENGTH);
+
+			if (state == SLOT_EMPTY || state == SLOT_DELETED) {
+				return slot;
+			}
+
+			slot = (slot + 1) % capacity;
+		}
+	}
+
+	private boolean keyEquals(int slot, byte[] key) {
+		int offset = slot * SLOT_LENGTH;
+
+		for (int i = 0; i < KEY_LENGTH; i++) {
+			if (slots.get(offset + i) != key[i]) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	private void resize() {
+		// Grow only if the table is actually full; if it is mostly
+		// deleted slots, rehashing into the same capacity is enough.
+
+		int newCapacity = (size + 1 > capacity * MAX_LOAD_FACTOR / 2) ? growCapacity(capacity) : capacity;
+		ByteBuffer newSlots = ByteBuffer.allocateDirect(newCapacity * SLOT_LENGTH);
+
+		byte[] key = new byte[KEY_LENGTH];
+
+		for (int slot = 0; slot < capacity; slot++) {
+			int state = slots.getInt(slot * SLOT_LENGTH + KEY_LENGTH);
+
+			if (state != SLOT_EMPTY && state != SLOT_DELETED) {
+				for (int i = 0; i < KEY_LENGTH; i++) {
+					key[i] = slots.get(slot * SLOT_LENGTH + i);
+				}
+
+				int newSlot = hash(key) % newCapacity;
+
+				while (newSlots.getInt(newSlot * SLOT_LENGTH + KEY_LENGTH) != SLOT_EMPTY) {
+					newSlot = (newSlot + 1) % newCapacity;
+				}
+
+				writeSlot(newSlots, newSlot, key, state);
+			}
+		}
+
+		slots = newSlots;
+		capacity = newCapacity;
+		deleted = 0;
+	}
+
+	private static void writeSlot(ByteBuffer slotBuffer, int slot, byte[] key, int state) {
+		int offset = slot * SLOT_LENGTH;
+
+		for (int i = 0; i < KEY_LENGTH; i++) {
+			slotBuffer.put(offset + i, key[i]);
+		}
+
+		slotBuffer.putInt(offset + KEY_LENGTH, state);
+	}
+
+	private static int hash(byte[] key) {
+		return ((key[0] & 0x7f) << 24) | ((key[1] & 0xff) << 16) | ((key[2] & 0xff) << 8) | (key[3] & 0xff);
+	}
+
+	private static int encodeSize(int chunkSize) {
+		return chunkSize + 1; // 0 and -1 are reserved for empty/deleted slots
+	}
+
+	private static int decodeSize(int state) {
+		return state - 1;
+	}
+
+	private static int capacityFor(int expectedSize) {
+		int capacity = MIN_CAPACITY;
+
+		while (capacity * MAX_LOAD_FACTOR < expectedSize) {
+			capacity = growCapacity(capacity);
+		}
+
+		return capacity;
+	}
+
+	private static int growCapacity(int capacity) {
+		// Grow by 50% (instead of doubling) to keep the average
+		// load factor, and thereby the bytes per chunk, reasonable
+
+		long newCapacity = (long) capacity + capacity / 2;
+
+		if (newCapacity * SLOT_LENGTH > Integer.MAX_VALUE) {
+			throw new IllegalStateException("Chunk index cannot grow beyond " + capacity + " slots.");
+		}
+
+		return (int) newCapacity;
+	}
+}
@@ -23,10 +23,16 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 import org.syncany.database.ChunkEntry;
 import org.syncany.database.ChunkEntry.ChunkChecksum;
+import org.syncany.database.ChunkPosition;
 import org.syncany.database.VectorClock;
 
 /**
@@ -37,7 +43,9 @@ import org.syncany.database.VectorClock;
  * @author Philipp C. Heckel <philipp.heckel@gmail.com>
  */
 public class ChunkSqlDao extends AbstractSqlDao {
-	private Map<ChunkChecksum, ChunkEntry> chunkCache;
+	protected static final Logger logger = Logger.getLogger(ChunkSqlDao.class.getSimpleName());
+
+	private ChunkIndex chunkCache;
 
 	public ChunkSqlDao(Connection connection) {
 		super(connection);
@@ -48,6 +56,7 @@ public class ChunkSqlDao extends AbstractSqlDao {
 	 * Writes a list of {@link ChunkEntry}s to the database using <tt>INSERT</tt>s and the given connection.
 	 * 
 	 * <p><b>Note:</b> This method executes, but <b>does not commit</b> the query.
+	 * If the chunk cache is loaded, the new chunks are added to it.
 	 * 
 	 * @param connection The connection used to execute the statements
 	 * @param databaseVersionId 
@@ -68,6 +77,8 @@ public class ChunkSqlDao extends AbstractSqlDao {
 
 			preparedStatement.executeBatch();
 			preparedStatement.close();
+
+			addToChunkCache(chunks);
 		}
 	}	
 
@@ -76,11 +87,18 @@ public class ChunkSqlDao extends AbstractSqlDao {
 	 * that are not referenced by any file content or multichunk. 
 	 * 
 	 * <p>During the cleanup process, when file versions are deleted, unused chunks 
-	 * are left over. This method removes these chunks from the database.
+	 * are left over. This method removes these chunks from the database, and from
+	 * the chunk cache (if it is loaded).
 	 * 
 	 * <p><b>Note:</b> This method executes, but <b>does not commit</b> the query. 
 	 */
 	public void removeUnreferencedChunks() {
+		synchronized (this) {
+			if (chunkCache != null) {
+				removeUnreferencedChunksFromCache();
+			}
+		}
+		
 		try (PreparedStatement preparedStatement = getStatement("chunk.delete.all.removeUnreferencesChunks.sql")) {
 			preparedStatement.execute();
 			preparedStatement.close();
@@ -94,10 +112,12 @@ public class ChunkSqlDao extends AbstractSqlDao {
 	 * Queries the database of a chunk with the given checksum. 
 	 * 
 	 * <p>Note: When first called, this method loads the <b>chunk cache</b> and keeps
-	 * this cache until it is cleared explicitly with {@link #clearCache()}. 
+	 * this cache until it is cleared explicitly with {@link #clearCache()}. The cache
+	 * is a compact {@link ChunkIndex} and is kept up to date by {@link #writeChunks(Connection, long, Collection) writeChunks()}
+	 * and {@link #removeUnreferencedChunks()}. 
 	 * 
 	 * <p>Also note that this method will return <tt>null</tt> if the chunk has been
-	 * added after the cache has been filled. 
+	 * added by another DAO instance after the cache has been filled. 
 	 * 
 	 * @param chunkChecksum Chunk checksum of the chunk to be selected
 	 * @return Returns the chunk entry, or <tt>null</tt> if the chunk does not exist.
@@ -116,10 +136,7 @@ public class ChunkSqlDao extends AbstractSqlDao {
 	 * after the cache is cleared, it is re-populated.
 	 */
 	public synchronized void clearCache() {
-		if (chunkCache != null) {
-			chunkCache.clear();
-			chunkCache = null;
-		}
+		chunkCache = null;
 	}
 
 	/**
@@ -146,6 +163,65 @@ public class ChunkSqlDao extends AbstractSqlDao {
 		}
 	}
 
+	/**
+	 * Queries the database for the positions of the given chunks in the current local files,
+	 * i.e. in the last version of all files that are not deleted. If a chunk appears in more
+	 * than one file, only one position is returned. Chunks that do not appear in any current
+	 * file are not part of the result.
+	 * 
+	 * <p>The offset of a chunk in a file is the sum of the sizes of all previous chunks
+	 * of the file content. The query returns all chunks of the matching files, ordered by 
+	 * path and chunk number, so that the offsets can be computed in a single pass.
+	 * 
+	 * @param chunkChecksums Chunks to look up
+	 * @return Returns a map of chunk checksum to the position of the chunk in a local file 
+	 */
+	public Map<ChunkChecksum, ChunkPosition> getChunkPositions(List<ChunkChecksum> chunkChecksums) {
+		// Gather a unique array of checksum strings (required for query!)
+		Set<ChunkChecksum> chunkChecksumSet = new HashSet<ChunkChecksum>(chunkChecksums);
+		String[] checksums = new String[chunkChecksumSet.size()];
+		int i = 0;
+		
+		for (ChunkChecksum checksum : chunkChecksumSet) {
+			checksums[i++] = checksum.toString();
+		}
+
+		// Execute query
+		Map<ChunkChecksum, ChunkPosition> chunkPositions = new HashMap<ChunkChecksum, ChunkPosition>();
+		
+		try (PreparedStatement preparedStatement = getStatement("chunk.select.master.getChunkPositions.sql")) {
+			preparedStatement.setArray(1, connection.createArrayOf("varchar", checksums));
+			
+			try (ResultSet resultSet = preparedStatement.executeQuery()) {
+				String currentPath = null;
+				long chunkOffset = 0;
+
+				while (resultSet.next()) {
+					String path = resultSet.getString("path");
+					int chunkSize = resultSet.getInt("chunk_size");
+
+					if (!path.equals(currentPath)) {
+						currentPath = path;
+						chunkOffset = 0;
+					}
+
+					ChunkChecksum chunkChecksum = ChunkChecksum.parseChunkChecksum(resultSet.getString("chunk_checksum"));
+
+					if (chunkChecksumSet.contains(chunkChecksum) && !chunkPositions.containsKey(chunkChecksum)) {
+						chunkPositions.put(chunkChecksum, new ChunkPosition(chunkChecksum, chunkSize, path, chunkOffset, resultSet.getLong("file_size")));
+					}
+
+					chunkOffset += chunkSize;
+				}
+			}
+
+			return chunkPositions;
+		}
+		catch (SQLException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
 	protected Map<ChunkChecksum, ChunkEntry> createChunkEntries(ResultSet resultSet) throws SQLException {
 		Map<ChunkChecksum, ChunkEntry> chunks = new HashMap<ChunkChecksum, ChunkEntry>();
 
@@ -165,7 +241,36 @@ public class ChunkSqlDao extends AbstractSqlDao {
 	protected void loadChunkCache() {
 		try (PreparedStatement preparedStatement = getStatement("chunk.select.all.loadChunkCache.sql")) {
 			try (ResultSet resultSet = preparedStatement.executeQuery()) {
-				chunkCache = createChunkEntries(resultSet);
+				ChunkIndex newChunkCache = new ChunkIndex();
+				
+				while (resultSet.next()) {
+					ChunkChecksum chunkChecksum = ChunkChecksum.parseChunkChecksum(resultSet.getString("checksum"));
+					newChunkCache.put(chunkChecksum, resultSet.getInt("size"));
+				}
+				
+				logger.log(Level.FINE, "Loaded chunk cache with " + newChunkCache.size() + " chunks (" + newChunkCache.getMemoryUsage() + " bytes).");
+				chunkCache = newChunkCache;
+			}
+		}
+		catch (SQLException e) {
+			throw new RuntimeException(e);
+		}
+	}
+	
+	private synchronized void addToChunkCache(Collection<ChunkEntry> chunks) {
+		if (chunkCache != null) {
+			for (ChunkEntry chunk : chunks) {
+				chunkCache.put(chunk.getChecksum(), chunk.getSize());
+			}
+		}
+	}
+	
+	private void removeUnreferencedChunksFromCache() {
+		try (PreparedStatement preparedStatement = getStatement("chunk.select.all.getUnreferencedChunks.sql")) {
+			try (ResultSet resultSet = preparedStatement.executeQuery()) {
+				while (resultSet.next()) {
+					chunkCache.remove(ChunkChecksum.parseChunkChecksum(resultSet.getString("checksum")));
+				}
 			}
 		}
 		catch (SQLException e) {
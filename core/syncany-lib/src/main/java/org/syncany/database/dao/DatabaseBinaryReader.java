@@ -0,0 +1,469 @@
+/*
+ * Syncany, www.syncany.org
+ * Copyright (C) 2011-2016 Philipp C. Heckel <philipp.heckel@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.syncany.database.dao;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.BoundedInputStream;
+import org.syncany.chunk.Transformer;
+import org.syncany.database.ChunkEntry;
+import org.syncany.database.ChunkEntry.ChunkChecksum;
+import org.syncany.database.DatabaseVersion;
+import org.syncany.database.FileContent;
+import org.syncany.database.FileContent.FileChecksum;
+import org.syncany.database.FileVersion;
+import org.syncany.database.FileVersion.FileStatus;
+import org.syncany.database.FileVersion.FileType;
+import org.syncany.database.MemoryDatabase;
+import org.syncany.database.MultiChunkEntry;
+import org.syncany.database.MultiChunkEntry.MultiChunkId;
+import org.syncany.database.PartialFileHistory;
+import org.syncany.database.PartialFileHistory.FileHistoryId;
+import org.syncany.database.VectorClock;
+import org.syncany.database.dao.DatabaseXmlSerializer.DatabaseReadType;
+
+/**
+ * This class is used by the {@link DatabaseXmlSerializer} to read a database file
+ * written by the {@link DatabaseBinaryWriter}. Like the {@link DatabaseXmlParseHandler},
+ * it can read either an entire file into memory, or only the headers, and it only adds
+ * the database versions within the given vector clock range.
+ *
+ * <p>Files start with a header block, so if only the headers are needed, reading stops
+ * after the header block. Bodies outside of the given range are skipped without being decoded.
+ * The header block and the bodies are separately transformed segments, and each segment is
+ * read to its end, so that the transformer can verify it: Headers read with
+ * {@link DatabaseReadType#HEADER_ONLY} are verified just like the headers of a full read.
+ *
+ * @see DatabaseBinaryWriter
+ * @author Philipp C. Heckel <philipp.heckel@gmail.com>
+ */
+public class DatabaseBinaryReader {
+	private static final Logger logger = Logger.getLogger(DatabaseBinaryReader.class.getSimpleName());
+
+	private MemoryDatabase database;
+	private VectorClock versionFrom;
+	private VectorClock versionTo;
+	private DatabaseReadType readType;
+	private Transformer transformer;
+
+	public DatabaseBinaryReader(MemoryDatabase database, VectorClock fromVersion, VectorClock toVersion, DatabaseReadType readType,
+			Transformer transformer) {
+
+		this.database = database;
+		this.versionFrom = fromVersion;
+		this.versionTo = toVersion;
+		this.readType = readType;
+		this.transformer = transformer;
+	}
+
+	/**
+	 * Checks whether the given (untransformed) stream starts with the magic bytes of the
+	 * binary database format. The stream must support {@link InputStream#mark(int) mark()}
+	 * and is reset to its original position.
+	 */
+	public static boolean isBinaryFormat(InputStream inputStream) throws IOException {
+		byte[] magic = new byte[DatabaseBinaryWriter.BINARY_FORMAT_MAGIC.length];
+
+		inputStream.mark(magic.length);
+		int magicLength = IOUtils.read(inputStream, magic);
+		inputStream.reset();
+
+		return magicLength == magic.length && Arrays.equals(magic, DatabaseBinaryWriter.BINARY_FORMAT_MAGIC);
+	}
+
+	/**
+	 * Reads the database versions from the given (untransformed) stream. For
+	 * {@link DatabaseReadType#HEADER_ONLY}, this method returns right after the header
+	 * segment, without reading the rest of the stream. Otherwise, the stream is read until
+	 * its end, so that a transformer can verify the integrity of the entire file.
+	 */
+	public void read(InputStream inputStream) throws IOException {
+		DataInputStream in = new DataInputStream(inputStream);
+
+		byte[] magic = new byte[DatabaseBinaryWriter.BINARY_FORMAT_MAGIC.length];
+		in.readFully(magic);
+
+		if (!Arrays.equals(magic, DatabaseBinaryWriter.BINARY_FORMAT_MAGIC)) {
+			throw new IOException("Invalid database file: Magic bytes do not match binary database format.");
+		}
+
+		int formatVersion = in.readUnsignedByte();
+
+		if (formatVersion != DatabaseBinaryWriter.BINARY_FORMAT_VERSION) {
+			throw new IOException("Unsupported binary database format version " + formatVersion + ".");
+		}
+
+		// Header segment
+		byte[] headerBlock = readHeaderSegment(in, readVarInt(in));
+		DataInputStream headerBlockIn = new DataInputStream(new ByteArrayInputStream(headerBlock));
+
+		DatabaseVersion[] databaseVersions = new DatabaseVersion[readVarInt(headerBlockIn)];
+		int[] bodyLengths = new int[databaseVersions.length];
+
+		for (int i = 0; i < databaseVersions.length; i++) {
+			databaseVersions[i] = readDatabaseVersionHeader(headerBlockIn);
+			bodyLengths[i] = readVarInt(headerBlockIn);
+		}
+
+		readEndOfStream(headerBlockIn);
+
+		// Body segment (only if needed)
+		if (readType == DatabaseReadType.HEADER_ONLY) {
+			for (DatabaseVersion databaseVersion : databaseVersions) {
+				addDatabaseVersionIfInRange(databaseVersion);
+			}
+		}
+		else {
+			try (DataInputStream bodySegmentIn = new DataInputStream(new BufferedInputStream(createSegmentInputStream(in)))) {
+				readAndVerifyHeaderBlockDigest(bodySegmentIn, headerBlock);
+
+				for (int i = 0; i < databaseVersions.length; i++) {
+					readOrSkipDatabaseVersionBody(bodySegmentIn, databaseVersions[i], bodyLengths[i]);
+				}
+
+				readEndOfStream(bodySegmentIn);
+			}
+		}
+	}
+
+	/**
+	 * Reads and returns the header block from the header segment of the given length.
+	 * The segment is read until its end, so that the transformer verifies it before
+	 * any of its headers are used.
+	 */
+	private byte[] readHeaderSegment(InputStream in, int headerSegmentLength) throws IOException {
+		BoundedInputStream headerSegmentRawIn = new BoundedInputStream(in, headerSegmentLength);
+		headerSegmentRawIn.setPropagateClose(false);
+
+		byte[] headerBlock;
+
+		try (InputStream headerSegmentIn = createSegmentInputStream(headerSegmentRawIn)) {
+			headerBlock = IOUtils.toByteArray(headerSegmentIn);
+		}
+
+		if (headerSegmentRawIn.read() != -1) {
+			throw new IOException("Invalid database file: Unexpected data after header block.");
+		}
+
+		return headerBlock;
+	}
+
+	private void readAndVerifyHeaderBlockDigest(DataInputStream in, byte[] headerBlock) throws IOException {
+		byte[] expectedDigest = DatabaseBinaryWriter.digestHeaderBlock(headerBlock);
+		byte[] actualDigest = new byte[expectedDigest.length];
+
+		in.readFully(actualDigest);
+
+		if (!MessageDigest.isEqual(expectedDigest, actualDigest)) {
+			throw new IOException("Invalid database file: Header block does not belong to the database version bodies.");
+		}
+	}
+
+	private InputStream createSegmentInputStream(InputStream segmentIn) throws IOException {
+		if (transformer == null) {
+			return segmentIn;
+		}
+		else {
+			return transformer.createInputStream(segmentIn);
+		}
+	}
+
+	private void readOrSkipDatabaseVersionBody(DataInputStream in, DatabaseVersion databaseVersion, int bodyLength) throws IOException {
+		boolean vectorClockInLoadRange = DatabaseXmlParseHandler.vectorClockInRange(databaseVersion.getVectorClock(), versionFrom, versionTo);
+
+		if (readType == DatabaseReadType.FULL && vectorClockInLoadRange) {
+			byte[] bodyBytes = new byte[bodyLength];
+			in.readFully(bodyBytes);
+
+			readDatabaseVersionBody(new DataInputStream(new ByteArrayInputStream(bodyBytes)), databaseVersion);
+		}
+		else {
+			IOUtils.skipFully(in, bodyLength);
+		}
+
+		addDatabaseVersionIfInRange(databaseVersion);
+	}
+
+	private void addDatabaseVersionIfInRange(DatabaseVersion databaseVersion) {
+		if (DatabaseXmlParseHandler.vectorClockInRange(databaseVersion.getVectorClock(), versionFrom, versionTo)) {
+			database.addDatabaseVersion(databaseVersion);
+			logger.log(Level.INFO, "   + Added database version " + databaseVersion.getHeader());
+		}
+	}
+
+	private void readEndOfStream(DataInputStream in) throws IOException {
+		if (in.read() != -1) {
+			throw new IOException("Invalid database file: Unexpected data at end of segment.");
+		}
+	}
+
+	private DatabaseVersion readDatabaseVersionHeader(DataInputStream in) throws IOException {
+		DatabaseVersion databaseVersion = new DatabaseVersion();
+
+		databaseVersion.setTimestamp(new Date(readVarLong(in)));
+		databaseVersion.setClient(readString(in));
+
+		VectorClock vectorClock = new VectorClock();
+		int vectorClockSize = readVarInt(in);
+
+		for (int i = 0; i < vectorClockSize; i++) {
+			String clientName = readString(in);
+			long clientValue = readVarLong(in);
+
+			vectorClock.setClock(clientName, clientValue);
+		}
+
+		databaseVersion.setVectorClock(vectorClock);
+		return databaseVersion;
+	}
+
+	private void readDatabaseVersionBody(DataInputStream in, DatabaseVersion databaseVersion) throws IOException {
+		String[] stringTable = readStringTable(in);
+
+		readChunks(in, databaseVersion);
+		readMultiChunks(in, databaseVersion);
+		readFileContents(in, databaseVersion);
+		readFileHistories(in, databaseVersion, stringTable);
+	}
+
+	private String[] readStringTable(DataInputStream in) throws IOException {
+		String[] stringTable = new String[readVarInt(in) + 1];
+
+		for (int i = 1; i < stringTable.length; i++) {
+			stringTable[i] = readString(in);
+		}
+
+		return stringTable;
+	}
+
+	private void readChunks(DataInputStream in, DatabaseVersion databaseVersion) throws IOException {
+		ChunkChecksum[] chunkChecksums = new ChunkChecksum[readVarInt(in)];
+
+		for (int i = 0; i < chunkChecksums.length; i++) {
+			chunkChecksums[i] = new ChunkChecksum(readBytes(in));
+		}
+
+		for (int i = 0; i < chunkChecksums.length; i++) {
+			databaseVersion.addChunk(new ChunkEntry(chunkChecksums[i], (int) readVarLong(in)));
+		}
+	}
+
+	private void readMultiChunks(DataInputStream in, DatabaseVersion databaseVersion) throws IOException {
+		MultiChunkId[] multiChunkIds = new MultiChunkId[readVarInt(in)];
+		MultiChunkEntry[] multiChunks = new MultiChunkEntry[multiChunkIds.length];
+		int[] chunkCounts = new int[multiChunkIds.length];
+
+		for (int i = 0; i < multiChunkIds.length; i++) {
+			multiChunkIds[i] = new MultiChunkId(readBytes(in));
+		}
+
+		for (int i = 0; i < multiChunkIds.length; i++) {
+			multiChunks[i] = new MultiChunkEntry(multiChunkIds[i], readVarLong(in));
+		}
+
+		for (int i = 0; i < multiChunkIds.length; i++) {
+			chunkCounts[i] = readVarInt(in);
+		}
+
+		for (int i = 0; i < multiChunkIds.length; i++) {
+			for (int j = 0; j < chunkCounts[i]; j++) {
+				multiChunks[i].addChunk(new ChunkChecksum(readBytes(in)));
+			}
+
+			databaseVersion.addMultiChunk(multiChunks[i]);
+		}
+	}
+
+	private void readFileContents(DataInputStream in, DatabaseVersion databaseVersion) throws IOException {
+		FileContent[] fileContents = new FileContent[readVarInt(in)];
+		int[] chunkCounts = new int[fileContents.length];
+
+		for (int i = 0; i < fileContents.length; i++) {
+			fileContents[i] = new FileContent();
+			fileContents[i].setChecksum(new FileChecksum(readBytes(in)));
+		}
+
+		for (int i = 0; i < fileContents.length; i++) {
+			fileContents[i].setSize(readVarLong(in));
+		}
+
+		for (int i = 0; i < fileContents.length; i++) {
+			chunkCounts[i] = readVarInt(in);
+		}
+
+		for (int i = 0; i < fileContents.length; i++) {
+			for (int j = 0; j < chunkCounts[i]; j++) {
+				fileContents[i].addChunk(new ChunkChecksum(readBytes(in)));
+			}
+
+			databaseVersion.addFileContent(fileContents[i]);
+		}
+	}
+
+	private void readFileHistories(DataInputStream in, DatabaseVersion databaseVersion, String[] stringTable) throws IOException {
+		PartialFileHistory[] fileHistories = new PartialFileHistory[readVarInt(in)];
+		int[] fileVersionCounts = new int[fileHistories.length];
+		int fileVersionCount = 0;
+
+		for (int i = 0; i < fileHistories.length; i++) {
+			fileHistories[i] = new PartialFileHistory(new FileHistoryId(readBytes(in)));
+		}
+
+		for (int i = 0; i < fileHistories.length; i++) {
+			fileVersionCounts[i] = readVarInt(in);
+			fileVersionCount += fileVersionCounts[i];
+		}
+
+		FileVersion[] fileVersions = new FileVersion[fileVersionCount];
+		int[] flags = new int[fileVersionCount];
+
+		for (int i = 0; i < fileVersionCount; i++) {
+			fileVersions[i] = new FileVersion();
+			fileVersions[i].setVersion(readVarLong(in));
+		}
+
+		for (int i = 0; i < fileVersionCount; i++) {
+			fileVersions[i].setType(FileType.valueOf(readTableString(in, stringTable)));
+		}
+
+		for (int i = 0; i < fileVersionCount; i++) {
+			fileVersions[i].setStatus(FileStatus.valueOf(readTableString(in, stringTable)));
+		}
+
+		for (int i = 0; i < fileVersionCount; i++) {
+			String parentPath = readTableString(in, stringTable);
+			String name = readString(in);
+
+			fileVersions[i].setPath((parentPath != null) ? parentPath + "/" + name : name);
+		}
+
+		for (int i = 0; i < fileVersionCount; i++) {
+			fileVersions[i].setSize(readVarLong(in));
+		}
+
+		for (int i = 0; i < fileVersionCount; i++) {
+			fileVersions[i].setLastModified(new Date(readVarLong(in)));
+		}
+
+		for (int i = 0; i < fileVersionCount; i++) {
+			flags[i] = in.readUnsignedByte();
+		}
+
+		for (int i = 0; i < fileVersionCount; i++) {
+			if ((flags[i] & DatabaseBinaryWriter.FLAG_UPDATED) != 0) {
+				fileVersions[i].setUpdated(new Date(readVarLong(in)));
+			}
+		}
+
+		for (int i = 0; i < fileVersionCount; i++) {
+			if ((flags[i] & DatabaseBinaryWriter.FLAG_CHECKSUM) != 0) {
+				fileVersions[i].setChecksum(new FileChecksum(readBytes(in)));
+			}
+		}
+
+		for (int i = 0; i < fileVersionCount; i++) {
+			if ((flags[i] & DatabaseBinaryWriter.FLAG_LINK_TARGET) != 0) {
+				fileVersions[i].setLinkTarget(readString(in));
+			}
+		}
+
+		for (int i = 0; i < fileVersionCount; i++) {
+			fileVersions[i].setDosAttributes(readTableString(in, stringTable));
+		}
+
+		for (int i = 0; i < fileVersionCount; i++) {
+			fileVersions[i].setPosixPermissions(readTableString(in, stringTable));
+		}
+
+		// Assign file versions to their histories
+		int fileVersionIndex = 0;
+
+		for (int i = 0; i < fileHistories.length; i++) {
+			for (int j = 0; j < fileVersionCounts[i]; j++) {
+				fileHistories[i].addFileVersion(fileVersions[fileVersionIndex++]);
+			}
+
+			if (fileHistories[i].getFileVersions().size() > 0) {
+				databaseVersion.addFileHistory(fileHistories[i]);
+			}
+		}
+	}
+
+	private String readTableString(DataInputStream in, String[] stringTable) throws IOException {
+		int stringIndex = readVarInt(in);
+
+		if (stringIndex < 0 || stringIndex >= stringTable.length) {
+			throw new IOException("Invalid database file: String index " + stringIndex + " out of range.");
+		}
+
+		return stringTable[stringIndex];
+	}
+
+	private byte[] readBytes(DataInputStream in) throws IOException {
+		byte[] bytes = new byte[readVarInt(in)];
+		in.readFully(bytes);
+
+		return bytes;
+	}
+
+	private String readString(DataInputStream in) throws IOException {
+		return new String(readBytes(in), StandardCharsets.UTF_8);
+	}
+
+	private int readVarInt(DataInputStream in) throws IOException {
+		long value = readUnsignedVarLong(in);
+
+		if (value > Integer.MAX_VALUE) {
+			throw new IOException("Invalid database file: Value " + value + " out of range.");
+		}
+
+		return (int) value;
+	}
+
+	private long readVarLong(DataInputStream in) throws IOException {
+		long zigZagValue = readUnsignedVarLong(in);
+		return (zigZagValue >>> 1) ^ -(zigZagValue & 1);
+	}
+
+	private long readUnsignedVarLong(DataInputStream in) throws IOException {
+		long value = 0;
+
+		for (int shift = 0; shift < 64; shift += 7) {
+			int b = in.readUnsignedByte();
+			value |= (long) (b & 0x7F) << shift;
+
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+
+		throw new EOFException("Invalid database file: Variable-length number too long.");
+	}
+}
@@ -0,0 +1,458 @@
+/*
+ * Syncany, www.syncany.org
+ * Copyright (C) 2011-2016 Philipp C. Heckel <philipp.heckel@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.syncany.database.dao;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.syncany.chunk.Chunk;
+import org.syncany.chunk.CipherTransformer;
+import org.syncany.chunk.MultiChunk;
+import org.syncany.chunk.Transformer;
+import org.syncany.database.ChunkEntry;
+import org.syncany.database.ChunkEntry.ChunkChecksum;
+import org.syncany.database.DatabaseVersion;
+import org.syncany.database.FileContent;
+import org.syncany.database.FileVersion;
+import org.syncany.database.FileVersion.FileType;
+import org.syncany.database.MultiChunkEntry;
+import org.syncany.database.ObjectId;
+import org.syncany.database.PartialFileHistory;
+import org.syncany.database.VectorClock;
+import org.syncany.util.StringUtil;
+
+/**
+ * This class writes the given {@link DatabaseVersion}s to an {@link OutputStream} in
+ * a compact binary format. It is the binary counterpart to the {@link DatabaseXmlWriter},
+ * and files written by it are read by the {@link DatabaseBinaryReader}.
+ *
+ * <p>A file starts with the magic bytes <tt>SYDB</tt> and a format version, followed by
+ * a header block and the database version bodies. The header block contains the header
+ * (time, client and vector clock) and the body length of each database version, so that
+ * readers that only need the headers can stop reading after the header block, without
+ * decrypting or parsing any of the bodies.
+ * 
+ * <p>The header block and the bodies are two separate segments, each passed through the
+ * {@link Transformer} on its own. Only the magic bytes, the format version and the length
+ * of the header segment are stored in plain text. With an authenticating transformer (such
+ * as the {@link CipherTransformer}), the header segment can therefore be verified without
+ * reading the bodies. The body segment starts with a SHA-256 digest of the header block,
+ * so that a header segment cannot be combined with the bodies of another file. Within a body, the {@link Chunk}s, {@link MultiChunk}s,
+ * {@link FileContent}s and {@link FileVersion}s are stored column by column: Checksums
+ * and identifiers are written as raw bytes, numbers as variable-length integers, and
+ * repeating strings (parent folders, types, permissions, ...) as indexes into a string
+ * table.
+ *
+ * @see DatabaseXmlSerializer
+ * @see DatabaseBinaryReader
+ * @author Philipp C. Heckel <philipp.heckel@gmail.com>
+ */
+public class DatabaseBinaryWriter {
+	private static final Logger logger = Logger.getLogger(DatabaseBinaryWriter.class.getSimpleName());
+
+	public static final byte[] BINARY_FORMAT_MAGIC = new byte[] { 'S', 'Y', 'D', 'B' };
+	public static final int BINARY_FORMAT_VERSION = 1;
+
+	static final String HEADER_BLOCK_DIGEST_ALGORITHM = "SHA-256";
+
+	static final int FLAG_UPDATED = 0x01;
+	static final int FLAG_CHECKSUM = 0x02;
+	static final int FLAG_LINK_TARGET = 0x04;
+
+	private Iterator<DatabaseVersion> databaseVersions;
+	private DataOutputStream out;
+	private File bodyFile;
+	private Transformer transformer;
+
+	/**
+	 * Creates a new binary writer. Since the header block precedes the bodies, the
+	 * bodies are first written to the given temporary body file, and then copied to the
+	 * output stream. The body file is deleted by {@link #write()}.
+	 * 
+	 * <p>The given output stream must not be transformed; the writer transforms the header
+	 * and body segments with the given transformer (if it is not <tt>null</tt>).
+	 */
+	public DatabaseBinaryWriter(Iterator<DatabaseVersion> databaseVersions, OutputStream out, File bodyFile, Transformer transformer) {
+		this.databaseVersions = databaseVersions;
+		this.out = new DataOutputStream(out);
+		this.bodyFile = bodyFile;
+		this.transformer = transformer;
+	}
+
+	public void write() throws IOException {
+		try {
+			ByteArrayOutputStream headerBytes = new ByteArrayOutputStream();
+			DataOutputStream headerOut = new DataOutputStream(headerBytes);
+			int databaseVersionCount = 0;
+
+			// Write bodies to the body file, and collect headers and body lengths
+			try (DataOutputStream bodyOut = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(bodyFile)))) {
+				ByteArrayOutputStream bodyBytes = new ByteArrayOutputStream();
+
+				while (databaseVersions.hasNext()) {
+					DatabaseVersion databaseVersion = databaseVersions.next();
+
+					bodyBytes.reset();
+					writeDatabaseVersionBody(new DataOutputStream(bodyBytes), databaseVersion);
+
+					writeDatabaseVersionHeader(headerOut, databaseVersion);
+					writeVarInt(headerOut, bodyBytes.size());
+
+					bodyBytes.writeTo(bodyOut);
+					databaseVersionCount++;
+				}
+			}
+
+			// Header block: number of database versions, then headers and body lengths
+			ByteArrayOutputStream headerBlockBytes = new ByteArrayOutputStream();
+			DataOutputStream headerBlockOut = new DataOutputStream(headerBlockBytes);
+
+			writeVarInt(headerBlockOut, databaseVersionCount);
+			headerBytes.writeTo(headerBlockOut);
+
+			byte[] headerBlock = headerBlockBytes.toByteArray();
+			byte[] headerSegment = createHeaderSegment(headerBlock);
+
+			// Plain text prefix and header segment, then body segment
+			out.write(BINARY_FORMAT_MAGIC);
+			out.writeByte(BINARY_FORMAT_VERSION);
+
+			writeVarInt(out, headerSegment.length);
+			out.write(headerSegment);
+
+			try (OutputStream bodySegmentOut = createSegmentOutputStream(out)) {
+				bodySegmentOut.write(digestHeaderBlock(headerBlock));
+				Files.copy(bodyFile.toPath(), bodySegmentOut);
+			}
+		}
+		finally {
+			bodyFile.delete();
+		}
+	}
+
+	private byte[] createHeaderSegment(byte[] headerBlock) throws IOException {
+		ByteArrayOutputStream headerSegmentBytes = new ByteArrayOutputStream();
+
+		try (OutputStream headerSegmentOut = createSegmentOutputStream(headerSegmentBytes)) {
+			headerSegmentOut.write(headerBlock);
+		}
+
+		return headerSegmentBytes.toByteArray();
+	}
+
+	private OutputStream createSegmentOutputStream(OutputStream segmentOut) throws IOException {
+		if (transformer == null) {
+			return segmentOut;
+		}
+		else {
+			return transformer.createOutputStream(segmentOut);
+		}
+	}
+
+	/**
+	 * Returns the SHA-256 digest of the given header block. The digest is stored at
+	 * the beginning of the body segment, and verified by the {@link DatabaseBinaryReader}.
+	 */
+	static byte[] digestHeaderBlock(byte[] headerBlock) throws IOException {
+		try {
+			return MessageDigest.getInstance(HEADER_BLOCK_DIGEST_ALGORITHM).digest(headerBlock);
+		}
+		catch (NoSuchAlgorithmException e) {
+			throw new IOException("Cannot create header block digest.", e);
+		}
+	}
+
+	private void writeDatabaseVersionHeader(DataOutputStream out, DatabaseVersion databaseVersion) throws IOException {
+		if (databaseVersion.getTimestamp() == null || databaseVersion.getClient() == null
+				|| databaseVersion.getVectorClock() == null || databaseVersion.getVectorClock().isEmpty()) {
+
+			logger.log(Level.SEVERE, "Cannot write database version. Header fields must be filled: " + databaseVersion.getHeader());
+			throw new IOException("Cannot write database version. Header fields must be filled: " + databaseVersion.getHeader());
+		}
+
+		writeVarLong(out, databaseVersion.getTimestamp().getTime());
+		writeString(out, databaseVersion.getClient());
+
+		VectorClock vectorClock = databaseVersion.getVectorClock();
+		writeVarInt(out, vectorClock.size());
+
+		for (Map.Entry<String, Long> vectorClockEntry : vectorClock.entrySet()) {
+			writeString(out, vectorClockEntry.getKey());
+			writeVarLong(out, vectorClockEntry.getValue());
+		}
+	}
+
+	private void writeDatabaseVersionBody(DataOutputStream out, DatabaseVersion databaseVersion) throws IOException {
+		StringTable stringTable = new StringTable();
+		ByteArrayOutputStream columnBytes = new ByteArrayOutputStream();
+		DataOutputStream columnOut = new DataOutputStream(columnBytes);
+
+		writeChunks(columnOut, databaseVersion.getChunks());
+		writeMultiChunks(columnOut, databaseVersion.getMultiChunks());
+		writeFileContents(columnOut, databaseVersion.getFileContents());
+		writeFileHistories(columnOut, databaseVersion.getFileHistories(), stringTable);
+
+		// The string table is filled while writing the columns, but must be read first
+		stringTable.write(out);
+		columnBytes.writeTo(out);
+	}
+
+	private void writeChunks(DataOutputStream out, Collection<ChunkEntry> chunks) throws IOException {
+		writeVarInt(out, chunks.size());
+
+		for (ChunkEntry chunk : chunks) {
+			writeObjectId(out, chunk.getChecksum());
+		}
+
+		for (ChunkEntry chunk : chunks) {
+			writeVarLong(out, chunk.getSize());
+		}
+	}
+
+	private void writeMultiChunks(DataOutputStream out, Collection<MultiChunkEntry> multiChunks) throws IOException {
+		writeVarInt(out, multiChunks.size());
+
+		for (MultiChunkEntry multiChunk : multiChunks) {
+			writeObjectId(out, multiChunk.getId());
+		}
+
+		for (MultiChunkEntry multiChunk : multiChunks) {
+			writeVarLong(out, multiChunk.getSize());
+		}
+
+		for (MultiChunkEntry multiChunk : multiChunks) {
+			writeVarInt(out, multiChunk.getChunks().size());
+		}
+
+		for (MultiChunkEntry multiChunk : multiChunks) {
+			writeChunkRefs(out, multiChunk.getChunks());
+		}
+	}
+
+	private void writeFileContents(DataOutputStream out, Collection<FileContent> fileContents) throws IOException {
+		writeVarInt(out, fileContents.size());
+
+		for (FileContent fileContent : fileContents) {
+			writeObjectId(out, fileContent.getChecksum());
+		}
+
+		for (FileContent fileContent : fileContents) {
+			writeVarLong(out, fileContent.getSize());
+		}
+
+		for (FileContent fileContent : fileContents) {
+			writeVarInt(out, fileContent.getChunks().size());
+		}
+
+		for (FileContent fileContent : fileContents) {
+			writeChunkRefs(out, fileContent.getChunks());
+		}
+	}
+
+	private void writeChunkRefs(DataOutputStream out, Collection<ChunkChecksum> chunkChecksums) throws IOException {
+		for (ChunkChecksum chunkChecksum : chunkChecksums) {
+			writeObjectId(out, chunkChecksum);
+		}
+	}
+
+	private void writeFileHistories(DataOutputStream out, Collection<PartialFileHistory> fileHistories, StringTable stringTable) throws IOException {
+		List<FileVersion> fileVersions = new ArrayList<FileVersion>();
+
+		writeVarInt(out, fileHistories.size());
+
+		for (PartialFileHistory fileHistory : fileHistories) {
+			writeObjectId(out, fileHistory.getFileHistoryId());
+		}
+
+		for (PartialFileHistory fileHistory : fileHistories) {
+			writeVarInt(out, fileHistory.getFileVersions().size());
+			fileVersions.addAll(fileHistory.getFileVersions().values());
+		}
+
+		for (FileVersion fileVersion : fileVersions) {
+			if (fileVersion.getVersion() == null || fileVersion.getType() == null || fileVersion.getPath() == null
+					|| fileVersion.getStatus() == null || fileVersion.getSize() == null || fileVersion.getLastModified() == null) {
+
+				throw new IOException("Unable to write file version, because one or many mandatory fields are null (version, type, path, name, status, size, last modified): " + fileVersion);
+			}
+
+			if (fileVersion.getType() == FileType.SYMLINK && fileVersion.getLinkTarget() == null) {
+				throw new IOException("Unable to write file version: All symlinks must have a target.");
+			}
+		}
+
+		for (FileVersion fileVersion : fileVersions) {
+			writeVarLong(out, fileVersion.getVersion());
+		}
+
+		for (FileVersion fileVersion : fileVersions) {
+			writeVarInt(out, stringTable.indexOf(fileVersion.getType().toString()));
+		}
+
+		for (FileVersion fileVersion : fileVersions) {
+			writeVarInt(out, stringTable.indexOf(fileVersion.getStatus().toString()));
+		}
+
+		for (FileVersion fileVersion : fileVersions) {
+			String path = fileVersion.getPath();
+			int lastSlashIndex = path.lastIndexOf('/');
+
+			if (lastSlashIndex >= 0) {
+				writeVarInt(out, stringTable.indexOf(path.substring(0, lastSlashIndex)));
+				writeString(out, path.substring(lastSlashIndex + 1));
+			}
+			else {
+				writeVarInt(out, stringTable.indexOf(null));
+				writeString(out, path);
+			}
+		}
+
+		for (FileVersion fileVersion : fileVersions) {
+			writeVarLong(out, fileVersion.getSize());
+		}
+
+		for (FileVersion fileVersion : fileVersions) {
+			writeVarLong(out, fileVersion.getLastModified().getTime());
+		}
+
+		for (FileVersion fileVersion : fileVersions) {
+			int flags = 0;
+
+			flags |= (fileVersion.getUpdated() != null) ? FLAG_UPDATED : 0;
+			flags |= (fileVersion.getChecksum() != null) ? FLAG_CHECKSUM : 0;
+			flags |= (fileVersion.getLinkTarget() != null) ? FLAG_LINK_TARGET : 0;
+
+			out.writeByte(flags);
+		}
+
+		for (FileVersion fileVersion : fileVersions) {
+			if (fileVersion.getUpdated() != null) {
+				writeVarLong(out, fileVersion.getUpdated().getTime());
+			}
+		}
+
+		for (FileVersion fileVersion : fileVersions) {
+			if (fileVersion.getChecksum() != null) {
+				writeObjectId(out, fileVersion.getChecksum());
+			}
+		}
+
+		for (FileVersion fileVersion : fileVersions) {
+			if (fileVersion.getLinkTarget() != null) {
+				writeString(out, fileVersion.getLinkTarget());
+			}
+		}
+
+		for (FileVersion fileVersion : fileVersions) {
+			writeVarInt(out, stringTable.indexOf(fileVersion.getDosAttributes()));
+		}
+
+		for (FileVersion fileVersion : fileVersions) {
+			writeVarInt(out, stringTable.indexOf(fileVersion.getPosixPermissions()));
+		}
+	}
+
+	private void writeObjectId(DataOutputStream out, ObjectId objectId) throws IOException {
+		byte[] objectIdBytes = objectId.getBytes();
+
+		writeVarInt(out, objectIdBytes.length);
+		out.write(objectIdBytes);
+	}
+
+	private static void writeString(DataOutputStream out, String str) throws IOException {
+		byte[] strBytes = StringUtil.toBytesUTF8(str);
+
+		writeVarInt(out, strBytes.length);
+		out.write(strBytes);
+	}
+
+	/**
+	 * Writes a non-negative integer with 7 bits per byte; the highest bit
+	 * of each byte signals that more bytes follow.
+	 */
+	static void writeVarInt(DataOutputStream out, int value) throws IOException {
+		writeUnsignedVarLong(out, value & 0xFFFFFFFFL);
+	}
+
+	/**
+	 * Writes a (possibly negative) long value in zig-zag encoding, so that
+	 * small absolute values need few bytes.
+	 */
+	static void writeVarLong(DataOutputStream out, long value) throws IOException {
+		writeUnsignedVarLong(out, (value << 1) ^ (value >> 63));
+	}
+
+	private static void writeUnsignedVarLong(DataOutputStream out, long value) throws IOException {
+		while ((value & ~0x7FL) != 0) {
+			out.writeByte((int) ((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+
+		out.writeByte((int) value);
+	}
+
+	/**
+	 * Collects the distinct strings of a database version body. Strings are
+	 * referenced by their index; the index 0 stands for <tt>null</tt>.
+	 */
+	private static class StringTable {
+		private Map<String, Integer> stringIndexes = new HashMap<String, Integer>();
+		private List<String> strings = new ArrayList<String>();
+
+		public int indexOf(String str) {
+			if (str == null) {
+				return 0;
+			}
+
+			Integer stringIndex = stringIndexes.get(str);
+
+			if (stringIndex == null) {
+				strings.add(str);
+				stringIndex = strings.size();
+
+				stringIndexes.put(str, stringIndex);
+			}
+
+			return stringIndex;
+		}
+
+		public void write(DataOutputStream out) throws IOException {
+			writeVarInt(out, strings.size());
+
+			for (String str : strings) {
+				writeString(out, str);
+			}
+		}
+	}
+}
@@ -104,13 +104,8 @@ public class DatabaseVersionSqlDao extends AbstractSqlDao {
 
 	public long writeDatabaseVersion(DatabaseVersion databaseVersion) {
 		try {
-			// Insert & commit database version
-			long databaseVersionId = writeDatabaseVersion(connection, databaseVersion);
-			
-			// Commit & clear local caches
-			clearCaches();
-
-			return databaseVersionId;
+			// Insert database version; the chunk cache is updated incrementally
+			return writeDatabaseVersion(connection, databaseVersion);
 		}
 		catch (Exception e) {
 			logger.log(Level.SEVERE, "SQL Error: ", e);
@@ -217,9 +212,8 @@ public class DatabaseVersionSqlDao extends AbstractSqlDao {
 			removeDirtyVectorClocks();
 			removeDirtyDatabaseVersionsInt();
 
-			// Commit & clear local caches
+			// Commit (dirty chunks are re-assigned, not deleted, so the chunk cache stays valid)
 			connection.commit();
-			clearCaches();
 		}
 		catch (SQLException e) {
 			throw new RuntimeException("Unable to remove dirty database versions.", e);
@@ -309,6 +303,22 @@ public class DatabaseVersionSqlDao extends AbstractSqlDao {
 		}
 	}
 	
+	/**
+	 * Returns all master database versions of the given client whose own vector clock 
+	 * value is larger than the given value, i.e. all versions created after it.
+	 */
+	public Iterator<DatabaseVersion> getDatabaseVersionsAfter(String machineName, long minLocalClientVersionExclusive) {
+		try (PreparedStatement preparedStatement = getStatement("databaseversion.select.master.getDatabaseVersionsAfter.sql")) {
+			preparedStatement.setString(1, machineName);
+			preparedStatement.setLong(2, minLocalClientVersionExclusive);
+
+			return new DatabaseVersionIterator(preparedStatement.executeQuery());
+		}
+		catch (SQLException e) {
+			throw new RuntimeException(e);
+		}
+	}
+	
 	public Iterator<DatabaseVersion> getLastDatabaseVersions(int maxDatabaseVersionCount, int startDatabaseVersionIndex, int maxFileHistoryCount) {
 		try (PreparedStatement preparedStatement = getStatement("databaseversion.select.master.getLastDatabaseVersions.sql")) {
 			maxDatabaseVersionCount = (maxDatabaseVersionCount > 0) ? maxDatabaseVersionCount : Integer.MAX_VALUE;
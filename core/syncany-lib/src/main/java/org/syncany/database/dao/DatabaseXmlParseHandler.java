@@ -268,7 +268,7 @@ public class DatabaseXmlParseHandler extends DefaultHandler {
 		// Nothing
 	}
 
-	private boolean vectorClockInRange(VectorClock vectorClock, VectorClock vectorClockRangeFrom, VectorClock vectorClockRangeTo) {
+	static boolean vectorClockInRange(VectorClock vectorClock, VectorClock vectorClockRangeFrom, VectorClock vectorClockRangeTo) {
 		// Determine if: versionFrom < databaseVersion
 		boolean greaterOrEqualToVersionFrom = false;
 
@@ -17,11 +17,14 @@
  */
 package org.syncany.database.dao;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
 import java.util.Iterator;
@@ -47,10 +50,17 @@ import org.syncany.database.VectorClock;
  * database to a file, and several <tt>load()</tt> methods to load them from disk.
  * 
  * <p>It uses a {@link DatabaseXmlWriter} to write XML files to disk and 
- * {@link DatabaseXmlParseHandler} to parse them while reading. 
+ * {@link DatabaseXmlParseHandler} to parse them while reading. If the
+ * {@link DatabaseFormat#BINARY binary format} is selected, files are written
+ * by the {@link DatabaseBinaryWriter} instead. When loading, the format is detected
+ * from the file contents, so both formats can always be read. Binary files are read only
+ * up to their header block if only the headers are requested. Binary files are transformed
+ * by the binary writer and reader themselves, since they consist of two separately
+ * transformed segments.
  * 
  * @see DatabaseXmlParseHandler
  * @see DatabaseXmlWriter
+ * @see DatabaseBinaryWriter
  * @author Philipp C. Heckel <philipp.heckel@gmail.com>
  */
 public class DatabaseXmlSerializer {
@@ -60,14 +70,24 @@ public class DatabaseXmlSerializer {
 		FULL, HEADER_ONLY
 	}
 
+	public enum DatabaseFormat {
+		XML, BINARY
+	}
+
 	private Transformer transformer;
+	private DatabaseFormat format;
 
 	public DatabaseXmlSerializer() {
 		this(null);
 	}
 
 	public DatabaseXmlSerializer(Transformer transformer) {
+		this(transformer, DatabaseFormat.XML);
+	}
+
+	public DatabaseXmlSerializer(Transformer transformer, DatabaseFormat format) {
 		this.transformer = transformer;
+		this.format = format;
 	}
 
 	public void save(List<DatabaseVersion> databaseVersions, File destinationFile) throws IOException {
@@ -75,6 +95,23 @@ public class DatabaseXmlSerializer {
 	}
 
 	public void save(Iterator<DatabaseVersion> databaseVersions, File destinationFile) throws IOException {
+		if (format == DatabaseFormat.BINARY) {
+			saveBinary(databaseVersions, destinationFile);
+		}
+		else {
+			saveXml(databaseVersions, destinationFile);
+		}
+	}
+
+	private void saveBinary(Iterator<DatabaseVersion> databaseVersions, File destinationFile) throws IOException {
+		File bodyFile = File.createTempFile("temp-database-body-", ".tmp", destinationFile.getAbsoluteFile().getParentFile());
+
+		try (OutputStream out = new BufferedOutputStream(new FileOutputStream(destinationFile))) {
+			new DatabaseBinaryWriter(databaseVersions, out, bodyFile, transformer).write();
+		}
+	}
+
+	private void saveXml(Iterator<DatabaseVersion> databaseVersions, File destinationFile) throws IOException {
 		try {
 			PrintWriter out;
 
@@ -98,26 +135,32 @@ public class DatabaseXmlSerializer {
 	public void load(MemoryDatabase db, File databaseFile, VectorClock fromVersion, VectorClock toVersion, DatabaseReadType readType)
 			throws IOException {
 		
-		InputStream is;
-
-		if (transformer == null) {
-			is = new FileInputStream(databaseFile);
-		}
-		else {
-			is = transformer.createInputStream(new FileInputStream(databaseFile));
-		}
-
-		try {
+		try (InputStream fileInputStream = new BufferedInputStream(new FileInputStream(databaseFile))) {
 			logger.log(Level.INFO, "- Loading database ({0}) from file {1} ...", new Object[] { readType, databaseFile });
 
-			SAXParserFactory factory = SAXParserFactory.newInstance();
-			SAXParser saxParser = factory.newSAXParser();
+			if (DatabaseBinaryReader.isBinaryFormat(fileInputStream)) {
+				new DatabaseBinaryReader(db, fromVersion, toVersion, readType, transformer).read(fileInputStream);
+			}
+			else {
+				try (InputStream is = createInputStream(fileInputStream)) {
+					SAXParserFactory factory = SAXParserFactory.newInstance();
+					SAXParser saxParser = factory.newSAXParser();
 
-			saxParser.parse(is, new DatabaseXmlParseHandler(db, fromVersion, toVersion, readType));
+					saxParser.parse(is, new DatabaseXmlParseHandler(db, fromVersion, toVersion, readType));
+				}
+			}
 		}
 		catch (Exception e) {
 			throw new IOException(e);
 		}
 	}
 
+	private InputStream createInputStream(InputStream fileInputStream) throws IOException {
+		if (transformer == null) {
+			return fileInputStream;
+		}
+		else {
+			return new BufferedInputStream(transformer.createInputStream(fileInputStream));
+		}
+	}
 }
@@ -110,10 +110,7 @@ public class FileHistorySqlDao extends AbstractSqlDao {
 	public Map<FileHistoryId, PartialFileHistory> getFileHistoriesWithFileVersions(VectorClock databaseVersionVectorClock, int maxCount) {
 		try (PreparedStatement preparedStatement = getStatement("filehistory.select.all.getFileHistoriesWithFileVersionsByVectorClock.sql")) {
 			preparedStatement.setString(1, databaseVersionVectorClock.toString());
-			
-			if (maxCount > 0) {
-				preparedStatement.setMaxRows(maxCount);
-			}
+			preparedStatement.setMaxRows((maxCount > 0) ? maxCount : 0);
 
 			try (ResultSet resultSet = preparedStatement.executeQuery()) {
 				return createFileHistoriesFromResult(resultSet);
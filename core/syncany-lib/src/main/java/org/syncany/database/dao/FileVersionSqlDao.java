@@ -24,6 +24,8 @@ import java.sql.SQLException;
 import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -215,6 +217,18 @@ public class FileVersionSqlDao extends AbstractSqlDao {
 	public List<FileVersion> getFileList(String pathExpression, Date date, boolean fileHistoryId, boolean recursive, boolean deleted,
 			Set<FileType> fileTypes) {
 		
+		return getFileList(pathExpression, date, fileHistoryId, recursive, deleted, fileTypes, null, null, 0);
+	}
+
+	/**
+	 * Returns one page of the file list. Pages are ordered by path and file history identifier.
+	 * A page starts after the given path and file history identifier (or at the beginning if 
+	 * <tt>afterPath</tt> is <tt>null</tt>), and contains at most <tt>maxCount</tt> file versions
+	 * (or all remaining file versions if <tt>maxCount</tt> is zero).
+	 */
+	public List<FileVersion> getFileList(String pathExpression, Date date, boolean fileHistoryId, boolean recursive, boolean deleted,
+			Set<FileType> fileTypes, String afterPath, String afterFileHistoryId, int maxCount) {
+		
 		// Determine sensible query parameters
 		// Basic idea: If null/empty given, match them all!
 
@@ -244,6 +258,14 @@ public class FileVersionSqlDao extends AbstractSqlDao {
 					+ StringUtil.join(fileTypesStr, ", "));
 		}
 
+		// Listing a single folder: Use the directory index instead of the full file tree
+		String parentPath = getParentPath(pathExpression);
+		
+		if (!recursive && !fileHistoryId && parentPath != null) {
+			return getFileListInFolder(parentPath, pathExpression, slashCount, date, fileTypesStr, fileStatusNotEqualTo, afterPath,
+					afterFileHistoryId, maxCount);
+		}
+
 		try (PreparedStatement preparedStatement = getStatement("fileversion.select.master.getFilteredFileTree.sql")) {
 			preparedStatement.setString(1, fileStatusNotEqualTo);
 			preparedStatement.setString(2, pathExpression);
@@ -253,6 +275,45 @@ public class FileVersionSqlDao extends AbstractSqlDao {
 			preparedStatement.setArray(6, connection.createArrayOf("varchar", fileTypesStr));
 			preparedStatement.setTimestamp(7, new Timestamp(date.getTime()));
 
+			List<FileVersion> fileTree = getFileTree(preparedStatement);
+			
+			if (afterPath != null || maxCount > 0) {
+				return getFileListPage(fileTree, afterPath, afterFileHistoryId, maxCount);
+			}
+			else {
+				return fileTree;
+			}
+		}
+		catch (SQLException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Returns the files in the given parent folder (non-recursive) as of the given date,
+	 * using the <tt>fileversion_parent</tt> index. Unlike the full file tree query, the
+	 * cost of this query depends on the number of versions in the folder, not in the 
+	 * entire database. Paging is done by the database, so only the requested page is loaded.
+	 */
+	private List<FileVersion> getFileListInFolder(String parentPath, String pathExpression, int slashCount, Date date, String[] fileTypesStr,
+			String fileStatusNotEqualTo, String afterPath, String afterFileHistoryId, int maxCount) {
+		
+		afterPath = (afterPath != null) ? afterPath : "";
+		afterFileHistoryId = (afterFileHistoryId != null) ? afterFileHistoryId : "";
+		
+		try (PreparedStatement preparedStatement = getStatement("fileversion.select.master.getFilteredFileTreeInFolder.sql")) {
+			preparedStatement.setString(1, parentPath);
+			preparedStatement.setString(2, fileStatusNotEqualTo);
+			preparedStatement.setString(3, pathExpression);
+			preparedStatement.setInt(4, slashCount);
+			preparedStatement.setArray(5, connection.createArrayOf("varchar", fileTypesStr));
+			preparedStatement.setTimestamp(6, new Timestamp(date.getTime()));
+			preparedStatement.setString(7, afterPath);
+			preparedStatement.setString(8, afterPath);
+			preparedStatement.setString(9, afterFileHistoryId);
+			preparedStatement.setTimestamp(10, new Timestamp(date.getTime()));
+			preparedStatement.setMaxRows((maxCount > 0) ? maxCount : 0);
+
 			return getFileTree(preparedStatement);
 		}
 		catch (SQLException e) {
@@ -260,6 +321,54 @@ public class FileVersionSqlDao extends AbstractSqlDao {
 		}
 	}
 
+	/**
+	 * Sorts the given file list by path and file history identifier, and returns the page
+	 * starting after the given path/identifier. This is used for queries that cannot be
+	 * paged by the database.
+	 */
+	private List<FileVersion> getFileListPage(List<FileVersion> fileList, String afterPath, String afterFileHistoryId, int maxCount) {
+		Collections.sort(fileList, new Comparator<FileVersion>() {
+			@Override
+			public int compare(FileVersion fileVersion1, FileVersion fileVersion2) {
+				int pathCompare = fileVersion1.getPath().compareTo(fileVersion2.getPath());
+				return (pathCompare != 0) ? pathCompare : fileVersion1.getFileHistoryId().toString().compareTo(fileVersion2.getFileHistoryId().toString());
+			}
+		});
+
+		List<FileVersion> page = new ArrayList<FileVersion>();
+
+		for (FileVersion fileVersion : fileList) {
+			if (maxCount > 0 && page.size() >= maxCount) {
+				break;
+			}
+
+			if (afterPath == null || isAfter(fileVersion, afterPath, afterFileHistoryId)) {
+				page.add(fileVersion);
+			}
+		}
+
+		return page;
+	}
+
+	private boolean isAfter(FileVersion fileVersion, String afterPath, String afterFileHistoryId) {
+		int pathCompare = fileVersion.getPath().compareTo(afterPath);
+		String fileHistoryIdStr = fileVersion.getFileHistoryId().toString();
+
+		return pathCompare > 0 || (pathCompare == 0 && afterFileHistoryId != null && fileHistoryIdStr.compareTo(afterFileHistoryId) > 0);
+	}
+
+	/**
+	 * Returns the parent folder of the given path expression, e.g. "some/folder" for
+	 * "some/folder/file%", or an empty string for "file%". Returns <tt>null</tt> if the 
+	 * parent folder contains a wildcard and can therefore not be looked up directly.
+	 */
+	private String getParentPath(String pathExpression) {
+		int lastSlashIndex = pathExpression.lastIndexOf('/');
+		String parentPath = (lastSlashIndex >= 0) ? pathExpression.substring(0, lastSlashIndex) : "";
+
+		return (parentPath.contains("%")) ? null : parentPath;
+	}
+
 	private String[] createFileTypesArray(Set<FileType> fileTypes) {
 		String[] fileTypesStr = null;
 
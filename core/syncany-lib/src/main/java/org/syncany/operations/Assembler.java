@@ -19,10 +19,16 @@ package org.syncany.operations;
 
 import java.io.File;
 import java.io.FileOutputStream;
-import java.io.InputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.security.MessageDigest;
 import java.util.Arrays;
-import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -30,14 +36,16 @@ import org.apache.commons.io.FileUtils;
 import org.syncany.chunk.Chunker;
 import org.syncany.chunk.Deduper;
 import org.syncany.chunk.MultiChunk;
-import org.syncany.chunk.MultiChunker;
 import org.syncany.config.Config;
 import org.syncany.database.ChunkEntry.ChunkChecksum;
+import org.syncany.database.ChunkPosition;
 import org.syncany.database.FileContent;
 import org.syncany.database.FileVersion;
 import org.syncany.database.MemoryDatabase;
 import org.syncany.database.MultiChunkEntry.MultiChunkId;
 import org.syncany.database.SqlDatabase;
+import org.syncany.operations.Downloader.MultiChunkDownloads;
+import org.syncany.plugins.transfer.StorageException;
 import org.syncany.util.StringUtil;
 
 /**
@@ -48,14 +56,31 @@ import org.syncany.util.StringUtil;
  * <p>It uses the local {@link SqlDatabase} and an optional {@link MemoryDatabase}
  * to perform file checksum and chunk checksum lookups.   
  * 
+ * <p>To avoid re-opening (and re-parsing) the same multichunk for every chunk, 
+ * the assembler keeps the most recently used multichunks open. The same instance
+ * should therefore be used for all files of an operation, and {@link #close()} 
+ * must be called when the assembler is no longer needed.
+ * 
+ * <p>If {@link ChunkPosition}s are given, chunks are copied from existing local files
+ * instead of being read from multichunks. Each copied chunk is verified using its chunk
+ * checksum. If the local file has changed since, the chunk is read from its multichunk,
+ * which is downloaded on demand if {@link MultiChunkDownloads} are given.
+ * 
  * @author Philipp C. Heckel <philipp.heckel@gmail.com>
  */
 public class Assembler {
 	private static final Logger logger = Logger.getLogger(Assembler.class.getSimpleName());
+	private static final int MAX_OPEN_MULTICHUNKS = 16;
 	
 	private Config config;
 	private SqlDatabase localDatabase;
 	private MemoryDatabase memoryDatabase;
+	private Map<MultiChunkId, MultiChunk> openMultiChunks;
+	
+	private Map<ChunkChecksum, ChunkPosition> localChunkPositions;
+	private MultiChunkDownloads multiChunkDownloads;
+	private long reusedChunkBytes;
+	private long multiChunkChunkBytes;
 	
 	public Assembler(Config config, SqlDatabase localDatabase) {
 		this(config, localDatabase, null);
@@ -65,6 +90,42 @@ public class Assembler {
 		this.config = config;
 		this.localDatabase = localDatabase;
 		this.memoryDatabase = memoryDatabase;
+		this.openMultiChunks = new OpenMultiChunkCache();
+		
+		this.localChunkPositions = new HashMap<ChunkChecksum, ChunkPosition>();
+		this.multiChunkDownloads = null;
+		this.reusedChunkBytes = 0;
+		this.multiChunkChunkBytes = 0;
+	}
+
+	/**
+	 * Sets the positions of chunks in local files. These chunks are copied from
+	 * the local files (if they are unchanged) instead of being read from multichunks.
+	 */
+	public void setLocalChunkPositions(Map<ChunkChecksum, ChunkPosition> localChunkPositions) {
+		this.localChunkPositions = localChunkPositions;
+	}
+
+	/**
+	 * Sets the multichunk downloads to wait for (or to download missing multichunks 
+	 * on demand) before a multichunk is opened.
+	 */
+	public void setMultiChunkDownloads(MultiChunkDownloads multiChunkDownloads) {
+		this.multiChunkDownloads = multiChunkDownloads;
+	}
+
+	/**
+	 * Returns the number of bytes copied from chunks in existing local files.
+	 */
+	public long getReusedChunkBytes() {
+		return reusedChunkBytes;
+	}
+
+	/**
+	 * Returns the number of bytes read from chunks in multichunks.
+	 */
+	public long getMultiChunkChunkBytes() {
+		return multiChunkChunkBytes;
 	}
 
 	/**
@@ -94,41 +155,55 @@ public class Assembler {
 				
 		// Create non-empty file
 		Chunker chunker = config.getChunker();
-		MultiChunker multiChunker = config.getMultiChunker();
 		
-		FileOutputStream reconstructedFileOutputStream = new FileOutputStream(reconstructedFileInCache);		
 		MessageDigest reconstructedFileChecksum = MessageDigest.getInstance(chunker.getChecksumAlgorithm());
+		MessageDigest localChunkChecksum = MessageDigest.getInstance(chunker.getChecksumAlgorithm());
 		
-		if (fileContent != null) { // File can be empty!
-			Collection<ChunkChecksum> fileChunks = fileContent.getChunks();
+		try (FileOutputStream reconstructedFileOutputStream = new FileOutputStream(reconstructedFileInCache)) {
+			FileChannel reconstructedFileChannel = reconstructedFileOutputStream.getChannel();
+
+			List<ChunkChecksum> fileChunks = fileContent.getChunks();
+			Map<ChunkChecksum, MultiChunkId> multiChunkIdsForChunks = localDatabase.getMultiChunkIdsByChecksums(fileChunks);
 
 			for (ChunkChecksum chunkChecksum : fileChunks) {
-				MultiChunkId multiChunkIdForChunk = localDatabase.getMultiChunkId(chunkChecksum);
+				// Copy chunk from local file, if possible
+				byte[] localChunk = readLocalChunk(localChunkPositions.get(chunkChecksum), localChunkChecksum);
+				
+				if (localChunk != null) {
+					reconstructedFileChecksum.update(localChunk);
+					reconstructedFileOutputStream.write(localChunk);
+					
+					reusedChunkBytes += localChunk.length;
+					continue;
+				}
+				
+				// Otherwise read it from the multichunk
+				MultiChunkId multiChunkIdForChunk = multiChunkIdsForChunks.get(chunkChecksum);
 
 				if (multiChunkIdForChunk == null && memoryDatabase != null) {
 					multiChunkIdForChunk = memoryDatabase.getMultiChunkIdForChunk(chunkChecksum);
 				}
 
-				File decryptedMultiChunkFile = config.getCache().getDecryptedMultiChunkFile(multiChunkIdForChunk);
-
-				MultiChunk multiChunk = multiChunker.createMultiChunk(decryptedMultiChunkFile);
-				InputStream chunkInputStream = multiChunk.getChunkInputStream(chunkChecksum.getBytes());
+				if (multiChunkIdForChunk == null) {
+					throw new Exception("Cannot determine multichunk for chunk " + chunkChecksum);
+				}
 
-				byte[] buffer = new byte[4096];
-				int read = 0;
+				MultiChunk multiChunk = getMultiChunk(multiChunkIdForChunk);
+				ByteBuffer chunkBuffer = multiChunk.getChunkBuffer(chunkChecksum.getBytes());
 
-				while (-1 != (read = chunkInputStream.read(buffer))) {
-					reconstructedFileChecksum.update(buffer, 0, read);
-					reconstructedFileOutputStream.write(buffer, 0, read);
+				if (chunkBuffer == null) {
+					throw new Exception("Cannot find chunk " + chunkChecksum + " in multichunk " + multiChunkIdForChunk);
 				}
+				
+				multiChunkChunkBytes += chunkBuffer.remaining();
+				reconstructedFileChecksum.update(chunkBuffer.duplicate());
 
-				chunkInputStream.close();
-				multiChunk.close();
+				while (chunkBuffer.hasRemaining()) {
+					reconstructedFileChannel.write(chunkBuffer);
+				}
 			}
 		}
 
-		reconstructedFileOutputStream.close();
-
 		// Validate checksum
 		byte[] reconstructedFileExpectedChecksum = fileContent.getChecksum().getBytes();
 		byte[] reconstructedFileActualChecksum = reconstructedFileChecksum.digest();
@@ -139,5 +214,113 @@ public class Assembler {
 		}
 		
 		return reconstructedFileInCache;
-	}	
+	}
+
+	/**
+	 * Closes all multichunks that are kept open by this assembler. The assembler
+	 * can still be used afterwards; multichunks are re-opened when needed.
+	 */
+	public void close() {
+		for (MultiChunk multiChunk : openMultiChunks.values()) {
+			closeMultiChunk(multiChunk);
+		}
+
+		openMultiChunks.clear();
+	}
+
+	/**
+	 * Closes the given multichunk if it is kept open by this assembler, e.g.
+	 * before the decrypted multichunk is deleted from the local cache.
+	 */
+	public void closeMultiChunk(MultiChunkId multiChunkId) {
+		MultiChunk multiChunk = openMultiChunks.remove(multiChunkId);
+
+		if (multiChunk != null) {
+			closeMultiChunk(multiChunk);
+		}
+	}
+
+	/**
+	 * Reads the chunk at the given position from the local file and verifies its checksum.
+	 * Returns <tt>null</tt> if there is no position, or if the local file does not contain
+	 * the chunk (anymore).
+	 */
+	private byte[] readLocalChunk(ChunkPosition chunkPosition, MessageDigest chunkChecksum) {
+		if (chunkPosition == null) {
+			return null;
+		}
+		
+		File localFile = new File(config.getLocalDir(), chunkPosition.getPath());
+		
+		if (!localFile.isFile() || localFile.length() != chunkPosition.getFileSize()) {
+			logger.log(Level.FINE, "     - Local file " + chunkPosition.getPath() + " has changed; cannot use chunk " + chunkPosition.getChecksum());
+			return null;
+		}
+		
+		byte[] chunkData = new byte[chunkPosition.getSize()];
+		
+		try (RandomAccessFile localFileAccess = new RandomAccessFile(localFile, "r")) {
+			localFileAccess.seek(chunkPosition.getOffset());
+			localFileAccess.readFully(chunkData);
+		}
+		catch (IOException e) {
+			logger.log(Level.FINE, "     - Cannot read chunk " + chunkPosition.getChecksum() + " from local file " + chunkPosition.getPath(), e);
+			return null;
+		}
+		
+		if (!Arrays.equals(chunkChecksum.digest(chunkData), chunkPosition.getChecksum().getBytes())) {
+			logger.log(Level.FINE, "     - Chunk " + chunkPosition.getChecksum() + " in local file " + chunkPosition.getPath() + " does not match checksum");
+			return null;
+		}
+		
+		return chunkData;
+	}
+
+	private MultiChunk getMultiChunk(MultiChunkId multiChunkId) throws IOException, StorageException {
+		MultiChunk multiChunk = openMultiChunks.get(multiChunkId);
+
+		if (multiChunk == null) {
+			if (multiChunkDownloads != null) {
+				multiChunkDownloads.await(multiChunkId);
+			}
+			
+			File decryptedMultiChunkFile = config.getCache().getDecryptedMultiChunkFile(multiChunkId);
+
+			multiChunk = config.getMultiChunker().createMultiChunk(decryptedMultiChunkFile);
+			openMultiChunks.put(multiChunkId, multiChunk);
+		}
+
+		return multiChunk;
+	}
+
+	private void closeMultiChunk(MultiChunk multiChunk) {
+		try {
+			multiChunk.close();
+		}
+		catch (IOException e) {
+			logger.log(Level.WARNING, "Cannot close multichunk.", e);
+		}
+	}
+
+	/**
+	 * Least recently used cache of open multichunks. Multichunks are closed
+	 * when they are evicted from the cache.
+	 */
+	private class OpenMultiChunkCache extends LinkedHashMap<MultiChunkId, MultiChunk> {
+		private static final long serialVersionUID = 1L;
+
+		public OpenMultiChunkCache() {
+			super(MAX_OPEN_MULTICHUNKS, 0.75f, true);
+		}
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<MultiChunkId, MultiChunk> eldest) {
+			if (size() > MAX_OPEN_MULTICHUNKS) {
+				closeMultiChunk(eldest.getValue());
+				return true;
+			}
+
+			return false;
+		}
+	}
 }
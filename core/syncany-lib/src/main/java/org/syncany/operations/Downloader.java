@@ -23,7 +23,22 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -34,25 +49,57 @@ import org.syncany.database.MultiChunkEntry.MultiChunkId;
 import org.syncany.operations.daemon.messages.DownDownloadFileSyncExternalEvent;
 import org.syncany.plugins.transfer.StorageException;
 import org.syncany.plugins.transfer.TransferManager;
+import org.syncany.plugins.transfer.TransferManagerPool;
 import org.syncany.plugins.transfer.files.MultichunkRemoteFile;
 
 /**
  * The downloader uses a {@link TransferManager} to download a given set of multichunks,
  * decrypt them and store them in the local cache folder. 
  * 
+ * <p>If the number of download threads is greater than one, multichunks are downloaded and
+ * decrypted by a bounded pool of worker threads. Since transfer managers are not necessarily 
+ * thread-safe, each additional worker uses its own transfer manager (and thereby its own 
+ * connection to the remote storage).
+ * 
+ * <p>Using {@link #startDownloadAndDecryptMultiChunks(Collection) startDownloadAndDecryptMultiChunks()}, 
+ * multichunks are downloaded in the background (in the given order), and the caller can use the 
+ * first multichunks while the others are still being downloaded. Only a limited window of
+ * multichunks is downloaded ahead; the next one is started when the caller
+ * {@link MultiChunkDownloads#evict(MultiChunkId) evicts} one it does not need anymore.
+ * 
  * @author Philipp C. Heckel <philipp.heckel@gmail.com>
  */
 public class Downloader {
 	private static final Logger logger = Logger.getLogger(Downloader.class.getSimpleName());
+	private static final int DOWNLOAD_WINDOW_PER_THREAD = 2;
 
 	private Config config;
 	private TransferManager transferManager;
 	private LocalEventBus eventBus;
+	private int downloadThreads;
+
+	private int multiChunkNumber;
+	private int multiChunkCount;
+	private AtomicLong downloadedBytes;
 
 	public Downloader(Config config, TransferManager transferManager) {
+		this(config, transferManager, 1);
+	}
+
+	public Downloader(Config config, TransferManager transferManager, int downloadThreads) {
 		this.config = config;
 		this.transferManager = transferManager;
 		this.eventBus = LocalEventBus.getInstance();
+		this.downloadThreads = Math.max(1, downloadThreads);
+		this.downloadedBytes = new AtomicLong(0);
+	}
+
+	/**
+	 * Returns the total size of the (encrypted) multichunks downloaded by this downloader.
+	 * Multichunks that already existed in the local cache are not counted.
+	 */
+	public long getDownloadedBytes() {
+		return downloadedBytes.get();
 	}
 
 	/** 
@@ -62,56 +109,340 @@ public class Downloader {
 	public void downloadAndDecryptMultiChunks(Set<MultiChunkId> unknownMultiChunkIds) throws StorageException, IOException {
 		logger.log(Level.INFO, "Downloading and extracting multichunks ...");
 
-		int multiChunkNumber = 0;
+		multiChunkNumber = 0;
+		multiChunkCount = unknownMultiChunkIds.size();
+
+		if (downloadThreads > 1 && unknownMultiChunkIds.size() > 1) {
+			downloadAndDecryptMultiChunksParallel(unknownMultiChunkIds);
+		}
+		else {
+			for (MultiChunkId multiChunkId : unknownMultiChunkIds) {
+				downloadAndDecryptMultiChunk(transferManager, multiChunkId);
+			}
+		}
+
+		transferManager.disconnect();
+	}
+
+	private void downloadAndDecryptMultiChunksParallel(Set<MultiChunkId> unknownMultiChunkIds) throws StorageException, IOException {
+		MultiChunkDownloads multiChunkDownloads = startDownloads(unknownMultiChunkIds, false);
+
+		try {
+			multiChunkDownloads.awaitAll();
+		}
+		finally {
+			multiChunkDownloads.close(false);
+		}
+	}
+
+	/**
+	 * Starts downloading and decrypting the given multichunks to the local cache folder in the
+	 * background, in the order of the given collection, and returns immediately. The caller
+	 * can wait for individual multichunks using {@link MultiChunkDownloads#await(MultiChunkId)},
+	 * and must call {@link MultiChunkDownloads#close()} when it is done.
+	 * 
+	 * <p>At most two multichunks per download thread are downloaded and not yet evicted at
+	 * a time, unless the caller awaits a multichunk beyond that window. The caller must
+	 * therefore {@link MultiChunkDownloads#evict(MultiChunkId) evict} multichunks it does
+	 * not need anymore, so that the remaining ones are downloaded.
+	 */
+	public MultiChunkDownloads startDownloadAndDecryptMultiChunks(Collection<MultiChunkId> orderedMultiChunkIds) {
+		logger.log(Level.INFO, "Downloading and extracting multichunks in the background ...");
+
+		multiChunkNumber = 0;
+		multiChunkCount = orderedMultiChunkIds.size();
+
+		return startDownloads(orderedMultiChunkIds, true);
+	}
+
+	private MultiChunkDownloads startDownloads(Collection<MultiChunkId> orderedMultiChunkIds, boolean limitWindow) {
+		int threadCount = Math.max(1, Math.min(downloadThreads, orderedMultiChunkIds.size()));
+		int windowSize = (limitWindow) ? Math.max(1, downloadThreads) * DOWNLOAD_WINDOW_PER_THREAD : Integer.MAX_VALUE;
+
+		logger.log(Level.INFO, "Downloading " + orderedMultiChunkIds.size() + " multichunk(s) using " + threadCount + " thread(s) ...");
+
+		return new MultiChunkDownloads(orderedMultiChunkIds, threadCount, windowSize);
+	}
+
+	private void downloadAndDecryptMultiChunk(TransferManager transferManager, MultiChunkId multiChunkId) throws StorageException, IOException {
+		File localEncryptedMultiChunkFile = config.getCache().getEncryptedMultiChunkFile(multiChunkId);
+		File localDecryptedMultiChunkFile = config.getCache().getDecryptedMultiChunkFile(multiChunkId);
+		MultichunkRemoteFile remoteMultiChunkFile = new MultichunkRemoteFile(multiChunkId);
+
+		if (localDecryptedMultiChunkFile.exists()) {
+			nextMultiChunkNumber(false);
+			logger.log(Level.INFO, "  + Decrypted multichunk exists locally " + multiChunkId + ". No need to download it!");
+		}
+		else {
+			nextMultiChunkNumber(true);
 
-		for (MultiChunkId multiChunkId : unknownMultiChunkIds) {
-			File localEncryptedMultiChunkFile = config.getCache().getEncryptedMultiChunkFile(multiChunkId);
-			File localDecryptedMultiChunkFile = config.getCache().getDecryptedMultiChunkFile(multiChunkId);
-			MultichunkRemoteFile remoteMultiChunkFile = new MultichunkRemoteFile(multiChunkId);
+			logger.log(Level.INFO, "  + Downloading multichunk " + multiChunkId + " ...");
+			transferManager.download(remoteMultiChunkFile, localEncryptedMultiChunkFile);
+			downloadedBytes.addAndGet(localEncryptedMultiChunkFile.length());
 
-			multiChunkNumber++;
+			try {
+				logger.log(Level.INFO, "  + Decrypting multichunk " + multiChunkId + " ...");
+				InputStream multiChunkInputStream = config.getTransformer().createInputStream(new FileInputStream(localEncryptedMultiChunkFile));
+				OutputStream decryptedMultiChunkOutputStream = new FileOutputStream(localDecryptedMultiChunkFile);
+
+				IOUtils.copy(multiChunkInputStream, decryptedMultiChunkOutputStream);
+
+				decryptedMultiChunkOutputStream.close();
+				multiChunkInputStream.close();
 
-			if (localDecryptedMultiChunkFile.exists()) {
-				logger.log(Level.INFO, "  + Decrypted multichunk exists locally " + multiChunkId + ". No need to download it!");
 			}
-			else {
-				eventBus.post(new DownDownloadFileSyncExternalEvent(config.getLocalDir().getAbsolutePath(), "multichunk", multiChunkNumber,
-						unknownMultiChunkIds.size()));
+			catch (IOException e) {
+				// Security: Deleting the multichunk if the decryption/extraction failed is important!
+				//           If it is not deleted, the partially decrypted multichunk will reside in the
+				//           local cache and the next 'down' will try to use it. If this is the only
+				//           multichunk that has been tampered with, other changes might be applied to the 
+				//           file system! See https://github.com/syncany/syncany/issues/59#issuecomment-55154793
 
-				logger.log(Level.INFO, "  + Downloading multichunk " + multiChunkId + " ...");
-				transferManager.download(remoteMultiChunkFile, localEncryptedMultiChunkFile);
+				logger.log(Level.FINE, "    -> FAILED: Decryption/extraction of multichunk failed, deleting " + multiChunkId + " ...");
+				localDecryptedMultiChunkFile.delete();
 
-				try {
-					logger.log(Level.INFO, "  + Decrypting multichunk " + multiChunkId + " ...");
-					InputStream multiChunkInputStream = config.getTransformer().createInputStream(new FileInputStream(localEncryptedMultiChunkFile));
-					OutputStream decryptedMultiChunkOutputStream = new FileOutputStream(localDecryptedMultiChunkFile);
+				throw new IOException("Decryption/extraction of multichunk " + multiChunkId
+						+ " failed. The multichunk might have been tampered with!", e);
+			}
+			finally {
+				logger.log(Level.FINE, "  + Locally deleting multichunk " + multiChunkId + " ...");
+				localEncryptedMultiChunkFile.delete();
+			}
+		}
+	}
+
+	/**
+	 * Increases the multichunk number and (optionally) posts the download event. Synchronized,
+	 * so that the events arrive in monotonic order, even if multiple threads are downloading.
+	 */
+	private synchronized void nextMultiChunkNumber(boolean postEvent) {
+		multiChunkNumber++;
+
+		if (postEvent) {
+			eventBus.post(new DownDownloadFileSyncExternalEvent(config.getLocalDir().getAbsolutePath(), "multichunk", multiChunkNumber,
+					multiChunkCount));
+		}
+	}
+
+	private synchronized void increaseMultiChunkCount() {
+		multiChunkCount++;
+	}
 
-					IOUtils.copy(multiChunkInputStream, decryptedMultiChunkOutputStream);
+	private IOException rethrowDownloadException(Throwable cause) throws StorageException, IOException {
+		if (cause instanceof StorageException) {
+			throw (StorageException) cause;
+		}
+		else if (cause instanceof IOException) {
+			throw (IOException) cause;
+		}
+		else if (cause instanceof RuntimeException) {
+			throw (RuntimeException) cause;
+		}
+		else {
+			throw new IOException("Unable to download multichunks.", cause);
+		}
+	}
 
-					decryptedMultiChunkOutputStream.close();
-					multiChunkInputStream.close();
+	private void awaitTermination(ExecutorService executor) {
+		try {
+			while (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+				logger.log(Level.INFO, "Waiting for running multichunk downloads to finish ...");
+			}
+		}
+		catch (InterruptedException e) {
+			logger.log(Level.WARNING, "Interrupted while waiting for multichunk downloads to finish.", e);
+		}
+	}
 
+	/**
+	 * Handle for multichunks that are downloaded and decrypted in the background
+	 * by a bounded pool of worker threads. If a download fails, no further downloads
+	 * are started, and all waiting methods throw the original exception.
+	 * 
+	 * <p>Downloads are only submitted while fewer than <tt>windowSize</tt> multichunks are
+	 * submitted and not yet {@link #evict(MultiChunkId) evicted}; the others are queued.
+	 * The methods of this class must be called by one thread.
+	 */
+	public class MultiChunkDownloads {
+		private TransferManagerPool transferManagerPool;
+		private ExecutorService executor;
+		private AtomicReference<Exception> failure;
+		private Map<MultiChunkId, Future<Void>> downloadFutures;
+		private Set<MultiChunkId> queuedMultiChunkIds;
+		private Set<MultiChunkId> onDemandMultiChunkIds;
+		private int windowSize;
+
+		private MultiChunkDownloads(Collection<MultiChunkId> orderedMultiChunkIds, int threadCount, int windowSize) {
+			this.transferManagerPool = new TransferManagerPool(config, transferManager, threadCount);
+			this.executor = Executors.newFixedThreadPool(threadCount);
+			this.failure = new AtomicReference<Exception>();
+			this.downloadFutures = new LinkedHashMap<MultiChunkId, Future<Void>>();
+			this.queuedMultiChunkIds = new LinkedHashSet<MultiChunkId>(orderedMultiChunkIds);
+			this.onDemandMultiChunkIds = new LinkedHashSet<MultiChunkId>();
+			this.windowSize = windowSize;
+
+			submitQueuedDownloads();
+		}
+
+		/**
+		 * Waits until the given multichunk has been downloaded and decrypted to the local
+		 * cache folder. Queued multichunks outside of the download window are submitted right
+		 * away. Multichunks that were not passed to the downloader (or that have been evicted
+		 * since) are downloaded on demand, after the ones that are already submitted.
+		 */
+		public void await(MultiChunkId multiChunkId) throws StorageException, IOException {
+			Future<Void> downloadFuture = downloadFutures.get(multiChunkId);
+
+			if (downloadFuture == null) {
+				if (queuedMultiChunkIds.remove(multiChunkId)) {
+					logger.log(Level.FINE, "  + Multichunk " + multiChunkId + " is needed before it entered the download window; downloading now ...");
 				}
-				catch (IOException e) {
-					// Security: Deleting the multichunk if the decryption/extraction failed is important!
-					//           If it is not deleted, the partially decrypted multichunk will reside in the
-					//           local cache and the next 'down' will try to use it. If this is the only
-					//           multichunk that has been tampered with, other changes might be applied to the 
-					//           file system! See https://github.com/syncany/syncany/issues/59#issuecomment-55154793
-
-					logger.log(Level.FINE, "    -> FAILED: Decryption/extraction of multichunk failed, deleting " + multiChunkId + " ...");
-					localDecryptedMultiChunkFile.delete();
-
-					throw new IOException("Decryption/extraction of multichunk " + multiChunkId
-							+ " failed. The multichunk might have been tampered with!", e);
+				else {
+					logger.log(Level.INFO, "  + Multichunk " + multiChunkId + " was not scheduled for download; downloading on demand ...");
+
+					increaseMultiChunkCount();
+					onDemandMultiChunkIds.add(multiChunkId);
 				}
-				finally {
-					logger.log(Level.FINE, "  + Locally deleting multichunk " + multiChunkId + " ...");
-					localEncryptedMultiChunkFile.delete();
+
+				downloadFuture = submitDownload(multiChunkId);
+			}
+
+			await(downloadFuture);
+		}
+
+		/**
+		 * Returns the multichunks that were downloaded on demand (see {@link #await(MultiChunkId)}),
+		 * and that have not been evicted yet.
+		 */
+		public Set<MultiChunkId> getOnDemandMultiChunkIds() {
+			return new LinkedHashSet<MultiChunkId>(onDemandMultiChunkIds);
+		}
+
+		/**
+		 * Deletes the given (already awaited) multichunk from the local cache folder. If the
+		 * multichunk is needed again afterwards, {@link #await(MultiChunkId)} downloads it again.
+		 */
+		public void evict(MultiChunkId multiChunkId) {
+			downloadFutures.remove(multiChunkId);
+			onDemandMultiChunkIds.remove(multiChunkId);
+
+			File decryptedMultiChunkFile = config.getCache().getDecryptedMultiChunkFile(multiChunkId);
+
+			logger.log(Level.FINE, "   - Multichunk " + multiChunkId + " not needed anymore, deleting " + decryptedMultiChunkFile + " ...");
+			decryptedMultiChunkFile.delete();
+
+			// Frees a slot in the download window
+			submitQueuedDownloads();
+		}
+
+		/**
+		 * Waits until all multichunks have been downloaded and decrypted. Queued
+		 * multichunks are submitted, regardless of the download window.
+		 */
+		public void awaitAll() throws StorageException, IOException {
+			for (MultiChunkId multiChunkId : queuedMultiChunkIds) {
+				submitDownload(multiChunkId);
+			}
+
+			queuedMultiChunkIds.clear();
+
+			for (Future<Void> downloadFuture : downloadFutures.values()) {
+				await(downloadFuture);
+			}
+		}
+
+		/**
+		 * Cancels all downloads that have not been started yet, waits for running downloads to
+		 * finish and disconnects all transfer managers.
+		 */
+		public void close() {
+			close(true);
+		}
+
+		private void close(boolean disconnectTransferManager) {
+			// Don't start any new downloads, in case the caller is not interested anymore
+			failure.compareAndSet(null, new IOException("Multichunk downloads have been closed."));
+			executor.shutdown();
+
+			// Wait for running downloads to finish; they must delete partial files on failure
+			awaitTermination(executor);
+			transferManagerPool.disconnect();
+
+			if (disconnectTransferManager) {
+				try {
+					transferManager.disconnect();
+				}
+				catch (StorageException e) {
+					logger.log(Level.FINE, "Unable to disconnect transfer manager.", e);
 				}
 			}
 		}
 
-		transferManager.disconnect();
+		private void submitQueuedDownloads() {
+			Iterator<MultiChunkId> queuedMultiChunkIdIterator = queuedMultiChunkIds.iterator();
+
+			while (downloadFutures.size() < windowSize && queuedMultiChunkIdIterator.hasNext()) {
+				MultiChunkId multiChunkId = queuedMultiChunkIdIterator.next();
+				queuedMultiChunkIdIterator.remove();
+
+				submitDownload(multiChunkId);
+			}
+		}
+
+		private Future<Void> submitDownload(MultiChunkId multiChunkId) {
+			Future<Void> downloadFuture = executor.submit(new DownloadMultiChunkTask(multiChunkId, transferManagerPool, failure));
+			downloadFutures.put(multiChunkId, downloadFuture);
+
+			return downloadFuture;
+		}
+
+		private void await(Future<Void> downloadFuture) throws StorageException, IOException {
+			try {
+				downloadFuture.get();
+			}
+			catch (ExecutionException e) {
+				// Tasks skipped after a failure report the original failure
+				Exception originalFailure = failure.get();
+				throw rethrowDownloadException(originalFailure != null ? originalFailure : e.getCause());
+			}
+			catch (InterruptedException e) {
+				failure.compareAndSet(null, e);
+				throw new IOException("Interrupted while downloading multichunks.", e);
+			}
+		}
+	}
+
+	private class DownloadMultiChunkTask implements Callable<Void> {
+		private MultiChunkId multiChunkId;
+		private TransferManagerPool transferManagerPool;
+		private AtomicReference<Exception> failure;
+
+		public DownloadMultiChunkTask(MultiChunkId multiChunkId, TransferManagerPool transferManagerPool, AtomicReference<Exception> failure) {
+			this.multiChunkId = multiChunkId;
+			this.transferManagerPool = transferManagerPool;
+			this.failure = failure;
+		}
+
+		@Override
+		public Void call() throws Exception {
+			// Don't start any new downloads if another one failed
+			if (failure.get() != null) {
+				throw new IOException("Download of multichunk " + multiChunkId + " cancelled.", failure.get());
+			}
+
+			TransferManager workerTransferManager = transferManagerPool.acquire();
+
+			try {
+				downloadAndDecryptMultiChunk(workerTransferManager, multiChunkId);
+				return null;
+			}
+			catch (Exception e) {
+				failure.compareAndSet(null, e);
+				throw e;
+			}
+			finally {
+				transferManagerPool.release(workerTransferManager);
+			}
+		}
 	}
 }
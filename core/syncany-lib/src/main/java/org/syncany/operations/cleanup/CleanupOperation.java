@@ -35,6 +35,7 @@ import org.syncany.chunk.Chunk;
 import org.syncany.chunk.MultiChunk;
 import org.syncany.config.Config;
 import org.syncany.database.DatabaseVersion;
+import org.syncany.database.DatabaseVersionHeader;
 import org.syncany.database.FileContent;
 import org.syncany.database.FileVersion;
 import org.syncany.database.MultiChunkEntry;
@@ -50,6 +51,7 @@ import org.syncany.operations.cleanup.CleanupOperationResult.CleanupResultCode;
 import org.syncany.operations.daemon.messages.CleanupEndSyncExternalEvent;
 import org.syncany.operations.daemon.messages.CleanupStartCleaningSyncExternalEvent;
 import org.syncany.operations.daemon.messages.CleanupStartSyncExternalEvent;
+import org.syncany.operations.down.DatabaseBranch;
 import org.syncany.operations.down.DownOperation;
 import org.syncany.operations.ls_remote.LsRemoteOperation;
 import org.syncany.operations.ls_remote.LsRemoteOperationResult;
@@ -78,6 +80,12 @@ import org.syncany.plugins.transfer.files.RemoteFile;
  *       from the remote storage.</li>
  * </ul>
  *
+ * <p>When merging, the oldest database file of each client is treated as the client's
+ * <i>snapshot</i>. If no file versions were removed, the snapshot is kept and only the
+ * database files after it are merged into a single delta file. A new snapshot with all
+ * database versions of a client is only written if versions were removed, if the snapshot
+ * is not known, or if the delta has grown too large compared to the snapshot.
+ *
  * <p>High level strategy:
  * <ul>
  *    <ol>Lock repo and start thread that renews the lock every X seconds</ol>
@@ -421,23 +429,39 @@ public class CleanupOperation extends AbstractTransferOperation {
 		logger.log(Level.INFO, "- Merge remote files ...");
 
 		List<DatabaseRemoteFile> allToDeleteDatabaseFiles = new ArrayList<DatabaseRemoteFile>();
+		List<DatabaseRemoteFile> allKeptSnapshotDatabaseFiles = new ArrayList<DatabaseRemoteFile>();
 		Map<File, DatabaseRemoteFile> allMergedDatabaseFiles = new TreeMap<File, DatabaseRemoteFile>();
+		
+		DatabaseBranch localBranch = localDatabase.getLocalDatabaseBranch();
 
 		for (String client : allDatabaseFilesMap.keySet()) {
 			List<DatabaseRemoteFile> clientDatabaseFiles = allDatabaseFilesMap.get(client);
 			Collections.sort(clientDatabaseFiles);
 			logger.log(Level.INFO, "Databases: " + clientDatabaseFiles);
 
-			// 1. Determine files to delete remotely
-			List<DatabaseRemoteFile> toDeleteDatabaseFiles = new ArrayList<DatabaseRemoteFile>(clientDatabaseFiles);
-			allToDeleteDatabaseFiles.addAll(toDeleteDatabaseFiles);
+			// 1. Determine if the snapshot can be kept
+			DatabaseRemoteFile snapshotDatabaseFile = clientDatabaseFiles.get(0);
+			Long snapshotClientVersion = determineKeptSnapshotClientVersion(snapshotDatabaseFile, localBranch);
+			
+			if (snapshotClientVersion != null) {
+				logger.log(Level.INFO, "   + Keeping snapshot " + snapshotDatabaseFile + " (up to client version " + snapshotClientVersion + ")");
+				allKeptSnapshotDatabaseFiles.add(snapshotDatabaseFile);
+				
+				if (clientDatabaseFiles.size() == 1) {
+					continue; // Nothing to merge
+				}
+			}
 
-			// 2. Write new database file and save it in allMergedDatabaseFiles
-			writeMergeFile(client, allMergedDatabaseFiles);
+			// 2. Determine files to delete remotely
+			int firstToDeleteIndex = (snapshotClientVersion != null) ? 1 : 0;
+			List<DatabaseRemoteFile> toDeleteDatabaseFiles = new ArrayList<DatabaseRemoteFile>(clientDatabaseFiles.subList(firstToDeleteIndex, clientDatabaseFiles.size()));
+			allToDeleteDatabaseFiles.addAll(toDeleteDatabaseFiles);
 
+			// 3. Write new database file and save it in allMergedDatabaseFiles
+			writeMergeFile(client, snapshotClientVersion, localBranch, allMergedDatabaseFiles);
 		}
 
-		rememberDatabases(allMergedDatabaseFiles);
+		rememberDatabases(allMergedDatabaseFiles, allKeptSnapshotDatabaseFiles);
 
 		// 3. Prepare transaction
 
@@ -487,16 +511,65 @@ public class CleanupOperation extends AbstractTransferOperation {
 		return removedOldVersions || tooManyDatabaseFiles || options.isForce();
 	}
 
+	/**
+	 * This method determines whether the given oldest database file of a client (the snapshot) can be kept
+	 * when merging. This is the case if no file versions have been removed, if the snapshot is known locally,
+	 * and if the number of database versions after the snapshot does not exceed the configured ratio.
+	 *
+	 * @return the last vector clock value of the client in the snapshot if it can be kept, <tt>null</tt> otherwise
+	 */
+	private Long determineKeptSnapshotClientVersion(DatabaseRemoteFile snapshotDatabaseFile, DatabaseBranch localBranch) {
+		if (result.getRemovedOldVersionsCount() > 0) {
+			return null;
+		}
+		
+		String clientName = snapshotDatabaseFile.getClientName();
+		Long snapshotClientVersion = localDatabase.getSnapshotClientVersion(snapshotDatabaseFile);
+
+		if (snapshotClientVersion == null) {
+			return null;
+		}
+
+		int snapshotVersionCount = 0;
+		int deltaVersionCount = 0;
+
+		for (DatabaseVersionHeader databaseVersionHeader : localBranch.getAll()) {
+			if (clientName.equals(databaseVersionHeader.getClient())) {
+				Long clientVersion = databaseVersionHeader.getVectorClock().getClock(clientName);
+
+				if (clientVersion != null && clientVersion <= snapshotClientVersion) {
+					snapshotVersionCount++;
+				}
+				else {
+					deltaVersionCount++;
+				}
+			}
+		}
+
+		if (deltaVersionCount > snapshotVersionCount * options.getMaxDeltaSnapshotRatio()) {
+			logger.log(Level.INFO, "   + Snapshot " + snapshotDatabaseFile + " has " + snapshotVersionCount + " version(s), but " + deltaVersionCount
+					+ " version(s) after it. Writing new snapshot.");
+			return null;
+		}
+
+		return snapshotClientVersion;
+	}
+
 	/**
 	 * This method writes the file with merged databases for a single client and adds it to a Map containing all merged
-	 * database files. This is done by querying the local database for all {@link DatabaseVersion}s by this client and
+	 * database files. This is done by querying the local database for the {@link DatabaseVersion}s by this client and
 	 * serializing them.
 	 *
+	 * <p>If no snapshot client version is given, all database versions are written and the new file is remembered
+	 * as the client's snapshot. Otherwise, only the database versions after the snapshot are written (delta).
+	 *
 	 * @param clientName for which we want to write the merged dataabse file.
+	 * @param snapshotClientVersion last vector clock value of the client in the kept snapshot, or <tt>null</tt>
+	 * @param localBranch local database branch, used to determine the last vector clock value in a new snapshot
 	 * @param allMergedDatabaseFiles Map where we add the merged file once it is written.
 	 */
-	private void writeMergeFile(String clientName, Map<File, DatabaseRemoteFile> allMergedDatabaseFiles)
-			throws StorageException, IOException {
+	private void writeMergeFile(String clientName, Long snapshotClientVersion, DatabaseBranch localBranch,
+			Map<File, DatabaseRemoteFile> allMergedDatabaseFiles) throws StorageException, IOException {
 
 		// Increment the version by 1, to signal cleanup has occurred
 
@@ -504,24 +577,62 @@ public class CleanupOperation extends AbstractTransferOperation {
 		DatabaseRemoteFile newRemoteMergeDatabaseFile = new DatabaseRemoteFile(clientName, lastClientVersion + 1);
 
 		File newLocalMergeDatabaseFile = config.getCache().getDatabaseFile(newRemoteMergeDatabaseFile.getName());
+		Iterator<DatabaseVersion> lastNDatabaseVersions;
+
+		if (snapshotClientVersion == null) {
+			logger.log(Level.INFO, "   + Writing new merge file (all files up to {0}) to {1} ...", new Object[] { lastClientVersion,
+					newLocalMergeDatabaseFile });
 
-		logger.log(Level.INFO, "   + Writing new merge file (all files up to {0}) to {1} ...", new Object[] { lastClientVersion,
-				newLocalMergeDatabaseFile });
+			lastNDatabaseVersions = localDatabase.getDatabaseVersionsTo(clientName, lastClientVersion);
+			long maxClientVersion = getMaxClientVersion(clientName, lastClientVersion, localBranch);
 
-		Iterator<DatabaseVersion> lastNDatabaseVersions = localDatabase.getDatabaseVersionsTo(clientName, lastClientVersion);
+			if (maxClientVersion > 0) {
+				localDatabase.writeSnapshotDatabase(newRemoteMergeDatabaseFile, maxClientVersion);
+			}
+		}
+		else {
+			logger.log(Level.INFO, "   + Writing new delta merge file (all versions after {0}) to {1} ...", new Object[] { snapshotClientVersion,
+					newLocalMergeDatabaseFile });
+
+			lastNDatabaseVersions = localDatabase.getDatabaseVersionsAfter(clientName, snapshotClientVersion);
+		}
 
-		DatabaseXmlSerializer databaseDAO = new DatabaseXmlSerializer(config.getTransformer());
+		DatabaseXmlSerializer databaseDAO = new DatabaseXmlSerializer(config.getTransformer(), config.getDatabaseFormat());
 		databaseDAO.save(lastNDatabaseVersions, newLocalMergeDatabaseFile);
 		allMergedDatabaseFiles.put(newLocalMergeDatabaseFile, newRemoteMergeDatabaseFile);
 	}
 
 	/**
-	 * This method locally remembers which databases were newly uploaded, such that they will not be downloaded in
+	 * Returns the largest vector clock value of the given client in its database versions, up to the given value.
+	 * Note that file numbers and vector clock values are not the same: New database versions may have a
+	 * vector clock value lower than the file number of a merge file.
+	 */
+	private long getMaxClientVersion(String clientName, long maxLocalClientVersion, DatabaseBranch localBranch) {
+		long maxClientVersion = 0;
+
+		for (DatabaseVersionHeader databaseVersionHeader : localBranch.getAll()) {
+			if (clientName.equals(databaseVersionHeader.getClient())) {
+				Long clientVersion = databaseVersionHeader.getVectorClock().getClock(clientName);
+
+				if (clientVersion != null && clientVersion <= maxLocalClientVersion) {
+					maxClientVersion = Math.max(maxClientVersion, clientVersion);
+				}
+			}
+		}
+
+		return maxClientVersion;
+	}
+
+	/**
+	 * This method locally remembers which databases were newly uploaded or kept, such that they will not be downloaded in
 	 * future Downs.
 	 */
-	private void rememberDatabases(Map<File, DatabaseRemoteFile> allMergedDatabaseFiles) throws SQLException {
+	private void rememberDatabases(Map<File, DatabaseRemoteFile> allMergedDatabaseFiles, List<DatabaseRemoteFile> allKeptSnapshotDatabaseFiles)
+			throws SQLException {
+		
 		// Remember newly written files as so not to redownload them later.
 		List<DatabaseRemoteFile> newRemoteMergeDatabaseFiles = new ArrayList<DatabaseRemoteFile>();
+		newRemoteMergeDatabaseFiles.addAll(allKeptSnapshotDatabaseFiles);
 		newRemoteMergeDatabaseFiles.addAll(allMergedDatabaseFiles.values());
 
 		logger.log(Level.INFO, "Writing new known databases table: " + newRemoteMergeDatabaseFiles);
@@ -50,6 +50,9 @@ public class CleanupOperationOptions implements OperationOptions {
 	@Element(required = false)
 	private long minSecondsBetweenCleanups = 3 * 60 * 60; // 3 hours
 
+	@Element(required = false)
+	private double maxDeltaSnapshotRatio = 0.5; // New snapshot if versions after snapshot exceed 50% of versions in it
+
 	@ElementMap(entry = "fromTime", key = "truncateDateFormat", required = false, attribute = true, inline = true)
 	private SortedMap<Long, TimeUnit> purgeFileVersionSettings;
 
@@ -105,6 +108,14 @@ public class CleanupOperationOptions implements OperationOptions {
 		return minSecondsBetweenCleanups;
 	}
 
+	public double getMaxDeltaSnapshotRatio() {
+		return maxDeltaSnapshotRatio;
+	}
+
+	public void setMaxDeltaSnapshotRatio(double maxDeltaSnapshotRatio) {
+		this.maxDeltaSnapshotRatio = maxDeltaSnapshotRatio;
+	}
+
 	public void setMinKeepSeconds(long minKeepDeletedSeconds) {
 		this.minKeepDeletedSeconds = minKeepDeletedSeconds;
 	}
@@ -0,0 +1,118 @@
+/*
+ * Syncany, www.syncany.org
+ * Copyright (C) 2011-2016 Philipp C. Heckel <philipp.heckel@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.syncany.operations.daemon;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Collects the latencies of the requests handled by a {@link WatchRunner}, per
+ * request type. For each request, the time spent waiting for a free worker
+ * (queue time) and the time spent in the request handler are recorded.
+ *
+ * @author Philipp C. Heckel <philipp.heckel@gmail.com>
+ */
+public class RequestLatencyMetrics {
+	private final Map<String, RequestLatency> latencies;
+
+	public RequestLatencyMetrics() {
+		this.latencies = new TreeMap<String, RequestLatency>();
+	}
+
+	/**
+	 * Records a handled request and returns the updated latency
+	 * statistics for its request type.
+	 */
+	public synchronized RequestLatency record(String requestType, long queueTime, long handleTime) {
+		RequestLatency latency = latencies.get(requestType);
+
+		if (latency == null) {
+			latency = new RequestLatency(requestType);
+			latencies.put(requestType, latency);
+		}
+
+		latency.record(queueTime, handleTime);
+		return latency.copy();
+	}
+
+	/**
+	 * Returns the latency statistics for the given request type, or
+	 * <tt>null</tt> if no request of this type has been handled.
+	 */
+	public synchronized RequestLatency getLatency(String requestType) {
+		RequestLatency latency = latencies.get(requestType);
+		return (latency != null) ? latency.copy() : null;
+	}
+
+	public static class RequestLatency {
+		private final String requestType;
+
+		private long count;
+		private long totalQueueTime;
+		private long totalHandleTime;
+		private long maxHandleTime;
+
+		private RequestLatency(String requestType) {
+			this.requestType = requestType;
+		}
+
+		private void record(long queueTime, long handleTime) {
+			count++;
+			totalQueueTime += queueTime;
+			totalHandleTime += handleTime;
+			maxHandleTime = Math.max(maxHandleTime, handleTime);
+		}
+
+		private RequestLatency copy() {
+			RequestLatency copy = new RequestLatency(requestType);
+
+			copy.count = count;
+			copy.totalQueueTime = totalQueueTime;
+			copy.totalHandleTime = totalHandleTime;
+			copy.maxHandleTime = maxHandleTime;
+
+			return copy;
+		}
+
+		public String getRequestType() {
+			return requestType;
+		}
+
+		public long getCount() {
+			return count;
+		}
+
+		public long getAverageQueueTime() {
+			return (count > 0) ? totalQueueTime / count : 0;
+		}
+
+		public long getAverageHandleTime() {
+			return (count > 0) ? totalHandleTime / count : 0;
+		}
+
+		public long getMaxHandleTime() {
+			return maxHandleTime;
+		}
+
+		@Override
+		public String toString() {
+			return requestType + ": " + count + " request(s), avg. " + getAverageHandleTime() + " ms (queued avg. " + getAverageQueueTime()
+					+ " ms), max. " + maxHandleTime + " ms";
+		}
+	}
+}
@@ -18,6 +18,11 @@
 package org.syncany.operations.daemon;
 
 import java.io.File;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -26,10 +31,15 @@ import org.syncany.config.Config;
 import org.syncany.config.ConfigException;
 import org.syncany.config.LocalEventBus;
 import org.syncany.config.to.PortTO;
+import org.syncany.database.DatabaseConnectionPool;
+import org.syncany.database.DatabaseConnectionPoolMetrics;
+import org.syncany.database.SqlDatabase;
+import org.syncany.database.SqlDatabasePool;
 import org.syncany.operations.daemon.messages.AlreadySyncingResponse;
 import org.syncany.operations.daemon.messages.BadRequestResponse;
 import org.syncany.operations.daemon.messages.api.FolderRequest;
 import org.syncany.operations.daemon.messages.api.FolderRequestHandler;
+import org.syncany.operations.daemon.messages.api.ReadOnlyFolderRequestHandler;
 import org.syncany.operations.daemon.messages.api.Response;
 import org.syncany.operations.watch.WatchOperation;
 import org.syncany.operations.watch.WatchOperationOptions;
@@ -42,10 +52,25 @@ import com.google.common.eventbus.Subscribe;
  * underlying thred can be started using the {@link #start()} method, and stopped
  * gracefully using {@link #stop()}.
  *
+ * <p>Folder requests are handled in one of two lanes: Requests that only read
+ * the local database (see {@link ReadOnlyFolderRequestHandler}) are handled by a
+ * small thread pool, using read-only connections from a {@link SqlDatabasePool}.
+ * They are served even while a sync is running, and do not pause the watch operation.
+ * All other requests pause the watch operation while they are handled, and are
+ * rejected with an {@link AlreadySyncingResponse} if a sync is running.
+ *
+ * <p>All database connections of the folder (of the watch operation, the operations it
+ * runs and the request handlers) are taken from a {@link DatabaseConnectionPool}, which
+ * is set in the folder's {@link Config}.
+ *
+ * <p>The latency of all handled requests is recorded in the {@link RequestLatencyMetrics}.
+ *
  * @author Philipp C. Heckel <philipp.heckel@gmail.com>
  */
 public class WatchRunner {
 	private static final Logger logger = Logger.getLogger(WatchRunner.class.getSimpleName());
+	private static final int READ_ONLY_REQUEST_THREADS = 2;
+	private static final int READ_ONLY_REQUEST_TERMINATION_TIMEOUT_SECONDS = 10;
 
 	private Config config;
 	private PortTO portTO;
@@ -54,11 +79,24 @@ public class WatchRunner {
 	private WatchOperationResult watchOperationResult;
 	private LocalEventBus eventBus;
 
+	private ExecutorService readOnlyRequestExecutor;
+	private DatabaseConnectionPool databaseConnectionPool;
+	private SqlDatabasePool readOnlyDatabasePool;
+	private RequestLatencyMetrics requestLatencyMetrics;
+
 	public WatchRunner(Config config, WatchOperationOptions watchOperationOptions, PortTO portTO) throws ConfigException {
 		this.config = config;
 		this.portTO = portTO;
+
+		this.databaseConnectionPool = new DatabaseConnectionPool(config.getDatabaseFile());
+		this.config.setDatabaseConnectionPool(databaseConnectionPool);
+
 		this.watchOperation = new WatchOperation(config, watchOperationOptions);
 
+		this.readOnlyRequestExecutor = Executors.newFixedThreadPool(READ_ONLY_REQUEST_THREADS, new ReadOnlyRequestThreadFactory());
+		this.readOnlyDatabasePool = new SqlDatabasePool(config, READ_ONLY_REQUEST_THREADS);
+		this.requestLatencyMetrics = new RequestLatencyMetrics();
+
 		this.eventBus = LocalEventBus.getInstance();
 		this.eventBus.register(this);
 	}
@@ -97,9 +135,32 @@ public class WatchRunner {
 		watchOperation.stop();
 		config.getPortFile().delete();
 
+		readOnlyRequestExecutor.shutdownNow();
+		awaitReadOnlyRequestTermination();
+
+		readOnlyDatabasePool.close();
+		databaseConnectionPool.close();
+
 		watchThread = null;
 	}
 
+	/**
+	 * Waits for the read-only requests that are still running, so that their
+	 * databases are released before the pool is closed.
+	 */
+	private void awaitReadOnlyRequestTermination() {
+		try {
+			if (!readOnlyRequestExecutor.awaitTermination(READ_ONLY_REQUEST_TERMINATION_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+				logger.log(Level.WARNING, "Read-only requests did not finish within " + READ_ONLY_REQUEST_TERMINATION_TIMEOUT_SECONDS
+						+ " seconds; closing their databases anyway.");
+			}
+		}
+		catch (InterruptedException e) {
+			logger.log(Level.WARNING, "Interrupted while waiting for read-only requests to finish.", e);
+			Thread.currentThread().interrupt();
+		}
+	}
+
 	public boolean hasStopped() {
 		return watchOperationResult != null;
 	}
@@ -108,6 +169,14 @@ public class WatchRunner {
 		return watchOperation.isSyncRunning();
 	}
 
+	public RequestLatencyMetrics getRequestLatencyMetrics() {
+		return requestLatencyMetrics;
+	}
+
+	public DatabaseConnectionPoolMetrics getDatabaseConnectionPoolMetrics() {
+		return databaseConnectionPool.getMetrics();
+	}
+
 	@Subscribe
 	public void onRequestReceived(FolderRequest folderRequest) {
 		File requestRootFolder = new File(folderRequest.getRoot());
@@ -117,12 +186,19 @@ public class WatchRunner {
 			logger.log(Level.INFO, "Received " + folderRequest);
 
 			try {
-				if (!watchOperation.isSyncRunning() && !watchOperation.isSyncRequested()) {
+				FolderRequestHandler handler = FolderRequestHandler.createFolderRequestHandler(folderRequest, config);
+
+				if (handler instanceof ReadOnlyFolderRequestHandler) {
+					readOnlyRequestExecutor.execute(new ReadOnlyRequestTask(folderRequest, (ReadOnlyFolderRequestHandler) handler));
+				}
+				else if (!watchOperation.isSyncRunning() && !watchOperation.isSyncRequested()) {
 					watchOperation.pause();
 
-					FolderRequestHandler handler = FolderRequestHandler.createFolderRequestHandler(folderRequest, config);
+					long startTime = System.currentTimeMillis();
 					Response response = handler.handleRequest(folderRequest);
 
+					recordLatency(folderRequest, 0, System.currentTimeMillis() - startTime);
+
 					if (response != null) {
 						eventBus.post(response);
 					}
@@ -140,4 +216,66 @@ public class WatchRunner {
 			}
 		}
 	}
+
+	private void recordLatency(FolderRequest folderRequest, long queueTime, long handleTime) {
+		String requestType = folderRequest.getClass().getSimpleName();
+		RequestLatencyMetrics.RequestLatency latency = requestLatencyMetrics.record(requestType, queueTime, handleTime);
+
+		logger.log(Level.INFO, "Handled " + requestType + " #" + folderRequest.getId() + " in " + handleTime + " ms (queued " + queueTime
+				+ " ms); " + latency);
+	}
+
+	/**
+	 * Handles a read-only request with a pooled read-only database. Errors are
+	 * reported to the requester as {@link BadRequestResponse}.
+	 */
+	private class ReadOnlyRequestTask implements Runnable {
+		private final FolderRequest folderRequest;
+		private final ReadOnlyFolderRequestHandler handler;
+		private final long submitTime;
+
+		public ReadOnlyRequestTask(FolderRequest folderRequest, ReadOnlyFolderRequestHandler handler) {
+			this.folderRequest = folderRequest;
+			this.handler = handler;
+			this.submitTime = System.currentTimeMillis();
+		}
+
+		@Override
+		public void run() {
+			try {
+				long startTime = System.currentTimeMillis();
+				SqlDatabase readOnlyDatabase = readOnlyDatabasePool.acquire();
+				Response response;
+
+				try {
+					response = handler.handleRequest(folderRequest, readOnlyDatabase);
+				}
+				finally {
+					readOnlyDatabasePool.release(readOnlyDatabase);
+				}
+
+				recordLatency(folderRequest, startTime - submitTime, System.currentTimeMillis() - startTime);
+
+				if (response != null) {
+					eventBus.post(response);
+				}
+			}
+			catch (Exception e) {
+				logger.log(Level.FINE, "Failed to process read-only request", e);
+				eventBus.post(new BadRequestResponse(folderRequest.getId(), "Invalid request."));
+			}
+		}
+	}
+
+	private class ReadOnlyRequestThreadFactory implements ThreadFactory {
+		private final AtomicInteger threadNumber = new AtomicInteger(1);
+
+		@Override
+		public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, "WR-RO/" + config.getLocalDir().getName() + "/" + threadNumber.getAndIncrement());
+			thread.setDaemon(true);
+
+			return thread;
+		}
+	}
 }
@@ -40,13 +40,11 @@ import org.syncany.plugins.transfer.TransferManager;
 import org.syncany.util.StringUtil;
 
 public class GetFileFolderRequestHandler extends FolderRequestHandler {
-	private SqlDatabase localDatabase;
 	private LocalEventBus eventBus;
 	
 	public GetFileFolderRequestHandler(Config config) {
 		super(config);		
 		
-		this.localDatabase = new SqlDatabase(config);
 		this.eventBus = LocalEventBus.getInstance();
 	}
 
@@ -54,7 +52,7 @@ public class GetFileFolderRequestHandler extends FolderRequestHandler {
 	public Response handleRequest(FolderRequest request) {
 		GetFileFolderRequest concreteRequest = (GetFileFolderRequest) request;
 		
-		try {
+		try (SqlDatabase localDatabase = new SqlDatabase(config)) {
 			FileHistoryId fileHistoryId = FileHistoryId.parseFileId(concreteRequest.getFileHistoryId());
 			long version = concreteRequest.getVersion();
 
@@ -68,7 +66,15 @@ public class GetFileFolderRequestHandler extends FolderRequestHandler {
 
 			downloader.downloadAndDecryptMultiChunks(new HashSet<MultiChunkId>(multiChunks.values()));
 
-			File tempFile = assembler.assembleToCache(fileVersion);
+			File tempFile;
+			
+			try {
+				tempFile = assembler.assembleToCache(fileVersion);
+			}
+			finally {
+				assembler.close();
+			}
+			
 			String tempFileToken = StringUtil.toHex(ObjectId.secureRandomBytes(40));
 			
 			GetFileFolderResponse fileResponse = new GetFileFolderResponse(concreteRequest.getId(), concreteRequest.getRoot(), tempFileToken);
@@ -20,23 +20,24 @@ package org.syncany.operations.daemon.messages;
 import java.util.logging.Level;
 
 import org.syncany.config.Config;
+import org.syncany.database.SqlDatabase;
 import org.syncany.operations.daemon.messages.api.FolderRequest;
-import org.syncany.operations.daemon.messages.api.FolderRequestHandler;
+import org.syncany.operations.daemon.messages.api.ReadOnlyFolderRequestHandler;
 import org.syncany.operations.daemon.messages.api.Response;
 import org.syncany.operations.log.LogOperation;
 import org.syncany.operations.log.LogOperationResult;
 
-public class LogFolderRequestHandler extends FolderRequestHandler {
+public class LogFolderRequestHandler extends ReadOnlyFolderRequestHandler {
 	public LogFolderRequestHandler(Config config) {
 		super(config);		
 	}
 
 	@Override
-	public Response handleRequest(FolderRequest request) {
+	public Response handleRequest(FolderRequest request, SqlDatabase readOnlyDatabase) {
 		LogFolderRequest concreteRequest = (LogFolderRequest) request;
 
 		try {
-			LogOperation operation = new LogOperation(config, concreteRequest.getOptions());
+			LogOperation operation = new LogOperation(config, concreteRequest.getOptions(), readOnlyDatabase);
 			LogOperationResult operationResult = operation.execute();
 			LogFolderResponse response = new LogFolderResponse(operationResult, request.getId(), request.getRoot());
 		
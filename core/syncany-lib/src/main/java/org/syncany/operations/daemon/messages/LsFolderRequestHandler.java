@@ -20,23 +20,24 @@ package org.syncany.operations.daemon.messages;
 import java.util.logging.Level;
 
 import org.syncany.config.Config;
+import org.syncany.database.SqlDatabase;
 import org.syncany.operations.daemon.messages.api.FolderRequest;
-import org.syncany.operations.daemon.messages.api.FolderRequestHandler;
+import org.syncany.operations.daemon.messages.api.ReadOnlyFolderRequestHandler;
 import org.syncany.operations.daemon.messages.api.Response;
 import org.syncany.operations.ls.LsOperation;
 import org.syncany.operations.ls.LsOperationResult;
 
-public class LsFolderRequestHandler extends FolderRequestHandler {
+public class LsFolderRequestHandler extends ReadOnlyFolderRequestHandler {
 	public LsFolderRequestHandler(Config config) {
 		super(config);		
 	}
 
 	@Override
-	public Response handleRequest(FolderRequest request) {
+	public Response handleRequest(FolderRequest request, SqlDatabase readOnlyDatabase) {
 		LsFolderRequest concreteRequest = (LsFolderRequest) request;
 
 		try {
-			LsOperation operation = new LsOperation(config, concreteRequest.getOptions());
+			LsOperation operation = new LsOperation(config, concreteRequest.getOptions(), readOnlyDatabase);
 			LsOperationResult operationResult = operation.execute();
 			LsFolderResponse response = new LsFolderResponse(operationResult, request.getId());
 		
@@ -26,6 +26,9 @@ public class UpUploadFileInTransactionSyncExternalEvent extends SyncExternalEven
 	@Element
 	private long currentFileSize;
 	
+	@Element(required = false)
+	private long uploadedFileSize;
+
 	@Element
 	private int totalFileCount;
 	
@@ -37,10 +40,17 @@ public class UpUploadFileInTransactionSyncExternalEvent extends SyncExternalEven
 	}
 	
 	public UpUploadFileInTransactionSyncExternalEvent(String root, int currentFileIndex, int totalFileCount, long currentFileSize, long totalFileSize) {
+		this(root, currentFileIndex, totalFileCount, currentFileSize, 0, totalFileSize);
+	}
+
+	public UpUploadFileInTransactionSyncExternalEvent(String root, int currentFileIndex, int totalFileCount, long currentFileSize, 
+			long uploadedFileSize, long totalFileSize) {
+		
 		super(root);
 		
 		this.currentFileIndex = currentFileIndex;
 		this.currentFileSize = currentFileSize;
+		this.uploadedFileSize = uploadedFileSize;
 		this.totalFileCount = totalFileCount;
 		this.totalFileSize = totalFileSize;
 	}
@@ -53,6 +63,15 @@ public class UpUploadFileInTransactionSyncExternalEvent extends SyncExternalEven
 		return currentFileSize;
 	}
 
+	/**
+	 * Returns the number of bytes of all files in the transaction that have been
+	 * uploaded completely so far. Unlike the current file index, this includes
+	 * files uploaded concurrently by other threads.
+	 */
+	public long getUploadedFileSize() {
+		return uploadedFileSize;
+	}
+
 	public int getTotalFileCount() {
 		return totalFileCount;
 	}
@@ -0,0 +1,53 @@
+/*
+ * Syncany, www.syncany.org
+ * Copyright (C) 2011-2016 Philipp C. Heckel <philipp.heckel@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.syncany.operations.daemon.messages.api;
+
+import org.syncany.config.Config;
+import org.syncany.database.SqlDatabase;
+import org.syncany.operations.daemon.WatchRunner;
+
+/**
+ * A read-only folder request handler only queries the local database and
+ * never alters the local folder. Requests handled by a read-only handler are
+ * therefore served by the {@link WatchRunner} even while a sync is running,
+ * using a read-only database from a separate connection pool.
+ *
+ * @author Philipp C. Heckel <philipp.heckel@gmail.com>
+ */
+public abstract class ReadOnlyFolderRequestHandler extends FolderRequestHandler {
+	public ReadOnlyFolderRequestHandler(Config config) {
+		super(config);
+	}
+
+	/**
+	 * Handles the request using a newly created read-only database, which is
+	 * closed (or returned to the connection pool) afterwards.
+	 */
+	@Override
+	public Response handleRequest(FolderRequest request) {
+		try (SqlDatabase readOnlyDatabase = new SqlDatabase(config, true)) {
+			return handleRequest(request, readOnlyDatabase);
+		}
+	}
+
+	/**
+	 * Handles the request using the given read-only database. Implementations
+	 * must not hold on to the database after the method returns.
+	 */
+	public abstract Response handleRequest(FolderRequest request, SqlDatabase readOnlyDatabase);
+}
@@ -17,8 +17,11 @@
  */
 package org.syncany.operations.down;
 
-import java.util.Collection;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -27,17 +30,22 @@ import java.util.logging.Logger;
 
 import org.syncany.config.Config;
 import org.syncany.database.ChunkEntry.ChunkChecksum;
+import org.syncany.database.ChunkPosition;
 import org.syncany.database.FileContent;
 import org.syncany.database.FileVersion;
 import org.syncany.database.MemoryDatabase;
 import org.syncany.database.MultiChunkEntry.MultiChunkId;
 import org.syncany.database.PartialFileHistory;
 import org.syncany.database.SqlDatabase;
+import org.syncany.operations.Assembler;
 import org.syncany.operations.Downloader;
+import org.syncany.operations.Downloader.MultiChunkDownloads;
 import org.syncany.operations.Operation;
 import org.syncany.operations.OperationResult;
+import org.syncany.operations.down.actions.ChangeFileSystemAction;
 import org.syncany.operations.down.actions.FileCreatingFileSystemAction;
 import org.syncany.operations.down.actions.FileSystemAction;
+import org.syncany.operations.down.actions.SetAttributesFileSystemAction;
 import org.syncany.plugins.transfer.TransferManager;
 
 /**
@@ -46,12 +54,15 @@ import org.syncany.plugins.transfer.TransferManager;
  * <p>Steps:
  * <ul>
  *  <li>Determine whether the local branch needs to be updated (new database versions); if so, determine
- *      local {@link FileSystemAction}s</li>
- *  <li>Determine, download and decrypt required multi chunks from remote storage from file actions
- *      (implemented in {@link #determineMultiChunksToDownload(FileVersion, MemoryDatabase, MemoryDatabase) determineMultiChunksToDownload()},
- *      and {@link #downloadAndDecryptMultiChunks(Set) downloadAndDecryptMultiChunks()})</li>
- *  <li>Apply file system actions locally, creating conflict files where necessary if local file does
- *      not match the expected file (implemented in {@link #applyFileSystemActions(List) applyFileSystemActions()} </li>
+ *      local {@link FileSystemAction}s and sort them using the {@link FileSystemActionComparator}</li>
+ *  <li>Determine the chunks of each file action, look for these chunks in existing local files, and determine
+ *      the multi chunks of the remaining chunks (implemented in {@link #determineRequiredMultiChunks(List, MemoryDatabase, List) 
+ *      determineRequiredMultiChunks()}); then start downloading and decrypting them in the background, in the order in 
+ *      which they are needed, and only a few multichunks ahead of the applied actions. Local files are only used by actions before the first action that modifies them.</li>
+ *  <li>Apply file system actions locally in their sorted order, creating conflict files where necessary if local 
+ *      file does not match the expected file (implemented in {@link #applyFileSystemActions(List, List, List, MultiChunkDownloads, Assembler) 
+ *      applyFileSystemActions()}). Each action only waits for its own multi chunks, and multi chunks are deleted from 
+ *      the cache as soon as no remaining action needs them.</li>
  * </ul>
  * 
  * @author Philipp C. Heckel <philipp.heckel@gmail.com>
@@ -71,10 +82,18 @@ public class ApplyChangesOperation extends Operation {
 	public ApplyChangesOperation(Config config, SqlDatabase localDatabase, TransferManager transferManager, MemoryDatabase winnersDatabase,
 			DownOperationResult result, boolean cleanupOccurred, List<PartialFileHistory> preDeleteFileHistoriesWithLastVersion) {
 		
+		this(config, localDatabase, transferManager, winnersDatabase, result, cleanupOccurred, preDeleteFileHistoriesWithLastVersion, 
+				DownOperationOptions.DEFAULT_DOWNLOAD_THREADS);
+	}
+
+	public ApplyChangesOperation(Config config, SqlDatabase localDatabase, TransferManager transferManager, MemoryDatabase winnersDatabase,
+			DownOperationResult result, boolean cleanupOccurred, List<PartialFileHistory> preDeleteFileHistoriesWithLastVersion, 
+			int downloadThreads) {
+		
 		super(config);
 		
 		this.localDatabase = localDatabase;
-		this.downloader = new Downloader(config, transferManager);
+		this.downloader = new Downloader(config, transferManager, downloadThreads);
 		this.winnersDatabase = winnersDatabase;
 		this.result = result;
 		this.cleanupOccurred = cleanupOccurred;
@@ -85,7 +104,7 @@ public class ApplyChangesOperation extends Operation {
 	public OperationResult execute() throws Exception {
 		logger.log(Level.INFO, "Determine file system actions ...");		
 		
-		FileSystemActionReconciliator actionReconciliator = new FileSystemActionReconciliator(config, result.getChangeSet());
+		FileSystemActionReconciliator actionReconciliator = new FileSystemActionReconciliator(config, result.getChangeSet(), localDatabase);
 		List<FileSystemAction> actions;
 		
 		if (cleanupOccurred) {
@@ -95,103 +114,304 @@ public class ApplyChangesOperation extends Operation {
 			actions = actionReconciliator.determineFileSystemActions(winnersDatabase);
 		}
 
-		Set<MultiChunkId> unknownMultiChunks = determineRequiredMultiChunks(actions, winnersDatabase);
-		
-		downloader.downloadAndDecryptMultiChunks(unknownMultiChunks);
+		// Sort first, so that multichunks can be downloaded in the order in which they are needed
+		FileSystemActionComparator actionComparator = new FileSystemActionComparator();
+		actionComparator.sort(actions);
+
+		List<Map<ChunkChecksum, ChunkPosition>> actionLocalChunkPositions = new ArrayList<Map<ChunkChecksum, ChunkPosition>>();
+		List<Set<MultiChunkId>> actionMultiChunkIds = determineRequiredMultiChunks(actions, winnersDatabase, actionLocalChunkPositions);
+		Set<MultiChunkId> unknownMultiChunks = new LinkedHashSet<MultiChunkId>();
+
+		for (Set<MultiChunkId> multiChunkIds : actionMultiChunkIds) {
+			unknownMultiChunks.addAll(multiChunkIds);
+		}
+
+		MultiChunkDownloads multiChunkDownloads = downloader.startDownloadAndDecryptMultiChunks(unknownMultiChunks);
 		result.getDownloadedMultiChunks().addAll(unknownMultiChunks);
 
-		applyFileSystemActions(actions);
+		Assembler assembler = actionReconciliator.getAssembler();
+		assembler.setMultiChunkDownloads(multiChunkDownloads);
+		
+		try {
+			applyFileSystemActions(actions, actionLocalChunkPositions, actionMultiChunkIds, multiChunkDownloads, assembler);
+		}
+		finally {
+			multiChunkDownloads.close();
+			assembler.close();
+		}
+		
+		result.setReusedChunkBytes(assembler.getReusedChunkBytes());
+		result.setDownloadedMultiChunkBytes(downloader.getDownloadedBytes());
+		
+		logger.log(Level.INFO, "Reconstructed files using " + assembler.getReusedChunkBytes() + " bytes from local files and "
+				+ assembler.getMultiChunkChunkBytes() + " bytes from multichunks; downloaded " + downloader.getDownloadedBytes() + " bytes.");
 		
 		return null;
 	}
 	
 	/**
 	 * Finds the multichunks that need to be downloaded to apply the given file system actions.
-	 * The method looks at all {@link FileCreatingFileSystemAction}s and returns their multichunks. 
+	 * The method looks at all {@link FileCreatingFileSystemAction}s and returns their multichunks,
+	 * as a list of multichunk sets with the same order as the given actions. 
+	 * 
+	 * <p>Chunks that can be copied from existing local files are not downloaded. Their 
+	 * positions are added to the given <tt>actionLocalChunkPositions</tt> list instead, 
+	 * as one map per action (with the same order as the given actions).
 	 */
-	private Set<MultiChunkId> determineRequiredMultiChunks(List<FileSystemAction> actions, MemoryDatabase winnersDatabase) {
-		Set<MultiChunkId> multiChunksToDownload = new HashSet<MultiChunkId>();
-
-		for (FileSystemAction action : actions) {
-			if (action instanceof FileCreatingFileSystemAction) { // TODO [low] This adds ALL multichunks even though some might be available locally
-				multiChunksToDownload.addAll(determineMultiChunksToDownload(action.getFile2(), winnersDatabase));
+	private List<Set<MultiChunkId>> determineRequiredMultiChunks(List<FileSystemAction> actions, MemoryDatabase winnersDatabase,
+			List<Map<ChunkChecksum, ChunkPosition>> actionLocalChunkPositions) {
+		
+		// Determine chunks of all new/changed files, and the first action that modifies each path
+		List<List<ChunkChecksum>> actionChunks = new ArrayList<List<ChunkChecksum>>();
+		List<ChunkChecksum> allChunks = new ArrayList<ChunkChecksum>();
+		Map<String, Integer> firstModifyingActions = new HashMap<String, Integer>();
+		
+		for (int i = 0; i < actions.size(); i++) {
+			FileSystemAction action = actions.get(i);
+			List<ChunkChecksum> fileChunks = new ArrayList<ChunkChecksum>();
+			
+			if (action instanceof FileCreatingFileSystemAction) {
+				fileChunks = determineChunks(action.getFile2(), winnersDatabase);
+				allChunks.addAll(fileChunks);
 			}
+			
+			if (!(action instanceof SetAttributesFileSystemAction)) {
+				addModifiedPath(action.getFile1(), i, firstModifyingActions);
+				addModifiedPath(action.getFile2(), i, firstModifyingActions);
+			}
+			
+			actionChunks.add(fileChunks);
+		}
+		
+		// Look for chunks in local files first, and only use them for actions before their file is modified
+		Map<ChunkChecksum, ChunkPosition> localChunkPositions = findLocalChunkPositions(allChunks);
+		Set<ChunkChecksum> remainingChunks = new HashSet<ChunkChecksum>();
+		
+		for (int i = 0; i < actions.size(); i++) {
+			Map<ChunkChecksum, ChunkPosition> usableLocalChunkPositions = new HashMap<ChunkChecksum, ChunkPosition>();
+			
+			for (ChunkChecksum chunkChecksum : actionChunks.get(i)) {
+				ChunkPosition chunkPosition = localChunkPositions.get(chunkChecksum);
+				
+				if (chunkPosition != null && isLocalChunkUsable(chunkPosition, i, actions.get(i), firstModifyingActions)) {
+					usableLocalChunkPositions.put(chunkChecksum, chunkPosition);
+				}
+				else {
+					remainingChunks.add(chunkChecksum);
+				}
+			}
+			
+			actionLocalChunkPositions.add(usableLocalChunkPositions);
+		}
+		
+		// Then find the multichunks of the remaining chunks
+		Map<ChunkChecksum, MultiChunkId> checksumsWithMultiChunkIds = (remainingChunks.size() > 0) 
+				? localDatabase.getMultiChunkIdsByChecksums(new ArrayList<ChunkChecksum>(remainingChunks)) 
+				: new HashMap<ChunkChecksum, MultiChunkId>();
+		
+		List<Set<MultiChunkId>> actionMultiChunkIds = new ArrayList<Set<MultiChunkId>>();
+		
+		for (int i = 0; i < actions.size(); i++) {
+			actionMultiChunkIds.add(determineMultiChunksToDownload(actionChunks.get(i), actionLocalChunkPositions.get(i), checksumsWithMultiChunkIds,
+					winnersDatabase));
 		}
 
-		return multiChunksToDownload;
+		return actionMultiChunkIds;
+	}
+	
+	private void addModifiedPath(FileVersion fileVersion, int actionIndex, Map<String, Integer> firstModifyingActions) {
+		if (fileVersion != null && !firstModifyingActions.containsKey(fileVersion.getPath())) {
+			firstModifyingActions.put(fileVersion.getPath(), actionIndex);
+		}
 	}
 	
 	/**
-	 * Finds the multichunks that need to be downloaded for the given file version -- using the local 
-	 * database and given winners database. Returns a set of multichunk identifiers.
+	 * Determines whether the given local chunk can be used by the action with the given index, 
+	 * i.e. whether its file is not created, changed, moved or deleted by an earlier action.
+	 * A {@link ChangeFileSystemAction} may also use its own original file, because it 
+	 * assembles the new file before the original file is replaced.
 	 */
-	private Collection<MultiChunkId> determineMultiChunksToDownload(FileVersion fileVersion, MemoryDatabase winnersDatabase) {
-		Set<MultiChunkId> multiChunksToDownload = new HashSet<MultiChunkId>();
-
-		// First: Check if we know this file locally!
-		List<MultiChunkId> multiChunkIds = localDatabase.getMultiChunkIds(fileVersion.getChecksum());
+	private boolean isLocalChunkUsable(ChunkPosition chunkPosition, int actionIndex, FileSystemAction action, Map<String, Integer> firstModifyingActions) {
+		Integer firstModifyingAction = firstModifyingActions.get(chunkPosition.getPath());
 		
-		if (multiChunkIds.size() > 0) {
-			multiChunksToDownload.addAll(multiChunkIds);
+		if (firstModifyingAction == null || firstModifyingAction > actionIndex) {
+			return true;
 		}
 		else {
-			// Second: We don't know it locally; must be from the winners database
-			FileContent winningFileContent = winnersDatabase.getContent(fileVersion.getChecksum());			
-			boolean winningFileHasContent = winningFileContent != null;
+			return firstModifyingAction == actionIndex && action instanceof ChangeFileSystemAction;
+		}
+	}
+	
+	/**
+	 * Returns the list of chunks of the given file version -- using the local database and 
+	 * the given winners database. Returns an empty list if the file is empty.
+	 */
+	private List<ChunkChecksum> determineChunks(FileVersion fileVersion, MemoryDatabase winnersDatabase) {
+		// First: Check if we know this file locally!
+		FileContent fileContent = localDatabase.getFileContent(fileVersion.getChecksum(), true);
+		
+		// Second: We don't know it locally; must be from the winners database
+		if (fileContent == null && fileVersion.getChecksum() != null) {
+			fileContent = winnersDatabase.getContent(fileVersion.getChecksum());
+		}
+		
+		if (fileContent == null) { // File can be empty!
+			return new ArrayList<ChunkChecksum>();
+		}
+		
+		return fileContent.getChunks();
+	}
+	
+	/**
+	 * Finds the positions of the given chunks in local files that still exist and have the 
+	 * same size as when they were indexed. 
+	 * 
+	 * <p>Since the files may still change, the positions are only hints: The assembler 
+	 * verifies each chunk before it is used.
+	 */
+	private Map<ChunkChecksum, ChunkPosition> findLocalChunkPositions(List<ChunkChecksum> chunks) {
+		Map<ChunkChecksum, ChunkPosition> localChunkPositions = new HashMap<ChunkChecksum, ChunkPosition>();
 
-			if (winningFileHasContent) { // File can be empty!
-				List<ChunkChecksum> fileChunks = winningFileContent.getChunks(); 
+		if (chunks.size() == 0) {
+			return localChunkPositions;
+		}
+		
+		Map<String, Boolean> unchangedLocalFiles = new HashMap<String, Boolean>();
+
+		for (ChunkPosition chunkPosition : localDatabase.getChunkPositions(chunks).values()) {
+			Boolean localFileUnchanged = unchangedLocalFiles.get(chunkPosition.getPath());
+			
+			if (localFileUnchanged == null) {
+				File localFile = new File(config.getLocalDir(), chunkPosition.getPath());
 				
-				// TODO [medium] Instead of just looking for multichunks to download here, we should look for chunks in local files as well
-				// and return the chunk positions in the local files ChunkPosition (chunk123 at file12, offset 200, size 250)
+				localFileUnchanged = localFile.isFile() && localFile.length() == chunkPosition.getFileSize();
 				
-				Map<ChunkChecksum, MultiChunkId> checksumsWithMultiChunkIds = localDatabase.getMultiChunkIdsByChecksums(fileChunks);
+				unchangedLocalFiles.put(chunkPosition.getPath(), localFileUnchanged);
+			}
+			
+			if (localFileUnchanged) {
+				localChunkPositions.put(chunkPosition.getChecksum(), chunkPosition);
+			}
+		}
+		
+		logger.log(Level.INFO, "- Found " + localChunkPositions.size() + " of " + chunks.size() + " chunk(s) in local files.");
+		return localChunkPositions;
+	}
+	
+	/**
+	 * Finds the multichunks that need to be downloaded for the given chunks of a file -- using the 
+	 * multichunk identifiers from the local database and the given winners database. Chunks
+	 * found in local files are skipped. Returns a set of multichunk identifiers.
+	 */
+	private Set<MultiChunkId> determineMultiChunksToDownload(List<ChunkChecksum> fileChunks, Map<ChunkChecksum, ChunkPosition> localChunkPositions,
+			Map<ChunkChecksum, MultiChunkId> checksumsWithMultiChunkIds, MemoryDatabase winnersDatabase) {
+		
+		Set<MultiChunkId> multiChunksToDownload = new LinkedHashSet<MultiChunkId>();
+
+		for (ChunkChecksum chunkChecksum : fileChunks) {
+			if (localChunkPositions.containsKey(chunkChecksum)) {
+				continue;
+			}
+			
+			MultiChunkId multiChunkIdForChunk = checksumsWithMultiChunkIds.get(chunkChecksum);
+			
+			if (multiChunkIdForChunk == null) {
+				multiChunkIdForChunk = winnersDatabase.getMultiChunkIdForChunk(chunkChecksum);
 				
-				for (ChunkChecksum chunkChecksum : fileChunks) {
-					MultiChunkId multiChunkIdForChunk = checksumsWithMultiChunkIds.get(chunkChecksum);
-					if (multiChunkIdForChunk == null) {
-						multiChunkIdForChunk = winnersDatabase.getMultiChunkIdForChunk(chunkChecksum);
-						
-						if (multiChunkIdForChunk == null) {
-							throw new RuntimeException("Cannot find multichunk for chunk "+chunkChecksum);	
-						}
-					}
-					
-					if (!multiChunksToDownload.contains(multiChunkIdForChunk)) {
-						logger.log(Level.INFO, "  + Adding multichunk " + multiChunkIdForChunk + " to download list ...");
-						multiChunksToDownload.add(multiChunkIdForChunk);
-					}
+				if (multiChunkIdForChunk == null) {
+					throw new RuntimeException("Cannot find multichunk for chunk "+chunkChecksum);	
 				}
 			}
+			
+			if (!multiChunksToDownload.contains(multiChunkIdForChunk)) {
+				logger.log(Level.INFO, "  + Adding multichunk " + multiChunkIdForChunk + " to download list ...");
+				multiChunksToDownload.add(multiChunkIdForChunk);
+			}
 		}
 		
 		return multiChunksToDownload;
 	}
 	
 	/**
-	 * Applies the given file system actions in a sensible order. To do that, 
-	 * the given actions are first sorted using the {@link FileSystemActionComparator} and
-	 * then executed individually using {@link FileSystemAction#execute()}.
+	 * Applies the given (already sorted) file system actions in their order, using 
+	 * {@link FileSystemAction#execute()}. Before an action is executed, this method waits
+	 * until its multichunks have been downloaded. After it has been executed, multichunks that
+	 * are not needed by any of the remaining actions (including multichunks that were downloaded
+	 * on demand) are deleted from the local cache.
 	 */
-	private void applyFileSystemActions(List<FileSystemAction> actions) throws Exception {
-		// Sort
-		FileSystemActionComparator actionComparator = new FileSystemActionComparator();
-		actionComparator.sort(actions);
+	private void applyFileSystemActions(List<FileSystemAction> actions, List<Map<ChunkChecksum, ChunkPosition>> actionLocalChunkPositions,
+			List<Set<MultiChunkId>> actionMultiChunkIds, MultiChunkDownloads multiChunkDownloads, Assembler assembler) throws Exception {
+		
+		Map<MultiChunkId, Integer> pendingMultiChunkUses = countMultiChunkUses(actionMultiChunkIds);
 
 		logger.log(Level.FINER, "- Applying file system actions (sorted!) ...");
 
 		// Apply
-		for (FileSystemAction action : actions) {
+		for (int i = 0; i < actions.size(); i++) {
+			FileSystemAction action = actions.get(i);
+			Set<MultiChunkId> multiChunkIds = actionMultiChunkIds.get(i);
+			
 			if (logger.isLoggable(Level.FINER)) {
 				logger.log(Level.FINER, "   +  {0}", action);
 			}
 
+			// Wait for the required multichunks
+			for (MultiChunkId multiChunkId : multiChunkIds) {
+				multiChunkDownloads.await(multiChunkId);
+			}
+			
 			// Execute the file system action
 			
 			// Note that exceptions are not caught here, to prevent 
 			// apply-failed-delete-on-up situations.
 			
+			assembler.setLocalChunkPositions(actionLocalChunkPositions.get(i));
 			action.execute(); 
+			
+			// Evict multichunks that are not needed anymore
+			evictUnusedMultiChunks(multiChunkIds, pendingMultiChunkUses, multiChunkDownloads, assembler);
 		}
 	}
+
+	private Map<MultiChunkId, Integer> countMultiChunkUses(List<Set<MultiChunkId>> actionMultiChunkIds) {
+		Map<MultiChunkId, Integer> multiChunkUses = new HashMap<MultiChunkId, Integer>();
+		
+		for (Set<MultiChunkId> multiChunkIds : actionMultiChunkIds) {
+			for (MultiChunkId multiChunkId : multiChunkIds) {
+				Integer uses = multiChunkUses.get(multiChunkId);
+				multiChunkUses.put(multiChunkId, (uses != null) ? uses + 1 : 1);
+			}
+		}
+		
+		return multiChunkUses;
+	}
+
+	private void evictUnusedMultiChunks(Set<MultiChunkId> multiChunkIds, Map<MultiChunkId, Integer> pendingMultiChunkUses,
+			MultiChunkDownloads multiChunkDownloads, Assembler assembler) {
+		
+		for (MultiChunkId multiChunkId : multiChunkIds) {
+			int remainingUses = pendingMultiChunkUses.get(multiChunkId) - 1;
+			
+			if (remainingUses > 0) {
+				pendingMultiChunkUses.put(multiChunkId, remainingUses);
+			}
+			else {
+				pendingMultiChunkUses.remove(multiChunkId);
+				evictMultiChunk(multiChunkId, multiChunkDownloads, assembler);
+			}
+		}
+		
+		// Multichunks downloaded on demand (after a local chunk could not be used) are not counted
+		for (MultiChunkId multiChunkId : multiChunkDownloads.getOnDemandMultiChunkIds()) {
+			if (!pendingMultiChunkUses.containsKey(multiChunkId)) {
+				result.getDownloadedMultiChunks().add(multiChunkId);
+				evictMultiChunk(multiChunkId, multiChunkDownloads, assembler);
+			}
+		}
+	}
+	
+	private void evictMultiChunk(MultiChunkId multiChunkId, MultiChunkDownloads multiChunkDownloads, Assembler assembler) {
+		assembler.closeMultiChunk(multiChunkId);
+		multiChunkDownloads.evict(multiChunkId);
+	}
 }
@@ -21,8 +21,10 @@ import java.io.File;
 import java.io.IOException;
 import java.sql.SQLException;
 import java.util.AbstractMap;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -33,6 +35,7 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import org.syncany.config.Config;
+import org.syncany.database.DatabaseGroupCommit;
 import org.syncany.database.DatabaseVersion;
 import org.syncany.database.DatabaseVersionHeader;
 import org.syncany.database.MemoryDatabase;
@@ -128,6 +131,15 @@ public class DownOperation extends AbstractTransferOperation {
 	 */
 	@Override
 	public DownOperationResult execute() throws Exception {
+		try {
+			return executeDown();
+		}
+		finally {
+			localDatabase.close();
+		}
+	}
+
+	private DownOperationResult executeDown() throws Exception {
 		logger.log(Level.INFO, "");
 		logger.log(Level.INFO, "Running 'Sync down' at client " + config.getMachineName() + " ...");
 		logger.log(Level.INFO, "--------------------------------------------");
@@ -149,57 +161,93 @@ public class DownOperation extends AbstractTransferOperation {
 		DatabaseBranch localBranch = localDatabase.getLocalDatabaseBranch();
 		List<DatabaseRemoteFile> newRemoteDatabases = result.getLsRemoteResult().getUnknownRemoteDatabases();
 
+		Map<String, CleanupRemoteFile> remoteCleanupFiles = getRemoteCleanupFiles();
+		boolean cleanupOccurred = cleanupOccurred(remoteCleanupFiles);
+		List<DatabaseRemoteFile> keptKnownRemoteDatabases = new ArrayList<DatabaseRemoteFile>();
+
+		if (cleanupOccurred) {
+			keptKnownRemoteDatabases = listKeptKnownRemoteDatabases();
+		}
+
+		// A cleanup that removes file versions replaces all remote database files. If a known database
+		// file (a snapshot) was kept, no versions were removed, and the local database is still valid.
+		boolean rebuildDatabase = cleanupOccurred && keptKnownRemoteDatabases.isEmpty();
+
 		SortedMap<File, DatabaseRemoteFile> unknownRemoteDatabasesInCache = downloadUnknownRemoteDatabases(newRemoteDatabases);
 		SortedMap<DatabaseRemoteFile, List<DatabaseVersion>> remoteDatabaseHeaders = readUnknownDatabaseVersionHeaders(unknownRemoteDatabasesInCache);
 		Map<DatabaseVersionHeader, File> databaseVersionLocations = findDatabaseVersionLocations(remoteDatabaseHeaders, unknownRemoteDatabasesInCache);
 
-		Map<String, CleanupRemoteFile> remoteCleanupFiles = getRemoteCleanupFiles();
-		boolean cleanupOccurred = cleanupOccurred(remoteCleanupFiles);
-
 		List<PartialFileHistory> preDeleteFileHistoriesWithLastVersion = null;
 
-		if (cleanupOccurred) {
-			logger.log(Level.INFO, "Cleanup occurred. Capturing local file histories, then deleting entire database ...");
+		// With group commit, the local database is only synced once at the end. Purging conflicting
+		// database versions deletes remote files though, so group commit starts after the purge (or,
+		// if a cleanup occurred, after the local database was deleted; nothing is purged then).
+		DatabaseGroupCommit groupCommit = new DatabaseGroupCommit(localDatabase.getConnection());
+		Exception operationException = null;
 
-			// Capture file histories
-			preDeleteFileHistoriesWithLastVersion = localDatabase.getFileHistoriesWithLastVersion();
+		try {
+			if (rebuildDatabase) {
+				logger.log(Level.INFO, "Cleanup occurred. Capturing local file histories, then deleting entire database ...");
 
-			// Get rid of local database
-			localDatabase.deleteAll();
+				// Capture file histories
+				preDeleteFileHistoriesWithLastVersion = localDatabase.getFileHistoriesWithLastVersion();
 
-			// Normally, we wouldn't want to commit in the middle of an operation, but unfortunately
-			// we have to, since not committing causes hanging in database operations, since UNCOMMITTED_READ
-			// does not do enough magic to proceed. The commit in itself is not a problem, since we need
-			// to redownload all remote data anyway.
-			localDatabase.commit();
+				// Get rid of local database
+				localDatabase.deleteAll();
 
-			// Set last cleanup values
-			long lastRemoteCleanupNumber = getLastRemoteCleanupNumber(remoteCleanupFiles);
+				// Normally, we wouldn't want to commit in the middle of an operation, but unfortunately
+				// we have to, since not committing causes hanging in database operations, since UNCOMMITTED_READ
+				// does not do enough magic to proceed. The commit in itself is not a problem, since we need
+				// to redownload all remote data anyway.
+				localDatabase.commit();
+				beginGroupCommit(groupCommit);
 
-			localDatabase.writeCleanupNumber(lastRemoteCleanupNumber);
-			localDatabase.writeCleanupTime(System.currentTimeMillis() / 1000);
+				// Set last cleanup values
+				long lastRemoteCleanupNumber = getLastRemoteCleanupNumber(remoteCleanupFiles);
 
-			localBranch = new DatabaseBranch();
-		}
+				localDatabase.writeCleanupNumber(lastRemoteCleanupNumber);
+				localDatabase.writeCleanupTime(System.currentTimeMillis() / 1000);
+
+				localBranch = new DatabaseBranch();
+			}
+			else if (cleanupOccurred) {
+				logger.log(Level.INFO, "Cleanup occurred, but known database files " + keptKnownRemoteDatabases + " were kept. Not rebuilding database.");
+
+				// Forget the merged (deleted) database files, and only download the unknown ones
+				localDatabase.removeKnownDatabases();
+				localDatabase.writeKnownRemoteDatabases(keptKnownRemoteDatabases);
+
+				localDatabase.writeCleanupNumber(getLastRemoteCleanupNumber(remoteCleanupFiles));
+				localDatabase.writeCleanupTime(System.currentTimeMillis() / 1000);
+			}
 
-		try {
 			DatabaseBranches allBranches = populateDatabaseBranches(localBranch, remoteDatabaseHeaders);
 			Map.Entry<String, DatabaseBranch> winnersBranch = determineWinnerBranch(allBranches);
 
 			purgeConflictingLocalBranch(localBranch, winnersBranch);
-			applyWinnersBranch(localBranch, winnersBranch, databaseVersionLocations, cleanupOccurred,
+			beginGroupCommit(groupCommit);
+
+			applyWinnersBranch(localBranch, winnersBranch, databaseVersionLocations, rebuildDatabase,
 					preDeleteFileHistoriesWithLastVersion);
 
 			persistMuddyMultiChunks(winnersBranch, allBranches, databaseVersionLocations);
 			removeNonMuddyMultiChunks();
 
 			localDatabase.writeKnownRemoteDatabases(newRemoteDatabases);
+			rememberSnapshotDatabases(remoteDatabaseHeaders);
+
 			localDatabase.commit();
 		}
 		catch (Exception e) {
+			operationException = e;
+
+			// Roll back before ending the group commit, since ending it commits the connection
 			localDatabase.rollback();
 			throw e;
 		}
+		finally {
+			endGroupCommit(groupCommit, operationException);
+		}
 
 		finishOperation();
 		fireEndEvent();
@@ -272,6 +320,17 @@ public class DownOperation extends AbstractTransferOperation {
 		return new LsRemoteOperation(config, transferManager).execute();
 	}
 
+	/**
+	 * Lists the remote databases that are already known locally. After a cleanup, these are the snapshots
+	 * the cleanup has kept (see {@link CleanupOperation}); they do not have to be downloaded again.
+	 */
+	private List<DatabaseRemoteFile> listKeptKnownRemoteDatabases() throws StorageException {
+		List<DatabaseRemoteFile> keptKnownRemoteDatabases = new ArrayList<DatabaseRemoteFile>(transferManager.list(DatabaseRemoteFile.class).values());
+		keptKnownRemoteDatabases.retainAll(localDatabase.getKnownDatabases());
+
+		return keptKnownRemoteDatabases;
+	}
+
 	/**
 	 * Downloads the previously identified new/unknown remote databases to the local cache
 	 * and returns a map with the local cache files mapped to the given remote database
@@ -331,6 +390,35 @@ public class DownOperation extends AbstractTransferOperation {
 		return remoteDatabaseHeaders;
 	}
 
+	/**
+	 * Starts the group commit, if it is enabled in the {@link DownOperationOptions}. Pending
+	 * changes in the local database are committed when the group commit starts.
+	 */
+	private void beginGroupCommit(DatabaseGroupCommit groupCommit) throws SQLException {
+		if (options.isGroupCommit()) {
+			groupCommit.begin();
+		}
+	}
+
+	/**
+	 * Ends the group commit. If the operation already failed, an exception thrown while
+	 * ending the group commit is logged and added to the operation's exception as suppressed
+	 * exception, instead of replacing it.
+	 */
+	private void endGroupCommit(DatabaseGroupCommit groupCommit, Exception operationException) throws SQLException {
+		try {
+			groupCommit.end();
+		}
+		catch (SQLException e) {
+			if (operationException == null) {
+				throw e;
+			}
+
+			logger.log(Level.WARNING, "Cannot end group commit after failed sync down.", e);
+			operationException.addSuppressed(e);
+		}
+	}
+
 	/**
 	 * This methods takes a Map containing DatabaseVersions (headers only) and loads these headers into {@link DatabaseBranches}.
 	 * In addition, the local branch is added to this. The resulting DatabaseBranches will contain all headers exactly once,
@@ -348,14 +436,21 @@ public class DownOperation extends AbstractTransferOperation {
 
 		allBranches.put(config.getMachineName(), localBranch.clone());
 
+		// After a cleanup that kept the local database, merged files may contain this client's own (known) versions
+		Set<DatabaseVersionHeader> localHeaders = new HashSet<DatabaseVersionHeader>(localBranch.getAll());
+
 		for (DatabaseRemoteFile remoteDatabaseFile : remoteDatabaseHeaders.keySet()) {
 
 			// Populate branches
 			DatabaseBranch remoteClientBranch = allBranches.getBranch(remoteDatabaseFile.getClientName(), true);
+			boolean ownDatabaseFile = config.getMachineName().equals(remoteDatabaseFile.getClientName());
 
 			for (DatabaseVersion remoteDatabaseVersion : remoteDatabaseHeaders.get(remoteDatabaseFile)) {
 				DatabaseVersionHeader header = remoteDatabaseVersion.getHeader();
-				remoteClientBranch.add(header);
+
+				if (!ownDatabaseFile || !localHeaders.contains(header)) {
+					remoteClientBranch.add(header);
+				}
 			}
 		}
 
@@ -480,7 +575,7 @@ public class DownOperation extends AbstractTransferOperation {
 		
 		if (options.isApplyChanges()) {
 			new ApplyChangesOperation(config, localDatabase, transferManager, winnersDatabase, result, cleanupOccurred,
-					preDeleteFileHistoriesWithLastVersion).execute();
+					preDeleteFileHistoriesWithLastVersion, options.getDownloadThreads()).execute();
 		}
 		else {
 			logger.log(Level.INFO, "Doing nothing on the file system, because --no-apply switched on");
@@ -615,6 +710,39 @@ public class DownOperation extends AbstractTransferOperation {
 		return databaseVersionLocations;
 	}
 
+	/**
+	 * Remembers the oldest known database file of each client as the client's snapshot, if it was
+	 * downloaded in this operation. Together with the file, the last vector clock value of the client
+	 * in this file is stored. This allows the {@link CleanupOperation} to keep the snapshot and only
+	 * merge the database files after it.
+	 */
+	private void rememberSnapshotDatabases(SortedMap<DatabaseRemoteFile, List<DatabaseVersion>> remoteDatabaseHeaders) {
+		Map<String, DatabaseRemoteFile> oldestKnownDatabaseFiles = new HashMap<String, DatabaseRemoteFile>();
+
+		for (DatabaseRemoteFile knownDatabaseFile : localDatabase.getKnownDatabases()) {
+			DatabaseRemoteFile oldestKnownDatabaseFile = oldestKnownDatabaseFiles.get(knownDatabaseFile.getClientName());
+
+			if (oldestKnownDatabaseFile == null || knownDatabaseFile.getClientVersion() < oldestKnownDatabaseFile.getClientVersion()) {
+				oldestKnownDatabaseFiles.put(knownDatabaseFile.getClientName(), knownDatabaseFile);
+			}
+		}
+
+		for (DatabaseRemoteFile oldestKnownDatabaseFile : oldestKnownDatabaseFiles.values()) {
+			List<DatabaseVersion> snapshotDatabaseVersions = remoteDatabaseHeaders.get(oldestKnownDatabaseFile);
+
+			if (snapshotDatabaseVersions != null && snapshotDatabaseVersions.size() > 0) {
+				long maxClientVersion = 0;
+
+				for (DatabaseVersion databaseVersion : snapshotDatabaseVersions) {
+					Long clientVersion = databaseVersion.getHeader().getVectorClock().getClock(oldestKnownDatabaseFile.getClientName());
+					maxClientVersion = (clientVersion != null) ? Math.max(maxClientVersion, clientVersion) : maxClientVersion;
+				}
+
+				localDatabase.writeSnapshotDatabase(oldestKnownDatabaseFile, maxClientVersion);
+			}
+		}
+	}
+
 	private Map<String, CleanupRemoteFile> getRemoteCleanupFiles() throws StorageException {
 		return transferManager.list(CleanupRemoteFile.class);
 	}
@@ -24,6 +24,8 @@ public class DownOperationOptions implements OperationOptions {
 	public enum DownConflictStrategy {
 		RENAME, ASK
 	}
+
+	public static final int DEFAULT_DOWNLOAD_THREADS = 1;
 	
 	@Element(required = false)
 	private DownConflictStrategy conflictStrategy = DownConflictStrategy.RENAME;
@@ -31,6 +33,15 @@ public class DownOperationOptions implements OperationOptions {
 	@Element(required = false)
 	private boolean applyChanges = true;
 
+	@Element(required = false)
+	private int downloadThreads = DEFAULT_DOWNLOAD_THREADS;
+
+	// With group commit enabled, the database versions applied by one down operation are made durable
+	// in a single commit point at the end of the operation, instead of syncing the local database on every
+	// commit. If the operation crashes, the remote databases are simply downloaded and applied again.
+	@Element(required = false)
+	private boolean groupCommit = false;
+
 	public DownConflictStrategy getConflictStrategy() {
 		return conflictStrategy;
 	}
@@ -45,5 +56,21 @@ public class DownOperationOptions implements OperationOptions {
 
 	public void setApplyChanges(boolean applyChanges) {
 		this.applyChanges = applyChanges;
-	}		
+	}
+
+	public int getDownloadThreads() {
+		return downloadThreads;
+	}
+
+	public void setDownloadThreads(int downloadThreads) {
+		this.downloadThreads = downloadThreads;
+	}
+
+	public boolean isGroupCommit() {
+		return groupCommit;
+	}
+
+	public void setGroupCommit(boolean groupCommit) {
+		this.groupCommit = groupCommit;
+	}
 }
@@ -39,6 +39,8 @@ public class DownOperationResult implements OperationResult {
 	private Set<String> downloadedUnknownDatabases = new HashSet<String>();
 	private Set<MultiChunkId> downloadedMultiChunks = new HashSet<MultiChunkId>();
 	private LsRemoteOperationResult lsRemoteResult = null;
+	private long reusedChunkBytes = 0;
+	private long downloadedMultiChunkBytes = 0;
 
 	public DownResultCode getResultCode() {
 		return resultCode;
@@ -87,4 +89,28 @@ public class DownOperationResult implements OperationResult {
 	public void setLsRemoteResult(LsRemoteOperationResult lsRemoteResult) {
 		this.lsRemoteResult = lsRemoteResult;
 	}
-}
\ No newline at end of file
+
+	/**
+	 * Returns the number of bytes that were copied from existing local files
+	 * when files were reconstructed, instead of being downloaded.
+	 */
+	public long getReusedChunkBytes() {
+		return reusedChunkBytes;
+	}
+
+	public void setReusedChunkBytes(long reusedChunkBytes) {
+		this.reusedChunkBytes = reusedChunkBytes;
+	}
+
+	/**
+	 * Returns the total size of the (encrypted) multichunks downloaded
+	 * to reconstruct files.
+	 */
+	public long getDownloadedMultiChunkBytes() {
+		return downloadedMultiChunkBytes;
+	}
+
+	public void setDownloadedMultiChunkBytes(long downloadedMultiChunkBytes) {
+		this.downloadedMultiChunkBytes = downloadedMultiChunkBytes;
+	}
+}
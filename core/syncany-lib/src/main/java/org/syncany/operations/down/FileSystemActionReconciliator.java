@@ -136,12 +136,29 @@ public class FileSystemActionReconciliator {
 	private Assembler assembler;
 	
 	public FileSystemActionReconciliator(Config config, ChangeSet changeSet) {
+		this(config, changeSet, new SqlDatabase(config));
+	}
+
+	/**
+	 * Creates a reconciliator that uses the given database, e.g. the one of the
+	 * calling operation. The database is not closed by the reconciliator.
+	 */
+	public FileSystemActionReconciliator(Config config, ChangeSet changeSet, SqlDatabase localDatabase) {
 		this.config = config; 
 		this.changeSet = changeSet;
-		this.localDatabase = new SqlDatabase(config);
+		this.localDatabase = localDatabase;
 		this.fileVersionComparator = new FileVersionComparator(config.getLocalDir(), config.getChunker().getChecksumAlgorithm());
 	}
 	
+	/**
+	 * Returns the assembler used by the file creating actions returned by
+	 * {@link #determineFileSystemActions(MemoryDatabase) determineFileSystemActions()}. 
+	 * The assembler must be closed after the actions have been applied.
+	 */
+	public Assembler getAssembler() {
+		return assembler;
+	}
+	
 	public List<FileSystemAction> determineFileSystemActions(MemoryDatabase winnersDatabase) throws Exception {
 		List<PartialFileHistory> localFileHistoriesWithLastVersion = localDatabase.getFileHistoriesWithLastVersion();
 		return determineFileSystemActions(winnersDatabase, false, localFileHistoriesWithLastVersion);
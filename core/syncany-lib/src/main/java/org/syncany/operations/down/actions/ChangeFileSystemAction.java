@@ -17,11 +17,13 @@
  */
 package org.syncany.operations.down.actions;
 
+import java.io.File;
 import java.util.logging.Level;
 
 import org.syncany.config.Config;
 import org.syncany.database.FileVersion;
 import org.syncany.database.FileVersion.FileStatus;
+import org.syncany.database.FileVersion.FileType;
 import org.syncany.database.MemoryDatabase;
 import org.syncany.operations.Assembler;
 
@@ -47,15 +49,19 @@ public class ChangeFileSystemAction extends FileCreatingFileSystemAction {
 			if (!toFileExists) {
 				logger.log(Level.INFO, "     - (1) Original file matches, target file does NOT match: deleting original file, creating target file at: "+fileVersion2);
 				
+				File reconstructedFileInCache = assembleFileBeforeDelete(fileVersion2);
+				
 				deleteFile(fileVersion1);	
-				createFileFolderOrSymlink(fileVersion2);						
+				createFileFolderOrSymlink(fileVersion2, reconstructedFileInCache);						
 			}
 			else {
 				logger.log(Level.INFO, "     - (2) Original file matches, target file does NOT match (EXISTS!): deleting original file, creating conflict file and creating target file at: "+fileVersion2);
 				
+				File reconstructedFileInCache = assembleFileBeforeDelete(fileVersion2);
+				
 				deleteFile(fileVersion1);	
 				moveToConflictFile(fileVersion2);
-				createFileFolderOrSymlink(fileVersion2);										
+				createFileFolderOrSymlink(fileVersion2, reconstructedFileInCache);										
 			}				
 		}
 		else if (fromFileMatches && toFileMatches) {
@@ -104,4 +110,18 @@ public class ChangeFileSystemAction extends FileCreatingFileSystemAction {
 	public String toString() {
 		return "ChangeFileSystemAction [file1=" + fileVersion1 + ", file2=" + fileVersion2 + "]";
 	}				
-}	
+	
+	/**
+	 * Assembles the target file in the cache before the original file is deleted, so that
+	 * the assembler can still copy unchanged chunks from the original file. Returns
+	 * <tt>null</tt> if the target is not a file.
+	 */
+	private File assembleFileBeforeDelete(FileVersion reconstructedFileVersion) throws Exception {
+		if (reconstructedFileVersion.getType() == FileType.FILE) {
+			return assembleFileToCache(reconstructedFileVersion);
+		}
+		else {
+			return null;
+		}
+	}
+}
@@ -51,6 +51,19 @@ public abstract class FileCreatingFileSystemAction extends FileSystemAction {
 		}
 	}
 
+	/**
+	 * Creates the given file version like {@link #createFileFolderOrSymlink(FileVersion)}, but
+	 * uses the given file in the cache if it has already been assembled (i.e. if it is not <tt>null</tt>).
+	 */
+	protected void createFileFolderOrSymlink(FileVersion reconstructedFileVersion, File reconstructedFileInCache) throws Exception {
+		if (reconstructedFileInCache != null) {
+			moveFileToFinalLocation(reconstructedFileInCache, reconstructedFileVersion);
+		}
+		else {
+			createFileFolderOrSymlink(reconstructedFileVersion);
+		}
+	}
+
 	protected void createFolder(FileVersion targetFileVersion) throws Exception {
 		NormalizedPath targetDirPath = new NormalizedPath(config.getLocalDir(), targetFileVersion.getPath());
 		
@@ -35,16 +35,41 @@ public class LogOperation extends Operation {
 	
 	private LogOperationOptions options;
 	private SqlDatabase localDatabase;
+	private boolean closeLocalDatabase;
 
 	public LogOperation(Config config, LogOperationOptions options) {
+		this(config, options, new SqlDatabase(config), true);
+	}
+
+	/**
+	 * Creates the operation with the given database. The database is not
+	 * closed by the operation; the caller owns it.
+	 */
+	public LogOperation(Config config, LogOperationOptions options, SqlDatabase localDatabase) {
+		this(config, options, localDatabase, false);
+	}
+
+	private LogOperation(Config config, LogOperationOptions options, SqlDatabase localDatabase, boolean closeLocalDatabase) {
 		super(config);
 
 		this.options = options;
-		this.localDatabase = new SqlDatabase(config);
+		this.localDatabase = localDatabase;
+		this.closeLocalDatabase = closeLocalDatabase;
 	}
 
 	@Override
 	public LogOperationResult execute() throws Exception {
+		try {
+			return executeLog();
+		}
+		finally {
+			if (closeLocalDatabase) {
+				localDatabase.close();
+			}
+		}
+	}
+
+	private LogOperationResult executeLog() throws Exception {
 		logger.log(Level.INFO, "");
 		logger.log(Level.INFO, "Running 'Log' at client " + config.getMachineName() + " ...");
 		logger.log(Level.INFO, "--------------------------------------------");
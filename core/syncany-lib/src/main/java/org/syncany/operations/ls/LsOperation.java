@@ -37,18 +37,45 @@ import com.google.common.collect.Collections2;
 
 public class LsOperation extends Operation {
 	private static final Logger logger = Logger.getLogger(LsOperation.class.getSimpleName());
+	private static final char CURSOR_SEPARATOR = ':';
+	
 	private LsOperationOptions options;
 	private SqlDatabase localDatabase;
+	private boolean closeLocalDatabase;
 
 	public LsOperation(Config config, LsOperationOptions options) {
+		this(config, options, new SqlDatabase(config), true);
+	}
+
+	/**
+	 * Creates the operation with the given database. The database is not
+	 * closed by the operation; the caller owns it.
+	 */
+	public LsOperation(Config config, LsOperationOptions options, SqlDatabase localDatabase) {
+		this(config, options, localDatabase, false);
+	}
+
+	private LsOperation(Config config, LsOperationOptions options, SqlDatabase localDatabase, boolean closeLocalDatabase) {
 		super(config);
 
 		this.options = options;
-		this.localDatabase = new SqlDatabase(config);
+		this.localDatabase = localDatabase;
+		this.closeLocalDatabase = closeLocalDatabase;
 	}
 
 	@Override
 	public LsOperationResult execute() throws Exception {
+		try {
+			return executeLs();
+		}
+		finally {
+			if (closeLocalDatabase) {
+				localDatabase.close();
+			}
+		}
+	}
+
+	private LsOperationResult executeLs() throws Exception {
 		logger.log(Level.INFO, "");
 		logger.log(Level.INFO, "Running 'Ls' at client " + config.getMachineName() + " ...");
 		logger.log(Level.INFO, "--------------------------------------------");
@@ -56,14 +83,63 @@ public class LsOperation extends Operation {
 		String pathExpression = parsePathExpression(options.getPathExpression(), options.isFileHistoryId());
 		Set<FileType> fileTypes = options.getFileTypes();
 
-		List<FileVersion> fileList = localDatabase.getFileList(pathExpression, options.getDate(), options.isFileHistoryId(), options.isRecursive(), options.isDeleted(), fileTypes);
+		List<FileVersion> fileList = null;
+		String nextCursor = null;
+
+		if (options.getPageSize() > 0 || options.getCursor() != null) {
+			fileList = getFileListPage(pathExpression, fileTypes);
+			nextCursor = createNextCursor(fileList);
+		}
+		else {
+			fileList = localDatabase.getFileList(pathExpression, options.getDate(), options.isFileHistoryId(), options.isRecursive(), options.isDeleted(), fileTypes);
+		}
+
 		Map<FileHistoryId, PartialFileHistory> fileHistories = null;
 
 		if (options.isFetchHistories()) {
 			fileHistories = fetchFileHistories(fileList);
 		}
 
-		return new LsOperationResult(fileList, fileHistories);
+		return new LsOperationResult(fileList, fileHistories, nextCursor);
+	}
+
+	/**
+	 * Retrieves one page of the file list. To find out whether there is a next page,
+	 * one more file version than the page size is retrieved. If so, it is removed from 
+	 * the list again, and {@link #createNextCursor(List)} creates a cursor for the
+	 * next page.
+	 */
+	private List<FileVersion> getFileListPage(String pathExpression, Set<FileType> fileTypes) {
+		String afterPath = null;
+		String afterFileHistoryId = null;
+
+		if (options.getCursor() != null) {
+			int separatorIndex = options.getCursor().indexOf(CURSOR_SEPARATOR);
+
+			if (separatorIndex < 0) {
+				throw new IllegalArgumentException("Invalid cursor: " + options.getCursor());
+			}
+
+			afterFileHistoryId = options.getCursor().substring(0, separatorIndex);
+			afterPath = options.getCursor().substring(separatorIndex + 1);
+		}
+
+		int maxCount = (options.getPageSize() > 0) ? options.getPageSize() + 1 : 0;
+
+		return localDatabase.getFileList(pathExpression, options.getDate(), options.isFileHistoryId(), options.isRecursive(), options.isDeleted(),
+				fileTypes, afterPath, afterFileHistoryId, maxCount);
+	}
+
+	private String createNextCursor(List<FileVersion> fileList) {
+		if (options.getPageSize() > 0 && fileList.size() > options.getPageSize()) {
+			fileList.remove(fileList.size() - 1);
+
+			FileVersion lastFileVersion = fileList.get(fileList.size() - 1);
+			return lastFileVersion.getFileHistoryId().toString() + CURSOR_SEPARATOR + lastFileVersion.getPath();
+		}
+		else {
+			return null;
+		}
 	}
 
 	private Map<FileHistoryId, PartialFileHistory> fetchFileHistories(List<FileVersion> fileTree) {
@@ -49,6 +49,12 @@ public class LsOperationOptions implements OperationOptions {
 
 	@Element(required = false)
 	private boolean deleted;
+
+	@Element(required = false)
+	private int pageSize;
+
+	@Element(required = false)
+	private String cursor;
 	
 	public LsOperationOptions() {
 		this.date = null;
@@ -58,6 +64,8 @@ public class LsOperationOptions implements OperationOptions {
 		this.fileTypes = Sets.newHashSet(FileType.FILE, FileType.FOLDER, FileType.SYMLINK);
 		this.fetchHistories = false;
 		this.deleted = false;
+		this.pageSize = 0;
+		this.cursor = null;
 	}
 
 	public Date getDate() {
@@ -114,5 +122,30 @@ public class LsOperationOptions implements OperationOptions {
 
 	public void setDeleted(boolean deleted) {
 		this.deleted = deleted;
+	}
+
+	/**
+	 * Returns the maximum number of file versions returned by a single
+	 * operation, or zero if the entire file list is returned at once.
+	 */
+	public int getPageSize() {
+		return pageSize;
+	}
+
+	public void setPageSize(int pageSize) {
+		this.pageSize = pageSize;
+	}
+
+	/**
+	 * Returns the cursor token of the page to be returned, as returned by
+	 * {@link LsOperationResult#getNextCursor()} of the previous page, or
+	 * <tt>null</tt> for the first page.
+	 */
+	public String getCursor() {
+		return cursor;
+	}
+
+	public void setCursor(String cursor) {
+		this.cursor = cursor;
 	}		
 }
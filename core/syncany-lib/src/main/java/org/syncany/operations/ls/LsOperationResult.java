@@ -22,6 +22,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import org.simpleframework.xml.Element;
 import org.simpleframework.xml.ElementList;
 import org.simpleframework.xml.ElementMap;
 import org.syncany.database.FileVersion;
@@ -35,6 +36,9 @@ public class LsOperationResult implements OperationResult {
 	
 	@ElementMap(name = "fileVersions", required = false, key = "fileHistoryId", value = "partialFileHistory")
 	private HashMap<FileHistoryId, PartialFileHistory> fileVersions;
+
+	@Element(required = false)
+	private String nextCursor;
 	
 	public LsOperationResult() {
 		// Nothing
@@ -45,6 +49,11 @@ public class LsOperationResult implements OperationResult {
 		this.fileVersions = (fileVersions != null) ? new HashMap<>(fileVersions) : null;
 	}
 
+	public LsOperationResult(List<FileVersion> fileList, Map<FileHistoryId, PartialFileHistory> fileVersions, String nextCursor) {
+		this(fileList, fileVersions);
+		this.nextCursor = nextCursor;
+	}
+
 	public List<FileVersion> getFileList() {
 		return fileList;
 	}
@@ -52,4 +61,12 @@ public class LsOperationResult implements OperationResult {
 	public Map<FileHistoryId, PartialFileHistory> getFileVersions() {
 		return fileVersions;
 	}
+
+	/**
+	 * Returns the cursor token of the next page if the file list was paged
+	 * and there are more file versions, or <tt>null</tt> otherwise.
+	 */
+	public String getNextCursor() {
+		return nextCursor;
+	}
 }
\ No newline at end of file
@@ -93,9 +93,14 @@ public class RestoreOperation extends AbstractTransferOperation {
 		logger.log(Level.INFO, "- Restoring: " + restoreFileVersion);
 
 		RestoreFileSystemAction restoreAction = new RestoreFileSystemAction(config, assembler, restoreFileVersion, options.getRelativeTargetPath());
-		RestoreFileSystemActionResult restoreResult = restoreAction.execute();
-
-		return new RestoreOperationResult(RestoreResultCode.ACK, restoreResult.getTargetFile());
+		
+		try {
+			RestoreFileSystemActionResult restoreResult = restoreAction.execute();
+			return new RestoreOperationResult(RestoreResultCode.ACK, restoreResult.getTargetFile());
+		}
+		finally {
+			assembler.close();
+		}
 	}
 
 	private FileHistoryId findFileHistoryId() {
@@ -0,0 +1,196 @@
+/*
+ * Syncany, www.syncany.org
+ * Copyright (C) 2011-2016 Philipp C. Heckel <philipp.heckel@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.syncany.operations.status;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.FileVisitor;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * The parallel file tree walker is a replacement for {@link Files#walkFileTree(Path, FileVisitor)}
+ * that visits the entries of different directories in parallel, using a {@link ForkJoinPool}
+ * with one task per directory.
+ *
+ * <p>Like {@link Files#walkFileTree(Path, FileVisitor)}, the walker does not follow symbolic
+ * links: attributes are read with {@link LinkOption#NOFOLLOW_LINKS}, so that symlinks (even if
+ * they point to a directory) are passed to {@link FileVisitor#visitFile(Object, BasicFileAttributes) visitFile()}.
+ * Sub-directories are only descended into if {@link FileVisitor#preVisitDirectory(Object, BasicFileAttributes) preVisitDirectory()}
+ * returns {@link FileVisitResult#CONTINUE}, and {@link FileVisitor#postVisitDirectory(Object, IOException) postVisitDirectory()}
+ * is called after all sub-directories have been walked.
+ *
+ * <p>Unlike the sequential walk, the visitor is called concurrently from multiple threads and
+ * the order in which entries are visited is not defined. The visitor must therefore be thread-safe,
+ * and must sort its results if the order matters.
+ *
+ * @author Philipp C. Heckel <philipp.heckel@gmail.com>
+ */
+public class ParallelFileTreeWalker {
+	private final int threads;
+
+	private FileVisitor<Path> visitor;
+	private volatile boolean terminated;
+
+	public ParallelFileTreeWalker(int threads) {
+		this.threads = Math.max(1, threads);
+	}
+
+	/**
+	 * Walks the file tree starting at the given path and calls the visitor for each file
+	 * and directory. Exceptions thrown by the visitor are rethrown by this method.
+	 */
+	public synchronized void walkFileTree(Path start, FileVisitor<Path> visitor) throws IOException {
+		this.visitor = visitor;
+		this.terminated = false;
+
+		List<DirectoryTask> startTasks = new ArrayList<DirectoryTask>();
+		visitPath(start, startTasks);
+
+		if (startTasks.isEmpty()) {
+			return;
+		}
+
+		ForkJoinPool forkJoinPool = new ForkJoinPool(threads);
+
+		try {
+			forkJoinPool.invoke(startTasks.get(0));
+		}
+		catch (RuntimeException e) {
+			throw unwrapIOException(e);
+		}
+		finally {
+			forkJoinPool.shutdown();
+		}
+	}
+
+	/**
+	 * Reads the attributes of the given path and calls the visitor. If the path is a
+	 * directory whose entries are to be visited, a task for it is added to the given list.
+	 */
+	private FileVisitResult visitPath(Path path, List<DirectoryTask> directoryTasks) throws IOException {
+		BasicFileAttributes attrs;
+
+		try {
+			attrs = Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+		}
+		catch (IOException e) {
+			return checkTerminate(visitor.visitFileFailed(path, e));
+		}
+
+		if (attrs.isDirectory()) {
+			FileVisitResult preVisitResult = visitor.preVisitDirectory(path, attrs);
+
+			if (preVisitResult == FileVisitResult.CONTINUE) {
+				directoryTasks.add(new DirectoryTask(path));
+			}
+
+			return checkTerminate(preVisitResult);
+		}
+		else {
+			return checkTerminate(visitor.visitFile(path, attrs));
+		}
+	}
+
+	private FileVisitResult checkTerminate(FileVisitResult visitResult) {
+		if (visitResult == FileVisitResult.TERMINATE) {
+			terminated = true;
+		}
+
+		return visitResult;
+	}
+
+	private IOException unwrapIOException(RuntimeException e) {
+		// The fork-join pool may wrap the original exception; find the cause thrown by the visitor
+		Throwable cause = e;
+
+		while (cause != null) {
+			if (cause instanceof UncheckedIOException) {
+				return ((UncheckedIOException) cause).getCause();
+			}
+
+			cause = cause.getCause();
+		}
+
+		throw e;
+	}
+
+	private class DirectoryTask extends RecursiveAction {
+		private static final long serialVersionUID = -3715293781626547129L;
+
+		private final Path directory;
+
+		public DirectoryTask(Path directory) {
+			this.directory = directory;
+		}
+
+		@Override
+		protected void compute() {
+			try {
+				walkDirectory();
+			}
+			catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+
+		private void walkDirectory() throws IOException {
+			List<DirectoryTask> subDirectoryTasks = new ArrayList<DirectoryTask>();
+			IOException directoryException = null;
+
+			DirectoryStream<Path> directoryStream;
+
+			try {
+				directoryStream = Files.newDirectoryStream(directory);
+			}
+			catch (IOException e) {
+				checkTerminate(visitor.visitFileFailed(directory, e));
+				return;
+			}
+
+			try {
+				for (Path path : directoryStream) {
+					if (terminated || visitPath(path, subDirectoryTasks) == FileVisitResult.SKIP_SIBLINGS) {
+						break;
+					}
+				}
+			}
+			catch (DirectoryIteratorException e) {
+				directoryException = e.getCause();
+			}
+			finally {
+				directoryStream.close();
+			}
+
+			invokeAll(subDirectoryTasks);
+
+			if (!terminated) {
+				checkTerminate(visitor.postVisitDirectory(directory, directoryException));
+			}
+		}
+	}
+}
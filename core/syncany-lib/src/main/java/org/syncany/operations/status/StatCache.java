@@ -0,0 +1,395 @@
+/*
+ * Syncany, www.syncany.org
+ * Copyright (C) 2011-2016 Philipp C. Heckel <philipp.heckel@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.syncany.operations.status;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.DosFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.PosixFileAttributes;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.syncany.database.FileContent.FileChecksum;
+import org.syncany.database.FileVersion;
+import org.syncany.database.FileVersionComparator;
+import org.syncany.util.EnvironmentUtil;
+import org.syncany.util.FileUtil;
+
+/**
+ * The stat cache remembers the file system attributes of local files that the
+ * {@link StatusOperation} found to be unchanged. If the attributes of a file
+ * (inode, size, modified date, change date and permissions) still exactly match the
+ * cached attributes, and the expected {@link FileVersion} is still the same, the file
+ * is known to be unchanged, without running the {@link FileVersionComparator} (which
+ * re-reads the attributes, tests whether the file is locked and possibly calculates
+ * the checksum).
+ *
+ * <p>Entries whose modified or change date is very close to the time they were
+ * compared are not cached, because another change within the granularity of the
+ * file system's timestamps would not be detectable.
+ *
+ * <p>The cache is stored in the state folder (<tt>.syncany/state</tt>) in a simple
+ * binary format. If the cache file cannot be read, an empty cache is used. Long-running
+ * operations (such as the watch operation) keep the cache in memory via
+ * {@link org.syncany.config.Config#setStatCache(StatCache)}, so that it is not read and
+ * written for every status run.
+ *
+ * <p>All methods accessing the cache entries are synchronized, so that the cache
+ * can be used by the parallel file tree walk of the {@link StatusOperation}.
+ *
+ * @author Philipp C. Heckel <philipp.heckel@gmail.com>
+ */
+public class StatCache {
+	private static final Logger logger = Logger.getLogger(StatCache.class.getSimpleName());
+
+	private static final int FORMAT_MAGIC = 0x53594353; // "SYCS"
+	private static final int FORMAT_VERSION = 1;
+	private static final long RACY_TIME_WINDOW = 2000;
+
+	private static final boolean UNIX_VIEW_SUPPORTED = FileSystems.getDefault().supportedFileAttributeViews().contains("unix");
+	private static final String UNIX_VIEW_ATTRIBUTES = "unix:permissions,ino,dev,ctime,size,lastModifiedTime";
+
+	private File cacheFile;
+	private Map<String, StatCacheEntry> entries;
+	private boolean modified;
+
+	private StatCache(File cacheFile) {
+		this.cacheFile = cacheFile;
+		this.entries = new HashMap<String, StatCacheEntry>();
+		this.modified = false;
+	}
+
+	/**
+	 * Loads the stat cache from the given file. If the file does not exist
+	 * or cannot be read, an empty cache is returned.
+	 */
+	public static StatCache load(File cacheFile) {
+		StatCache statCache = new StatCache(cacheFile);
+
+		if (cacheFile.exists()) {
+			try {
+				statCache.read();
+				logger.log(Level.INFO, "Loaded stat cache with " + statCache.size() + " entries from " + cacheFile);
+			}
+			catch (IOException e) {
+				logger.log(Level.WARNING, "Cannot read stat cache from " + cacheFile + ". Starting with empty cache.", e);
+
+				statCache.entries.clear();
+				statCache.modified = true;
+			}
+		}
+
+		return statCache;
+	}
+
+	/**
+	 * Reads the stat of the given file. The attributes read by the file tree walker
+	 * are used where possible; otherwise the remaining attributes are read with a
+	 * single additional call. Returns <tt>null</tt> if the attributes cannot be read.
+	 */
+	public static FileStat readFileStat(Path file, BasicFileAttributes attrs) {
+		try {
+			if (attrs instanceof DosFileAttributes) {
+				return new FileStat(attrs.fileKey(), attrs.size(), attrs.lastModifiedTime().toMillis(), -1,
+						FileUtil.dosAttrsToString((DosFileAttributes) attrs));
+			}
+			else if (attrs instanceof PosixFileAttributes) {
+				return new FileStat(attrs.fileKey(), attrs.size(), attrs.lastModifiedTime().toMillis(), -1,
+						PosixFilePermissions.toString(((PosixFileAttributes) attrs).permissions()));
+			}
+			else if (UNIX_VIEW_SUPPORTED) {
+				Map<String, Object> unixAttrs = Files.readAttributes(file, UNIX_VIEW_ATTRIBUTES, LinkOption.NOFOLLOW_LINKS);
+
+				@SuppressWarnings("unchecked")
+				Set<PosixFilePermission> permissions = (Set<PosixFilePermission>) unixAttrs.get("permissions");
+
+				return new FileStat(unixAttrs.get("dev") + ":" + unixAttrs.get("ino"), (Long) unixAttrs.get("size"),
+						((FileTime) unixAttrs.get("lastModifiedTime")).toMillis(), ((FileTime) unixAttrs.get("ctime")).toMillis(),
+						PosixFilePermissions.toString(permissions));
+			}
+			else if (EnvironmentUtil.isUnixLikeOperatingSystem()) {
+				PosixFileAttributes posixAttrs = Files.readAttributes(file, PosixFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+
+				return new FileStat(posixAttrs.fileKey(), posixAttrs.size(), posixAttrs.lastModifiedTime().toMillis(), -1,
+						PosixFilePermissions.toString(posixAttrs.permissions()));
+			}
+			else {
+				return new FileStat(attrs.fileKey(), attrs.size(), attrs.lastModifiedTime().toMillis(), -1, null);
+			}
+		}
+		catch (IOException | RuntimeException e) {
+			logger.log(Level.FINE, "Cannot read stat of file " + file, e);
+			return null;
+		}
+	}
+
+	/**
+	 * Returns <tt>true</tt> if the file at the given path is known to match the expected
+	 * file version, i.e. if the cache has an entry with exactly the given stat, and the
+	 * expected file version has not changed since the entry was written. If checksums
+	 * are forced, the entry must also have been verified by a checksum comparison.
+	 */
+	public synchronized boolean isUnchanged(String relativePath, FileStat fileStat, FileVersion expectedFileVersion, boolean forceChecksum) {
+		if (fileStat == null) {
+			return false;
+		}
+
+		StatCacheEntry entry = entries.get(relativePath);
+
+		if (entry == null) {
+			return false;
+		}
+
+		boolean unchanged = entry.fileStat.equals(fileStat)
+				&& entry.expectedLastModified == expectedFileVersion.getLastModified().getTime()
+				&& FileChecksum.fileChecksumEquals(entry.expectedChecksum, expectedFileVersion.getChecksum())
+				&& expectedFileVersion.getSize() != null && expectedFileVersion.getSize() == fileStat.size
+				&& expectedAttributesEqual(expectedFileVersion, fileStat)
+				&& (!forceChecksum || entry.checksumVerified);
+
+		entry.used = true;
+		return unchanged;
+	}
+
+	/**
+	 * Remembers that the file at the given path, having the given stat, was found to be
+	 * identical to the expected file version. <tt>checksumVerified</tt> must only be
+	 * <tt>true</tt> if the file's checksum was actually calculated and compared.
+	 */
+	public synchronized void put(String relativePath, FileStat fileStat, FileVersion expectedFileVersion, boolean checksumVerified) {
+		if (fileStat == null || isRacy(fileStat)) {
+			remove(relativePath);
+			return;
+		}
+
+		StatCacheEntry entry = new StatCacheEntry(fileStat, expectedFileVersion.getChecksum(), expectedFileVersion.getLastModified().getTime(),
+				checksumVerified);
+
+		entry.used = true;
+
+		entries.put(relativePath, entry);
+		modified = true;
+	}
+
+	public synchronized void remove(String relativePath) {
+		if (entries.remove(relativePath) != null) {
+			modified = true;
+		}
+	}
+
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	/**
+	 * Removes all entries that have not been looked up or written since the
+	 * cache was loaded, or since the last call of this method. This should only
+	 * be called after a full file tree walk.
+	 */
+	public synchronized void removeUnusedEntries() {
+		Iterator<StatCacheEntry> entryIterator = entries.values().iterator();
+
+		while (entryIterator.hasNext()) {
+			StatCacheEntry entry = entryIterator.next();
+
+			if (!entry.used) {
+				entryIterator.remove();
+				modified = true;
+			}
+			else {
+				entry.used = false; // Cache may be kept in memory for the next walk
+			}
+		}
+	}
+
+	/**
+	 * Writes the cache to disk, if it was modified. The cache file is replaced
+	 * atomically, so that a crash never leaves a half-written cache file.
+	 */
+	public synchronized void save() throws IOException {
+		if (!modified) {
+			return;
+		}
+
+		File tempCacheFile = new File(cacheFile.getParentFile(), cacheFile.getName() + ".tmp");
+		cacheFile.getParentFile().mkdirs();
+
+		try (DataOutputStream dataOutputStream = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempCacheFile)))) {
+			dataOutputStream.writeInt(FORMAT_MAGIC);
+			dataOutputStream.writeInt(FORMAT_VERSION);
+			dataOutputStream.writeInt(entries.size());
+
+			for (Map.Entry<String, StatCacheEntry> pathEntry : entries.entrySet()) {
+				StatCacheEntry entry = pathEntry.getValue();
+
+				dataOutputStream.writeUTF(pathEntry.getKey());
+				writeNullableString(dataOutputStream, entry.fileStat.fileKey);
+				dataOutputStream.writeLong(entry.fileStat.size);
+				dataOutputStream.writeLong(entry.fileStat.lastModified);
+				dataOutputStream.writeLong(entry.fileStat.changeTime);
+				writeNullableString(dataOutputStream, entry.fileStat.permissions);
+				writeNullableString(dataOutputStream, (entry.expectedChecksum != null) ? entry.expectedChecksum.toString() : null);
+				dataOutputStream.writeLong(entry.expectedLastModified);
+				dataOutputStream.writeBoolean(entry.checksumVerified);
+			}
+		}
+
+		Files.move(tempCacheFile.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		modified = false;
+
+		logger.log(Level.INFO, "Saved stat cache with " + entries.size() + " entries to " + cacheFile);
+	}
+
+	private void read() throws IOException {
+		try (DataInputStream dataInputStream = new DataInputStream(new BufferedInputStream(new FileInputStream(cacheFile)))) {
+			if (dataInputStream.readInt() != FORMAT_MAGIC || dataInputStream.readInt() != FORMAT_VERSION) {
+				throw new IOException("Unknown stat cache format.");
+			}
+
+			int entryCount = dataInputStream.readInt();
+
+			for (int i = 0; i < entryCount; i++) {
+				String relativePath = dataInputStream.readUTF();
+				String fileKey = readNullableString(dataInputStream);
+				long size = dataInputStream.readLong();
+				long lastModified = dataInputStream.readLong();
+				long changeTime = dataInputStream.readLong();
+				String permissions = readNullableString(dataInputStream);
+				String expectedChecksum = readNullableString(dataInputStream);
+				long expectedLastModified = dataInputStream.readLong();
+				boolean checksumVerified = dataInputStream.readBoolean();
+
+				FileStat fileStat = new FileStat(fileKey, size, lastModified, changeTime, permissions);
+				FileChecksum expectedFileChecksum = (expectedChecksum != null) ? FileChecksum.parseFileChecksum(expectedChecksum) : null;
+
+				entries.put(relativePath, new StatCacheEntry(fileStat, expectedFileChecksum, expectedLastModified, checksumVerified));
+			}
+		}
+	}
+
+	private boolean expectedAttributesEqual(FileVersion expectedFileVersion, FileStat fileStat) {
+		if (EnvironmentUtil.isWindows()) {
+			return fileStat.permissions != null && fileStat.permissions.equals(expectedFileVersion.getDosAttributes());
+		}
+		else if (EnvironmentUtil.isUnixLikeOperatingSystem()) {
+			return fileStat.permissions != null && fileStat.permissions.equals(expectedFileVersion.getPosixPermissions());
+		}
+		else {
+			return true;
+		}
+	}
+
+	private boolean isRacy(FileStat fileStat) {
+		long lastChangeTime = Math.max(fileStat.lastModified, fileStat.changeTime);
+		return System.currentTimeMillis() - lastChangeTime < RACY_TIME_WINDOW;
+	}
+
+	private static void writeNullableString(DataOutputStream dataOutputStream, String value) throws IOException {
+		dataOutputStream.writeBoolean(value != null);
+
+		if (value != null) {
+			dataOutputStream.writeUTF(value);
+		}
+	}
+
+	private static String readNullableString(DataInputStream dataInputStream) throws IOException {
+		return (dataInputStream.readBoolean()) ? dataInputStream.readUTF() : null;
+	}
+
+	/**
+	 * The file system attributes of a local file, as they are compared
+	 * by the stat cache. The change date is <tt>-1</tt> if it is not available.
+	 */
+	public static class FileStat {
+		private final String fileKey;
+		private final long size;
+		private final long lastModified;
+		private final long changeTime;
+		private final String permissions;
+
+		public FileStat(Object fileKey, long size, long lastModified, long changeTime, String permissions) {
+			this.fileKey = (fileKey != null) ? fileKey.toString() : null;
+			this.size = size;
+			this.lastModified = lastModified;
+			this.changeTime = changeTime;
+			this.permissions = permissions;
+		}
+
+		public long getSize() {
+			return size;
+		}
+
+		public long getLastModified() {
+			return lastModified;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof FileStat)) {
+				return false;
+			}
+
+			FileStat other = (FileStat) obj;
+
+			return size == other.size && lastModified == other.lastModified && changeTime == other.changeTime
+					&& (fileKey == null ? other.fileKey == null : fileKey.equals(other.fileKey))
+					&& (permissions == null ? other.permissions == null : permissions.equals(other.permissions));
+		}
+
+		@Override
+		public int hashCode() {
+			return (int) (size ^ lastModified ^ changeTime);
+		}
+	}
+
+	private static class StatCacheEntry {
+		private final FileStat fileStat;
+		private final FileChecksum expectedChecksum;
+		private final long expectedLastModified;
+		private final boolean checksumVerified;
+
+		private boolean used;
+
+		public StatCacheEntry(FileStat fileStat, FileChecksum expectedChecksum, long expectedLastModified, boolean checksumVerified) {
+			this.fileStat = fileStat;
+			this.expectedChecksum = expectedChecksum;
+			this.expectedLastModified = expectedLastModified;
+			this.checksumVerified = checksumVerified;
+			this.used = false;
+		}
+	}
+}
@@ -23,24 +23,36 @@ import java.io.IOException;
 import java.nio.file.FileVisitResult;
 import java.nio.file.FileVisitor;
 import java.nio.file.Files;
+import java.nio.file.LinkOption;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import org.syncany.config.Config;
 import org.syncany.config.LocalEventBus;
+import org.syncany.database.FileChecksumCache;
 import org.syncany.database.FileVersion;
 import org.syncany.database.FileVersion.FileStatus;
+import org.syncany.database.FileVersion.FileType;
 import org.syncany.database.FileVersionComparator;
+import org.syncany.database.FileVersionComparator.FileProperties;
 import org.syncany.database.FileVersionComparator.FileVersionComparison;
 import org.syncany.database.SqlDatabase;
 import org.syncany.operations.ChangeSet;
 import org.syncany.operations.Operation;
 import org.syncany.operations.daemon.messages.StatusEndSyncExternalEvent;
 import org.syncany.operations.daemon.messages.StatusStartSyncExternalEvent;
+import org.syncany.operations.status.StatCache.FileStat;
 import org.syncany.util.FileUtil;
 
 /**
@@ -48,14 +60,30 @@ import org.syncany.util.FileUtil;
  * database. It uses the {@link FileVersionComparator} to determine differences and returns
  * new/changed/deleted files in form of a {@link ChangeSet}.
  *
+ * <p>If the {@link StatusOperationOptions} contain a set of paths, only these paths (and
+ * their sub-folders) are examined, and all other files are assumed unchanged. The parent
+ * folders of these paths are compared as well, because their modified dates change when
+ * entries are added or removed.
+ *
+ * <p>Files whose attributes have not changed since they were last found to be unchanged
+ * are skipped using the {@link StatCache}.
+ *
+ * <p>If a {@link FileChecksumCache} is given, checksums calculated for the comparison
+ * (if force checksum is enabled) are added to it, so that subsequent operations of the
+ * same sync (e.g. the indexer) do not have to read the files again.
+ *
+ * <p>If more than one status thread is configured for the folder (<tt>statusThreads</tt>
+ * in the config.xml), the local folder is walked by the {@link ParallelFileTreeWalker}. The
+ * resulting {@link ChangeSet} is sorted, so it does not depend on the order of the walk.
+ *
  * @author Philipp C. Heckel <philipp.heckel@gmail.com>
  */
 public class StatusOperation extends Operation {
 	private static final Logger logger = Logger.getLogger(StatusOperation.class.getSimpleName());
 
 	private FileVersionComparator fileVersionComparator;
-	private SqlDatabase localDatabase;
 	private StatusOperationOptions options;
+	private StatCache statCache;
 
 	private LocalEventBus eventBus;
 
@@ -64,10 +92,13 @@ public class StatusOperation extends Operation {
 	}
 
 	public StatusOperation(Config config, StatusOperationOptions options) {
+		this(config, options, null);
+	}
+
+	public StatusOperation(Config config, StatusOperationOptions options, FileChecksumCache checksumCache) {
 		super(config);
 
-		this.fileVersionComparator = new FileVersionComparator(config.getLocalDir(), config.getChunker().getChecksumAlgorithm());
-		this.localDatabase = new SqlDatabase(config);
+		this.fileVersionComparator = new FileVersionComparator(config.getLocalDir(), config.getChunker().getChecksumAlgorithm(), checksumCache);
 		this.options = options;
 
 		this.eventBus = LocalEventBus.getInstance();
@@ -92,12 +123,23 @@ public class StatusOperation extends Operation {
 		eventBus.post(new StatusStartSyncExternalEvent(config.getLocalDir().getAbsolutePath()));
 
 		// Path to actual file version
-		final Map<String, FileVersion> filesInDatabase = localDatabase.getCurrentFileTree();
+		final Map<String, FileVersion> filesInDatabase = getCurrentFileTree();
 
 		// Find local changes
 		logger.log(Level.INFO, "Analyzing local folder " + config.getLocalDir() + " ...");
+		config.getIgnoredFiles().reloadPatternsIfModified();
+
+		boolean statCacheInMemory = config.getStatCache() != null;
+		statCache = (statCacheInMemory) ? config.getStatCache() : StatCache.load(config.getStatCacheFile());
+
 		ChangeSet localChanges = findLocalChanges(filesInDatabase);
 
+		// A scan of a few paths only changes a few entries; an in-memory
+		// cache is saved with the next full scan instead of rewriting it now
+		if (!statCacheInMemory || !isExaminePathsOnly()) {
+			saveStatCache();
+		}
+
 		if (!localChanges.hasChanges()) {
 			logger.log(Level.INFO, "- No changes to local database");
 		}
@@ -111,28 +153,174 @@ public class StatusOperation extends Operation {
 		return statusResult;
 	}
 
+	/**
+	 * Queries the current file tree using a short-lived read-only database, so that
+	 * the connection is released (or returned to the pool) before the folder is analyzed.
+	 */
+	private Map<String, FileVersion> getCurrentFileTree() {
+		try (SqlDatabase localDatabase = new SqlDatabase(config, true)) {
+			return localDatabase.getCurrentFileTree();
+		}
+	}
+
+	private boolean isExaminePathsOnly() {
+		return options != null && options.getPaths() != null && !options.getPaths().contains("");
+	}
+
 	private ChangeSet findLocalChanges(final Map<String, FileVersion> filesInDatabase) throws FileNotFoundException, IOException {
+		if (isExaminePathsOnly()) {
+			return findLocalChangesInPaths(filesInDatabase, options.getPaths());
+		}
+
 		ChangeSet localChanges = findLocalChangedAndNewFiles(config.getLocalDir(), filesInDatabase);
+		statCache.removeUnusedEntries();
 
 		if (options == null || options.isDelete()) {
-			findAndAppendDeletedFiles(localChanges, filesInDatabase);
+			findAndAppendDeletedFiles(localChanges, filesInDatabase.values());
+		}
+
+		return localChanges;
+	}
+
+	private ChangeSet findLocalChangesInPaths(Map<String, FileVersion> filesInDatabase, Set<String> paths) throws IOException {
+		logger.log(Level.INFO, "- Examining " + paths.size() + " path(s) only, assuming all other files unchanged ...");
+
+		Path rootPath = Paths.get(config.getLocalDir().getAbsolutePath());
+		StatusFileVisitor fileVisitor = new StatusFileVisitor(rootPath, filesInDatabase);
+		Map<String, Boolean> visitedParentFolders = new HashMap<String, Boolean>();
+
+		Set<String> topLevelPaths = removeNestedPaths(paths);
+
+		for (String relativePath : topLevelPaths) {
+			Path actualLocalPath = rootPath.resolve(relativePath);
+
+			if (visitParentFolders(fileVisitor, rootPath, relativePath, visitedParentFolders) && Files.exists(actualLocalPath, LinkOption.NOFOLLOW_LINKS)) {
+				Files.walkFileTree(actualLocalPath, fileVisitor);
+			}
+		}
+
+		ChangeSet localChanges = fileVisitor.getChangeSet();
+
+		if (options.isDelete()) {
+			NavigableMap<String, FileVersion> sortedFilesInDatabase = (filesInDatabase instanceof NavigableMap) ? (NavigableMap<String, FileVersion>) filesInDatabase
+					: new TreeMap<String, FileVersion>(filesInDatabase);
+
+			for (String relativePath : topLevelPaths) {
+				FileVersion lastLocalVersion = sortedFilesInDatabase.get(relativePath);
+
+				if (lastLocalVersion != null) {
+					findAndAppendDeletedFiles(localChanges, Collections.singleton(lastLocalVersion));
+				}
+
+				// Sub-tree: all paths starting with "relativePath/" ('0' follows '/')
+				findAndAppendDeletedFiles(localChanges, sortedFilesInDatabase.subMap(relativePath + "/", true, relativePath + "0", false).values());
+			}
 		}
 
 		return localChanges;
 	}
 
+	/**
+	 * Visits the parent folders of the given path (but not the path itself), top-down, and
+	 * returns <tt>false</tt> if the path must not be examined, e.g. because a parent folder
+	 * is ignored, is a symlink or does not exist anymore. Results are cached in the given map.
+	 */
+	private boolean visitParentFolders(StatusFileVisitor fileVisitor, Path rootPath, String relativePath, Map<String, Boolean> visitedParentFolders)
+			throws IOException {
+
+		int separatorIndex = relativePath.indexOf('/');
+
+		while (separatorIndex >= 0) {
+			String relativeParentPath = relativePath.substring(0, separatorIndex);
+			Boolean examineParentFolder = visitedParentFolders.get(relativeParentPath);
+
+			if (examineParentFolder == null) {
+				Path actualParentFolder = rootPath.resolve(relativeParentPath);
+				examineParentFolder = false;
+
+				try {
+					BasicFileAttributes attrs = Files.readAttributes(actualParentFolder, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+
+					if (attrs.isDirectory()) {
+						examineParentFolder = fileVisitor.preVisitDirectory(actualParentFolder, attrs) == FileVisitResult.CONTINUE;
+					}
+				}
+				catch (IOException e) {
+					logger.log(Level.FINEST, "- Parent folder vanished: " + relativeParentPath);
+				}
+
+				visitedParentFolders.put(relativeParentPath, examineParentFolder);
+			}
+
+			if (!examineParentFolder) {
+				return false;
+			}
+
+			separatorIndex = relativePath.indexOf('/', separatorIndex + 1);
+		}
+
+		return true;
+	}
+
+	/**
+	 * Returns the given paths without the paths that are inside another
+	 * one of the given paths, because these are examined anyway.
+	 */
+	private Set<String> removeNestedPaths(Set<String> paths) {
+		Set<String> topLevelPaths = new TreeSet<String>();
+
+		for (String path : paths) {
+			boolean isNestedPath = false;
+			int separatorIndex = path.indexOf('/');
+
+			while (separatorIndex >= 0 && !isNestedPath) {
+				isNestedPath = paths.contains(path.substring(0, separatorIndex));
+				separatorIndex = path.indexOf('/', separatorIndex + 1);
+			}
+
+			if (!isNestedPath) {
+				topLevelPaths.add(path);
+			}
+		}
+
+		return topLevelPaths;
+	}
+
 	private ChangeSet findLocalChangedAndNewFiles(final File root, Map<String, FileVersion> filesInDatabase)
 			throws FileNotFoundException, IOException {
 		Path rootPath = Paths.get(root.getAbsolutePath());
 
 		StatusFileVisitor fileVisitor = new StatusFileVisitor(rootPath, filesInDatabase);
-		Files.walkFileTree(rootPath, fileVisitor);
+
+		if (config.getStatusThreads() > 1) {
+			logger.log(Level.INFO, "- Walking file tree with " + config.getStatusThreads() + " threads ...");
+			new ParallelFileTreeWalker(config.getStatusThreads()).walkFileTree(rootPath, fileVisitor);
+		}
+		else {
+			Files.walkFileTree(rootPath, fileVisitor);
+		}
 
 		return fileVisitor.getChangeSet();
 	}
 
-	private void findAndAppendDeletedFiles(ChangeSet localChanges, Map<String, FileVersion> filesInDatabase) {
-		for (FileVersion lastLocalVersion : filesInDatabase.values()) {
+	private void saveStatCache() {
+		try {
+			statCache.save();
+		}
+		catch (IOException e) {
+			logger.log(Level.WARNING, "Cannot save stat cache to " + config.getStatCacheFile() + ". Ignoring.", e);
+		}
+	}
+
+	private void findAndAppendDeletedFiles(ChangeSet localChanges, Collection<FileVersion> filesInDatabase) {
+		for (FileVersion lastLocalVersion : filesInDatabase) {
+			// Files found by the file tree walk exist; no need to check again
+			if (localChanges.getUnchangedFiles().contains(lastLocalVersion.getPath())
+					|| localChanges.getChangedFiles().contains(lastLocalVersion.getPath())) {
+
+				continue;
+			}
+
 			// Check if file exists, remove if it doesn't
 			File lastLocalVersionOnDisk = new File(config.getLocalDir() + File.separator + lastLocalVersion.getPath());
 
@@ -148,6 +336,10 @@ public class StatusOperation extends Operation {
 		}
 	}
 
+	/**
+	 * Compares the visited files to the current file tree. The visitor is thread-safe,
+	 * so that it can be used by the {@link ParallelFileTreeWalker}.
+	 */
 	private class StatusFileVisitor implements FileVisitor<Path> {
 		private Path root;
 		private ChangeSet changeSet;
@@ -183,6 +375,22 @@ public class StatusOperation extends Operation {
 				return FileVisitResult.SKIP_SUBTREE;
 			}
 
+			// Check database by file path
+			FileVersion expectedLastFileVersion = currentFileTree.get(relativeFilePath);
+			boolean forceChecksum = options != null && options.isForceChecksum();
+
+			// Skip files that have not been touched since they were last compared
+			FileStat fileStat = null;
+
+			if (expectedLastFileVersion != null && attrs.isRegularFile()) {
+				fileStat = StatCache.readFileStat(actualLocalFile, attrs);
+
+				if (statCache.isUnchanged(relativeFilePath, fileStat, expectedLastFileVersion, forceChecksum)) {
+					addUnchangedFile(relativeFilePath);
+					return FileVisitResult.CONTINUE;
+				}
+			}
+
 			// Check if file is locked
 			boolean fileLocked = FileUtil.isFileLocked(actualLocalFile.toFile());
 
@@ -191,25 +399,26 @@ public class StatusOperation extends Operation {
 				return FileVisitResult.CONTINUE;
 			}
 
-			// Check database by file path
-			FileVersion expectedLastFileVersion = currentFileTree.get(relativeFilePath);
-
 			if (expectedLastFileVersion != null) {
 				// Compare
-				boolean forceChecksum = options != null && options.isForceChecksum();
 				FileVersionComparison fileVersionComparison = fileVersionComparator.compare(expectedLastFileVersion, actualLocalFile.toFile(),
 						forceChecksum);
 
 				if (fileVersionComparison.areEqual()) {
-					changeSet.getUnchangedFiles().add(relativeFilePath);
+					addUnchangedFile(relativeFilePath);
+
+					if (fileStat != null && isSameFileStat(fileStat, fileVersionComparison.getActualFileProperties())) {
+						statCache.put(relativeFilePath, fileStat, expectedLastFileVersion, forceChecksum);
+					}
 				}
 				else {
-					changeSet.getChangedFiles().add(relativeFilePath);
+					addChangedFile(relativeFilePath);
+					statCache.remove(relativeFilePath);
 				}
 			}
 			else {
 				if (!config.getIgnoredFiles().isFileIgnored(relativeFilePath, actualLocalFile.toFile().getName())) {
-					changeSet.getNewFiles().add(relativeFilePath);
+					addNewFile(relativeFilePath);
 					logger.log(Level.FINEST, "- New file: " + relativeFilePath);
 				}
 				else {
@@ -230,6 +439,30 @@ public class StatusOperation extends Operation {
 			}
 		}
 
+		private void addUnchangedFile(String relativeFilePath) {
+			synchronized (changeSet) {
+				changeSet.getUnchangedFiles().add(relativeFilePath);
+			}
+		}
+
+		private void addChangedFile(String relativeFilePath) {
+			synchronized (changeSet) {
+				changeSet.getChangedFiles().add(relativeFilePath);
+			}
+		}
+
+		private void addNewFile(String relativeFilePath) {
+			synchronized (changeSet) {
+				changeSet.getNewFiles().add(relativeFilePath);
+			}
+		}
+
+		private boolean isSameFileStat(FileStat fileStat, FileProperties actualFileProperties) {
+			// The file might have changed between reading the stat and comparing it
+			return actualFileProperties != null && actualFileProperties.getType() == FileType.FILE
+					&& actualFileProperties.getSize() == fileStat.getSize() && actualFileProperties.getLastModified() == fileStat.getLastModified();
+		}
+
 		@Override
 		public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
 			return visitFile(dir, attrs);
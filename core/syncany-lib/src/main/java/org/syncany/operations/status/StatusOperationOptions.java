@@ -17,7 +17,10 @@
  */
 package org.syncany.operations.status;
 
+import java.util.Set;
+
 import org.simpleframework.xml.Element;
+import org.simpleframework.xml.ElementList;
 import org.simpleframework.xml.Root;
 import org.syncany.operations.OperationOptions;
 
@@ -29,6 +32,11 @@ public class StatusOperationOptions implements OperationOptions {
 	@Element(required = false)
 	private boolean delete = true;
 
+	// Relative (database) paths to examine; files outside these paths and their
+	// sub-folders are assumed unchanged. If null, the entire local folder is examined.
+	@ElementList(required = false, entry = "path")
+	private Set<String> paths = null;
+
 	public boolean isForceChecksum() {
 		return forceChecksum;
 	}
@@ -44,4 +52,12 @@ public class StatusOperationOptions implements OperationOptions {
 	public void setDelete(boolean delete) {
 		this.delete = delete;
 	}
-}
\ No newline at end of file
+
+	public Set<String> getPaths() {
+		return paths;
+	}
+
+	public void setPaths(Set<String> paths) {
+		this.paths = paths;
+	}
+}
@@ -10,6 +10,7 @@ import java.util.logging.Logger;
 import org.syncany.chunk.Deduper;
 import org.syncany.config.Config;
 import org.syncany.database.DatabaseVersion;
+import org.syncany.database.FileChecksumCache;
 
 /**
  * AsyncIndexer provides a Runnable to start as a separate thread. Running
@@ -34,9 +35,21 @@ public class AsyncIndexer implements Runnable {
 	 * @param queue a threadsafe Queue to communicate DatabaseVersions.
 	 */
 	public AsyncIndexer(Config config, Deduper deduper, List<File> files, List<File> deletedFiles, Queue<DatabaseVersion> queue) {
+		this(config, deduper, files, deletedFiles, queue, null);
+	}
+
+	/** 
+	 * @param config specifying all necessary options
+	 * @param deduper the Deduper, already configured.
+	 * @param files List of Files to be indexed.
+	 * @param queue a threadsafe Queue to communicate DatabaseVersions.
+	 * @param checksumCache file checksums known from the status operation, or null.
+	 */
+	public AsyncIndexer(Config config, Deduper deduper, List<File> files, List<File> deletedFiles, Queue<DatabaseVersion> queue,
+			FileChecksumCache checksumCache) {
 		this.files = files;
 		this.databaseVersionQueue = queue;
-		this.indexer = new Indexer(config, deduper);
+		this.indexer = new Indexer(config, deduper, checksumCache);
 		this.deletedFiles = deletedFiles;
 	}
 
@@ -36,6 +36,7 @@ import org.syncany.config.LocalEventBus;
 import org.syncany.database.ChunkEntry;
 import org.syncany.database.ChunkEntry.ChunkChecksum;
 import org.syncany.database.DatabaseVersion;
+import org.syncany.database.FileChecksumCache;
 import org.syncany.database.FileContent;
 import org.syncany.database.FileContent.FileChecksum;
 import org.syncany.database.FileVersion;
@@ -73,6 +74,11 @@ import org.syncany.util.StringUtil;
  * dirty database into account. Lookups for chunks and file histories are performed 
  * on both databases.
  * 
+ * <p>If a {@link FileChecksumCache} is given, files whose checksum is already known
+ * (e.g. because the status operation calculated it) and whose content is already
+ * in the local database are not read and chunked again. Checksums calculated by
+ * the chunker are added to the cache.
+ * 
  * @author Philipp C. Heckel <philipp.heckel@gmail.com>
  */
 public class Indexer {
@@ -85,14 +91,20 @@ public class Indexer {
 	private Config config;
 	private Deduper deduper;
 	private SqlDatabase localDatabase;
+	private FileChecksumCache checksumCache;
 
 	private LocalEventBus eventBus;
 
 
 	public Indexer(Config config, Deduper deduper) {
+		this(config, deduper, null);
+	}
+
+	public Indexer(Config config, Deduper deduper, FileChecksumCache checksumCache) {
 		this.config = config;
 		this.deduper = deduper;
 		this.localDatabase = new SqlDatabase(config, true);
+		this.checksumCache = checksumCache;
 
 		this.eventBus = LocalEventBus.getInstance();
 	}
@@ -112,14 +124,17 @@ public class Indexer {
 	 * @throws IOException If the chunking/deduplication cannot read/process any of the files
 	 */
 	public void index(List<File> files, List<File> deletedFiles, Queue<DatabaseVersion> databaseVersionQueue) throws IOException {
-		if (!files.isEmpty()) {
-			indexWithNewFiles(files, deletedFiles, databaseVersionQueue);
+		try {
+			if (!files.isEmpty()) {
+				indexWithNewFiles(files, deletedFiles, databaseVersionQueue);
+			}
+			else {
+				indexWithoutNewFiles(files, deletedFiles, databaseVersionQueue);
+			}
 		}
-		else {
-			indexWithoutNewFiles(files, deletedFiles, databaseVersionQueue);
+		finally {
+			localDatabase.close();
 		}
-
-		localDatabase.finalize();
 	}
 
 	private void indexWithNewFiles(List<File> files, List<File> deletedFiles, Queue<DatabaseVersion> databaseVersionQueue) throws IOException {
@@ -241,14 +256,28 @@ public class Indexer {
 
 		private FileProperties startFileProperties;
 		private FileProperties endFileProperties;
+		private FileChecksum knownFileChecksum;
 
 		public IndexerDeduperListener(DatabaseVersion newDatabaseVersion) {
 
-			this.fileVersionComparator = new FileVersionComparator(config.getLocalDir(), config.getChunker().getChecksumAlgorithm());
+			this.fileVersionComparator = new FileVersionComparator(config.getLocalDir(), config.getChunker().getChecksumAlgorithm(), checksumCache);
 			this.secureRandom = new SecureRandom();
 			this.newDatabaseVersion = newDatabaseVersion;
 		}
 
+		@Override
+		public boolean onFilePrefetch(File file) {
+			if (checksumCache == null) {
+				return true;
+			}
+
+			// Same decision as onFileFilter() and onFileStart(), but without touching any state
+			FileProperties fileProperties = fileVersionComparator.captureFileProperties(file, null, false);
+
+			return fileProperties.exists() && !fileProperties.isLocked() && fileProperties.getType() == FileType.FILE
+					&& getKnownFileChecksum(fileProperties) == null;
+		}
+
 		@Override
 		public boolean onFileFilter(File file) {
 			logger.log(Level.FINER, "- +File {0}", file);
@@ -278,12 +307,44 @@ public class Indexer {
 		public boolean onFileStart(File file) {
 			boolean processFile = startFileProperties.getType() == FileType.FILE; // Ignore directories and symlinks!
 
+			// Skip reading the file if its content is already known
+			if (processFile) {
+				knownFileChecksum = getKnownFileChecksum(startFileProperties);
+
+				if (knownFileChecksum != null) {
+					logger.log(Level.FINER, "   * Checksum of file known, and file content exists in database. Not chunking file {0}.", file);
+					processFile = false;
+				}
+			}
+
 			// We could fire an event here, but firing for every file
 			// is very exhausting for the event bus.
 
 			return processFile;
 		}
 
+		/**
+		 * Looks up the checksum of the given file in the checksum cache, and returns
+		 * it if the corresponding file content already exists in the local database. In
+		 * that case, all chunks of the file exist, and the file does not have to be read
+		 * again. Returns <tt>null</tt> otherwise.
+		 */
+		private FileChecksum getKnownFileChecksum(FileProperties fileProperties) {
+			if (checksumCache == null || fileProperties.getSize() == 0) {
+				return null;
+			}
+
+			FileChecksum cachedFileChecksum = checksumCache.get(fileProperties.getRelativePath(), fileProperties.getSize(),
+					fileProperties.getLastModified());
+
+			if (cachedFileChecksum != null && localDatabase.getFileContent(cachedFileChecksum, false) != null) {
+				return cachedFileChecksum;
+			}
+			else {
+				return null;
+			}
+		}
+
 		@Override
 		public void onFileEnd(File file, byte[] rawFileChecksum) {
 			// Get file attributes (get them while file exists)
@@ -291,7 +352,7 @@ public class Indexer {
 			// Note: Do NOT move any File-methods (file.anything()) below the file.exists()-part,
 			// because the file could vanish!
 
-			FileChecksum fileChecksum = (rawFileChecksum != null) ? new FileChecksum(rawFileChecksum) : null;
+			FileChecksum fileChecksum = (rawFileChecksum != null) ? new FileChecksum(rawFileChecksum) : knownFileChecksum;
 			endFileProperties = fileVersionComparator.captureFileProperties(file, fileChecksum, false);
 
 			// Check if file has vanished
@@ -305,6 +366,10 @@ public class Indexer {
 				logger.log(Level.INFO, "   * NOT ADDING because file has VANISHED (" + !endFileProperties.exists() + "), is LOCKED ("
 						+ endFileProperties.isLocked() + "), or has CHANGED (" + fileHasChanged + ")");
 
+				if (checksumCache != null) {
+					checksumCache.remove(endFileProperties.getRelativePath());
+				}
+
 				resetFileEnd();
 				return;
 			}
@@ -464,6 +529,7 @@ public class Indexer {
 			fileContent = null;
 			startFileProperties = null;
 			endFileProperties = null;
+			knownFileChecksum = null;
 		}
 
 		private PartialFileHistory guessLastFileHistory(FileProperties fileProperties) {
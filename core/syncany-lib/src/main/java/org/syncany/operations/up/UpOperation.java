@@ -39,6 +39,7 @@ import org.syncany.config.Config;
 import org.syncany.database.ChunkEntry;
 import org.syncany.database.DatabaseVersion;
 import org.syncany.database.DatabaseVersionHeader;
+import org.syncany.database.FileChecksumCache;
 import org.syncany.database.FileContent;
 import org.syncany.database.FileVersion;
 import org.syncany.database.MemoryDatabase;
@@ -106,6 +107,7 @@ public class UpOperation extends AbstractTransferOperation {
 	private UpOperationResult result;
 
 	private SqlDatabase localDatabase;
+	private FileChecksumCache checksumCache;
 	
 	private boolean resuming;
 	private TransactionRemoteFile transactionRemoteFileToResume;
@@ -122,6 +124,7 @@ public class UpOperation extends AbstractTransferOperation {
 		this.options = options;
 		this.result = new UpOperationResult();
 		this.localDatabase = new SqlDatabase(config);
+		this.checksumCache = new FileChecksumCache();
 		
 		this.resuming = false;
 		this.transactionRemoteFileToResume = null;
@@ -131,6 +134,15 @@ public class UpOperation extends AbstractTransferOperation {
 
 	@Override
 	public UpOperationResult execute() throws Exception {
+		try {
+			return executeUp();
+		}
+		finally {
+			localDatabase.close(); // No-op if already closed
+		}
+	}
+
+	private UpOperationResult executeUp() throws Exception {
 		logger.log(Level.INFO, "");
 		logger.log(Level.INFO, "Running 'Sync up' at client " + config.getMachineName() + " ...");
 		logger.log(Level.INFO, "--------------------------------------------");
@@ -169,7 +181,7 @@ public class UpOperation extends AbstractTransferOperation {
 		updateResult(numberOfPerformedTransactions);		
 
 		// Close database connection
-		localDatabase.finalize();
+		localDatabase.close();
 
 		// Finish 'up' before 'cleanup' starts
 		finishOperation();
@@ -197,9 +209,11 @@ public class UpOperation extends AbstractTransferOperation {
 		
 		// Iterate over the changes, deduplicate, and feed DatabaseVersions into an iterator
 		Deduper deduper = new Deduper(config.getChunker(), config.getMultiChunker(), config.getTransformer(), options.getTransactionSizeLimit(),
-				options.getTransactionFileLimit());
+				options.getTransactionFileLimit(), options.getChunkingThreads());
 		
-		AsyncIndexer asyncIndexer = new AsyncIndexer(config, deduper, locallyUpdatedFiles, locallyDeletedFiles, databaseVersionQueue);
+		// Share checksums calculated by the status operation, so that files are only read once
+		AsyncIndexer asyncIndexer = new AsyncIndexer(config, deduper, locallyUpdatedFiles, locallyDeletedFiles, databaseVersionQueue,
+				checksumCache);
 		new Thread(asyncIndexer, "AsyncI/" + config.getLocalDir().getName()).start();
 	}
 
@@ -276,7 +290,7 @@ public class UpOperation extends AbstractTransferOperation {
 				databaseVersion.setTimestamp(new Date());
 				databaseVersion.setClient(config.getMachineName());
 
-				remoteTransaction = new RemoteTransaction(config, transferManager);
+				remoteTransaction = new RemoteTransaction(config, transferManager, options.getUploadThreads());
 
 				// Add multichunks to transaction
 				logger.log(Level.INFO, "Uploading new multichunks ...");
@@ -455,7 +469,7 @@ public class UpOperation extends AbstractTransferOperation {
 	 */
 	private boolean checkPreconditions() throws Exception {
 		// Find local changes
-		StatusOperation statusOperation = new StatusOperation(config, options.getStatusOptions());
+		StatusOperation statusOperation = new StatusOperation(config, options.getStatusOptions(), checksumCache);
 		StatusOperationResult statusOperationResult = statusOperation.execute();
 		ChangeSet localChanges = statusOperationResult.getChangeSet();
 
@@ -540,12 +554,12 @@ public class UpOperation extends AbstractTransferOperation {
 	}
 
 	/**
-	 * Serializes a {@link MemoryDatabase} to a file, using the configured transformer.
+	 * Serializes a {@link MemoryDatabase} to a file, using the configured transformer and database format.
 	 */
 	protected void saveDeltaDatabase(MemoryDatabase db, File localDatabaseFile) throws IOException {
 		logger.log(Level.INFO, "- Saving database to " + localDatabaseFile + " ...");
 
-		DatabaseXmlSerializer dao = new DatabaseXmlSerializer(config.getTransformer());
+		DatabaseXmlSerializer dao = new DatabaseXmlSerializer(config.getTransformer(), config.getDatabaseFormat());
 		dao.save(db.getDatabaseVersions(), localDatabaseFile);
 	}
 
@@ -753,7 +767,7 @@ public class UpOperation extends AbstractTransferOperation {
 					}
 				}
 
-				remoteTransactions.add(new RemoteTransaction(config, transferManager, transactionTO));
+				remoteTransactions.add(new RemoteTransaction(config, transferManager, transactionTO, options.getUploadThreads()));
 			}
 			
 			return remoteTransactions;
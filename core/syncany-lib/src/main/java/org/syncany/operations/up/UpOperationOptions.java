@@ -31,6 +31,12 @@ public class UpOperationOptions implements OperationOptions {
 	public static final long DEFAULT_TRANSACTION_SIZE_LIMIT = 50 * 1024 * 1024;
 	public static final long DEFAULT_TRANSACTION_FILE_LIMIT = 10000;
 
+	// The number of threads used to read and chunk files in parallel during indexing. With the default of
+	// one thread, files are chunked by the indexer thread itself. With more threads, upcoming files are chunked
+	// ahead of time, but still deduplicated and written to multichunks in the original order.
+	public static final int DEFAULT_CHUNKING_THREADS = 1;
+	public static final int DEFAULT_UPLOAD_THREADS = 1;
+
 	@Element(name = "status", required = false)
 	private StatusOperationOptions statusOptions = new StatusOperationOptions();
 
@@ -46,6 +52,12 @@ public class UpOperationOptions implements OperationOptions {
 	@Element(required = false)
 	private long transactionFileLimit = DEFAULT_TRANSACTION_FILE_LIMIT;
 
+	@Element(required = false)
+	private int chunkingThreads = DEFAULT_CHUNKING_THREADS;
+
+	@Element(required = false)
+	private int uploadThreads = DEFAULT_UPLOAD_THREADS;
+
 	public StatusOperationOptions getStatusOptions() {
 		return statusOptions;
 	}
@@ -85,4 +97,20 @@ public class UpOperationOptions implements OperationOptions {
 	public void setTransactionFileLimit(long transactionFileLimit) {
 		this.transactionFileLimit = transactionFileLimit;
 	}
-}
\ No newline at end of file
+
+	public int getChunkingThreads() {
+		return chunkingThreads;
+	}
+
+	public void setChunkingThreads(int chunkingThreads) {
+		this.chunkingThreads = chunkingThreads;
+	}
+
+	public int getUploadThreads() {
+		return uploadThreads;
+	}
+
+	public void setUploadThreads(int uploadThreads) {
+		this.uploadThreads = uploadThreads;
+	}
+}
@@ -29,6 +29,7 @@ import java.nio.file.FileVisitor;
 import java.nio.file.Files;
 import java.nio.file.LinkOption;
 import java.nio.file.Path;
+import java.nio.file.WatchEvent;
 import java.nio.file.WatchKey;
 import java.nio.file.WatchService;
 import java.nio.file.attribute.BasicFileAttributes;
@@ -76,10 +77,19 @@ public class DefaultRecursiveWatcher extends RecursiveWatcher {
 
 	@Override
 	protected boolean pollEvents() throws InterruptedException {
-		// Take events, but don't care what they are!
 		WatchKey watchKey = watchService.take();
+		Path watchedDir = (Path) watchKey.watchable();
+
+		for (WatchEvent<?> watchEvent : watchKey.pollEvents()) {
+			if (watchEvent.kind() == OVERFLOW) {
+				logger.log(Level.INFO, "Watch service overflow in " + watchedDir + "; events were lost.");
+				markChangedPathsOverflow();
+			}
+			else {
+				addChangedPath(watchedDir.resolve((Path) watchEvent.context()));
+			}
+		}
 
-		watchKey.pollEvents();
 		watchKey.reset();
 
 		// Events are always relevant; ignored paths are not monitored
@@ -163,6 +173,9 @@ public class DefaultRecursiveWatcher extends RecursiveWatcher {
 			}
 			catch (IOException e) {
 				logger.log(Level.FINE, "IO Failed", e);
+
+				// Changes in this folder would go unnoticed
+				markChangedPathsOverflow();
 			}
 		}
 	}
@@ -20,7 +20,9 @@ package org.syncany.operations.watch;
 import java.io.IOException;
 import java.nio.file.ClosedWatchServiceException;
 import java.nio.file.Path;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.Timer;
 import java.util.TimerTask;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -36,6 +38,11 @@ import org.syncany.util.EnvironmentUtil;
  * to settle. It is reset whenever a new event occurs. When the timer times out,
  * an event is thrown through the {@link WatchListener}.
  *
+ * <p>While waiting for the settlement, the watcher collects the paths reported by the
+ * watch service. These paths are passed to the listener, so that the listener does not
+ * have to re-examine the entire file tree. If the watch service lost events (overflow),
+ * or too many paths changed, the listener is told to re-examine the whole tree instead.
+ *
  * <p>This is an abstract class, using several template methods that are called
  * in different lifecycle states: {@link #beforeStart()}, {@link #beforePollEventLoop()},
  * {@link #pollEvents()}, and {@link #afterStop()}.
@@ -44,6 +51,7 @@ import org.syncany.util.EnvironmentUtil;
  */
 public abstract class RecursiveWatcher {
 	protected static final Logger logger = Logger.getLogger(RecursiveWatcher.class.getSimpleName());
+	private static final int MAX_CHANGED_PATHS = 50000;
 
 	protected Path root;
 	protected List<Path> ignorePaths;
@@ -55,6 +63,10 @@ public abstract class RecursiveWatcher {
 	private Thread watchThread;
 	private Timer timer;
 
+	private final Object changedPathsLock;
+	private Set<Path> changedPaths;
+	private boolean changedPathsOverflow;
+
 	public RecursiveWatcher(Path root, List<Path> ignorePaths, int settleDelay, WatchListener listener) {
 		this.root = root;
 		this.ignorePaths = ignorePaths;
@@ -62,6 +74,10 @@ public abstract class RecursiveWatcher {
 		this.listener = listener;
 
 		this.running = new AtomicBoolean(false);
+
+		this.changedPathsLock = new Object();
+		this.changedPaths = new HashSet<Path>();
+		this.changedPathsOverflow = false;
 	}
 
 	/**
@@ -170,9 +186,47 @@ public abstract class RecursiveWatcher {
 	}
 
 	private synchronized void fireListenerEvents() {
+		Set<Path> settledChangedPaths;
+
+		synchronized (changedPathsLock) {
+			settledChangedPaths = (changedPathsOverflow) ? null : changedPaths;
+
+			changedPaths = new HashSet<Path>();
+			changedPathsOverflow = false;
+		}
+
 		if (listener != null) {
-			logger.log(Level.INFO, "- Firing watch event (watchEventsOccurred) ...");
-			listener.watchEventsOccurred();
+			logger.log(Level.INFO, "- Firing watch event (watchEventsOccurred, " + ((settledChangedPaths != null) ? settledChangedPaths.size() + " changed path(s)" : "unknown changed paths") + ") ...");
+			listener.watchEventsOccurred(settledChangedPaths);
+		}
+	}
+
+	/**
+	 * Records a changed path reported by the watch service. Subclasses
+	 * should call this method from {@link #pollEvents()} for every relevant event.
+	 */
+	protected void addChangedPath(Path changedPath) {
+		synchronized (changedPathsLock) {
+			if (!changedPathsOverflow) {
+				changedPaths.add(changedPath);
+
+				if (changedPaths.size() > MAX_CHANGED_PATHS) {
+					logger.log(Level.INFO, "More than " + MAX_CHANGED_PATHS + " changed paths; the whole tree must be re-examined.");
+					markChangedPathsOverflow();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Marks the changed paths as incomplete, e.g. because the watch service
+	 * reported an overflow. The listener will be told to re-examine the
+	 * entire file tree.
+	 */
+	protected void markChangedPathsOverflow() {
+		synchronized (changedPathsLock) {
+			changedPaths.clear();
+			changedPathsOverflow = true;
 		}
 	}
 
@@ -211,6 +265,12 @@ public abstract class RecursiveWatcher {
 	protected abstract void afterStop() throws IOException;
 
 	public interface WatchListener {
-		public void watchEventsOccurred();
+		/**
+		 * Called when file system events have settled. The changed paths are the absolute
+		 * paths reported by the watch service since the last call. If the watcher could not
+		 * determine which paths changed (e.g. after an overflow), <tt>changedPaths</tt>
+		 * is <tt>null</tt>, and the whole file tree must be re-examined.
+		 */
+		public void watchEventsOccurred(Set<Path> changedPaths);
 	}
 }
@@ -17,11 +17,14 @@
  */
 package org.syncany.operations.watch;
 
+import java.io.IOException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Random;
+import java.util.Set;
 import java.util.Timer;
 import java.util.TimerTask;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -41,11 +44,15 @@ import org.syncany.operations.daemon.messages.WatchStartSyncExternalEvent;
 import org.syncany.operations.down.DownOperation;
 import org.syncany.operations.down.DownOperationResult;
 import org.syncany.operations.down.DownOperationResult.DownResultCode;
+import org.syncany.operations.status.StatCache;
+import org.syncany.operations.status.StatusOperation;
+import org.syncany.operations.status.StatusOperationOptions;
 import org.syncany.operations.up.UpOperation;
 import org.syncany.operations.up.UpOperationResult;
 import org.syncany.operations.up.UpOperationResult.UpResultCode;
 import org.syncany.operations.watch.NotificationListener.NotificationListenerListener;
 import org.syncany.operations.watch.RecursiveWatcher.WatchListener;
+import org.syncany.util.FileUtil;
 import org.syncany.util.StringUtil;
 
 /**
@@ -66,6 +73,11 @@ import org.syncany.util.StringUtil;
  *      changes are synced eventually.</li>
  * </ul>
  *
+ * <p>If the recursive watcher is running, the {@link StatusOperation} only examines the
+ * paths reported by the watcher since the last sync. The entire local folder is only
+ * walked on the first sync, every {@link WatchOperationOptions#getFullScanInterval()},
+ * and whenever the watcher lost track of the changes (e.g. on an overflow).
+ *
  * As of now, this operation never returns, because it runs in a loop. The user
  * has to manually abort the operation on the command line.
  *
@@ -77,8 +89,6 @@ public class WatchOperation extends Operation implements NotificationListenerLis
 
 	private WatchOperationOptions options;
 
-	private SqlDatabase localDatabase;
-
 	private Thread watchThread;
 	private AtomicBoolean syncRunning;
 	private AtomicBoolean syncRequested;
@@ -87,7 +97,13 @@ public class WatchOperation extends Operation implements NotificationListenerLis
 	private AtomicInteger upCount;
 
 	private RecursiveWatcher recursiveWatcher;
+	private boolean recursiveWatcherStarted;
 	private NotificationListener notificationListener;
+
+	private final Object changedPathsLock;
+	private Set<String> changedPaths;
+	private boolean fullScanRequired;
+	private long lastFullScanTime;
 	private LocalEventBus eventBus;
 
 	private String notificationChannel;
@@ -98,7 +114,7 @@ public class WatchOperation extends Operation implements NotificationListenerLis
 
 		this.options = options;
 
-		this.localDatabase = new SqlDatabase(config);
+		this.config.setStatCache(StatCache.load(config.getStatCacheFile()));
 
 		this.watchThread = null;
 		this.syncRunning = new AtomicBoolean(false);
@@ -108,7 +124,13 @@ public class WatchOperation extends Operation implements NotificationListenerLis
 		this.upCount = new AtomicInteger(0);
 
 		this.recursiveWatcher = null;
+		this.recursiveWatcherStarted = false;
 		this.notificationListener = null;
+
+		this.changedPathsLock = new Object();
+		this.changedPaths = new HashSet<String>();
+		this.fullScanRequired = true;
+		this.lastFullScanTime = 0;
 		this.eventBus = LocalEventBus.getInstance();
 
 		this.notificationChannel = StringUtil.toHex(config.getRepoId());
@@ -171,19 +193,38 @@ public class WatchOperation extends Operation implements NotificationListenerLis
 			}
 		}
 
-		if (options.announcementsEnabled()) {
-			stopNotificationListener();
-		}
+		try {
+			if (options.announcementsEnabled()) {
+				stopNotificationListener();
+			}
 
-		if (options.watcherEnabled()) {
-			stopRecursiveWatcher();
-		}
+			if (options.watcherEnabled()) {
+				stopRecursiveWatcher();
+			}
 
-		localDatabase.shutdown();
+			saveStatCache();
+		}
+		finally {
+			shutdownDatabase();
+		}
 
 		return new WatchOperationResult();
 	}
 
+	private void shutdownDatabase() {
+		// The connection is only needed for the 'SHUTDOWN' statement, which also closes it
+		new SqlDatabase(config).shutdown();
+	}
+
+	private void saveStatCache() {
+		try {
+			config.getStatCache().save();
+		}
+		catch (IOException e) {
+			logger.log(Level.WARNING, "Cannot save stat cache to " + config.getStatCacheFile() + ". Ignoring.", e);
+		}
+	}
+
 	private void startRecursiveWatcher() {
 		logger.log(Level.INFO, "Starting recursive watcher for " + config.getLocalDir() + " ...");
 
@@ -199,6 +240,7 @@ public class WatchOperation extends Operation implements NotificationListenerLis
 
 		try {
 			recursiveWatcher.start();
+			recursiveWatcherStarted = true;
 		}
 		catch (Exception e) {
 			logger.log(Level.WARNING, "Cannot initiate file watcher. Relying on regular tree walks.", e);
@@ -251,7 +293,7 @@ public class WatchOperation extends Operation implements NotificationListenerLis
 				}
 
 				// Run up
-				UpOperationResult upOperationResult = new UpOperation(config, options.getUpOptions()).execute();
+				UpOperationResult upOperationResult = runUp();
 
 				if (upOperationResult.getResultCode() == UpResultCode.OK_CHANGES_UPLOADED && upOperationResult.getChangeSet().hasChanges()) {
 					upCount.incrementAndGet();
@@ -284,6 +326,95 @@ public class WatchOperation extends Operation implements NotificationListenerLis
 		}
 	}
 
+	/**
+	 * Runs the {@link UpOperation}, and limits its {@link StatusOperation} to the paths
+	 * changed since the last sync, unless a full scan of the local folder is required.
+	 * If the up operation does not get past the status phase, the changed paths are
+	 * kept for the next sync.
+	 */
+	private UpOperationResult runUp() throws Exception {
+		StatusOperationOptions statusOptions = options.getUpOptions().getStatusOptions();
+		Set<String> statusPaths = takeChangedPaths();
+
+		boolean changesProcessed = false;
+
+		try {
+			statusOptions.setPaths(statusPaths);
+			UpOperationResult upOperationResult = new UpOperation(config, options.getUpOptions()).execute();
+
+			changesProcessed = upOperationResult.getResultCode() == UpResultCode.OK_NO_CHANGES
+					|| upOperationResult.getResultCode() == UpResultCode.OK_CHANGES_UPLOADED;
+
+			return upOperationResult;
+		}
+		finally {
+			statusOptions.setPaths(null);
+
+			if (changesProcessed) {
+				if (statusPaths == null) {
+					lastFullScanTime = System.currentTimeMillis();
+				}
+			}
+			else {
+				returnChangedPaths(statusPaths);
+			}
+		}
+	}
+
+	/**
+	 * Returns the paths changed since the last sync and resets them, or <tt>null</tt> if
+	 * the entire local folder has to be examined.
+	 */
+	private Set<String> takeChangedPaths() {
+		synchronized (changedPathsLock) {
+			boolean fullScanDue = System.currentTimeMillis() - lastFullScanTime >= options.getFullScanInterval();
+			Set<String> takenChangedPaths = (fullScanRequired || fullScanDue || !recursiveWatcherStarted) ? null : changedPaths;
+
+			if (takenChangedPaths == null) {
+				logger.log(Level.INFO, "Full scan of local folder required.");
+			}
+			else {
+				logger.log(Level.INFO, "Changed paths since last sync: " + takenChangedPaths.size());
+			}
+
+			changedPaths = new HashSet<String>();
+			fullScanRequired = false;
+
+			return takenChangedPaths;
+		}
+	}
+
+	private void returnChangedPaths(Set<String> statusPaths) {
+		synchronized (changedPathsLock) {
+			if (statusPaths == null) {
+				fullScanRequired = true;
+			}
+			else {
+				changedPaths.addAll(statusPaths);
+			}
+		}
+	}
+
+	private void addChangedPaths(Set<Path> absoluteChangedPaths) {
+		synchronized (changedPathsLock) {
+			if (absoluteChangedPaths == null) {
+				fullScanRequired = true;
+			}
+			else {
+				Path localDir = Paths.get(config.getLocalDir().getAbsolutePath());
+
+				for (Path absoluteChangedPath : absoluteChangedPaths) {
+					if (absoluteChangedPath.startsWith(localDir)) {
+						changedPaths.add(FileUtil.getRelativeDatabasePath(config.getLocalDir(), absoluteChangedPath.toFile()));
+					}
+					else {
+						fullScanRequired = true;
+					}
+				}
+			}
+		}
+	}
+
 	@Override
 	public void pushNotificationReceived(String channel, String message) {
 		if (channel.equals(notificationChannel) && !message.equals(notificationInstanceId)) {
@@ -298,7 +429,9 @@ public class WatchOperation extends Operation implements NotificationListenerLis
 	}
 
 	@Override
-	public void watchEventsOccurred() {
+	public void watchEventsOccurred(Set<Path> changedPaths) {
+		addChangedPaths(changedPaths);
+
 		try {
 			waitWhilePaused();
 			runSync();
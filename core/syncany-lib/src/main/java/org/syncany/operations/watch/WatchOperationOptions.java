@@ -56,6 +56,9 @@ public class WatchOperationOptions implements OperationOptions {
 	@Element(required = false)
 	private boolean watcher = true;
 	
+	@Element(required = false)
+	private int fullScanInterval = 30*60*1000;
+	
 	@Element(name = "up", required = false) 
 	private UpOperationOptions upOptions = new UpOperationOptions();
 	
@@ -113,6 +116,18 @@ public class WatchOperationOptions implements OperationOptions {
 		this.watcher = watcher;
 	}
 
+	/**
+	 * Returns the interval (in ms) in which the entire local folder is scanned for
+	 * changes. In between, only the paths reported by the file watcher are examined.
+	 */
+	public int getFullScanInterval() {
+		return fullScanInterval;
+	}
+
+	public void setFullScanInterval(int fullScanInterval) {
+		this.fullScanInterval = fullScanInterval;
+	}
+
 	public int getCleanupInterval() {
 		return cleanupInterval;
 	}
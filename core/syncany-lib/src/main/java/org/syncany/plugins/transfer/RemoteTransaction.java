@@ -18,6 +18,15 @@
 package org.syncany.plugins.transfer;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -38,6 +47,12 @@ import org.syncany.plugins.transfer.to.TransactionTO;
  * This class represents a transaction in a remote system. It will keep track of
  * what files are to be added and ensures atomic operation.
  *
+ * <p>If the number of upload threads is greater than one, the uploads to the temporary
+ * locations and the moves to the final locations are performed by a bounded pool of worker 
+ * threads, each using its own {@link TransferManager} from a {@link TransferManagerPool}. 
+ * The two phases are still strictly separated, i.e. no file is moved to its final location
+ * before all files have been uploaded, so the transaction semantics are not affected.
+ *
  * @author Pim Otte
  */
 public class RemoteTransaction {
@@ -46,17 +61,27 @@ public class RemoteTransaction {
 	private TransferManager transferManager;
 	private Config config;
 	private TransactionTO transactionTO;
+	private int uploadThreads;
 
 	private LocalEventBus eventBus;
 
 	public RemoteTransaction(Config config, TransferManager transferManager) {
-		this(config, transferManager, new TransactionTO(config.getMachineName()));
+		this(config, transferManager, 1);
+	}
+
+	public RemoteTransaction(Config config, TransferManager transferManager, int uploadThreads) {
+		this(config, transferManager, new TransactionTO(config.getMachineName()), uploadThreads);
 	}
 
 	public RemoteTransaction(Config config, TransferManager transferManager, TransactionTO transactionTO) {
+		this(config, transferManager, transactionTO, 1);
+	}
+
+	public RemoteTransaction(Config config, TransferManager transferManager, TransactionTO transactionTO, int uploadThreads) {
 		this.config = config;
 		this.transferManager = transferManager;
 		this.transactionTO = transactionTO;
+		this.uploadThreads = Math.max(1, uploadThreads);
 		this.eventBus = LocalEventBus.getInstance();
 	}
 
@@ -153,7 +178,11 @@ public class RemoteTransaction {
 	 */
 	public void writeToFile(Transformer transformer, File transactionFile) throws StorageException {
 		try {
-			transactionTO.save(transformer, transactionFile);
+			// Upload workers might update action states concurrently
+			synchronized (transactionTO) {
+				transactionTO.save(transformer, transactionFile);
+			}
+
 			logger.log(Level.INFO, "Wrote transaction manifest to temporary file: " + transactionFile);
 		}
 		catch (Exception e) {
@@ -203,40 +232,167 @@ public class RemoteTransaction {
 	 */
 	private void uploadAndMoveToTempLocation() throws StorageException {
 		TransactionStats stats = gatherTransactionStats();
-		int uploadFileIndex = 0;
+		List<ActionTO> unstartedActions = new ArrayList<ActionTO>();
 
 		for (ActionTO action : transactionTO.getActions()) {
 			if (action.getStatus().equals(ActionStatus.UNSTARTED)) {
 				// If we are resuming, this has not been started yet.
-				RemoteFile tempRemoteFile = action.getTempRemoteFile();
+				unstartedActions.add(action);
+			}
+		}
 
-				if (action.getType().equals(ActionType.UPLOAD)) {
-					// The action is an UPLOAD, upload file to temporary remote location
-					File localFile = action.getLocalTempLocation();
-					long localFileSize = localFile.length();
+		performActions(unstartedActions, new ActionHandler() {
+			@Override
+			public void perform(TransferManager transferManager, ActionTO action) throws StorageException {
+				uploadAndMoveToTempLocation(transferManager, action, stats);
+			}
+		});
+	}
 
-					eventBus.post(new UpUploadFileInTransactionSyncExternalEvent(config.getLocalDir().getAbsolutePath(), ++uploadFileIndex,
-							stats.totalUploadFileCount, localFileSize, stats.totalUploadSize));
+	private void uploadAndMoveToTempLocation(TransferManager transferManager, ActionTO action, TransactionStats stats) throws StorageException {
+		RemoteFile tempRemoteFile = action.getTempRemoteFile();
 
-					logger.log(Level.INFO, "- Uploading {0} to temp. file {1} ...", new Object[] { localFile, tempRemoteFile });
-					transferManager.upload(localFile, tempRemoteFile);
-					action.setStatus(ActionStatus.STARTED);
-				}
-				else if (action.getType().equals(ActionType.DELETE)) {
-					// The action is a DELETE, move file to temporary remote location.
-					RemoteFile remoteFile = action.getRemoteFile();
+		if (action.getType().equals(ActionType.UPLOAD)) {
+			// The action is an UPLOAD, upload file to temporary remote location
+			File localFile = action.getLocalTempLocation();
+			long localFileSize = localFile.length();
+
+			postUploadFileInTransactionEvent(stats, localFileSize);
+
+			logger.log(Level.INFO, "- Uploading {0} to temp. file {1} ...", new Object[] { localFile, tempRemoteFile });
+			transferManager.upload(localFile, tempRemoteFile);
+
+			setStatus(action, ActionStatus.STARTED);
+			stats.addUploadedSize(localFileSize);
+		}
+		else if (action.getType().equals(ActionType.DELETE)) {
+			// The action is a DELETE, move file to temporary remote location.
+			RemoteFile remoteFile = action.getRemoteFile();
+
+			try {
+				logger.log(Level.INFO, "- Moving {0} to temp. file {1} ...", new Object[] { remoteFile, tempRemoteFile });
+				transferManager.move(remoteFile, tempRemoteFile);
+			}
+			catch (StorageMoveException e) {
+				logger.log(Level.INFO, "  -> FAILED (don't care!), because the remoteFile does not exist: " + remoteFile);
+			}
+
+			setStatus(action, ActionStatus.STARTED);
+		}
+	}
+
+	/**
+	 * Posts an {@link UpUploadFileInTransactionSyncExternalEvent} for the next upload. Synchronized, 
+	 * so that the file index and the aggregate number of uploaded bytes are monotonic, even if 
+	 * multiple threads are uploading.
+	 */
+	private void postUploadFileInTransactionEvent(TransactionStats stats, long localFileSize) {
+		synchronized (stats) {
+			eventBus.post(new UpUploadFileInTransactionSyncExternalEvent(config.getLocalDir().getAbsolutePath(), ++stats.uploadFileIndex,
+					stats.totalUploadFileCount, localFileSize, stats.uploadedSize, stats.totalUploadSize));
+		}
+	}
+
+	private void setStatus(ActionTO action, ActionStatus status) {
+		synchronized (transactionTO) {
+			action.setStatus(status);
+		}
+	}
+
+	/**
+	 * Performs the given action handler for all given actions, either sequentially using the
+	 * transaction's transfer manager, or in parallel using a {@link TransferManagerPool}. 
+	 * 
+	 * <p>In parallel mode, no new actions are started once an action has failed. Already running 
+	 * actions are completed before the first exception is rethrown. Actions that were completed
+	 * successfully are marked as such, so the transaction can be resumed as usual.
+	 */
+	private void performActions(List<ActionTO> actions, ActionHandler actionHandler) throws StorageException {
+		if (uploadThreads <= 1 || actions.size() <= 1) {
+			for (ActionTO action : actions) {
+				actionHandler.perform(transferManager, action);
+			}
+		}
+		else {
+			performActionsParallel(actions, actionHandler);
+		}
+	}
+
+	private void performActionsParallel(List<ActionTO> actions, final ActionHandler actionHandler) throws StorageException {
+		int threadCount = Math.min(uploadThreads, actions.size());
+		logger.log(Level.INFO, "- Performing " + actions.size() + " action(s) using " + threadCount + " thread(s) ...");
+
+		final TransferManagerPool transferManagerPool = new TransferManagerPool(config, transferManager, threadCount);
+		final AtomicBoolean failed = new AtomicBoolean(false);
+
+		ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+		List<Future<Void>> actionFutures = new ArrayList<Future<Void>>();
+
+		for (final ActionTO action : actions) {
+			actionFutures.add(executor.submit(new Callable<Void>() {
+				@Override
+				public Void call() throws Exception {
+					// Don't start any new actions if another one failed
+					if (failed.get()) {
+						return null;
+					}
+
+					TransferManager workerTransferManager = transferManagerPool.acquire();
 
 					try {
-						logger.log(Level.INFO, "- Moving {0} to temp. file {1} ...", new Object[] { remoteFile, tempRemoteFile });
-						transferManager.move(remoteFile, tempRemoteFile);
+						actionHandler.perform(workerTransferManager, action);
+						return null;
+					}
+					catch (Exception e) {
+						failed.set(true);
+						throw e;
 					}
-					catch (StorageMoveException e) {
-						logger.log(Level.INFO, "  -> FAILED (don't care!), because the remoteFile does not exist: " + remoteFile);
+					finally {
+						transferManagerPool.release(workerTransferManager);
 					}
-					action.setStatus(ActionStatus.STARTED);
 				}
+			}));
+		}
+
+		executor.shutdown();
+
+		try {
+			for (Future<Void> actionFuture : actionFutures) {
+				actionFuture.get();
+			}
+		}
+		catch (ExecutionException e) {
+			failed.set(true);
+
+			if (e.getCause() instanceof StorageException) {
+				throw (StorageException) e.getCause();
+			}
+			else if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			else {
+				throw new StorageException("Unable to commit transaction.", e.getCause());
 			}
 		}
+		catch (InterruptedException e) {
+			failed.set(true);
+			throw new StorageException("Interrupted while committing transaction.", e);
+		}
+		finally {
+			awaitTermination(executor);
+			transferManagerPool.disconnect();
+		}
+	}
+
+	private void awaitTermination(ExecutorService executor) {
+		try {
+			while (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+				logger.log(Level.INFO, "Waiting for running transfers to finish ...");
+			}
+		}
+		catch (InterruptedException e) {
+			logger.log(Level.WARNING, "Interrupted while waiting for transfers to finish.", e);
+		}
 	}
 
 	/**
@@ -264,16 +420,25 @@ public class RemoteTransaction {
 	 * now moved to their final location.
 	 */
 	private void moveToFinalLocation() throws StorageException {
+		List<ActionTO> uploadActions = new ArrayList<ActionTO>();
+
 		for (ActionTO action : transactionTO.getActions()) {
 			if (action.getType().equals(ActionType.UPLOAD)) {
+				uploadActions.add(action);
+			}
+		}
+
+		performActions(uploadActions, new ActionHandler() {
+			@Override
+			public void perform(TransferManager transferManager, ActionTO action) throws StorageException {
 				RemoteFile tempRemoteFile = action.getTempRemoteFile();
 				RemoteFile finalRemoteFile = action.getRemoteFile();
 
 				logger.log(Level.INFO, "- Moving temp. file {0} to final location {1} ...", new Object[] { tempRemoteFile, finalRemoteFile });
 				transferManager.move(tempRemoteFile, finalRemoteFile);
-				action.setStatus(ActionStatus.DONE);
+				setStatus(action, ActionStatus.DONE);
 			}
-		}
+		});
 	}
 
 	/**
@@ -327,8 +492,19 @@ public class RemoteTransaction {
 		}
 	}
 
+	private interface ActionHandler {
+		public void perform(TransferManager transferManager, ActionTO action) throws StorageException;
+	}
+
 	private static class TransactionStats {
 		private long totalUploadSize;
 		private int totalUploadFileCount;
+
+		private int uploadFileIndex;
+		private long uploadedSize;
+
+		private synchronized void addUploadedSize(long size) {
+			uploadedSize += size;
+		}
 	}
 }
@@ -0,0 +1,128 @@
+/*
+ * Syncany, www.syncany.org
+ * Copyright (C) 2011-2016 Philipp C. Heckel <philipp.heckel@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.syncany.plugins.transfer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.syncany.config.Config;
+import org.syncany.plugins.transfer.features.PathAware;
+import org.syncany.plugins.transfer.features.ReadAfterWriteConsistent;
+import org.syncany.plugins.transfer.features.Retriable;
+import org.syncany.plugins.transfer.features.TransactionAware;
+
+/**
+ * The transfer manager pool hands out {@link TransferManager}s to worker threads
+ * that transfer files in parallel. Since transfer managers are not necessarily
+ * thread-safe, each transfer manager is only ever used by one thread at a time.
+ *
+ * <p>The pool starts with the given primary transfer manager. Additional transfer
+ * managers (and thereby additional connections to the remote storage) are created
+ * lazily using the {@link TransferManagerFactory}, with the same features as the
+ * transfer manager used by the operations. At most <tt>maxSize</tt> transfer managers
+ * are created in total.
+ *
+ * <p>The primary transfer manager is owned by the caller; {@link #disconnect()}
+ * only disconnects the additional transfer managers.
+ *
+ * @author Philipp C. Heckel <philipp.heckel@gmail.com>
+ */
+public class TransferManagerPool {
+	private static final Logger logger = Logger.getLogger(TransferManagerPool.class.getSimpleName());
+
+	private final Config config;
+	private final int maxSize;
+
+	private final BlockingQueue<TransferManager> idleTransferManagers;
+	private final List<TransferManager> additionalTransferManagers;
+
+	public TransferManagerPool(Config config, TransferManager primaryTransferManager, int maxSize) {
+		this.config = config;
+		this.maxSize = Math.max(1, maxSize);
+
+		this.idleTransferManagers = new LinkedBlockingQueue<TransferManager>();
+		this.additionalTransferManagers = new ArrayList<TransferManager>();
+
+		this.idleTransferManagers.add(primaryTransferManager);
+	}
+
+	/**
+	 * Returns an idle transfer manager, creates a new one if the pool has not
+	 * reached its maximum size, or waits until another thread releases one.
+	 */
+	public TransferManager acquire() throws StorageException, InterruptedException {
+		TransferManager idleTransferManager = idleTransferManagers.poll();
+
+		if (idleTransferManager != null) {
+			return idleTransferManager;
+		}
+
+		synchronized (additionalTransferManagers) {
+			if (additionalTransferManagers.size() + 1 < maxSize) {
+				TransferManager newTransferManager = createTransferManager();
+				additionalTransferManagers.add(newTransferManager);
+
+				return newTransferManager;
+			}
+		}
+
+		return idleTransferManagers.take();
+	}
+
+	/**
+	 * Returns a transfer manager to the pool, so it can be used by other threads.
+	 */
+	public void release(TransferManager transferManager) {
+		idleTransferManagers.add(transferManager);
+	}
+
+	/**
+	 * Disconnects all additional transfer managers created by this pool. Errors
+	 * are logged and otherwise ignored.
+	 */
+	public void disconnect() {
+		synchronized (additionalTransferManagers) {
+			for (TransferManager transferManager : additionalTransferManagers) {
+				try {
+					transferManager.disconnect();
+				}
+				catch (StorageException e) {
+					logger.log(Level.FINE, "Unable to disconnect transfer manager.", e);
+				}
+			}
+
+			additionalTransferManagers.clear();
+		}
+	}
+
+	private TransferManager createTransferManager() throws StorageException {
+		logger.log(Level.INFO, "Creating additional transfer manager (max. " + maxSize + ") ...");
+
+		return TransferManagerFactory
+				.build(config)
+				.withFeature(ReadAfterWriteConsistent.class)
+				.withFeature(Retriable.class)
+				.withFeature(PathAware.class)
+				.withFeature(TransactionAware.class)
+				.as(TransactionAware.class);
+	}
+}
@@ -0,0 +1,8 @@
+-- Select all chunks that are removed by removeUnreferencesChunks,
+-- i.e. chunks not referenced by any multichunk or filecontent
+
+select checksum
+from chunk
+where 
+	    checksum not in (select distinct chunk_checksum from multichunk_chunk)
+	and checksum not in (select distinct chunk_checksum from filecontent_chunk)	
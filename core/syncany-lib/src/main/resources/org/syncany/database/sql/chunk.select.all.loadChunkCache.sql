@@ -1 +1 @@
-select * from chunk
+select checksum, size from chunk
@@ -0,0 +1,8 @@
+select fcc.chunk_checksum, c.size as chunk_size, fv.path, fv.size as file_size
+from filecontent_chunk fcc
+join chunk c on c.checksum=fcc.chunk_checksum
+join fileversion_master_last fv on fv.filecontent_checksum=fcc.filecontent_checksum
+where fv.type='FILE' and fcc.filecontent_checksum in (
+	select distinct filecontent_checksum from filecontent_chunk where chunk_checksum in ( unnest(?) )
+)
+order by fv.path, fcc.num
@@ -0,0 +1,28 @@
+select fv.*
+from fileversion_parent fvp
+join fileversion fv 
+	on fvp.filehistory_id=fv.filehistory_id 
+	   and fvp.version=fv.version 
+	   and fvp.databaseversion_id=fv.databaseversion_id
+join databaseversion dbv
+	on fv.databaseversion_id=dbv.id
+	   and dbv.status='MASTER'
+where 
+	fvp.parent_path=?
+	and fv.status<>?
+	and fv.path like ?
+	and substr_count(fv.path, '/')=?
+	and fv.type in (unnest(?))
+	and fv.updated<=?
+	and (fv.path>? or (fv.path=? and fv.filehistory_id>?))
+	and not exists (
+		select 1
+		from fileversion fvnewer
+		join databaseversion dbvnewer
+			on fvnewer.databaseversion_id=dbvnewer.id
+			   and dbvnewer.status='MASTER'
+		where fvnewer.filehistory_id=fv.filehistory_id
+			and fvnewer.version>fv.version
+			and fvnewer.updated<=?
+	)
+order by fv.path, fv.filehistory_id
@@ -0,0 +1,67 @@
+-- Directory index for file versions:
+-- Maps each file version to the path of its parent folder, so that folder
+-- listings do not have to scan all file versions. The table is maintained by
+-- a trigger and cleaned up via the foreign key, i.e. no DAO has to write it.
+-- This script is run for new databases and to upgrade existing ones.
+-- The script is idempotent: If a previous run was interrupted, all objects are
+-- dropped and created again. The upgrade is only complete once the marker in
+-- general_settings is written, in the same transaction as the back-fill.
+
+DROP TRIGGER trg_fileversion_parent_insert IF EXISTS;
+DROP TABLE fileversion_parent IF EXISTS;
+DROP FUNCTION parent_path IF EXISTS;
+
+CREATE CACHED TABLE fileversion_parent (
+  filehistory_id varchar(40) NOT NULL,
+  version int NOT NULL,
+  databaseversion_id int NOT NULL,
+  parent_path varchar(1024) NOT NULL,
+  PRIMARY KEY (filehistory_id, version, databaseversion_id),
+  FOREIGN KEY (filehistory_id, version, databaseversion_id) REFERENCES fileversion (filehistory_id, version, databaseversion_id) ON DELETE CASCADE ON UPDATE NO ACTION
+);
+
+CREATE INDEX idx_fileversion_parent_parent_path ON fileversion_parent (parent_path);
+
+
+-- Functions and triggers
+
+--!DELIMITER=end;
+
+create function parent_path(path varchar(1024))
+returns varchar(1024)
+begin atomic
+	declare lastIndex integer;
+	declare nextIndex integer;
+
+	set lastIndex = 0;
+	set nextIndex = locate('/', path, 1);
+
+	while nextIndex <> 0 do
+		set lastIndex = nextIndex;
+		set nextIndex = locate('/', path, lastIndex + 1);
+	end while;
+
+	if lastIndex = 0 then
+		return '';
+	else
+		return substring(path, 1, lastIndex - 1);
+	end if;
+end;
+
+create trigger trg_fileversion_parent_insert after insert on fileversion
+referencing new row as newrow
+for each row
+begin atomic
+	insert into fileversion_parent (filehistory_id, version, databaseversion_id, parent_path)
+	values (newrow.filehistory_id, newrow.version, newrow.databaseversion_id, parent_path(newrow.path));
+end;
+
+--!DELIMITER=;
+
+-- Upgrade existing databases
+
+insert into fileversion_parent (filehistory_id, version, databaseversion_id, parent_path)
+	select filehistory_id, version, databaseversion_id, parent_path(path)
+	from fileversion;
+
+insert into general_settings (key, value) values ('schema.fileVersionParent', '1');
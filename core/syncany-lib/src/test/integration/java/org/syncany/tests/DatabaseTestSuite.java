@@ -20,11 +20,14 @@ package org.syncany.tests;
 import org.junit.runner.RunWith;
 import org.junit.runners.Suite;
 import org.junit.runners.Suite.SuiteClasses;
+import org.syncany.tests.integration.database.DatabaseConnectionPoolTest;
+import org.syncany.tests.integration.database.DatabaseGroupCommitTest;
 import org.syncany.tests.integration.database.DatabaseReconciliatorTest;
 import org.syncany.tests.integration.database.FileVersionComparatorTest;
 import org.syncany.tests.integration.database.MemoryDatabaseCacheTest;
 import org.syncany.tests.integration.database.PartialFileHistoryTest;
 import org.syncany.tests.integration.database.dao.ApplicationDaoTest;
+import org.syncany.tests.integration.database.dao.BinaryDatabaseDaoTest;
 import org.syncany.tests.integration.database.dao.ChunkDaoTest;
 import org.syncany.tests.integration.database.dao.DatabaseVersionDaoTest;
 import org.syncany.tests.integration.database.dao.FileContentDaoTest;
@@ -37,7 +40,10 @@ import org.syncany.tests.unit.database.VectorClockTest;
 @RunWith(Suite.class)
 @SuiteClasses({
 	ApplicationDaoTest.class,
+	BinaryDatabaseDaoTest.class,
 	ChunkDaoTest.class,
+	DatabaseConnectionPoolTest.class,
+	DatabaseGroupCommitTest.class,
 	DatabaseReconciliatorTest.class,
 	DatabaseVersionDaoTest.class,
 	FileVersionComparatorTest.class,
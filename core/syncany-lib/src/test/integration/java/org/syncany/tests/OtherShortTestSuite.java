@@ -27,6 +27,7 @@ import org.syncany.tests.integration.plugins.TransferSettingsTest;
 import org.syncany.tests.integration.plugins.local.LocalTransferManagerPluginTest;
 import org.syncany.tests.integration.plugins.unreliable_local.CleanupInterruptedTest;
 import org.syncany.tests.integration.plugins.unreliable_local.UploadInterruptedTest;
+import org.syncany.tests.unit.chunk.FastCdcChunkerTest;
 import org.syncany.tests.unit.chunk.FixedOffsetChunkerTest;
 import org.syncany.tests.unit.chunk.FrameworkCombinationTest;
 import org.syncany.tests.unit.chunk.MultiChunkerTest;
@@ -55,6 +56,7 @@ import org.syncany.tests.util.SqlRunnerTest;
 
 		// Chunking Framework
 		MultiChunkerTest.class,
+		FastCdcChunkerTest.class,
 		FixedOffsetChunkerTest.class,
 		TTTDChunkerTest.class,
 		FrameworkCombinationTest.class,
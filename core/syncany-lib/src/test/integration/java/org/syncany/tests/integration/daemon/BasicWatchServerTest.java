@@ -181,19 +181,28 @@ public class BasicWatchServerTest {
 		assertEquals(1, fileHistoryResponse.getFiles().size());
 		assertEquals(files[0], fileHistoryResponse.getFiles().get(0));
 
-		// Create GetFileRequest for the first returned file
-		GetFileFolderRequest getFileRequest = new GetFileFolderRequest();
-		getFileRequest.setId(22);
-		getFileRequest.setRoot(clientA.getConfig().getLocalDir().getAbsolutePath());
-		getFileRequest.setFileHistoryId(files[0].getFileHistoryId().toString());
-		getFileRequest.setVersion(1);
-
-		eventBus.post(getFileRequest);
+		// Create GetFileRequest for the first returned file; read-only requests (like
+		// the ls request above) are answered during a sync, so repeat until the sync is done
+		int i;
+
+		for (int j = 0; j < 20 && internalResponse == null; j++) {
+			GetFileFolderRequest getFileRequest = new GetFileFolderRequest();
+			getFileRequest.setId(22 + j * 100);
+			getFileRequest.setRoot(clientA.getConfig().getLocalDir().getAbsolutePath());
+			getFileRequest.setFileHistoryId(files[0].getFileHistoryId().toString());
+			getFileRequest.setVersion(1);
+
+			eventBus.post(getFileRequest);
+
+			i = 0;
+			while (internalResponse == null && !(responses.get(getFileRequest.getId()) instanceof AlreadySyncingResponse) && i < 40) {
+				Thread.sleep(100);
+				i++;
+			}
 
-		int i = 0;
-		while (internalResponse == null && i < 40) {
-			Thread.sleep(100);
-			i++;
+			if (internalResponse == null) {
+				Thread.sleep(1000);
+			}
 		}
 
 		assertEquals((long) files[0].getSize(), internalResponse.getTempFile().length());
@@ -0,0 +1,152 @@
+/*
+ * Syncany, www.syncany.org
+ * Copyright (C) 2011-2016 Philipp C. Heckel <philipp.heckel@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.syncany.tests.integration.daemon;
+
+import static org.junit.Assert.assertTrue;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.syncany.config.LocalEventBus;
+import org.syncany.config.to.DaemonConfigTO;
+import org.syncany.operations.daemon.WatchServer;
+import org.syncany.operations.daemon.messages.AlreadySyncingResponse;
+import org.syncany.operations.daemon.messages.BadRequestResponse;
+import org.syncany.operations.daemon.messages.GetDatabaseVersionHeadersFolderRequest;
+import org.syncany.operations.daemon.messages.GetDatabaseVersionHeadersFolderResponse;
+import org.syncany.operations.daemon.messages.LogFolderRequest;
+import org.syncany.operations.daemon.messages.LogFolderResponse;
+import org.syncany.operations.daemon.messages.LsFolderRequest;
+import org.syncany.operations.daemon.messages.LsFolderResponse;
+import org.syncany.operations.daemon.messages.StatusFolderRequest;
+import org.syncany.operations.daemon.messages.api.Response;
+import org.syncany.operations.log.LogOperationOptions;
+import org.syncany.operations.ls.LsOperationOptions;
+import org.syncany.plugins.transfer.TransferSettings;
+import org.syncany.tests.util.TestClient;
+import org.syncany.tests.util.TestConfigUtil;
+import org.syncany.tests.util.TestDaemonUtil;
+
+import com.google.common.eventbus.Subscribe;
+
+public class ReadOnlyRequestsWhileSyncingTest {
+	private Map<Integer, Response> responses = new ConcurrentHashMap<Integer, Response>();
+
+	@BeforeClass
+	public static void setUp() throws Exception {
+		TestDaemonUtil.cleanUserConfig();
+	}
+
+	@Test
+	public void testReadOnlyRequestsWhileSyncing() throws Exception {
+		final TransferSettings testConnection = TestConfigUtil.createTestLocalConnection();
+		final TestClient clientA = new TestClient("ClientA", testConnection);
+		int port = 58445;
+
+		// Load config template
+		DaemonConfigTO daemonConfig = TestDaemonUtil.loadDaemonConfig("daemonOneFolderNoWebServer.xml");
+
+		// Set port to prevent conflicts with default daemons
+		daemonConfig.getWebServer().setBindPort(port);
+
+		// Dynamically insert paths
+		String root = clientA.getConfig().getLocalDir().getAbsolutePath();
+		daemonConfig.getFolders().get(0).setPath(root);
+
+		// Create access token (not needed in this test, but prevents errors in daemon)
+		daemonConfig.setPortTO(TestDaemonUtil.createPortTO(port));
+
+		// Register to event bus
+		LocalEventBus localEventBus = LocalEventBus.getInstance();
+		localEventBus.register(this);
+
+		// Create watchServer
+		WatchServer watchServer = new WatchServer();
+		watchServer.start(daemonConfig);
+		Thread.sleep(1000); // Settlement for watch server
+
+		// Create large file, then poll with status requests until the sync is running
+		clientA.createNewFile("largefile", 10 * 1024 * 1024);
+
+		Response statusResponse = null;
+
+		for (int i = 1; i < 100; i++) {
+			StatusFolderRequest statusRequest = new StatusFolderRequest();
+			statusRequest.setId(i);
+			statusRequest.setRoot(root);
+
+			localEventBus.post(statusRequest);
+			statusResponse = waitForResponse(i);
+
+			if (statusResponse instanceof AlreadySyncingResponse) {
+				break;
+			}
+
+			Thread.sleep(40);
+		}
+
+		assertTrue(statusResponse instanceof AlreadySyncingResponse);
+
+		// While syncing, read-only requests must still be answered
+		LsFolderRequest lsRequest = new LsFolderRequest();
+		lsRequest.setId(1001);
+		lsRequest.setRoot(root);
+		lsRequest.setOptions(new LsOperationOptions());
+
+		LogFolderRequest logRequest = new LogFolderRequest();
+		logRequest.setId(1002);
+		logRequest.setRoot(root);
+		logRequest.setOptions(new LogOperationOptions());
+
+		GetDatabaseVersionHeadersFolderRequest headersRequest = new GetDatabaseVersionHeadersFolderRequest();
+		headersRequest.setId(1003);
+		headersRequest.setRoot(root);
+
+		localEventBus.post(lsRequest);
+		localEventBus.post(logRequest);
+		localEventBus.post(headersRequest);
+
+		assertTrue(waitForResponse(1001) instanceof LsFolderResponse);
+		assertTrue(waitForResponse(1002) instanceof LogFolderResponse);
+		assertTrue(waitForResponse(1003) instanceof GetDatabaseVersionHeadersFolderResponse);
+
+		watchServer.stop();
+		clientA.deleteTestData();
+	}
+
+	@Subscribe
+	public void onResponseReceived(Response response) {
+		// Watch servers of previous tests are still registered on the
+		// event bus and reject our requests as 'unknown root folder'
+		if (!(response instanceof BadRequestResponse)) {
+			responses.put(response.getRequestId(), response);
+		}
+	}
+
+	private Response waitForResponse(int id) throws Exception {
+		int i = 0;
+		while (!responses.containsKey(id) && i < 1000) {
+			Thread.sleep(100);
+			i++;
+		}
+
+		return responses.get(id);
+	}
+}
@@ -0,0 +1,259 @@
+/*
+ * Syncany, www.syncany.org
+ * Copyright (C) 2011-2016 Philipp C. Heckel <philipp.heckel@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.syncany.tests.integration.database;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.syncany.config.Config;
+import org.syncany.database.DatabaseConnectionPool;
+import org.syncany.database.DatabaseConnectionPoolMetrics;
+import org.syncany.database.SqlDatabase;
+import org.syncany.tests.util.TestConfigUtil;
+import org.syncany.tests.util.TestSqlUtil;
+
+public class DatabaseConnectionPoolTest {
+	private static final Logger logger = Logger.getLogger(DatabaseConnectionPoolTest.class.getSimpleName());
+
+	private Config config;
+	private DatabaseConnectionPool databaseConnectionPool;
+
+	@Before
+	public void setUp() throws Exception {
+		config = TestConfigUtil.createTestLocalConfig();
+		databaseConnectionPool = new DatabaseConnectionPool(config.getDatabaseFile());
+
+		config.setDatabaseConnectionPool(databaseConnectionPool);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		databaseConnectionPool.close();
+		TestConfigUtil.deleteTestLocalConfigAndData(config);
+	}
+
+	@Test
+	public void testConnectionReusedAfterClose() throws Exception {
+		// Run
+		SqlDatabase database1 = new SqlDatabase(config);
+		database1.getKnownDatabases();
+		database1.close();
+
+		SqlDatabase database2 = new SqlDatabase(config);
+		database2.getKnownDatabases();
+		database2.close();
+
+		// Test
+		DatabaseConnectionPoolMetrics metrics = databaseConnectionPool.getMetrics();
+
+		assertEquals(1, metrics.getConnectionsCreated());
+		assertEquals(1, metrics.getConnectionsReused());
+		assertTrue(metrics.getStatementsReused() >= 1);
+	}
+
+	@Test
+	public void testConnectionsInUseAreNotShared() throws Exception {
+		// Run
+		SqlDatabase database1 = new SqlDatabase(config);
+		SqlDatabase database2 = new SqlDatabase(config);
+
+		// Test
+		assertNotSame(database1.getConnection(), database2.getConnection());
+		assertEquals(2, databaseConnectionPool.getMetrics().getConnectionsCreated());
+
+		// Tear down
+		database1.close();
+		database2.close();
+	}
+
+	@Test
+	public void testReadOnlyAndReadWriteConnectionsPooledSeparately() throws Exception {
+		// Run
+		SqlDatabase readWriteDatabase = new SqlDatabase(config, false);
+		readWriteDatabase.close();
+
+		SqlDatabase readOnlyDatabase = new SqlDatabase(config, true);
+
+		// Test
+		assertTrue(readOnlyDatabase.getConnection().isReadOnly());
+		assertEquals(2, databaseConnectionPool.getMetrics().getConnectionsCreated());
+		assertEquals(0, databaseConnectionPool.getMetrics().getConnectionsReused());
+
+		// Tear down
+		readOnlyDatabase.close();
+	}
+
+	@Test
+	public void testUncommittedChangesRolledBackOnClose() throws Exception {
+		// Run
+		Connection connection1 = config.createDatabaseConnection(false);
+
+		try (PreparedStatement preparedStatement = connection1.prepareStatement("insert into known_databases (client, filenumber) values ('X', 1)")) {
+			preparedStatement.executeUpdate();
+		}
+
+		connection1.close(); // No commit!
+
+		Connection connection2 = config.createDatabaseConnection(false);
+		String knownDatabaseCount = TestSqlUtil.runSqlSelect("select count(*) from known_databases where client='X'", connection2);
+		connection2.close();
+
+		// Test
+		assertEquals(1, databaseConnectionPool.getMetrics().getConnectionsReused());
+		assertEquals("0", knownDatabaseCount);
+	}
+
+	@Test
+	public void testAutoCommitRestoredOnClose() throws Exception {
+		// Run
+		Connection connection1 = config.createDatabaseConnection(false);
+		connection1.setAutoCommit(true);
+		connection1.close();
+
+		Connection connection2 = config.createDatabaseConnection(false);
+		boolean autoCommit = connection2.getAutoCommit();
+		connection2.close();
+
+		// Test
+		assertEquals(1, databaseConnectionPool.getMetrics().getConnectionsReused());
+		assertFalse(autoCommit);
+	}
+
+	@Test
+	public void testStatementLimitsResetWhenReused() throws Exception {
+		Connection connection = config.createDatabaseConnection(false);
+		String sql = "select client from known_databases";
+
+		for (int fileNumber = 1; fileNumber <= 3; fileNumber++) {
+			try (PreparedStatement preparedStatement = connection.prepareStatement("insert into known_databases (client, filenumber) values ('X', ?)")) {
+				preparedStatement.setInt(1, fileNumber);
+				preparedStatement.executeUpdate();
+			}
+		}
+
+		connection.commit();
+		long statementsReusedBefore = databaseConnectionPool.getMetrics().getStatementsReused();
+
+		// Run
+		try (PreparedStatement limitedStatement = connection.prepareStatement(sql)) {
+			limitedStatement.setMaxRows(1);
+			limitedStatement.setQueryTimeout(10);
+		}
+
+		int rowCount = 0;
+
+		try (PreparedStatement reusedStatement = connection.prepareStatement(sql)) {
+			assertEquals(0, reusedStatement.getMaxRows());
+			assertEquals(0, reusedStatement.getQueryTimeout());
+
+			try (ResultSet resultSet = reusedStatement.executeQuery()) {
+				while (resultSet.next()) {
+					rowCount++;
+				}
+			}
+		}
+
+		connection.close();
+
+		// Test
+		assertEquals(statementsReusedBefore + 1, databaseConnectionPool.getMetrics().getStatementsReused());
+		assertEquals(3, rowCount);
+	}
+
+	@Test
+	public void testNestedUseOfSameStatement() throws Exception {
+		Connection connection = config.createDatabaseConnection(true);
+		String sql = "select count(*) from known_databases";
+
+		// Run
+		PreparedStatement outerStatement = connection.prepareStatement(sql);
+		PreparedStatement innerStatement = connection.prepareStatement(sql);
+
+		// Test
+		assertNotSame(outerStatement, innerStatement);
+
+		try (ResultSet outerResultSet = outerStatement.executeQuery(); ResultSet innerResultSet = innerStatement.executeQuery()) {
+			assertTrue(outerResultSet.next());
+			assertTrue(innerResultSet.next());
+		}
+
+		innerStatement.close();
+		outerStatement.close();
+
+		assertTrue(outerStatement.isClosed());
+
+		// Cached statement is re-used after it was closed
+		PreparedStatement reusedStatement = connection.prepareStatement(sql);
+
+		try (ResultSet resultSet = reusedStatement.executeQuery()) {
+			assertTrue(resultSet.next());
+		}
+
+		reusedStatement.close();
+		connection.close();
+
+		assertTrue(connection.isClosed());
+		assertEquals(1, databaseConnectionPool.getMetrics().getStatementsReused());
+	}
+
+	@Test
+	public void testBenchmarkPooledVersusNewConnections() throws Exception {
+		final int ITERATIONS = 200;
+
+		// Without pool
+		config.setDatabaseConnectionPool(null);
+		long startTime = System.currentTimeMillis();
+
+		for (int i = 0; i < ITERATIONS; i++) {
+			SqlDatabase database = new SqlDatabase(config, true);
+			database.getKnownDatabases();
+			database.close();
+		}
+
+		long durationWithoutPool = System.currentTimeMillis() - startTime;
+
+		// With pool
+		config.setDatabaseConnectionPool(databaseConnectionPool);
+		startTime = System.currentTimeMillis();
+
+		for (int i = 0; i < ITERATIONS; i++) {
+			SqlDatabase database = new SqlDatabase(config, true);
+			database.getKnownDatabases();
+			database.close();
+		}
+
+		long durationWithPool = System.currentTimeMillis() - startTime;
+
+		logger.log(Level.INFO, "Database connection benchmark (" + ITERATIONS + " queries): without pool " + durationWithoutPool
+				+ " ms, with pool " + durationWithPool + " ms; " + databaseConnectionPool.getMetrics());
+
+		assertEquals(1, databaseConnectionPool.getMetrics().getConnectionsCreated());
+		assertEquals(ITERATIONS - 1, databaseConnectionPool.getMetrics().getConnectionsReused());
+	}
+}
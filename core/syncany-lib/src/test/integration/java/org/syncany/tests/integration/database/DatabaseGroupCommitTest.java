@@ -0,0 +1,121 @@
+/*
+ * Syncany, www.syncany.org
+ * Copyright (C) 2011-2016 Philipp C. Heckel <philipp.heckel@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.syncany.tests.integration.database;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.syncany.config.Config;
+import org.syncany.database.DatabaseGroupCommit;
+import org.syncany.tests.util.TestConfigUtil;
+import org.syncany.tests.util.TestSqlUtil;
+
+public class DatabaseGroupCommitTest {
+	private static final Logger logger = Logger.getLogger(DatabaseGroupCommitTest.class.getSimpleName());
+
+	private Config config;
+
+	@Before
+	public void setUp() throws Exception {
+		config = TestConfigUtil.createTestLocalConfig();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		TestConfigUtil.deleteTestLocalConfigAndData(config);
+	}
+
+	@Test
+	public void testCommittedChangesDurableAfterEnd() throws Exception {
+		Connection connection = config.createDatabaseConnection();
+		DatabaseGroupCommit groupCommit = new DatabaseGroupCommit(connection);
+
+		// Run
+		groupCommit.begin();
+		assertTrue(groupCommit.isActive());
+
+		insertKnownDatabases(connection, "A", 1, 10);
+
+		groupCommit.end();
+		assertFalse(groupCommit.isActive());
+
+		// Simulate a crash (no checkpoint on shutdown)
+		connection.prepareStatement("shutdown immediately").execute();
+		connection.close();
+
+		// Test
+		Connection reopenedConnection = config.createDatabaseConnection();
+		assertEquals("10", TestSqlUtil.runSqlSelect("select count(*) from known_databases where client='A'", reopenedConnection));
+
+		reopenedConnection.close();
+	}
+
+	@Test
+	public void testBenchmarkGroupCommitVersusSynchronousCommits() throws Exception {
+		final int COMMITS = 500;
+		Connection connection = config.createDatabaseConnection();
+
+		// Without group commit: every commit syncs the log
+		long startTime = System.currentTimeMillis();
+		insertKnownDatabases(connection, "A", 1, COMMITS);
+		long durationWithoutGroupCommit = System.currentTimeMillis() - startTime;
+
+		// With group commit: the log is synced by the write delay timer, plus once at the end
+		DatabaseGroupCommit groupCommit = new DatabaseGroupCommit(connection);
+		startTime = System.currentTimeMillis();
+
+		groupCommit.begin();
+		insertKnownDatabases(connection, "B", 1, COMMITS);
+		groupCommit.end();
+
+		long durationWithGroupCommit = System.currentTimeMillis() - startTime;
+		long maxLogSyncsWithGroupCommit = groupCommit.getMaxLogSyncs(durationWithGroupCommit) + 1;
+
+		logger.log(Level.INFO, "Group commit benchmark (" + COMMITS + " commits): without group commit " + COMMITS + " log syncs in "
+				+ durationWithoutGroupCommit + " ms, with group commit at most " + maxLogSyncsWithGroupCommit + " log syncs in "
+				+ durationWithGroupCommit + " ms");
+
+		// Test
+		assertEquals(String.valueOf(COMMITS), TestSqlUtil.runSqlSelect("select count(*) from known_databases where client='B'", connection));
+
+		connection.close();
+	}
+
+	private void insertKnownDatabases(Connection connection, String client, int fromFileNumber, int toFileNumber) throws SQLException {
+		for (int fileNumber = fromFileNumber; fileNumber <= toFileNumber; fileNumber++) {
+			try (PreparedStatement preparedStatement = connection.prepareStatement("insert into known_databases (client, filenumber) values (?, ?)")) {
+				preparedStatement.setString(1, client);
+				preparedStatement.setInt(2, fileNumber);
+
+				preparedStatement.executeUpdate();
+			}
+
+			connection.commit();
+		}
+	}
+}
@@ -17,6 +17,7 @@
  */
 package org.syncany.tests.integration.database;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
@@ -33,6 +34,7 @@ import java.util.Date;
 
 import org.junit.Test;
 import org.syncany.config.Config;
+import org.syncany.database.FileChecksumCache;
 import org.syncany.database.FileContent.FileChecksum;
 import org.syncany.database.FileVersion;
 import org.syncany.database.FileVersion.FileStatus;
@@ -210,5 +212,70 @@ public class FileVersionComparatorTest {
 		// Tear down
 		TestConfigUtil.deleteTestLocalConfigAndData(config);
 	}
-	
+
+	@Test
+	public void testCaptureFilePropertiesWithChecksumCache() throws Exception {
+		// Setup
+		Config config = TestConfigUtil.createTestLocalConfig();
+		FileChecksumCache checksumCache = new FileChecksumCache();
+		FileVersionComparator versionComparator = new FileVersionComparator(config.getLocalDir(), config.getChunker().getChecksumAlgorithm(), checksumCache);
+
+		File somefile = new File(config.getLocalDir()+"/somefile");
+
+		TestFileUtil.createRandomFile(somefile, 100*1024);
+		somefile.setLastModified(1382196000);
+
+		// Run: First capture calculates and caches the checksum
+		FileProperties fileProperties1 = versionComparator.captureFileProperties(somefile, null, true);
+		byte[] expectedChecksum = FileUtil.createChecksum(somefile, config.getChunker().getChecksumAlgorithm());
+
+		// Test
+		assertArrayEquals(expectedChecksum, fileProperties1.getChecksum().getBytes());
+		assertEquals(fileProperties1.getChecksum(), checksumCache.get("somefile", 100*1024, 1382196000));
+		assertEquals(1, checksumCache.size());
+
+		// Run: Second capture uses the cached checksum (fake checksum proves that the file is not read)
+		FileChecksum fakeChecksum = new FileChecksum(new byte[] { 0x11, 0x22, 0x33 });
+		checksumCache.put("somefile", 100*1024, 1382196000, fakeChecksum);
+
+		FileProperties fileProperties2 = versionComparator.captureFileProperties(somefile, null, true);
+
+		// Test
+		assertEquals(fakeChecksum, fileProperties2.getChecksum());
+
+		// Run: Changed modified date invalidates the cached checksum
+		somefile.setLastModified(1382197000);
+		FileProperties fileProperties3 = versionComparator.captureFileProperties(somefile, null, true);
+
+		// Test
+		assertArrayEquals(expectedChecksum, fileProperties3.getChecksum().getBytes());
+		assertEquals(fileProperties3.getChecksum(), checksumCache.get("somefile", 100*1024, 1382197000));
+
+		// Tear down
+		TestConfigUtil.deleteTestLocalConfigAndData(config);
+	}
+
+	@Test
+	public void testCaptureFilePropertiesWithKnownChecksumFillsChecksumCache() throws Exception {
+		// Setup
+		Config config = TestConfigUtil.createTestLocalConfig();
+		FileChecksumCache checksumCache = new FileChecksumCache();
+		FileVersionComparator versionComparator = new FileVersionComparator(config.getLocalDir(), config.getChunker().getChecksumAlgorithm(), checksumCache);
+
+		File somefile = new File(config.getLocalDir()+"/somefile");
+
+		TestFileUtil.createRandomFile(somefile, 10*1024);
+		somefile.setLastModified(1382196000);
+
+		// Run (like the indexer does with the checksum created by the chunker)
+		FileChecksum knownChecksum = new FileChecksum(new byte[] { 0x44, 0x55, 0x66 });
+		versionComparator.captureFileProperties(somefile, knownChecksum, false);
+
+		// Test
+		assertEquals(knownChecksum, checksumCache.get("somefile", 10*1024, 1382196000));
+		assertNull(checksumCache.get("somefile", 10*1024+1, 1382196000));
+
+		// Tear down
+		TestConfigUtil.deleteTestLocalConfigAndData(config);
+	}
 }
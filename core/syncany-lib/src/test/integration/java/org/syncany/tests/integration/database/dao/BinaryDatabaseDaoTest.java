@@ -0,0 +1,513 @@
+/*
+ * Syncany, www.syncany.org
+ * Copyright (C) 2011-2016 Philipp C. Heckel <philipp.heckel@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.syncany.tests.integration.database.dao;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.syncany.tests.util.TestAssertUtil.assertDatabaseVersionEquals;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.syncany.chunk.CipherTransformer;
+import org.syncany.chunk.GzipTransformer;
+import org.syncany.chunk.Transformer;
+import org.syncany.config.Logging;
+import org.syncany.crypto.CipherSpec;
+import org.syncany.crypto.CipherSpecs;
+import org.syncany.crypto.CipherUtil;
+import org.syncany.database.ChunkEntry;
+import org.syncany.database.ChunkEntry.ChunkChecksum;
+import org.syncany.database.DatabaseVersion;
+import org.syncany.database.FileContent;
+import org.syncany.database.FileContent.FileChecksum;
+import org.syncany.database.FileVersion;
+import org.syncany.database.FileVersion.FileStatus;
+import org.syncany.database.FileVersion.FileType;
+import org.syncany.database.MemoryDatabase;
+import org.syncany.database.MultiChunkEntry;
+import org.syncany.database.MultiChunkEntry.MultiChunkId;
+import org.syncany.database.PartialFileHistory;
+import org.syncany.database.PartialFileHistory.FileHistoryId;
+import org.syncany.database.VectorClock;
+import org.syncany.database.dao.DatabaseBinaryWriter;
+import org.syncany.database.dao.DatabaseXmlSerializer;
+import org.syncany.database.dao.DatabaseXmlSerializer.DatabaseFormat;
+import org.syncany.database.dao.DatabaseXmlSerializer.DatabaseReadType;
+import org.syncany.tests.unit.util.TestFileUtil;
+import org.syncany.tests.util.TestAssertUtil;
+
+public class BinaryDatabaseDaoTest {
+	private static final Logger logger = Logger.getLogger(BinaryDatabaseDaoTest.class.getSimpleName());
+
+	private File tempDir;
+
+	static {
+		Logging.init();
+	}
+
+	@Before
+	public void setUp() throws Exception {
+		tempDir = TestFileUtil.createTempDirectoryInSystemTemp();
+	}
+
+	@After
+	public void tearDown() {
+		TestFileUtil.deleteDirectory(tempDir);
+	}
+
+	@Test
+	public void testWriteAndReadAllEntities() throws IOException {
+		// Prepare
+		MemoryDatabase newDatabase = new MemoryDatabase();
+		DatabaseVersion newDatabaseVersion = createDatabaseVersion(null);
+
+		// Chunks and multichunks
+		ChunkEntry chunkA1 = new ChunkEntry(new ChunkChecksum(TestFileUtil.createRandomArray(20)), 512 * 1024);
+		ChunkEntry chunkA2 = new ChunkEntry(new ChunkChecksum(TestFileUtil.createRandomArray(20)), 12);
+
+		newDatabaseVersion.addChunk(chunkA1);
+		newDatabaseVersion.addChunk(chunkA2);
+
+		MultiChunkEntry multiChunkA = new MultiChunkEntry(new MultiChunkId(TestFileUtil.createRandomArray(32)), 10 * 1024 * 1024);
+		multiChunkA.addChunk(chunkA1.getChecksum());
+		multiChunkA.addChunk(chunkA2.getChecksum());
+
+		newDatabaseVersion.addMultiChunk(multiChunkA);
+
+		// File content
+		FileContent contentA = new FileContent();
+		contentA.setChecksum(new FileChecksum(TestFileUtil.createRandomArray(20)));
+		contentA.setSize(512 * 1024 + 12);
+		contentA.addChunk(chunkA1.getChecksum());
+		contentA.addChunk(chunkA2.getChecksum());
+
+		newDatabaseVersion.addFileContent(contentA);
+
+		// File histories: file with all optional fields, symlink, folder in root, restricted characters
+		PartialFileHistory fileHistoryA = new PartialFileHistory(FileHistoryId.secureRandomFileId());
+
+		FileVersion versionA1 = createFileVersion(1L, FileType.FILE, FileStatus.NEW, "Pictures/2013/New York/file.jpg", 512 * 1024 + 12);
+		versionA1.setChecksum(contentA.getChecksum());
+		versionA1.setUpdated(new Date(1392000000000L));
+		versionA1.setPosixPermissions("rw-r--r--");
+		versionA1.setDosAttributes("--a-");
+		fileHistoryA.addFileVersion(versionA1);
+
+		FileVersion versionA2 = createFileVersion(2L, FileType.FILE, FileStatus.RENAMED, "Pictures/2013/New York/file renamed.jpg", 512 * 1024 + 12);
+		versionA2.setChecksum(contentA.getChecksum());
+		versionA2.setPosixPermissions("rw-r--r--");
+		fileHistoryA.addFileVersion(versionA2);
+
+		PartialFileHistory fileHistoryB = new PartialFileHistory(FileHistoryId.secureRandomFileId());
+
+		FileVersion versionB1 = createFileVersion(1L, FileType.SYMLINK, FileStatus.NEW, "Pictures/link", 0);
+		versionB1.setLinkTarget("/etc/hosts");
+		fileHistoryB.addFileVersion(versionB1);
+
+		PartialFileHistory fileHistoryC = new PartialFileHistory(FileHistoryId.secureRandomFileId());
+		fileHistoryC.addFileVersion(createFileVersion(1L, FileType.FOLDER, FileStatus.NEW, "Pictures", 0));
+
+		PartialFileHistory fileHistoryD = new PartialFileHistory(FileHistoryId.secureRandomFileId());
+		fileHistoryD.addFileVersion(createFileVersion(1L, FileType.FILE, FileStatus.DELETED, "Special\u0001/äöü 日本.txt", 0));
+
+		newDatabaseVersion.addFileHistory(fileHistoryA);
+		newDatabaseVersion.addFileHistory(fileHistoryB);
+		newDatabaseVersion.addFileHistory(fileHistoryC);
+		newDatabaseVersion.addFileHistory(fileHistoryD);
+
+		newDatabase.addDatabaseVersion(newDatabaseVersion);
+
+		// Write database to disk, read it again, and compare them
+		MemoryDatabase loadedDatabase = writeReadAndCompareDatabase(newDatabase, null);
+
+		assertEquals(chunkA1, loadedDatabase.getChunk(chunkA1.getChecksum()));
+		assertEquals(multiChunkA, loadedDatabase.getMultiChunk(multiChunkA.getId()));
+		assertArrayEquals(contentA.getChunks().toArray(), loadedDatabase.getContent(contentA.getChecksum()).getChunks().toArray());
+
+		for (PartialFileHistory fileHistory : newDatabaseVersion.getFileHistories()) {
+			PartialFileHistory loadedFileHistory = loadedDatabase.getFileHistory(fileHistory.getFileHistoryId());
+
+			assertNotNull(loadedFileHistory);
+			assertArrayEquals(fileHistory.getFileVersions().values().toArray(), loadedFileHistory.getFileVersions().values().toArray());
+		}
+	}
+
+	@Test
+	public void testWriteAndReadVectorClockWithTransformer() throws IOException {
+		MemoryDatabase newDatabase = new MemoryDatabase();
+		DatabaseVersion newDatabaseVersion = createDatabaseVersion(null);
+
+		VectorClock vc = new VectorClock();
+
+		vc.setClock("UserA", 14234234L);
+		vc.setClock("UserB", 9433431232432L);
+		vc.setClock("UserC", 1L);
+
+		newDatabaseVersion.setVectorClock(vc);
+		newDatabase.addDatabaseVersion(newDatabaseVersion);
+
+		MemoryDatabase loadedDatabase = writeReadAndCompareDatabase(newDatabase, new GzipTransformer());
+		assertEquals(vc, loadedDatabase.getDatabaseVersions().get(0).getVectorClock());
+	}
+
+	@Test
+	public void testReadPartialAndHeaderOnly() throws IOException {
+		MemoryDatabase writtenDatabase = createDatabaseWithChunks(10);
+		List<DatabaseVersion> writtenDatabaseVersions = writtenDatabase.getDatabaseVersions();
+
+		File writtenDatabaseFile = new File(tempDir, "db-partial");
+		new DatabaseXmlSerializer(null, DatabaseFormat.BINARY).save(writtenDatabaseVersions, writtenDatabaseFile);
+
+		// Read versions 3 to 5
+		VectorClock fromVersion = writtenDatabaseVersions.get(2).getVectorClock();
+		VectorClock toVersion = writtenDatabaseVersions.get(4).getVectorClock();
+
+		MemoryDatabase partialDatabase = new MemoryDatabase();
+		new DatabaseXmlSerializer().load(partialDatabase, writtenDatabaseFile, fromVersion, toVersion, DatabaseReadType.FULL);
+
+		assertEquals(3, partialDatabase.getDatabaseVersions().size());
+
+		for (int i = 2; i <= 4; i++) {
+			DatabaseVersion writtenDatabaseVersion = writtenDatabaseVersions.get(i);
+			DatabaseVersion readDatabaseVersion = partialDatabase.getDatabaseVersion(writtenDatabaseVersion.getVectorClock());
+
+			assertNotNull(readDatabaseVersion);
+			assertDatabaseVersionEquals(writtenDatabaseVersion, readDatabaseVersion);
+		}
+
+		// Read headers only
+		MemoryDatabase headerDatabase = new MemoryDatabase();
+		new DatabaseXmlSerializer().load(headerDatabase, writtenDatabaseFile, null, null, DatabaseReadType.HEADER_ONLY);
+
+		assertEquals(10, headerDatabase.getDatabaseVersions().size());
+
+		for (int i = 0; i < 10; i++) {
+			assertEquals(writtenDatabaseVersions.get(i).getHeader(), headerDatabase.getDatabaseVersions().get(i).getHeader());
+			assertEquals(0, headerDatabase.getDatabaseVersions().get(i).getChunks().size());
+		}
+	}
+
+	@Test
+	public void testReadHeaderOnlyDoesNotReadBodies() throws IOException {
+		MemoryDatabase writtenDatabase = createDatabaseWithChunks(5);
+		List<DatabaseVersion> writtenDatabaseVersions = writtenDatabase.getDatabaseVersions();
+
+		File writtenDatabaseFile = new File(tempDir, "db-header-only");
+		new DatabaseXmlSerializer(null, DatabaseFormat.BINARY).save(writtenDatabaseVersions, writtenDatabaseFile);
+
+		// Append garbage after the last body
+		try (FileOutputStream garbageOutputStream = new FileOutputStream(writtenDatabaseFile, true)) {
+			garbageOutputStream.write(TestFileUtil.createRandomArray(100));
+		}
+
+		// Headers are read from the header block only
+		MemoryDatabase headerDatabase = new MemoryDatabase();
+		new DatabaseXmlSerializer().load(headerDatabase, writtenDatabaseFile, null, null, DatabaseReadType.HEADER_ONLY);
+
+		assertEquals(5, headerDatabase.getDatabaseVersions().size());
+
+		for (int i = 0; i < 5; i++) {
+			assertEquals(writtenDatabaseVersions.get(i).getHeader(), headerDatabase.getDatabaseVersions().get(i).getHeader());
+		}
+
+		// Full reads must reach the end of the file
+		try {
+			new DatabaseXmlSerializer().load(new MemoryDatabase(), writtenDatabaseFile, null, null, DatabaseReadType.FULL);
+			fail("Loading a database file with trailing data should fail.");
+		}
+		catch (IOException e) {
+			// Expected
+		}
+	}
+
+	@Test
+	public void testReadHeaderOnlyVerifiesHeaderSegment() throws Exception {
+		Transformer transformer = createCipherTransformer();
+		MemoryDatabase writtenDatabase = createDatabaseWithChunks(5);
+
+		File writtenDatabaseFile = new File(tempDir, "db-header-tampered");
+		new DatabaseXmlSerializer(transformer, DatabaseFormat.BINARY).save(writtenDatabase.getDatabaseVersions(), writtenDatabaseFile);
+
+		// Untampered headers can be read
+		MemoryDatabase headerDatabase = new MemoryDatabase();
+		new DatabaseXmlSerializer(transformer).load(headerDatabase, writtenDatabaseFile, null, null, DatabaseReadType.HEADER_ONLY);
+
+		assertEquals(5, headerDatabase.getDatabaseVersions().size());
+
+		// Flip the last byte of the header segment (part of the authentication tag)
+		byte[] databaseFileBytes = FileUtils.readFileToByteArray(writtenDatabaseFile);
+		databaseFileBytes[getHeaderSegmentEndOffset(databaseFileBytes) - 1] ^= 0x01;
+
+		FileUtils.writeByteArrayToFile(writtenDatabaseFile, databaseFileBytes);
+
+		try {
+			new DatabaseXmlSerializer(transformer).load(new MemoryDatabase(), writtenDatabaseFile, null, null, DatabaseReadType.HEADER_ONLY);
+			fail("Loading the headers of a database file with a tampered header segment should fail.");
+		}
+		catch (IOException e) {
+			// Expected
+		}
+	}
+
+	@Test
+	public void testReadFullRejectsHeaderSegmentOfOtherFile() throws Exception {
+		Transformer transformer = createCipherTransformer();
+		DatabaseXmlSerializer serializer = new DatabaseXmlSerializer(transformer, DatabaseFormat.BINARY);
+
+		File databaseFile1 = new File(tempDir, "db-1");
+		File databaseFile2 = new File(tempDir, "db-2");
+
+		serializer.save(createDatabaseWithChunks(3).getDatabaseVersions(), databaseFile1);
+		serializer.save(createDatabaseWithChunks(3).getDatabaseVersions(), databaseFile2);
+
+		// Combine the prefix and header segment of file 1 with the body segment of file 2
+		byte[] databaseFileBytes1 = FileUtils.readFileToByteArray(databaseFile1);
+		byte[] databaseFileBytes2 = FileUtils.readFileToByteArray(databaseFile2);
+
+		int headerSegmentEndOffset1 = getHeaderSegmentEndOffset(databaseFileBytes1);
+		int headerSegmentEndOffset2 = getHeaderSegmentEndOffset(databaseFileBytes2);
+
+		File splicedDatabaseFile = new File(tempDir, "db-spliced");
+
+		try (FileOutputStream splicedOutputStream = new FileOutputStream(splicedDatabaseFile)) {
+			splicedOutputStream.write(databaseFileBytes1, 0, headerSegmentEndOffset1);
+			splicedOutputStream.write(databaseFileBytes2, headerSegmentEndOffset2, databaseFileBytes2.length - headerSegmentEndOffset2);
+		}
+
+		try {
+			serializer.load(new MemoryDatabase(), splicedDatabaseFile, null, null, DatabaseReadType.FULL);
+			fail("Loading a database file with the header segment of another file should fail.");
+		}
+		catch (IOException e) {
+			// Expected
+		}
+	}
+
+	@Test
+	public void testReadXmlAndBinaryWithSameSerializer() throws IOException {
+		MemoryDatabase writtenDatabase = createDatabaseWithChunks(3);
+		Transformer transformer = new GzipTransformer();
+
+		File xmlDatabaseFile = new File(tempDir, "db-xml");
+		File binaryDatabaseFile = new File(tempDir, "db-binary");
+
+		new DatabaseXmlSerializer(transformer, DatabaseFormat.XML).save(writtenDatabase.getDatabaseVersions(), xmlDatabaseFile);
+		new DatabaseXmlSerializer(transformer, DatabaseFormat.BINARY).save(writtenDatabase.getDatabaseVersions(), binaryDatabaseFile);
+
+		// Check magic bytes (plain text, before the transformed segments)
+		byte[] magic = new byte[DatabaseBinaryWriter.BINARY_FORMAT_MAGIC.length];
+
+		try (InputStream binaryInputStream = new FileInputStream(binaryDatabaseFile)) {
+			binaryInputStream.read(magic);
+		}
+
+		assertArrayEquals(DatabaseBinaryWriter.BINARY_FORMAT_MAGIC, magic);
+
+		// Both formats must be readable, regardless of the configured format
+		DatabaseXmlSerializer readSerializer = new DatabaseXmlSerializer(transformer, DatabaseFormat.BINARY);
+
+		MemoryDatabase xmlDatabase = new MemoryDatabase();
+		readSerializer.load(xmlDatabase, xmlDatabaseFile, null, null, DatabaseReadType.FULL);
+
+		MemoryDatabase binaryDatabase = new MemoryDatabase();
+		readSerializer.load(binaryDatabase, binaryDatabaseFile, null, null, DatabaseReadType.FULL);
+
+		TestAssertUtil.assertDatabaseEquals(writtenDatabase, xmlDatabase);
+		TestAssertUtil.assertDatabaseEquals(writtenDatabase, binaryDatabase);
+		assertTrue(binaryDatabaseFile.length() < xmlDatabaseFile.length());
+	}
+
+	@Test
+	public void testBenchmarkParseTimeAndFileSize() throws IOException {
+		// Resembles a large folder: 200 versions, each with 500 files in 50 folders
+		MemoryDatabase writtenDatabase = createLargeDatabase(200, 500);
+		Transformer transformer = new GzipTransformer();
+
+		File xmlDatabaseFile = new File(tempDir, "db-xml");
+		File binaryDatabaseFile = new File(tempDir, "db-binary");
+
+		new DatabaseXmlSerializer(transformer, DatabaseFormat.XML).save(writtenDatabase.getDatabaseVersions(), xmlDatabaseFile);
+		new DatabaseXmlSerializer(transformer, DatabaseFormat.BINARY).save(writtenDatabase.getDatabaseVersions(), binaryDatabaseFile);
+
+		int rounds = 5;
+		DatabaseXmlSerializer readSerializer = new DatabaseXmlSerializer(transformer);
+
+		// Before: Gzipped XML, parsed with SAX
+		long startTime = System.nanoTime();
+
+		for (int round = 0; round < rounds; round++) {
+			readSerializer.load(new MemoryDatabase(), xmlDatabaseFile, null, null, DatabaseReadType.FULL);
+		}
+
+		long durationXml = (System.nanoTime() - startTime) / rounds;
+
+		// After: Gzipped binary format
+		startTime = System.nanoTime();
+
+		for (int round = 0; round < rounds; round++) {
+			readSerializer.load(new MemoryDatabase(), binaryDatabaseFile, null, null, DatabaseReadType.FULL);
+		}
+
+		long durationBinary = (System.nanoTime() - startTime) / rounds;
+
+		logger.log(Level.INFO, "Database parse benchmark: XML " + xmlDatabaseFile.length() / 1024 + " KB in " + durationXml / 1000000
+				+ " ms, binary " + binaryDatabaseFile.length() / 1024 + " KB in " + durationBinary / 1000000 + " ms");
+
+		assertTrue(binaryDatabaseFile.length() < xmlDatabaseFile.length());
+	}
+
+	private Transformer createCipherTransformer() throws Exception {
+		List<CipherSpec> cipherSpecs = new ArrayList<CipherSpec>();
+		cipherSpecs.add(CipherSpecs.getCipherSpec(1));
+		cipherSpecs.add(CipherSpecs.getCipherSpec(2));
+
+		return new GzipTransformer(new CipherTransformer(cipherSpecs, CipherUtil.createMasterKey("some password")));
+	}
+
+	/**
+	 * Returns the offset right after the header segment, i.e. after the magic bytes,
+	 * the format version, the (variable-length) segment length and the segment itself.
+	 */
+	private int getHeaderSegmentEndOffset(byte[] databaseFileBytes) {
+		int offset = DatabaseBinaryWriter.BINARY_FORMAT_MAGIC.length + 1;
+		int headerSegmentLength = 0;
+
+		for (int shift = 0;; shift += 7) {
+			int b = databaseFileBytes[offset++] & 0xFF;
+			headerSegmentLength |= (b & 0x7F) << shift;
+
+			if ((b & 0x80) == 0) {
+				break;
+			}
+		}
+
+		return offset + headerSegmentLength;
+	}
+
+	private MemoryDatabase createLargeDatabase(int databaseVersionCount, int fileCountPerDatabaseVersion) {
+		MemoryDatabase database = new MemoryDatabase();
+		DatabaseVersion lastDatabaseVersion = null;
+
+		for (int i = 0; i < databaseVersionCount; i++) {
+			DatabaseVersion newDatabaseVersion = createDatabaseVersion(lastDatabaseVersion);
+			MultiChunkEntry multiChunk = new MultiChunkEntry(new MultiChunkId(TestFileUtil.createRandomArray(32)), 4 * 1024 * 1024);
+
+			for (int j = 0; j < fileCountPerDatabaseVersion; j++) {
+				ChunkEntry chunk = new ChunkEntry(new ChunkChecksum(TestFileUtil.createRandomArray(20)), 8 * 1024);
+
+				FileContent content = new FileContent();
+				content.setChecksum(new FileChecksum(TestFileUtil.createRandomArray(20)));
+				content.setSize(chunk.getSize());
+				content.addChunk(chunk.getChecksum());
+
+				FileVersion fileVersion = createFileVersion(1L, FileType.FILE, FileStatus.NEW, "Documents/Projects/folder-" + (j % 50)
+						+ "/file-" + i + "-" + j + ".txt", chunk.getSize());
+
+				fileVersion.setChecksum(content.getChecksum());
+				fileVersion.setPosixPermissions("rw-r--r--");
+
+				PartialFileHistory fileHistory = new PartialFileHistory(FileHistoryId.secureRandomFileId());
+				fileHistory.addFileVersion(fileVersion);
+
+				multiChunk.addChunk(chunk.getChecksum());
+
+				newDatabaseVersion.addChunk(chunk);
+				newDatabaseVersion.addFileContent(content);
+				newDatabaseVersion.addFileHistory(fileHistory);
+			}
+
+			newDatabaseVersion.addMultiChunk(multiChunk);
+
+			database.addDatabaseVersion(newDatabaseVersion);
+			lastDatabaseVersion = newDatabaseVersion;
+		}
+
+		return database;
+	}
+
+	private MemoryDatabase createDatabaseWithChunks(int databaseVersionCount) {
+		MemoryDatabase database = new MemoryDatabase();
+		DatabaseVersion lastDatabaseVersion = null;
+
+		for (int i = 0; i < databaseVersionCount; i++) {
+			DatabaseVersion newDatabaseVersion = createDatabaseVersion(lastDatabaseVersion);
+
+			newDatabaseVersion.addChunk(new ChunkEntry(new ChunkChecksum(TestFileUtil.createRandomArray(20)), 32 * 1024));
+			newDatabaseVersion.addChunk(new ChunkEntry(new ChunkChecksum(TestFileUtil.createRandomArray(20)), 32 * 1024));
+
+			database.addDatabaseVersion(newDatabaseVersion);
+			lastDatabaseVersion = newDatabaseVersion;
+		}
+
+		return database;
+	}
+
+	private DatabaseVersion createDatabaseVersion(DatabaseVersion basedOnDatabaseVersion) {
+		VectorClock vectorClock = (basedOnDatabaseVersion != null) ? basedOnDatabaseVersion.getVectorClock().clone() : new VectorClock();
+		vectorClock.incrementClock("someclient");
+
+		DatabaseVersion databaseVersion = new DatabaseVersion();
+
+		databaseVersion.setClient("someclient");
+		databaseVersion.setTimestamp(new Date());
+		databaseVersion.setVectorClock(vectorClock);
+
+		return databaseVersion;
+	}
+
+	private FileVersion createFileVersion(long version, FileType type, FileStatus status, String path, long size) {
+		FileVersion fileVersion = new FileVersion();
+
+		fileVersion.setVersion(version);
+		fileVersion.setType(type);
+		fileVersion.setStatus(status);
+		fileVersion.setPath(path);
+		fileVersion.setSize(size);
+		fileVersion.setLastModified(new Date());
+
+		return fileVersion;
+	}
+
+	private MemoryDatabase writeReadAndCompareDatabase(MemoryDatabase writtenDatabase, Transformer transformer) throws IOException {
+		File writtenDatabaseFile = new File(tempDir, "db-" + System.nanoTime());
+		new DatabaseXmlSerializer(transformer, DatabaseFormat.BINARY).save(writtenDatabase.getDatabaseVersions(), writtenDatabaseFile);
+
+		MemoryDatabase readDatabase = new MemoryDatabase();
+		new DatabaseXmlSerializer(transformer).load(readDatabase, writtenDatabaseFile, null, null, DatabaseReadType.FULL);
+
+		TestAssertUtil.assertDatabaseEquals(writtenDatabase, readDatabase);
+
+		return readDatabase;
+	}
+}
@@ -22,6 +22,7 @@ import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 
 import java.sql.Connection;
+import java.util.Arrays;
 import java.util.Map;
 
 import org.junit.Test;
@@ -65,6 +66,39 @@ public class ChunkDaoTest {
 		TestConfigUtil.deleteTestLocalConfigAndData(testConfig);
 	}
 	
+	@Test
+	public void testGetChunkCacheUpdatedOnWrite() throws Exception {
+		// Setup
+		Config testConfig = TestConfigUtil.createTestLocalConfig();
+		Connection databaseConnection = testConfig.createDatabaseConnection();
+
+		// Run
+		TestSqlUtil.runSqlFromResource(databaseConnection, "test.insert.set3.sql");
+		
+		ChunkSqlDao chunkDao = new ChunkSqlDao(databaseConnection);
+		ChunkChecksum newChunkChecksum = ChunkChecksum.parseChunkChecksum("beefbeefbeefbeefbeefbeefbeefbeefbeefbeef");
+		
+		ChunkEntry chunkBeforeWrite = chunkDao.getChunk(newChunkChecksum); // Loads cache
+		chunkDao.writeChunks(databaseConnection, 0, Arrays.asList(new ChunkEntry(newChunkChecksum, 1234)));
+		ChunkEntry chunkAfterWrite = chunkDao.getChunk(newChunkChecksum);
+
+		chunkDao.removeUnreferencedChunks();
+		ChunkEntry chunkAfterRemove = chunkDao.getChunk(newChunkChecksum);
+		
+		// Test
+		assertNull(chunkBeforeWrite);
+		
+		assertNotNull(chunkAfterWrite);
+		assertEquals(1234, chunkAfterWrite.getSize());
+		
+		assertNull(chunkAfterRemove);
+		assertNotNull(chunkDao.getChunk(ChunkChecksum.parseChunkChecksum("615fba8c2281d5bee891eb092a252d235c237457")));
+		
+		// Tear down
+		databaseConnection.close();
+		TestConfigUtil.deleteTestLocalConfigAndData(testConfig);
+	}
+	
 	@Test
 	public void testGetChunksForDatabaseVersion() throws Exception {
 		// Setup
@@ -21,6 +21,11 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 
 import java.sql.Connection;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
 import java.util.Map;
 
 import org.junit.Test;
@@ -28,6 +33,8 @@ import org.syncany.config.Config;
 import org.syncany.database.FileVersion;
 import org.syncany.database.PartialFileHistory.FileHistoryId;
 import org.syncany.database.dao.FileVersionSqlDao;
+import org.syncany.plugins.transfer.TransferSettings;
+import org.syncany.tests.util.TestClient;
 import org.syncany.tests.util.TestConfigUtil;
 import org.syncany.tests.util.TestSqlUtil;
 
@@ -60,5 +67,160 @@ public class FileVersionDaoTest {
 		// Tear down
 		databaseConnection.close();
 		TestConfigUtil.deleteTestLocalConfigAndData(testConfig);
-	}	
+	}
+	
+	@Test
+	public void testFileVersionGetFileListInFolder() throws Exception {
+		// Setup
+		TransferSettings testConnection = TestConfigUtil.createTestLocalConnection();
+		TestClient clientA = new TestClient("A", testConnection);
+		
+		clientA.createNewFolder("folder");
+		clientA.createNewFolder("folder/sub");
+		clientA.createNewFolder("other");
+		clientA.createNewFile("folder/a");
+		clientA.createNewFile("folder/b");
+		clientA.createNewFile("folder/sub/c");
+		clientA.createNewFile("other/d");
+		clientA.upWithForceChecksum();
+		
+		Thread.sleep(1500);
+		Date beforeChangesDate = new Date();
+		Thread.sleep(1500);
+		
+		clientA.deleteFile("folder/a");
+		clientA.moveFile("folder/b", "other/b");
+		clientA.upWithForceChecksum();
+		
+		// Run
+		Connection databaseConnection = clientA.getConfig().createDatabaseConnection();
+		FileVersionSqlDao fileVersionDao = new FileVersionSqlDao(databaseConnection);
+		
+		// Test
+		assertEquals("[folder/a, folder/b, folder/sub]", getPaths(fileVersionDao.getFileList("folder/%", beforeChangesDate, false, false, false, null)));
+		assertEquals("[folder/sub]", getPaths(fileVersionDao.getFileList("folder/%", null, false, false, false, null)));
+		assertEquals("[folder/a, folder/sub]", getPaths(fileVersionDao.getFileList("folder/%", null, false, false, true, null)));
+		assertEquals("[other/b, other/d]", getPaths(fileVersionDao.getFileList("other/%", null, false, false, false, null)));
+		assertEquals("[other/b]", getPaths(fileVersionDao.getFileList("other/b%", null, false, false, false, null)));
+		assertEquals("[folder, other]", getPaths(fileVersionDao.getFileList("", null, false, false, false, null)));
+		assertEquals("[folder/sub/c]", getPaths(fileVersionDao.getFileList("folder/sub/%", beforeChangesDate, false, false, false, null)));
+		
+		// Recursive listings do not use the directory index
+		assertEquals("[folder/a, folder/b, folder/sub, folder/sub/c]", getPaths(fileVersionDao.getFileList("folder/%", beforeChangesDate, false, true, false, null)));
+		
+		// Tear down
+		databaseConnection.close();
+		clientA.deleteTestData();
+	}
+	
+	@Test
+	public void testFileVersionGetFileListPaged() throws Exception {
+		// Setup
+		TransferSettings testConnection = TestConfigUtil.createTestLocalConnection();
+		TestClient clientA = new TestClient("A", testConnection);
+		
+		clientA.createNewFolder("folder");
+		clientA.createNewFile("folder/a");
+		clientA.createNewFile("folder/b");
+		clientA.createNewFile("folder/c");
+		clientA.createNewFile("folder/d");
+		clientA.createNewFile("folder/e");
+		clientA.upWithForceChecksum();
+		
+		// Run
+		Connection databaseConnection = clientA.getConfig().createDatabaseConnection();
+		FileVersionSqlDao fileVersionDao = new FileVersionSqlDao(databaseConnection);
+		
+		// Test (folder listing, paged by the database)
+		List<FileVersion> firstPage = fileVersionDao.getFileList("folder/%", null, false, false, false, null, null, null, 2);
+		assertEquals("[folder/a, folder/b]", getPaths(firstPage));
+		
+		List<FileVersion> secondPage = fileVersionDao.getFileList("folder/%", null, false, false, false, null, "folder/b", 
+				firstPage.get(1).getFileHistoryId().toString(), 2);
+		assertEquals("[folder/c, folder/d]", getPaths(secondPage));
+		
+		List<FileVersion> lastPage = fileVersionDao.getFileList("folder/%", null, false, false, false, null, "folder/d", 
+				secondPage.get(1).getFileHistoryId().toString(), 2);
+		assertEquals("[folder/e]", getPaths(lastPage));
+		
+		// Test (recursive listing, paged in memory)
+		List<FileVersion> recursivePage = fileVersionDao.getFileList("", null, false, true, false, null, "folder/a", 
+				firstPage.get(0).getFileHistoryId().toString(), 3);
+		assertEquals("[folder/b, folder/c, folder/d]", getPaths(recursivePage));
+		
+		// Tear down
+		databaseConnection.close();
+		clientA.deleteTestData();
+	}
+	
+	@Test
+	public void testFileVersionParentUpgradeExistingDatabase() throws Exception {
+		// Setup
+		Config testConfig = TestConfigUtil.createTestLocalConfig();
+		Connection databaseConnection = testConfig.createDatabaseConnection();
+				
+		TestSqlUtil.runSqlFromResource(databaseConnection, "test.insert.set2.sql");
+		
+		// Remove directory index, i.e. simulate a database created by an older version
+		databaseConnection.setAutoCommit(true);
+		databaseConnection.createStatement().execute("drop trigger trg_fileversion_parent_insert");
+		databaseConnection.createStatement().execute("drop table fileversion_parent");
+		databaseConnection.createStatement().execute("drop function parent_path");
+		databaseConnection.createStatement().execute("delete from general_settings where key='schema.fileVersionParent'");
+		databaseConnection.close();
+		
+		// Run
+		databaseConnection = testConfig.createDatabaseConnection();
+		
+		// Test
+		assertEquals(getCount(databaseConnection, "select count(*) from fileversion"), getCount(databaseConnection, "select count(*) from fileversion_parent"));
+		assertEquals(50, new FileVersionSqlDao(databaseConnection).getFileList("", null, false, false, false, null).size());
+		
+		// Tear down
+		databaseConnection.close();
+		TestConfigUtil.deleteTestLocalConfigAndData(testConfig);
+	}
+	
+	@Test
+	public void testFileVersionParentUpgradeInterrupted() throws Exception {
+		// Setup
+		Config testConfig = TestConfigUtil.createTestLocalConfig();
+		Connection databaseConnection = testConfig.createDatabaseConnection();
+		
+		// Simulate an upgrade that was interrupted after the table was created
+		databaseConnection.setAutoCommit(true);
+		databaseConnection.createStatement().execute("drop trigger trg_fileversion_parent_insert");
+		databaseConnection.createStatement().execute("delete from general_settings where key='schema.fileVersionParent'");
+		databaseConnection.close();
+		
+		// Run
+		databaseConnection = testConfig.createDatabaseConnection();
+		TestSqlUtil.runSqlFromResource(databaseConnection, "test.insert.set2.sql");
+		
+		// Test (trigger was re-created)
+		assertEquals(getCount(databaseConnection, "select count(*) from fileversion"), getCount(databaseConnection, "select count(*) from fileversion_parent"));
+		assertEquals(1, getCount(databaseConnection, "select count(*) from general_settings where key='schema.fileVersionParent'"));
+		
+		// Tear down
+		databaseConnection.close();
+		TestConfigUtil.deleteTestLocalConfigAndData(testConfig);
+	}
+	
+	private String getPaths(List<FileVersion> fileVersions) {
+		List<String> paths = new ArrayList<String>();
+		
+		for (FileVersion fileVersion : fileVersions) {
+			paths.add(fileVersion.getPath());
+		}
+		
+		Collections.sort(paths);
+		return paths.toString();
+	}
+	
+	private int getCount(Connection databaseConnection, String countQuery) throws Exception {
+		try (ResultSet resultSet = databaseConnection.createStatement().executeQuery(countQuery)) {
+			resultSet.next();
+			return resultSet.getInt(1);
+		}
+	}
 }
@@ -28,6 +28,7 @@ import org.junit.Test;
 import org.syncany.chunk.Chunk;
 import org.syncany.chunk.MultiChunk;
 import org.syncany.plugins.local.LocalTransferSettings;
+import org.syncany.tests.util.TestAssertUtil;
 import org.syncany.tests.util.TestClient;
 import org.syncany.tests.util.TestConfigUtil;
 
@@ -80,5 +81,53 @@ public class AssemblerTest {
 		
 		clientA.deleteTestData();
 		clientB.deleteTestData();
-	}	
+	}
+	
+	/**
+	 * Assembles a file whose chunks are spread over more multichunks 
+	 * than the assembler keeps open at a time. The file is built from
+	 * chunk-aligned files that were uploaded one multichunk at a time,
+	 * and it revisits the first multichunks after they were evicted.
+	 */
+	@Test
+	public void testAssemblerWithManyMultiChunks() throws Exception {
+		LocalTransferSettings testConnection = (LocalTransferSettings) TestConfigUtil.createTestLocalConnection();
+		
+		TestClient clientA = new TestClient("A", testConnection);
+		TestClient clientB = new TestClient("B", testConnection);
+		
+		// One multichunk per up; 512 KB is a multiple of the chunk size, so the
+		// chunks of the combined file are exactly the chunks of these files
+		for (int i = 1; i <= 20; i++) {
+			clientA.createNewFile("file" + i, 512 * 1024);
+			clientA.upWithForceChecksum();
+		}
+		
+		File repoMultiChunksFolder = new File(testConnection.getPath(), "multichunks");
+		int multiChunkCount = repoMultiChunksFolder.list().length;
+		
+		assertTrue(multiChunkCount >= 20);
+		
+		// Combined file: all files, then the first ones again (evicted by then)
+		File combinedFile = clientA.getLocalFile("combined");
+		
+		for (int i = 1; i <= 20; i++) {
+			FileUtils.writeByteArrayToFile(combinedFile, FileUtils.readFileToByteArray(clientA.getLocalFile("file" + i)), true);
+		}
+		
+		for (int i = 1; i <= 4; i++) {
+			FileUtils.writeByteArrayToFile(combinedFile, FileUtils.readFileToByteArray(clientA.getLocalFile("file" + i)), true);
+		}
+		
+		clientA.upWithForceChecksum();		
+		assertEquals("Combined file must be fully deduplicated", multiChunkCount, repoMultiChunksFolder.list().length);
+		
+		clientB.down();
+		
+		assertTrue(FileUtils.contentEquals(combinedFile, clientB.getLocalFile("combined")));
+		TestAssertUtil.assertFileListEquals(clientA.getLocalFilesExcludeLockedAndNoRead(), clientB.getLocalFilesExcludeLockedAndNoRead());
+		
+		clientA.deleteTestData();
+		clientB.deleteTestData();
+	}
 }
@@ -26,7 +26,9 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.Timestamp;
 import java.util.Arrays;
+import java.util.List;
 import java.util.TreeMap;
+import java.util.TreeSet;
 
 import org.junit.Test;
 import org.syncany.config.Logging;
@@ -469,10 +471,10 @@ public class CleanupOperationTest {
 			clientB.upWithForceChecksum();
 		}
 
-		// B: Cleanup (2 clients, so 7 databases is too much)
+		// B: Cleanup (2 clients, so 7 databases is too much; A's merged database is kept as snapshot)
 		cleanupOperationResult = clientB.cleanup(options);
 		assertEquals(CleanupResultCode.OK, cleanupOperationResult.getResultCode());
-		assertEquals(7, cleanupOperationResult.getMergedDatabaseFilesCount());
+		assertEquals(6, cleanupOperationResult.getMergedDatabaseFilesCount());
 		assertEquals(0, cleanupOperationResult.getRemovedMultiChunksCount());
 		assertEquals(0, cleanupOperationResult.getRemovedOldVersionsCount());
 
@@ -530,6 +532,91 @@ public class CleanupOperationTest {
 		clientA.deleteTestData();
 	}
 
+	@Test
+	public void testMergeKeepsSnapshotAndWritesDelta() throws Exception {
+		// Setup
+		LocalTransferSettings testConnection = (LocalTransferSettings) TestConfigUtil.createTestLocalConnection();
+		TestClient clientA = new TestClient("A", testConnection);
+		TestClient clientB = new TestClient("B", testConnection);
+		File databasesDir = new File(testConnection.getPath(), "databases");
+
+		CleanupOperationOptions options = new CleanupOperationOptions();
+		options.setRemoveOldVersions(false);
+		options.setRemoveVersionsByInterval(false);
+		options.setMinSecondsBetweenCleanups(0);
+		options.setForce(true);
+
+		// Run
+
+		// A: Create some file versions, then merge them into a snapshot
+		clientA.createNewFile("file.jpg");
+		for (int i = 1; i <= 4; i++) {
+			clientA.changeFile("file.jpg");
+			clientA.upWithForceChecksum();
+		}
+
+		CleanupOperationResult cleanupOperationResult = clientA.cleanup(options);
+		assertEquals(CleanupResultCode.OK, cleanupOperationResult.getResultCode());
+		assertEquals(4, cleanupOperationResult.getMergedDatabaseFilesCount());
+		assertEquals(Arrays.asList("database-A-0000000005"), listDatabaseFiles(databasesDir));
+
+		File snapshotFile = new File(databasesDir, "database-A-0000000005");
+		long snapshotLastModified = snapshotFile.lastModified();
+
+		// B: Down remembers A's snapshot
+		clientB.down();
+
+		// A: Create two more file versions
+		for (int i = 1; i <= 2; i++) {
+			clientA.changeFile("file.jpg");
+			clientA.upWithForceChecksum();
+		}
+
+		// B: Cleanup keeps the snapshot and only merges the two new files
+		clientB.down();
+		cleanupOperationResult = clientB.cleanup(options);
+		assertEquals(CleanupResultCode.OK, cleanupOperationResult.getResultCode());
+		assertEquals(2, cleanupOperationResult.getMergedDatabaseFilesCount());
+		assertEquals(Arrays.asList("database-A-0000000005", "database-A-0000000008"), listDatabaseFiles(databasesDir));
+		assertEquals(snapshotLastModified, snapshotFile.lastModified());
+
+		// A: Down only downloads the delta; the snapshot is known and kept
+		DownOperationResult downOperationResult = clientA.down();
+		assertEquals(new TreeSet<String>(Arrays.asList("database-A-0000000008")), new TreeSet<String>(downOperationResult.getDownloadedUnknownDatabases()));
+		TestAssertUtil.assertFileListEquals(clientA.getLocalFilesExcludeLockedAndNoRead(), clientB.getLocalFilesExcludeLockedAndNoRead());
+		TestAssertUtil.assertSqlDatabaseEquals(clientA.getDatabaseFile(), clientB.getDatabaseFile());
+
+		// A: Create three more file versions; delta is now too large compared to the snapshot
+		for (int i = 1; i <= 3; i++) {
+			clientA.changeFile("file.jpg");
+			clientA.upWithForceChecksum();
+		}
+
+		cleanupOperationResult = clientA.cleanup(options);
+		assertEquals(CleanupResultCode.OK, cleanupOperationResult.getResultCode());
+		assertEquals(5, cleanupOperationResult.getMergedDatabaseFilesCount());
+		assertEquals(Arrays.asList("database-A-0000000012"), listDatabaseFiles(databasesDir));
+
+		clientB.down();
+		TestAssertUtil.assertFileListEquals(clientA.getLocalFilesExcludeLockedAndNoRead(), clientB.getLocalFilesExcludeLockedAndNoRead());
+		TestAssertUtil.assertSqlDatabaseEquals(clientA.getDatabaseFile(), clientB.getDatabaseFile());
+
+		// Tear down
+		clientA.deleteTestData();
+		clientB.deleteTestData();
+	}
+
+	private List<String> listDatabaseFiles(File databasesDir) {
+		String[] databaseFiles = databasesDir.list(new FilenameFilter() {
+			public boolean accept(File dir, String name) {
+				return name.startsWith("database-");
+			}
+		});
+
+		Arrays.sort(databaseFiles);
+		return Arrays.asList(databaseFiles);
+	}
+
 	@Test
 	public void testCleanupFailsMidCommit() throws Exception {
 		// Setup
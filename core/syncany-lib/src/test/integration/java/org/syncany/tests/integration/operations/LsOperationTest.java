@@ -0,0 +1,105 @@
+/*
+ * Syncany, www.syncany.org
+ * Copyright (C) 2011-2016 Philipp C. Heckel <philipp.heckel@gmail.com> 
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.syncany.tests.integration.operations;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.util.Date;
+import java.util.TreeSet;
+
+import org.junit.Test;
+import org.syncany.config.Config;
+import org.syncany.database.FileVersion;
+import org.syncany.operations.ls.LsOperation;
+import org.syncany.operations.ls.LsOperationOptions;
+import org.syncany.operations.ls.LsOperationResult;
+import org.syncany.operations.status.StatusOperationOptions;
+import org.syncany.operations.up.UpOperation;
+import org.syncany.operations.up.UpOperationOptions;
+import org.syncany.tests.unit.util.TestFileUtil;
+import org.syncany.tests.util.TestConfigUtil;
+
+public class LsOperationTest {
+	@Test
+	public void testLsOperationPaged() throws Exception {
+		// Setup
+		Config config = TestConfigUtil.createTestLocalConfig();
+
+		StatusOperationOptions statusOptions = new StatusOperationOptions();
+		statusOptions.setForceChecksum(true);
+		
+		UpOperationOptions upOptions = new UpOperationOptions();
+		upOptions.setStatusOptions(statusOptions);
+		upOptions.setForceUploadEnabled(true);
+
+		TestFileUtil.createRandomFilesInDirectory(config.getLocalDir(), 1024, 25);				
+		new UpOperation(config, upOptions).execute();		
+
+		// Run: Page through the root folder, 10 entries at a time
+		Date browseDate = new Date();
+		TreeSet<String> pagedPaths = new TreeSet<String>();
+		
+		String cursor = null;
+		int pageCount = 0;
+		
+		do {
+			LsOperationOptions lsOptions = new LsOperationOptions();
+			lsOptions.setPathExpression("");
+			lsOptions.setDate(browseDate);
+			lsOptions.setPageSize(10);
+			lsOptions.setCursor(cursor);
+			
+			LsOperationResult lsResult = new LsOperation(config, lsOptions).execute();
+			
+			for (FileVersion fileVersion : lsResult.getFileList()) {
+				pagedPaths.add(fileVersion.getPath());
+			}
+
+			cursor = lsResult.getNextCursor();
+			pageCount++;
+			
+			if (pageCount < 3) {
+				assertEquals(10, lsResult.getFileList().size());
+				assertNotNull(cursor);
+			}
+		}
+		while (cursor != null);
+		
+		// Test: Same result as unpaged listing
+		LsOperationOptions lsOptions = new LsOperationOptions();
+		lsOptions.setPathExpression("");
+		lsOptions.setDate(browseDate);
+
+		LsOperationResult lsResult = new LsOperation(config, lsOptions).execute();
+		TreeSet<String> allPaths = new TreeSet<String>();
+
+		for (FileVersion fileVersion : lsResult.getFileList()) {
+			allPaths.add(fileVersion.getPath());
+		}
+		
+		assertEquals(3, pageCount);
+		assertEquals(25, pagedPaths.size());
+		assertEquals(allPaths, pagedPaths);
+		assertNull(lsResult.getNextCursor());
+		
+		// Cleanup
+		TestConfigUtil.deleteTestLocalConfigAndData(config);
+	}
+}
@@ -26,6 +26,8 @@ import java.io.File;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Set;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
@@ -52,7 +54,7 @@ public class RecursiveWatcherTest {
 		
 		DefaultRecursiveWatcher watcher = new DefaultRecursiveWatcher(Paths.get(tempDir.getAbsolutePath()), new ArrayList<Path>(), 300, new WatchListener() {
 			@Override
-			public void watchEventsOccurred() {
+			public void watchEventsOccurred(Set<Path> changedPaths) {
 				eventOccurred.set(true);
 			}			
 		});
@@ -86,7 +88,7 @@ public class RecursiveWatcherTest {
 		
 		DefaultRecursiveWatcher watcher = new DefaultRecursiveWatcher(Paths.get(tempDir.getAbsolutePath()), new ArrayList<Path>(), 300, new WatchListener() {
 			@Override
-			public void watchEventsOccurred() {
+			public void watchEventsOccurred(Set<Path> changedPaths) {
 				eventOccurred.set(true);
 			}			
 		});
@@ -112,6 +114,45 @@ public class RecursiveWatcherTest {
 		TestFileUtil.deleteDirectory(tempDir);
 	}
 	
+	@Test
+	public void testWatchReportsChangedPaths() throws Exception {
+		// Setup
+		File tempDir = TestFileUtil.createTempDirectoryInSystemTemp();		
+		File subDir1 = new File(tempDir+"/subdir1");		
+		subDir1.mkdir();
+		
+		// Test
+		final Set<Path> reportedChangedPaths = new HashSet<Path>();
+		
+		DefaultRecursiveWatcher watcher = new DefaultRecursiveWatcher(Paths.get(tempDir.getAbsolutePath()), new ArrayList<Path>(), 300, new WatchListener() {
+			@Override
+			public void watchEventsOccurred(Set<Path> changedPaths) {
+				synchronized (reportedChangedPaths) {
+					reportedChangedPaths.addAll(changedPaths);
+				}
+			}			
+		});
+		
+		// Start watcher and wait for watch service to set watch on all folders
+		watcher.start();		
+		Thread.sleep(100);
+		
+		// Event 1 
+		File newFile = TestFileUtil.createRandomFileInDirectory(subDir1, 10);
+		Thread.sleep(550);
+
+		synchronized (reportedChangedPaths) {
+			assertTrue(reportedChangedPaths.contains(Paths.get(newFile.getAbsolutePath())));
+			assertFalse(reportedChangedPaths.contains(Paths.get(tempDir.getAbsolutePath())));
+		}
+
+		// Stop watcher (close watches)
+		watcher.stop();
+		
+		// Tear down
+		TestFileUtil.deleteDirectory(tempDir);
+	}
+	
 	@Test
 	public void testWatchNewSubfolderEvent() throws Exception {
 		// Setup
@@ -123,7 +164,7 @@ public class RecursiveWatcherTest {
 		
 		DefaultRecursiveWatcher watcher = new DefaultRecursiveWatcher(Paths.get(tempDir.getAbsolutePath()), new ArrayList<Path>(), 300, new WatchListener() {
 			@Override
-			public void watchEventsOccurred() {
+			public void watchEventsOccurred(Set<Path> changedPaths) {
 				eventOccurred.set(true);
 			}			
 		});
@@ -163,7 +204,7 @@ public class RecursiveWatcherTest {
 		
 		DefaultRecursiveWatcher watcher = new DefaultRecursiveWatcher(Paths.get(tempDir.getAbsolutePath()), new ArrayList<Path>(), 300, new WatchListener() {
 			@Override
-			public void watchEventsOccurred() {
+			public void watchEventsOccurred(Set<Path> changedPaths) {
 				eventOccurred.set(true);
 			}			
 		});
@@ -212,7 +253,7 @@ public class RecursiveWatcherTest {
 		
 		DefaultRecursiveWatcher watcher = new DefaultRecursiveWatcher(Paths.get(tempDir.getAbsolutePath()), new ArrayList<Path>(), 300, new WatchListener() {
 			@Override
-			public void watchEventsOccurred() { 
+			public void watchEventsOccurred(Set<Path> changedPaths) { 
 				watcherEventOccurredCount.addAndGet(1);
 				watcherEventOccurredTime.set(System.currentTimeMillis());
 			}			
@@ -251,7 +292,7 @@ public class RecursiveWatcherTest {
 		
 		DefaultRecursiveWatcher watcher = new DefaultRecursiveWatcher(Paths.get(tempDir.getAbsolutePath()), new ArrayList<Path>(), 300, new WatchListener() {
 			@Override
-			public void watchEventsOccurred() { 
+			public void watchEventsOccurred(Set<Path> changedPaths) { 
 				watcherEventOccurredCount.addAndGet(1);
 			}			
 		});
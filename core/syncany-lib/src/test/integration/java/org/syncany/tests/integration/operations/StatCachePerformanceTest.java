@@ -0,0 +1,174 @@
+/*
+ * Syncany, www.syncany.org
+ * Copyright (C) 2011-2016 Philipp C. Heckel <philipp.heckel@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.syncany.tests.integration.operations;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.junit.Test;
+import org.syncany.config.Logging;
+import org.syncany.database.FileVersion;
+import org.syncany.database.FileVersion.FileStatus;
+import org.syncany.database.FileVersionComparator;
+import org.syncany.database.FileVersionComparator.FileProperties;
+import org.syncany.operations.status.StatCache;
+import org.syncany.operations.status.StatCache.FileStat;
+import org.syncany.tests.unit.util.TestFileUtil;
+import org.syncany.util.FileUtil;
+
+/**
+ * Compares the time needed to determine that all files of a synthetic file tree are
+ * unchanged, with and without the {@link StatCache}. The number of files defaults to
+ * 10,000 and can be set with <tt>-Dstatcache.benchmark.files=1000000</tt>.
+ */
+public class StatCachePerformanceTest {
+	private static final Logger logger = Logger.getLogger(StatCachePerformanceTest.class.getSimpleName());
+
+	private static final int FILES_PER_FOLDER = 1000;
+
+	static {
+		Logging.init();
+	}
+
+	@Test
+	public void testStatCachePerformance() throws Exception {
+		int fileCount = Integer.parseInt(System.getProperty("statcache.benchmark.files", "10000"));
+
+		File tempDir = TestFileUtil.createTempDirectoryInSystemTemp();
+		File localDir = new File(tempDir, "local");
+		File cacheFile = new File(tempDir, "stat-cache.bin");
+
+		// Create synthetic file tree and expected file versions
+		final FileVersionComparator fileVersionComparator = new FileVersionComparator(localDir, "SHA1");
+		final Map<String, FileVersion> expectedFileVersions = createFileTree(localDir, fileCount, fileVersionComparator);
+
+		Thread.sleep(2100); // Entries with very recent change dates are not cached
+
+		// Without stat cache (same checks as the status operation)
+		long startTime = System.currentTimeMillis();
+		int unchangedWithoutCache = walk(localDir, new UnchangedFileCheck() {
+			@Override
+			public boolean isUnchanged(Path file, String relativePath, BasicFileAttributes attrs) {
+				return !FileUtil.isFileLocked(file.toFile())
+						&& fileVersionComparator.compare(expectedFileVersions.get(relativePath), file.toFile(), false).areEqual();
+			}
+		});
+		long durationWithoutCache = System.currentTimeMillis() - startTime;
+
+		// Populate stat cache
+		final StatCache writeStatCache = StatCache.load(cacheFile);
+
+		walk(localDir, new UnchangedFileCheck() {
+			@Override
+			public boolean isUnchanged(Path file, String relativePath, BasicFileAttributes attrs) {
+				writeStatCache.put(relativePath, StatCache.readFileStat(file, attrs), expectedFileVersions.get(relativePath), false);
+				return true;
+			}
+		});
+
+		writeStatCache.save();
+
+		// With stat cache (including loading it)
+		startTime = System.currentTimeMillis();
+		final StatCache readStatCache = StatCache.load(cacheFile);
+
+		int unchangedWithCache = walk(localDir, new UnchangedFileCheck() {
+			@Override
+			public boolean isUnchanged(Path file, String relativePath, BasicFileAttributes attrs) {
+				FileStat fileStat = StatCache.readFileStat(file, attrs);
+				return readStatCache.isUnchanged(relativePath, fileStat, expectedFileVersions.get(relativePath), false);
+			}
+		});
+		long durationWithCache = System.currentTimeMillis() - startTime;
+
+		logger.log(Level.INFO, "Stat cache benchmark, " + fileCount + " files: without cache " + durationWithoutCache + " ms, with cache "
+				+ durationWithCache + " ms (cache file " + cacheFile.length() / 1024 + " KB)");
+
+		assertEquals(fileCount, unchangedWithoutCache);
+		assertEquals(fileCount, unchangedWithCache);
+
+		// Tear down
+		TestFileUtil.deleteDirectory(tempDir);
+	}
+
+	private Map<String, FileVersion> createFileTree(File localDir, int fileCount, FileVersionComparator fileVersionComparator) throws IOException {
+		Map<String, FileVersion> expectedFileVersions = new HashMap<String, FileVersion>();
+
+		for (int i = 0; i < fileCount; i++) {
+			String relativePath = "folder" + (i / FILES_PER_FOLDER) + "/file" + i;
+			File file = new File(localDir, relativePath);
+
+			if (i % FILES_PER_FOLDER == 0) {
+				file.getParentFile().mkdirs();
+			}
+
+			TestFileUtil.createNonRandomFile(file, 16);
+
+			FileProperties fileProperties = fileVersionComparator.captureFileProperties(file, null, false);
+			FileVersion fileVersion = new FileVersion();
+
+			fileVersion.setPath(relativePath);
+			fileVersion.setType(fileProperties.getType());
+			fileVersion.setStatus(FileStatus.NEW);
+			fileVersion.setSize(fileProperties.getSize());
+			fileVersion.setLastModified(new Date(fileProperties.getLastModified()));
+			fileVersion.setPosixPermissions(fileProperties.getPosixPermissions());
+			fileVersion.setDosAttributes(fileProperties.getDosAttributes());
+
+			expectedFileVersions.put(relativePath, fileVersion);
+		}
+
+		return expectedFileVersions;
+	}
+
+	private int walk(final File localDir, final UnchangedFileCheck unchangedFileCheck) throws IOException {
+		final AtomicInteger unchangedFiles = new AtomicInteger(0);
+
+		Files.walkFileTree(localDir.toPath(), new SimpleFileVisitor<Path>() {
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+				String relativePath = FileUtil.getRelativeDatabasePath(localDir, file.toFile());
+
+				if (unchangedFileCheck.isUnchanged(file, relativePath, attrs)) {
+					unchangedFiles.incrementAndGet();
+				}
+
+				return FileVisitResult.CONTINUE;
+			}
+		});
+
+		return unchangedFiles.get();
+	}
+
+	private interface UnchangedFileCheck {
+		public boolean isUnchanged(Path file, String relativePath, BasicFileAttributes attrs);
+	}
+}
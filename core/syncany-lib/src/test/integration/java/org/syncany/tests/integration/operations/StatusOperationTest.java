@@ -18,9 +18,15 @@
 package org.syncany.tests.integration.operations;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 import java.io.File;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
+import java.util.TreeSet;
 
 import org.junit.Test;
 import org.syncany.config.Config;
@@ -31,6 +37,7 @@ import org.syncany.operations.up.UpOperation;
 import org.syncany.operations.up.UpOperationOptions;
 import org.syncany.tests.unit.util.TestFileUtil;
 import org.syncany.tests.util.TestConfigUtil;
+import org.syncany.util.EnvironmentUtil;
 
 public class StatusOperationTest {
 
@@ -161,4 +168,106 @@ public class StatusOperationTest {
 		// Cleanup 
 		TestConfigUtil.deleteTestLocalConfigAndData(config);
 	}
+	
+	@Test
+	public void testStatusOperationWithPaths() throws Exception {
+		// Setup
+		Config config = TestConfigUtil.createTestLocalConfig();
+		
+		File folder1 = new File(config.getLocalDir(), "folder1");
+		File folder2 = new File(config.getLocalDir(), "folder2");
+		File subfolder1 = new File(folder1, "subfolder1");
+		
+		subfolder1.mkdirs();
+		folder2.mkdir();
+		
+		File file1 = new File(subfolder1, "file1");
+		File file2 = new File(folder2, "file2");
+		File file3 = new File(folder2, "file3");
+		
+		TestFileUtil.createRandomFile(file1, 1024);
+		TestFileUtil.createRandomFile(file2, 1024);
+		TestFileUtil.createRandomFile(file3, 1024);
+		
+		new UpOperation(config).execute();
+		Thread.sleep(2000); // Prevent checksum-based comparison
+		
+		// Change files in both folders, but only examine 'folder1/subfolder1' and 'folder2/file3'
+		TestFileUtil.changeRandomPartOfBinaryFile(file1);
+		TestFileUtil.changeRandomPartOfBinaryFile(file2);
+		TestFileUtil.deleteFile(file3);
+		TestFileUtil.createRandomFile(new File(subfolder1, "file4"), 1024);
+		
+		StatusOperationOptions statusOptions = new StatusOperationOptions();
+		statusOptions.setPaths(new HashSet<String>(Arrays.asList("folder1/subfolder1", "folder1/subfolder1/file1", "folder2/file3")));
+		
+		ChangeSet changeSet = (new StatusOperation(config, statusOptions).execute()).getChangeSet();
+		
+		assertEquals(new TreeSet<String>(Arrays.asList("folder1/subfolder1/file4")), changeSet.getNewFiles());
+		assertEquals(new TreeSet<String>(Arrays.asList("folder1/subfolder1/file1")), changeSet.getChangedFiles());
+		assertEquals(new TreeSet<String>(Arrays.asList("folder2/file3")), changeSet.getDeletedFiles());
+		assertFalse(changeSet.getChangedFiles().contains("folder2/file2"));
+		assertFalse(changeSet.getUnchangedFiles().contains("folder2/file2"));
+		
+		// Without paths, all changes are found
+		changeSet = (new StatusOperation(config).execute()).getChangeSet();
+		assertTrue(changeSet.getChangedFiles().contains("folder2/file2"));
+				
+		// Cleanup 
+		TestConfigUtil.deleteTestLocalConfigAndData(config);
+	}
+
+	@Test
+	public void testParallelStatusOperationEqualsSequential() throws Exception {
+		// Setup
+		Config config = TestConfigUtil.createTestLocalConfig();
+		
+		TestFileUtil.createFileWithContent(new File(config.getLocalDir(), Config.FILE_IGNORE), "ignoredfolder");
+		config.getIgnoredFiles().loadPatterns();
+		
+		List<File> originalFiles = TestFileUtil.createRandomFileTreeInDirectory(config.getLocalDir(), 200);
+		
+		File ignoredFolder = new File(config.getLocalDir(), "ignoredfolder");
+		ignoredFolder.mkdir();
+		TestFileUtil.createRandomFile(new File(ignoredFolder, "ignoredfile"), 1024);
+		
+		if (EnvironmentUtil.symlinksSupported()) {
+			Files.createSymbolicLink(new File(config.getLocalDir(), "symlinkfolder").toPath(), ignoredFolder.toPath());
+		}
+		
+		new UpOperation(config).execute();
+		Thread.sleep(2000); // Prevent checksum-based comparison
+		
+		// Change some files, add new ones
+		for (int i = 0; i < originalFiles.size(); i += 10) {
+			if (originalFiles.get(i).isFile()) {
+				TestFileUtil.changeRandomPartOfBinaryFile(originalFiles.get(i));
+			}
+		}
+		
+		File newFolder = new File(config.getLocalDir(), "newfolder");
+		newFolder.mkdir();
+		TestFileUtil.createRandomFileTreeInDirectory(newFolder, 50);
+		
+		// Run sequentially and in parallel
+		config.setStatusThreads(1);
+		ChangeSet sequentialChangeSet = (new StatusOperation(config).execute()).getChangeSet();
+		
+		config.setStatusThreads(4);
+		ChangeSet parallelChangeSet = (new StatusOperation(config).execute()).getChangeSet();
+		
+		assertTrue(sequentialChangeSet.hasChanges());
+		assertEquals(sequentialChangeSet.getNewFiles(), parallelChangeSet.getNewFiles());
+		assertEquals(sequentialChangeSet.getChangedFiles(), parallelChangeSet.getChangedFiles());
+		assertEquals(sequentialChangeSet.getDeletedFiles(), parallelChangeSet.getDeletedFiles());
+		assertEquals(sequentialChangeSet.getUnchangedFiles(), parallelChangeSet.getUnchangedFiles());
+		
+		// Ignored files and symlinked folders are not descended into
+		assertFalse(parallelChangeSet.getNewFiles().contains("ignoredfolder/ignoredfile"));
+		assertFalse(parallelChangeSet.getUnchangedFiles().contains("ignoredfolder/ignoredfile"));
+		assertFalse(parallelChangeSet.getUnchangedFiles().contains("symlinkfolder/ignoredfile"));
+		
+		// Cleanup 
+		TestConfigUtil.deleteTestLocalConfigAndData(config);
+	}
 }
@@ -40,7 +40,11 @@ import org.syncany.database.SqlDatabase;
 import org.syncany.database.dao.DatabaseXmlSerializer;
 import org.syncany.database.dao.DatabaseXmlSerializer.DatabaseReadType;
 import org.syncany.operations.AbstractTransferOperation;
+import org.syncany.operations.status.StatusOperationOptions;
 import org.syncany.operations.up.UpOperation;
+import org.syncany.operations.up.UpOperationOptions;
+import org.syncany.operations.up.UpOperationResult;
+import org.syncany.operations.up.UpOperationResult.UpResultCode;
 import org.syncany.plugins.local.LocalTransferSettings;
 import org.syncany.tests.unit.util.TestFileUtil;
 import org.syncany.tests.util.TestConfigUtil;
@@ -119,6 +123,41 @@ public class UpOperationTest {
 		compareFileVersionsAgainstOriginalFiles(originalFiles, remoteFileVersions);
 	}
 
+	@Test
+	public void testUploadTouchedFileWithForceChecksum() throws Exception {
+		File originalFile = TestFileUtil.createRandomFileInDirectory(testConfig.getLocalDir(), 2 * 1024 * 1024);
+		new UpOperation(testConfig).execute();
+
+		// Only change the modified date; the content (and its checksum) stays the same
+		originalFile.setLastModified(originalFile.lastModified() - 10000);
+
+		StatusOperationOptions statusOptions = new StatusOperationOptions();
+		statusOptions.setForceChecksum(true);
+
+		UpOperationOptions upOptions = new UpOperationOptions();
+		upOptions.setStatusOptions(statusOptions);
+
+		// Run! (the indexer re-uses the checksum calculated by the status operation)
+		UpOperationResult upResult = new UpOperation(testConfig, upOptions).execute();
+
+		assertEquals(UpResultCode.OK_CHANGES_UPLOADED, upResult.getResultCode());
+
+		// Compare!
+		SqlDatabase localDatabase = new SqlDatabase(testConfig);
+		Map<FileHistoryId, PartialFileHistory> localFileHistories = localDatabase.getFileHistoriesWithFileVersions();
+
+		assertEquals(1, localFileHistories.size());
+
+		PartialFileHistory fileHistory = localFileHistories.values().iterator().next();
+		FileVersion firstFileVersion = fileHistory.getFileVersion(1);
+		FileVersion lastFileVersion = fileHistory.getLastVersion();
+
+		assertEquals(2, (long) lastFileVersion.getVersion());
+		assertEquals(firstFileVersion.getChecksum(), lastFileVersion.getChecksum());
+		assertEquals(originalFile.lastModified(), lastFileVersion.getLastModified().getTime());
+		assertNotNull(localDatabase.getFileContent(lastFileVersion.getChecksum(), true));
+	}
+
 	private void compareFileVersionsAgainstOriginalFiles(List<File> originalFiles, List<FileVersion> localFileVersions) throws Exception {
 		int toFind = originalFiles.size();
 		for (File originalFile : originalFiles) {
@@ -20,6 +20,7 @@ package org.syncany.tests.integration.plugins.unreliable_local;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import static org.syncany.tests.util.TestAssertUtil.assertFileListEquals;
 
 import java.io.File;
 import java.io.FilenameFilter;
@@ -37,6 +38,8 @@ import org.syncany.plugins.transfer.TransferManager;
 import org.syncany.plugins.transfer.TransferManagerFactory;
 import org.syncany.plugins.transfer.features.TransactionAware;
 import org.syncany.plugins.transfer.files.MultichunkRemoteFile;
+import org.syncany.plugins.transfer.to.ActionTO;
+import org.syncany.plugins.transfer.to.ActionTO.ActionStatus;
 import org.syncany.plugins.transfer.to.TransactionTO;
 import org.syncany.plugins.unreliable_local.UnreliableLocalTransferSettings;
 import org.syncany.tests.util.TestClient;
@@ -602,4 +605,67 @@ public class UploadInterruptedTest {
 		clientA.deleteTestData();
 		clientB.deleteTestData();
 	}
+
+	@Test
+	public void testUnreliableUpload_ParallelUploadFailsAtDatabaseFileThenResume() throws Exception {
+		// Setup
+		UnreliableLocalTransferSettings testConnection = TestConfigUtil.createTestUnreliableLocalConnection(
+				Arrays.asList(new String[] {
+						// List of failing operations (regex)
+						// Format: abs=<count> rel=<count> op=<connect|init|upload|...> <operation description>
+
+						// Database upload fails in the first up (incl. retries), multichunks are uploaded in parallel
+						"abs=([0-9]|[1-2][0-9]) .+upload.+database",
+				}
+						));
+
+		TestClient clientA = new TestClient("A", testConnection);
+
+		UpOperationOptions upOptions = new UpOperationOptions();
+		upOptions.setUploadThreads(4);
+
+		for (int i = 1; i <= 3; i++) {
+			clientA.createNewFile("file-" + i, 3 * 1024 * 1024);
+		}
+
+		boolean failed = false;
+		try {
+			clientA.up(upOptions);
+		}
+		catch (StorageException e) {
+			failed = true;
+			logger.log(Level.INFO, e.getMessage());
+		}
+
+		assertTrue(failed);
+		assertEquals(0, new File(testConnection.getPath() + "/databases/").listFiles().length);
+		assertEquals(0, new File(testConnection.getPath() + "/multichunks/").listFiles().length);
+		assertEquals(1, new File(testConnection.getPath() + "/transactions/").listFiles().length);
+
+		// The multichunks were uploaded (but not committed), the database was not
+		TransactionTO transactionTO = TransactionTO.load(null, clientA.getConfig().getTransactionFile());
+
+		for (ActionTO action : transactionTO.getActions()) {
+			boolean isDatabase = action.getRemoteFile().getName().contains("database-");
+			assertEquals(isDatabase ? ActionStatus.UNSTARTED : ActionStatus.STARTED, action.getStatus());
+		}
+
+		// Resume in parallel
+		upOptions.setResume(true);
+		upOptions.setForceUploadEnabled(true);
+		clientA.up(upOptions);
+
+		assertEquals(1, new File(testConnection.getPath() + "/databases/").listFiles().length);
+		assertEquals(0, new File(testConnection.getPath() + "/transactions/").listFiles().length);
+
+		TestClient clientB = new TestClient("B", testConnection);
+		clientB.down();
+
+		assertEquals(3, clientB.getLocalFiles().size());
+		assertFileListEquals(clientA.getLocalFilesExcludeLockedAndNoRead(), clientB.getLocalFilesExcludeLockedAndNoRead());
+
+		// Tear down
+		clientA.deleteTestData();
+		clientB.deleteTestData();
+	}
 }
@@ -17,10 +17,15 @@
  */
 package org.syncany.tests.integration.scenarios;
 
+import static org.junit.Assert.assertEquals;
 import static org.syncany.tests.util.TestAssertUtil.assertFileListEquals;
 import static org.syncany.tests.util.TestAssertUtil.assertSqlDatabaseEquals;
 
+import java.io.File;
+import java.io.FilenameFilter;
+
 import org.junit.Test;
+import org.syncany.operations.down.DownOperationOptions;
 import org.syncany.plugins.local.LocalTransferSettings;
 import org.syncany.tests.util.TestClient;
 import org.syncany.tests.util.TestConfigUtil;
@@ -50,6 +55,79 @@ public class ManySyncUpsAndOtherClientSyncDownScenarioTest {
 		clientB.deleteTestData();
 	}
 	
+	@Test
+	public void testManySyncUpsAndOtherClientSyncDownWithDownloadThreads() throws Exception {
+		// Setup 
+		LocalTransferSettings testConnection = (LocalTransferSettings) TestConfigUtil.createTestLocalConnection();		
+		
+		TestClient clientA = new TestClient("A", testConnection);
+		TestClient clientB = new TestClient("B", testConnection);
+		
+		DownOperationOptions downOptions = new DownOperationOptions();
+		downOptions.setDownloadThreads(4);
+		
+		// ROUND 1: many sync up, one multichunk each
+		for (int i=1; i<=20; i++) {
+			clientA.createNewFile("file"+i, 50*1024);
+			clientA.up();		
+		}
+		
+		// ROUND 2: sync down by B, multichunks are downloaded in parallel
+		clientB.down(downOptions);
+		assertFileListEquals(clientA.getLocalFilesExcludeLockedAndNoRead(), clientB.getLocalFilesExcludeLockedAndNoRead());
+		assertSqlDatabaseEquals(clientA.getDatabaseFile(), clientB.getDatabaseFile());		
+		
+		// Multichunks are deleted from the cache once all files using them have been applied
+		String[] decryptedMultiChunkFiles = clientB.getConfig().getCacheDir().list(new FilenameFilter() {
+			@Override
+			public boolean accept(File dir, String name) {
+				return name.startsWith("multichunk-") && name.endsWith("-decrypted");
+			}
+		});
+		
+		assertEquals(0, decryptedMultiChunkFiles.length);
+		
+		// Tear down
+		clientA.deleteTestData();
+		clientB.deleteTestData();
+	}
+	
+	@Test
+	public void testManySyncUpsAndOtherClientSyncDownWithGroupCommit() throws Exception {
+		// Setup 
+		LocalTransferSettings testConnection = (LocalTransferSettings) TestConfigUtil.createTestLocalConnection();		
+		
+		TestClient clientA = new TestClient("A", testConnection);
+		TestClient clientB = new TestClient("B", testConnection);
+		
+		DownOperationOptions downOptions = new DownOperationOptions();
+		downOptions.setGroupCommit(true);
+		
+		// ROUND 1: many sync up (cleanups expected)
+		for (int i=1; i<=50; i++) {
+			clientA.createNewFile("file"+i, 1);
+			clientA.up();		
+		}
+		
+		// ROUND 2: sync down by B, all database versions are made durable at once
+		clientB.down(downOptions);
+		assertFileListEquals(clientA.getLocalFilesExcludeLockedAndNoRead(), clientB.getLocalFilesExcludeLockedAndNoRead());
+		assertSqlDatabaseEquals(clientA.getDatabaseFile(), clientB.getDatabaseFile());		
+		
+		// ROUND 3: more changes, synced down with group commit again
+		clientA.changeFile("file1");
+		clientA.deleteFile("file2");
+		clientA.up();
+		
+		clientB.down(downOptions);
+		assertFileListEquals(clientA.getLocalFilesExcludeLockedAndNoRead(), clientB.getLocalFilesExcludeLockedAndNoRead());
+		assertSqlDatabaseEquals(clientA.getDatabaseFile(), clientB.getDatabaseFile());		
+		
+		// Tear down
+		clientA.deleteTestData();
+		clientB.deleteTestData();
+	}
+	
 	@Test
 	public void testManySyncUpsAndOtherClientSyncDownSameFileAddRemove() throws Exception {
 		// Setup 
@@ -37,18 +37,23 @@ public class UnreliableLocalTransferManager extends LocalTransferManager {
 	}
 
 	private boolean isNextOperationSuccessful(String operationType, String operationDescription) {
-		// Increase absolute/overall operation counter
-		connection.increaseTotalOperationCounter();
+		String operationLine;
 
-		// Increase type-relative operation counter
-		Integer typeOperationCounter = connection.getTypeOperationCounters().get(operationType);
+		// Counters are shared by all transfer managers of this connection (e.g. parallel uploads)
+		synchronized (connection) {
+			// Increase absolute/overall operation counter
+			connection.increaseTotalOperationCounter();
 
-		typeOperationCounter = (typeOperationCounter != null) ? typeOperationCounter + 1 : 1;
-		connection.getTypeOperationCounters().put(operationType, typeOperationCounter);
+			// Increase type-relative operation counter
+			Integer typeOperationCounter = connection.getTypeOperationCounters().get(operationType);
 
-		// Construct operation line
-		String operationLine = String.format("abs=%d rel=%d op=%s %s", connection.getTotalOperationCounter(), typeOperationCounter, operationType,
-				operationDescription);
+			typeOperationCounter = (typeOperationCounter != null) ? typeOperationCounter + 1 : 1;
+			connection.getTypeOperationCounters().put(operationType, typeOperationCounter);
+
+			// Construct operation line
+			operationLine = String.format("abs=%d rel=%d op=%s %s", connection.getTotalOperationCounter(), typeOperationCounter, operationType,
+					operationDescription);
+		}
 
 		// Check if it fails
 		for (String failingOperationPattern : connection.getFailingOperationPatterns()) {
@@ -0,0 +1,235 @@
+/*
+ * Syncany, www.syncany.org
+ * Copyright (C) 2011-2016 Philipp C. Heckel <philipp.heckel@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.syncany.tests.unit.chunk;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.syncany.chunk.Chunk;
+import org.syncany.chunk.Chunker;
+import org.syncany.chunk.Deduper;
+import org.syncany.chunk.DeduperListener;
+import org.syncany.chunk.FixedChunker;
+import org.syncany.chunk.GzipTransformer;
+import org.syncany.chunk.MultiChunk;
+import org.syncany.chunk.NoTransformer;
+import org.syncany.chunk.Transformer;
+import org.syncany.chunk.TttdChunker;
+import org.syncany.chunk.ZipMultiChunker;
+import org.syncany.config.Logging;
+import org.syncany.database.MultiChunkEntry.MultiChunkId;
+import org.syncany.tests.unit.util.TestFileUtil;
+import org.syncany.util.StringUtil;
+
+public class DeduperTest {
+	private static final Logger logger = Logger.getLogger(DeduperTest.class.getSimpleName());
+
+	private File tempDir;
+	private File inputDir;
+	private File multiChunkDir;
+
+	static {
+		Logging.init();
+	}
+
+	@Before
+	public void setUp() throws Exception {
+		tempDir = TestFileUtil.createTempDirectoryInSystemTemp();
+		inputDir = new File(tempDir, "input");
+		multiChunkDir = new File(tempDir, "multichunks");
+
+		inputDir.mkdir();
+		multiChunkDir.mkdir();
+	}
+
+	@After
+	public void tearDown() {
+		TestFileUtil.deleteDirectory(tempDir);
+	}
+
+	@Test
+	public void testParallelChunkingSameEventsAsSerialWithTttdChunker() throws Exception {
+		createInputFiles();
+
+		Chunker chunker = new TttdChunker(16 * 1024);
+
+		List<String> serialEvents = deduplicate(chunker, new NoTransformer(), 1, Long.MAX_VALUE);
+		List<String> parallelEvents = deduplicate(chunker, new NoTransformer(), 4, Long.MAX_VALUE);
+
+		assertEquals(serialEvents, parallelEvents);
+	}
+
+	@Test
+	public void testParallelChunkingSameEventsAsSerialWithFixedChunker() throws Exception {
+		createInputFiles();
+
+		// The fixed chunker re-uses its chunk buffer
+		Chunker chunker = new FixedChunker(8 * 1024);
+
+		List<String> serialEvents = deduplicate(chunker, new NoTransformer(), 1, Long.MAX_VALUE);
+		List<String> parallelEvents = deduplicate(chunker, new NoTransformer(), 3, Long.MAX_VALUE);
+
+		assertEquals(serialEvents, parallelEvents);
+	}
+
+	@Test
+	public void testParallelChunkingSameEventsAsSerialWithTransactionLimit() throws Exception {
+		createInputFiles();
+
+		// Small transaction limit, so that deduplicate() returns early and
+		// prefetched files have to be discarded and re-chunked
+		Chunker chunker = new TttdChunker(16 * 1024);
+
+		List<String> serialEvents = deduplicate(chunker, new NoTransformer(), 1, 100 * 1024);
+		List<String> parallelEvents = deduplicate(chunker, new NoTransformer(), 4, 100 * 1024);
+
+		assertEquals(serialEvents, parallelEvents);
+	}
+
+	@Test
+	public void testParallelChunkingThroughput() throws Exception {
+		TestFileUtil.createRandomFilesInDirectory(inputDir, 1024 * 1024, 40);
+
+		Chunker chunker = new TttdChunker(16 * 1024);
+		Transformer transformer = new GzipTransformer();
+
+		long serialStartTime = System.currentTimeMillis();
+		deduplicate(chunker, transformer, 1, Long.MAX_VALUE);
+		long serialDuration = System.currentTimeMillis() - serialStartTime;
+
+		long parallelStartTime = System.currentTimeMillis();
+		deduplicate(chunker, transformer, 4, Long.MAX_VALUE);
+		long parallelDuration = System.currentTimeMillis() - parallelStartTime;
+
+		logger.log(Level.INFO, "Deduplicated 40 MB: serial " + serialDuration + " ms, 4 chunking threads " + parallelDuration + " ms");
+	}
+
+	private void createInputFiles() throws Exception {
+		TestFileUtil.createRandomFilesInDirectory(inputDir, 200 * 1024, 10);
+		TestFileUtil.createRandomFilesInDirectory(inputDir, 1024, 20);
+
+		new File(inputDir, "folder").mkdir();
+		TestFileUtil.createRandomFile(new File(inputDir, "empty-file"), 0);
+
+		// Duplicate files, to produce chunks that already exist
+		for (File file : inputDir.listFiles()) {
+			if (file.isFile() && file.length() > 1024) {
+				TestFileUtil.copyFile(file, new File(inputDir, file.getName() + "-copy"));
+			}
+		}
+	}
+
+	private List<String> deduplicate(Chunker chunker, Transformer transformer, int chunkingThreads, long maxTotalSize) throws Exception {
+		List<File> files = TestFileUtil.getRecursiveFileList(inputDir, true, false);
+		RecordingDeduperListener listener = new RecordingDeduperListener();
+
+		Deduper deduper = new Deduper(chunker, new ZipMultiChunker(256 * 1024), transformer, maxTotalSize, Long.MAX_VALUE, chunkingThreads);
+
+		while (!files.isEmpty()) {
+			deduper.deduplicate(files, listener);
+		}
+
+		TestFileUtil.deleteDirectory(multiChunkDir);
+		multiChunkDir.mkdir();
+
+		return listener.events;
+	}
+
+	private class RecordingDeduperListener implements DeduperListener {
+		private List<String> events = new ArrayList<String>();
+		private Set<String> knownChunks = new HashSet<String>();
+
+		@Override
+		public boolean onFilePrefetch(File file) {
+			// Files that are not read ahead must still be chunked by the deduper itself
+			return !file.getName().endsWith("1");
+		}
+
+		@Override
+		public boolean onFileFilter(File file) {
+			events.add("filter " + file.getName());
+			return !file.getName().endsWith("0");
+		}
+
+		@Override
+		public boolean onFileStart(File file) {
+			events.add("start " + file.getName());
+			return file.isFile();
+		}
+
+		@Override
+		public void onFileAddChunk(File file, Chunk chunk) {
+			events.add("add " + file.getName() + " " + StringUtil.toHex(chunk.getChecksum()) + " " + chunk.getSize());
+		}
+
+		@Override
+		public void onFileEnd(File file, byte[] checksum) {
+			events.add("end " + file.getName() + " " + ((checksum != null) ? StringUtil.toHex(checksum) : null));
+		}
+
+		@Override
+		public boolean onChunk(Chunk chunk) {
+			return knownChunks.add(StringUtil.toHex(chunk.getChecksum()));
+		}
+
+		@Override
+		public void onMultiChunkOpen(MultiChunk multiChunk) {
+			events.add("open " + multiChunk.getId());
+		}
+
+		@Override
+		public MultiChunkId createNewMultiChunkId(Chunk firstChunk) {
+			return new MultiChunkId(firstChunk.getChecksum());
+		}
+
+		@Override
+		public File getMultiChunkFile(MultiChunkId multiChunkId) {
+			return new File(multiChunkDir, multiChunkId.toString());
+		}
+
+		@Override
+		public void onMultiChunkWrite(MultiChunk multiChunk, Chunk chunk) {
+			events.add("write " + multiChunk.getId() + " " + StringUtil.toHex(chunk.getChecksum()));
+		}
+
+		@Override
+		public void onMultiChunkClose(MultiChunk multiChunk) {
+			events.add("close " + multiChunk.getId());
+		}
+
+		@Override
+		public void onStart(int fileCount) {
+			// Nothing
+		}
+
+		@Override
+		public void onFinish() {
+			events.add("finish");
+		}
+	}
+}
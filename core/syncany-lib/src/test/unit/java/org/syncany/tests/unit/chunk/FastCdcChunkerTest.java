@@ -0,0 +1,211 @@
+/*
+ * Syncany, www.syncany.org
+ * Copyright (C) 2011-2016 Philipp C. Heckel <philipp.heckel@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.syncany.tests.unit.chunk;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.syncany.chunk.Chunk;
+import org.syncany.chunk.Chunker;
+import org.syncany.chunk.FastCdcChunker;
+import org.syncany.chunk.FixedChunker;
+import org.syncany.chunk.TttdChunker;
+import org.syncany.tests.unit.util.TestFileUtil;
+import org.syncany.util.FileUtil;
+import org.syncany.util.StringUtil;
+
+public class FastCdcChunkerTest {
+	private static final Logger logger = Logger.getLogger(FastCdcChunkerTest.class.getSimpleName());
+
+	private File tempDir;
+
+	@Before
+	public void setUp() throws Exception {
+		tempDir = TestFileUtil.createTempDirectoryInSystemTemp();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		TestFileUtil.deleteDirectory(tempDir);
+	}
+
+	@Test
+	public void testStringSerialization() {
+		assertEquals("FastCDC-65536-SHA1", new FastCdcChunker(65536).toString());
+		assertEquals("FastCDC-65536-SHA1", new FastCdcChunker(100000).toString()); // Rounded down
+	}
+
+	@Test
+	public void testCreateChunksAndTestChunkSize() throws Exception {
+		final int TOTAL_FILE_SIZE = 5*1024*1024 + 123;
+		final int AVG_CHUNK_SIZE = 64*1024;
+
+		File inputFile = TestFileUtil.createRandomFileInDirectory(tempDir, TOTAL_FILE_SIZE);
+		File outputFile = TestFileUtil.getRandomFilenameInDirectory(tempDir);
+
+		Chunker chunker = new FastCdcChunker(AVG_CHUNK_SIZE);
+		Enumeration<Chunk> chunkEnumeration = chunker.createChunks(inputFile);
+
+		Chunk lastChunk = null;
+		int chunkCount = 0;
+
+		try (FileOutputStream outputFileOutputStream = new FileOutputStream(outputFile)) {
+			while (chunkEnumeration.hasMoreElements()) {
+				if (lastChunk != null) {
+					assertTrue("Only the last chunk may be smaller than the min. size.", lastChunk.getSize() >= AVG_CHUNK_SIZE / 4);
+				}
+
+				lastChunk = chunkEnumeration.nextElement();
+				chunkCount++;
+
+				assertNotNull("Chunk checksum should not be null.", lastChunk.getChecksum());
+				assertTrue("Chunk must not be bigger than the max. size.", lastChunk.getSize() <= AVG_CHUNK_SIZE * 4);
+
+				outputFileOutputStream.write(lastChunk.getContent(), 0, lastChunk.getSize());
+			}
+		}
+
+		// Average chunk size roughly as configured
+		int avgChunkSize = TOTAL_FILE_SIZE / chunkCount;
+		assertTrue("Average chunk size " + avgChunkSize + " too far off.", avgChunkSize > AVG_CHUNK_SIZE / 2 && avgChunkSize < AVG_CHUNK_SIZE * 2);
+
+		// Checksums
+		byte[] inputFileChecksum = FileUtil.createChecksum(inputFile, FastCdcChunker.DEFAULT_DIGEST_ALG);
+		byte[] outputFileChecksum = FileUtil.createChecksum(outputFile, FastCdcChunker.DEFAULT_DIGEST_ALG);
+
+		assertArrayEquals("Checksums of input and output file do not match.", inputFileChecksum, outputFileChecksum);
+		assertArrayEquals("Last chunk's getFileChecksum() should be the file checksum.", inputFileChecksum, lastChunk.getFileChecksum());
+	}
+
+	@Test
+	public void testEmptyFile() throws Exception {
+		File emptyFile = new File(tempDir, "empty");
+		TestFileUtil.writeToFile(new byte[0], emptyFile);
+
+		Enumeration<Chunk> chunkEnumeration = new FastCdcChunker(8192).createChunks(emptyFile);
+		assertFalse("No chunks expected for empty file.", chunkEnumeration.hasMoreElements());
+	}
+
+	@Test
+	public void testChunksUnchangedAfterInsert() throws Exception {
+		final int AVG_CHUNK_SIZE = 16*1024;
+
+		byte[] originalData = TestFileUtil.createRandomArray(2*1024*1024);
+		File originalFile = new File(tempDir, "original");
+		File insertedFile = new File(tempDir, "inserted");
+
+		TestFileUtil.writeToFile(originalData, originalFile);
+		TestFileUtil.writeToFile(insertBytes(originalData, 1000, TestFileUtil.createRandomArray(17)), insertedFile);
+
+		Chunker chunker = new FastCdcChunker(AVG_CHUNK_SIZE);
+
+		Set<String> originalChunks = createChunkChecksums(chunker, originalFile);
+		Set<String> insertedChunks = createChunkChecksums(chunker, insertedFile);
+
+		insertedChunks.retainAll(originalChunks);
+
+		// Only the chunks around the insert may change
+		assertTrue("Too many chunks changed after insert.", insertedChunks.size() >= originalChunks.size() - 3);
+	}
+
+	@Test
+	public void testDedupRatioAndThroughputBenchmark() throws Exception {
+		final int FILE_SIZE = 4*1024*1024;
+		final int FILE_COUNT = 8;
+		final int AVG_CHUNK_SIZE = 64*1024;
+
+		// Corpus: a base file, and versions with a few bytes inserted at random offsets (like database dumps)
+		byte[] baseData = TestFileUtil.createRandomArray(FILE_SIZE);
+		File[] corpusFiles = new File[FILE_COUNT];
+
+		for (int i = 0; i < FILE_COUNT; i++) {
+			int insertOffset = (int) (Math.random() * FILE_SIZE);
+			baseData = (i == 0) ? baseData : insertBytes(baseData, insertOffset, TestFileUtil.createRandomArray(1 + i * 13));
+
+			corpusFiles[i] = new File(tempDir, "corpus-" + i);
+			TestFileUtil.writeToFile(baseData, corpusFiles[i]);
+		}
+
+		Chunker[] chunkers = new Chunker[] { new FixedChunker(AVG_CHUNK_SIZE), new TttdChunker(AVG_CHUNK_SIZE), new FastCdcChunker(AVG_CHUNK_SIZE) };
+		double[] dedupRatios = new double[chunkers.length];
+
+		for (int i = 0; i < chunkers.length; i++) {
+			Set<String> uniqueChunks = new HashSet<String>();
+			long totalBytes = 0;
+			long uniqueBytes = 0;
+
+			long startTime = System.nanoTime();
+
+			for (File corpusFile : corpusFiles) {
+				Enumeration<Chunk> chunkEnumeration = chunkers[i].createChunks(corpusFile);
+
+				while (chunkEnumeration.hasMoreElements()) {
+					Chunk chunk = chunkEnumeration.nextElement();
+					totalBytes += chunk.getSize();
+
+					if (uniqueChunks.add(StringUtil.toHex(chunk.getChecksum()))) {
+						uniqueBytes += chunk.getSize();
+					}
+				}
+			}
+
+			long duration = System.nanoTime() - startTime;
+			dedupRatios[i] = (double) totalBytes / uniqueBytes;
+
+			logger.log(Level.INFO, "Chunker benchmark, " + chunkers[i] + ": dedup ratio " + String.format("%.2f", dedupRatios[i]) + ", "
+					+ String.format("%.1f", totalBytes / 1024.0 / 1024.0 / (duration / 1e9)) + " MB/s");
+		}
+
+		assertTrue("FastCDC should deduplicate shifted inserts better than fixed chunking.", dedupRatios[2] > dedupRatios[0]);
+	}
+
+	private Set<String> createChunkChecksums(Chunker chunker, File file) throws Exception {
+		Set<String> chunkChecksums = new HashSet<String>();
+		Enumeration<Chunk> chunkEnumeration = chunker.createChunks(file);
+
+		while (chunkEnumeration.hasMoreElements()) {
+			chunkChecksums.add(StringUtil.toHex(chunkEnumeration.nextElement().getChecksum()));
+		}
+
+		return chunkChecksums;
+	}
+
+	private byte[] insertBytes(byte[] data, int offset, byte[] insertData) {
+		byte[] newData = Arrays.copyOf(data, data.length + insertData.length);
+
+		System.arraycopy(insertData, 0, newData, offset, insertData.length);
+		System.arraycopy(data, offset, newData, offset + insertData.length, data.length - offset);
+
+		return newData;
+	}
+}
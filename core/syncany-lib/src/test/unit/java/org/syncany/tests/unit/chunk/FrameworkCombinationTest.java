@@ -188,6 +188,11 @@ public class FrameworkCombinationTest {
 
 		Deduper deduper = new Deduper(combination.chunker, combination.multiChunker, combination.transformer, Long.MAX_VALUE, Long.MAX_VALUE);
 		deduper.deduplicate(inputFiles, new DeduperListener() {
+			@Override
+			public boolean onFilePrefetch(File file) {
+				return true;
+			}
+
 			@Override
 			public void onMultiChunkWrite(MultiChunk multiChunk, Chunk chunk) {
 				logger.log(Level.INFO, "    - Adding chunk " + StringUtil.toHex(chunk.getChecksum()) + " to multichunk " + multiChunk.getId()
@@ -17,13 +17,19 @@
  */
 package org.syncany.tests.unit.chunk;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Enumeration;
 import java.util.HashSet;
 import java.util.List;
@@ -35,6 +41,7 @@ import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 import java.util.zip.ZipOutputStream;
 
+import org.apache.commons.io.IOUtils;
 import org.junit.Test;
 import org.syncany.chunk.Chunk;
 import org.syncany.chunk.Chunker;
@@ -46,6 +53,7 @@ import org.syncany.chunk.Transformer;
 import org.syncany.chunk.ZipMultiChunker;
 import org.syncany.database.MultiChunkEntry.MultiChunkId;
 import org.syncany.tests.unit.util.TestFileUtil;
+import org.syncany.util.StringUtil;
 
 public class MultiChunkerTest {
 	private static Logger logger = Logger.getLogger(MultiChunkerTest.class.getSimpleName());
@@ -122,6 +130,144 @@ public class MultiChunkerTest {
 		TestFileUtil.deleteDirectory(tempDir);
 	}	
 	
+	@Test
+	public void testZipMultiChunkReadStoredAndDeflated() throws Exception {
+		File tempDir = TestFileUtil.createTempDirectoryInSystemTemp();
+		File inputFile = TestFileUtil.createRandomFileInDirectory(tempDir, 20*1000 + 500);
+		File storedMultiChunkFile = new File(tempDir, "stored-multichunk");
+		File deflatedMultiChunkFile = new File(tempDir, "deflated-multichunk");
+		
+		ZipMultiChunker multiChunker = new ZipMultiChunker(512);
+		List<byte[]> checksums = new ArrayList<byte[]>();
+		List<byte[]> contents = new ArrayList<byte[]>();
+		
+		// Current format (stored), and old format (deflated, compression level 0)
+		MultiChunk storedMultiChunk = multiChunker.createMultiChunk(MultiChunkId.secureRandomMultiChunkId(), new FileOutputStream(storedMultiChunkFile));
+		ZipOutputStream deflatedZipOutputStream = new ZipOutputStream(new FileOutputStream(deflatedMultiChunkFile));
+		deflatedZipOutputStream.setLevel(0);
+		
+		Enumeration<Chunk> chunks = new FixedChunker(1000).createChunks(inputFile);
+		
+		while (chunks.hasMoreElements()) {
+			Chunk chunk = chunks.nextElement();
+			storedMultiChunk.write(chunk);
+			
+			deflatedZipOutputStream.putNextEntry(new ZipEntry(StringUtil.toHex(chunk.getChecksum())));
+			deflatedZipOutputStream.write(chunk.getContent(), 0, chunk.getSize());
+			deflatedZipOutputStream.closeEntry();
+			
+			checksums.add(chunk.getChecksum());
+			contents.add(Arrays.copyOf(chunk.getContent(), chunk.getSize()));
+		}
+		
+		storedMultiChunk.close();
+		deflatedZipOutputStream.close();
+		
+		// Random access, in reverse order
+		for (File multiChunkFile : new File[] { storedMultiChunkFile, deflatedMultiChunkFile }) {
+			MultiChunk multiChunk = multiChunker.createMultiChunk(multiChunkFile);
+			
+			for (int i = checksums.size() - 1; i >= 0; i--) {
+				ByteBuffer chunkBuffer = multiChunk.getChunkBuffer(checksums.get(i));
+				
+				byte[] chunkBufferContent = new byte[chunkBuffer.remaining()];
+				chunkBuffer.get(chunkBufferContent);
+				
+				assertArrayEquals(contents.get(i), chunkBufferContent);
+				assertArrayEquals(contents.get(i), IOUtils.toByteArray(multiChunk.getChunkInputStream(checksums.get(i))));
+			}
+			
+			assertNull(multiChunk.getChunkBuffer(new byte[] { 1, 2, 3 }));			
+			multiChunk.close();
+			
+			// Sequential
+			multiChunk = multiChunker.createMultiChunk(new FileInputStream(multiChunkFile));
+			
+			for (int i = 0; i < checksums.size(); i++) {
+				Chunk readChunk = multiChunk.read();
+				
+				assertArrayEquals(checksums.get(i), readChunk.getChecksum());
+				assertArrayEquals(contents.get(i), readChunk.getContent());
+			}
+			
+			assertNull(multiChunk.read());
+			multiChunk.close();
+		}
+		
+		TestFileUtil.deleteDirectory(tempDir);
+	}
+	
+	@Test
+	public void testZipMultiChunkReadPerformance() throws Exception {
+		File tempDir = TestFileUtil.createTempDirectoryInSystemTemp();
+		File inputFile = TestFileUtil.createRandomFileInDirectory(tempDir, 4*1024*1024);
+		File multiChunkFile = new File(tempDir, "multichunk");
+		
+		// Write 4 MB multichunk with 16 KB chunks
+		ZipMultiChunker multiChunker = new ZipMultiChunker(4*1024);
+		MultiChunk writeMultiChunk = multiChunker.createMultiChunk(MultiChunkId.secureRandomMultiChunkId(), new FileOutputStream(multiChunkFile));
+		List<byte[]> checksums = new ArrayList<byte[]>();
+		
+		Enumeration<Chunk> chunks = new FixedChunker(16*1024).createChunks(inputFile);
+		
+		while (chunks.hasMoreElements()) {
+			Chunk chunk = chunks.nextElement();
+			
+			writeMultiChunk.write(chunk);
+			checksums.add(chunk.getChecksum());
+		}
+		
+		writeMultiChunk.close();
+		
+		int rounds = 20;
+		double multiChunkMegabytes = rounds * 256 * 16 / 1024.0;
+		
+		// Before: ZipFile input stream, 4 KB buffer (as in the assembler)
+		long startTime = System.nanoTime();
+		
+		for (int round = 0; round < rounds; round++) {
+			ZipFile zipFile = new ZipFile(multiChunkFile);
+			byte[] buffer = new byte[4096];
+			
+			for (byte[] checksum : checksums) {
+				InputStream chunkInputStream = zipFile.getInputStream(zipFile.getEntry(StringUtil.toHex(checksum)));
+				
+				while (-1 != chunkInputStream.read(buffer)) {
+					// Read entire chunk
+				}
+				
+				chunkInputStream.close();
+			}
+			
+			zipFile.close();
+		}
+		
+		long durationBefore = System.nanoTime() - startTime;
+		
+		// After: Indexed multichunk, zero-copy buffers
+		startTime = System.nanoTime();
+		long checksumSum = 0;
+		
+		for (int round = 0; round < rounds; round++) {
+			MultiChunk multiChunk = multiChunker.createMultiChunk(multiChunkFile);
+			
+			for (byte[] checksum : checksums) {
+				ByteBuffer chunkBuffer = multiChunk.getChunkBuffer(checksum);
+				checksumSum += chunkBuffer.get(chunkBuffer.limit() - 1); // Touch data
+			}
+			
+			multiChunk.close();
+		}
+		
+		long durationAfter = System.nanoTime() - startTime;
+		
+		logger.log(Level.INFO, "Multichunk read benchmark, " + multiChunkMegabytes + " MB: before " 
+				+ String.format("%.1f", multiChunkMegabytes / (durationBefore / 1e9)) + " MB/s, after "
+				+ String.format("%.1f", multiChunkMegabytes / (durationAfter / 1e9)) + " MB/s (" + checksumSum + ")");
+		
+		TestFileUtil.deleteDirectory(tempDir);
+	}
+	
 	public void chunkFileIntoMultiChunks(Chunker chunker, MultiChunker multiChunker, int minMultiChunkSize) throws Exception {
 		File tempDir = TestFileUtil.createTempDirectoryInSystemTemp();
 		
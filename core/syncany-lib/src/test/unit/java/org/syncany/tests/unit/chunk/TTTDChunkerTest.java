@@ -24,10 +24,19 @@ import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.fail;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.util.ArrayList;
 import java.util.Enumeration;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 import org.junit.After;
 import org.junit.Before;
@@ -35,11 +44,15 @@ import org.junit.Ignore;
 import org.junit.Test;
 import org.syncany.chunk.Chunk;
 import org.syncany.chunk.Chunker;
+import org.syncany.chunk.Fingerprinter;
 import org.syncany.chunk.TttdChunker;
 import org.syncany.tests.unit.util.TestFileUtil;
 import org.syncany.util.FileUtil;
+import org.syncany.util.StringUtil;
 
 public class TTTDChunkerTest {
+	private static final Logger logger = Logger.getLogger(TTTDChunkerTest.class.getSimpleName());
+
 	private File tempDir;
 
 	@Before
@@ -127,4 +140,152 @@ public class TTTDChunkerTest {
 		assertNull("No chunk expected, but data received.", chunkEnumeration.nextElement());
 		assertFalse("hasElements() should return 'false' if no chunk available.", chunkEnumeration.hasMoreElements());
 	}
+
+	@Test
+	public void testChunkBoundariesMatchByteWiseImplementation() throws Exception {
+		final int AVG_CHUNK_SIZE = 16*1024;
+		
+		// Random data, data with long runs (chunks cut at Tmax), and an empty file
+		File randomFile = TestFileUtil.createRandomFileInDirectory(tempDir, 1024*1024 + 123);
+		File zeroFile = new File(tempDir, "zero");
+		File emptyFile = new File(tempDir, "empty");
+
+		TestFileUtil.writeToFile(new byte[300*1024], zeroFile);
+		TestFileUtil.writeToFile(new byte[0], emptyFile);
+
+		TttdChunker chunker = new TttdChunker(AVG_CHUNK_SIZE);
+
+		for (File file : new File[] { randomFile, zeroFile, emptyFile }) {
+			List<String> expectedChunks = createChunksByteWise(file, AVG_CHUNK_SIZE);
+			List<String> actualChunks = createChunks(chunker.createChunks(file));
+			
+			assertEquals("Chunk boundaries differ for " + file, expectedChunks, actualChunks);
+		}
+	}
+
+	@Test
+	public void testChunkBoundariesWithShortReads() throws Exception {
+		final int AVG_CHUNK_SIZE = 16*1024;
+		
+		File randomFile = TestFileUtil.createRandomFileInDirectory(tempDir, 512*1024);
+		TttdChunker chunker = new TttdChunker(AVG_CHUNK_SIZE);
+		
+		// Stream that returns between 0 and 999 bytes per read, like some cipher streams
+		InputStream shortReadInputStream = new ByteArrayInputStream(Files.readAllBytes(randomFile.toPath())) {
+			private int readCount = 0;
+			
+			@Override
+			public synchronized int read(byte[] b, int off, int len) {
+				return super.read(b, off, Math.min(len, readCount++ % 1000));
+			}
+		};
+		
+		List<String> expectedChunks = createChunksByteWise(randomFile, AVG_CHUNK_SIZE);
+		List<String> actualChunks = createChunks(chunker.new TTTDEnumeration(shortReadInputStream));
+		
+		assertEquals(expectedChunks, actualChunks);
+	}
+
+	@Test
+	public void testChunkingBenchmark() throws Exception {
+		final int AVG_CHUNK_SIZE = 512*1024;
+		final int TOTAL_FILE_SIZE = 20*1024*1024;
+		
+		File randomFile = TestFileUtil.createRandomFileInDirectory(tempDir, TOTAL_FILE_SIZE);
+		double fileMegabytes = TOTAL_FILE_SIZE / 1024.0 / 1024.0;
+		
+		// Before: Byte-wise reads, new chunk buffer per chunk
+		long startTime = System.nanoTime();
+		int chunkCountBefore = createChunksByteWise(randomFile, AVG_CHUNK_SIZE).size();
+		long durationBefore = System.nanoTime() - startTime;
+		
+		// After: Bulk reads, re-used chunk buffer
+		startTime = System.nanoTime();
+		int chunkCountAfter = createChunks(new TttdChunker(AVG_CHUNK_SIZE).createChunks(randomFile)).size();
+		long durationAfter = System.nanoTime() - startTime;
+		
+		logger.log(Level.INFO, "TTTD chunking benchmark, " + fileMegabytes + " MB: before " 
+				+ String.format("%.1f", fileMegabytes / (durationBefore / 1e9)) + " MB/s, after "
+				+ String.format("%.1f", fileMegabytes / (durationAfter / 1e9)) + " MB/s");
+		
+		assertEquals(chunkCountBefore, chunkCountAfter);
+	}
+	
+	private List<String> createChunks(Enumeration<Chunk> chunkEnumeration) {
+		List<String> chunks = new ArrayList<String>();
+		
+		while (chunkEnumeration.hasMoreElements()) {
+			Chunk chunk = chunkEnumeration.nextElement();
+			chunks.add(chunk.getSize() + "-" + StringUtil.toHex(chunk.getChecksum()));
+		}
+		
+		return chunks;
+	}
+
+	/**
+	 * Byte-wise reference implementation of the TTTD chunker, as it was before
+	 * reads were buffered in bulk. Returns the size and checksum of each chunk.
+	 */
+	private List<String> createChunksByteWise(File file, int avgChunkSize) throws Exception {
+		int Tmin = (int) Math.round(460.0 * avgChunkSize / 1015.0);
+		int Tmax = (int) Math.round(2800.0 * avgChunkSize / 1015.0);
+		int D = (int) Math.round(540.0 * avgChunkSize / 1015.0);
+		int windowSize = TttdChunker.DEFAULT_WINDOW_SIZE;
+		
+		List<String> chunks = new ArrayList<String>();
+		
+		MessageDigest chunkDigest = MessageDigest.getInstance(TttdChunker.DEFAULT_DIGEST_ALG);
+		Fingerprinter fingerprinter = Fingerprinter.getInstance(TttdChunker.DEFAULT_FINGERPRINT_ALG);
+		
+		try (InputStream in = new FileInputStream(file)) {
+			boolean closed = false;
+			
+			while (!closed) {
+				chunkDigest.reset();
+				fingerprinter.reset();
+				
+				byte[] buf = new byte[Tmax];
+				int bufpos = -1;
+				int breakpoint = -1;
+				
+				while (bufpos < buf.length - 1) {
+					int b = in.read();
+					
+					if (b == -1) {
+						closed = true;
+						break;
+					}
+					
+					bufpos++;
+					buf[bufpos] = (byte) b;
+					
+					if (bufpos < Tmin) {
+						continue;
+					}
+					else if (bufpos == Tmin) {
+						fingerprinter.check(buf, bufpos - windowSize, windowSize);
+					}
+					else {
+						fingerprinter.roll(buf[bufpos]);
+					}
+					
+					if ((fingerprinter.getValue() % D) == D - 1) {
+						breakpoint = bufpos;
+						break;
+					}
+				}
+				
+				if (breakpoint == -1) {
+					breakpoint = bufpos;
+				}
+				
+				breakpoint++;
+				chunkDigest.update(buf, 0, breakpoint);
+				
+				chunks.add(breakpoint + "-" + StringUtil.toHex(chunkDigest.digest()));
+			}
+		}
+		
+		return chunks;
+	}
 }
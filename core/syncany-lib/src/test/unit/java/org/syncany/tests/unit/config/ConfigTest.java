@@ -28,12 +28,16 @@ import java.util.List;
 
 import javax.crypto.spec.SecretKeySpec;
 
-import org.junit.Ignore;
 import org.junit.Test;
+import org.syncany.chunk.Chunker;
+import org.syncany.chunk.FastCdcChunker;
+import org.syncany.chunk.FixedChunker;
+import org.syncany.chunk.TttdChunker;
 import org.syncany.config.Config;
 import org.syncany.config.ConfigException;
 import org.syncany.config.to.ConfigTO;
 import org.syncany.config.to.RepoTO;
+import org.syncany.config.to.RepoTO.ChunkerTO;
 import org.syncany.config.to.RepoTO.TransformerTO;
 import org.syncany.crypto.SaltedSecretKey;
 import org.syncany.tests.util.TestAssertUtil;
@@ -166,8 +170,6 @@ public class ConfigTest {
 	}
 
 	@Test
-	@Ignore
-	// TODO [low] ChunkerTO is not used yet; so no test for it.
 	public void testConfigChunkerNull() throws Exception {
 		// Setup
 		File localDir = new File("/some/folder");
@@ -180,7 +182,54 @@ public class ConfigTest {
 		repoTO.setRepoId(new byte[] { 0x01, 0x02 }); // <<< valid
 		repoTO.setTransformers(null); // <<< valid
 
-		repoTO.setChunkerTO(null); // <<< INVALID !!
+		repoTO.setChunkerTO(null); // <<< valid, falls back to fixed chunker
+
+		// Run!
+		Config config = new Config(localDir, configTO, repoTO);
+
+		// Test
+		assertEquals("Fixed-" + FixedChunker.DEFAULT_CHUNK_SIZE + "-SHA1", config.getChunker().toString());
+	}
+
+	@Test
+	public void testConfigChunkerTypes() throws Exception {
+		// Setup
+		File localDir = new File("/some/folder");
+		ConfigTO configTO = new ConfigTO();
+		RepoTO repoTO = new RepoTO();
+
+		configTO.setMachineName("somevalidmachinename"); // <<< valid
+
+		repoTO.setMultiChunker(TestConfigUtil.createZipMultiChunkerTO()); // <<< valid
+		repoTO.setRepoId(new byte[] { 0x01, 0x02 }); // <<< valid
+		repoTO.setTransformers(null); // <<< valid
+
+		// Fixed chunker ignores size setting
+		repoTO.setChunkerTO(TestConfigUtil.createFixedChunkerTO());
+		assertEquals("Fixed-" + FixedChunker.DEFAULT_CHUNK_SIZE + "-SHA1", new Config(localDir, configTO, repoTO).getChunker().toString());
+
+		// TTTD and FastCDC chunkers use size setting
+		repoTO.setChunkerTO(createChunkerTO(TttdChunker.TYPE, "65536"));
+		assertEquals("TTTD-65536-SHA1-Adler32", new Config(localDir, configTO, repoTO).getChunker().toString());
+
+		repoTO.setChunkerTO(createChunkerTO(FastCdcChunker.TYPE, "65536"));
+		assertEquals("FastCDC-65536-SHA1", new Config(localDir, configTO, repoTO).getChunker().toString());
+	}
+
+	@Test
+	public void testConfigChunkerInvalidType() throws Exception {
+		// Setup
+		File localDir = new File("/some/folder");
+		ConfigTO configTO = new ConfigTO();
+		RepoTO repoTO = new RepoTO();
+
+		configTO.setMachineName("somevalidmachinename"); // <<< valid
+
+		repoTO.setMultiChunker(TestConfigUtil.createZipMultiChunkerTO()); // <<< valid
+		repoTO.setRepoId(new byte[] { 0x01, 0x02 }); // <<< valid
+		repoTO.setTransformers(null); // <<< valid
+
+		repoTO.setChunkerTO(createChunkerTO("invalid-typeXXX", "65536")); // <<< INVALID !!
 
 		// Run!
 		try {
@@ -188,7 +237,32 @@ public class ConfigTest {
 			fail("Config should not been have initialized.");
 		}
 		catch (ConfigException e) {
-			TestAssertUtil.assertErrorStackTraceContains("No multichunker", e);
+			TestAssertUtil.assertErrorStackTraceContains("invalid-typeXXX", e);
+		}
+	}
+
+	@Test
+	public void testConfigChunkerInvalidSettings() throws Exception {
+		// Setup
+		File localDir = new File("/some/folder");
+		ConfigTO configTO = new ConfigTO();
+		RepoTO repoTO = new RepoTO();
+
+		configTO.setMachineName("somevalidmachinename"); // <<< valid
+
+		repoTO.setMultiChunker(TestConfigUtil.createZipMultiChunkerTO()); // <<< valid
+		repoTO.setRepoId(new byte[] { 0x01, 0x02 }); // <<< valid
+		repoTO.setTransformers(null); // <<< valid
+
+		repoTO.setChunkerTO(createChunkerTO(FastCdcChunker.TYPE, "invalid-sizeXXX")); // <<< INVALID !!
+
+		// Run!
+		try {
+			new Config(localDir, configTO, repoTO);
+			fail("Config should not been have initialized.");
+		}
+		catch (ConfigException e) {
+			TestAssertUtil.assertErrorStackTraceContains("Invalid chunker settings", e);
 		}
 	}
 
@@ -312,4 +386,14 @@ public class ConfigTest {
 						StringUtil
 						.fromHex("157599349e0f1bc713afff442db9d4c3201324073d51cb33407600f305500aa3fdb31136cb1f37bd51a48f183844257d42010a36133b32b424dd02bc63b349bc"));
 	}
+
+	private ChunkerTO createChunkerTO(String type, String size) {
+		ChunkerTO chunkerTO = new ChunkerTO();
+
+		chunkerTO.setType(type);
+		chunkerTO.setSettings(new HashMap<String, String>());
+		chunkerTO.getSettings().put(Chunker.PROPERTY_SIZE, size);
+
+		return chunkerTO;
+	}
 }
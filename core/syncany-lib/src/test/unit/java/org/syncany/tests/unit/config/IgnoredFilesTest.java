@@ -0,0 +1,160 @@
+/*
+ * Syncany, www.syncany.org
+ * Copyright (C) 2011-2016 Philipp C. Heckel <philipp.heckel@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.syncany.tests.unit.config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.junit.Test;
+import org.syncany.config.IgnoredFiles;
+import org.syncany.tests.unit.util.TestFileUtil;
+
+public class IgnoredFilesTest {
+	private static final Logger logger = Logger.getLogger(IgnoredFilesTest.class.getSimpleName());
+
+	@Test
+	public void testIgnoredFilesPathsNamesAndPatterns() throws Exception {
+		File tempDir = TestFileUtil.createTempDirectoryInSystemTemp();
+		File ignoreFile = new File(tempDir, ".syignore");
+
+		TestFileUtil.createFileWithContent(ignoreFile, "folder/exact.txt\nrecursive.txt\n*.bak\nfile?.tmp\nregex:.*/build/.*\nregex:[invalid\n");
+		IgnoredFiles ignoredFiles = new IgnoredFiles(ignoreFile);
+
+		assertTrue(ignoredFiles.isFileIgnored("folder/exact.txt", "exact.txt"));
+		assertFalse(ignoredFiles.isFileIgnored("other/exact.txt", "exact.txt"));
+		assertTrue(ignoredFiles.isFileIgnored("some/folder/recursive.txt", "recursive.txt"));
+		assertTrue(ignoredFiles.isFileIgnored("some/file.bak", "file.bak"));
+		assertFalse(ignoredFiles.isFileIgnored("some/file.bak.txt", "file.bak.txt"));
+		assertTrue(ignoredFiles.isFileIgnored("file1.tmp", "file1.tmp"));
+		assertFalse(ignoredFiles.isFileIgnored("file12.tmp", "file12.tmp"));
+		assertTrue(ignoredFiles.isFileIgnored("project/build/classes", "classes"));
+		assertFalse(ignoredFiles.isFileIgnored("project/src/classes", "classes"));
+
+		TestFileUtil.deleteDirectory(tempDir);
+	}
+
+	@Test
+	public void testIgnoredFilesReloadIfModified() throws Exception {
+		File tempDir = TestFileUtil.createTempDirectoryInSystemTemp();
+		File ignoreFile = new File(tempDir, ".syignore");
+
+		// No ignore file
+		IgnoredFiles ignoredFiles = new IgnoredFiles(ignoreFile);
+
+		assertFalse(ignoredFiles.reloadPatternsIfModified());
+		assertFalse(ignoredFiles.isFileIgnored("file1", "file1"));
+
+		// Created
+		TestFileUtil.createFileWithContent(ignoreFile, "file1");
+
+		assertTrue(ignoredFiles.reloadPatternsIfModified());
+		assertTrue(ignoredFiles.isFileIgnored("file1", "file1"));
+		assertFalse(ignoredFiles.reloadPatternsIfModified());
+
+		// Changed (old rules are not kept)
+		TestFileUtil.deleteFile(ignoreFile);
+		TestFileUtil.createFileWithContent(ignoreFile, "file2.txt");
+
+		assertTrue(ignoredFiles.reloadPatternsIfModified());
+		assertFalse(ignoredFiles.isFileIgnored("file1", "file1"));
+		assertTrue(ignoredFiles.isFileIgnored("file2.txt", "file2.txt"));
+
+		// Deleted
+		TestFileUtil.deleteFile(ignoreFile);
+
+		assertTrue(ignoredFiles.reloadPatternsIfModified());
+		assertFalse(ignoredFiles.isFileIgnored("file2.txt", "file2.txt"));
+
+		TestFileUtil.deleteDirectory(tempDir);
+	}
+
+	@Test
+	public void testIgnoredFilesPerformance() throws Exception {
+		File tempDir = TestFileUtil.createTempDirectoryInSystemTemp();
+		File ignoreFile = new File(tempDir, ".syignore");
+
+		// 60 rules: 20 exact paths, 20 wildcards and 20 regular expressions
+		StringBuilder ignoreFileContent = new StringBuilder();
+		List<String> regexRules = new ArrayList<String>();
+
+		for (int i = 0; i < 20; i++) {
+			ignoreFileContent.append("folder" + i + "/exact" + i + ".txt\n");
+			ignoreFileContent.append("*.ext" + i + "\n");
+			ignoreFileContent.append("regex:.*/build" + i + "/.*\n");
+
+			regexRules.add("^.*\\.ext" + i + "$");
+			regexRules.add(".*/build" + i + "/.*");
+		}
+
+		TestFileUtil.createFileWithContent(ignoreFile, ignoreFileContent.toString());
+		IgnoredFiles ignoredFiles = new IgnoredFiles(ignoreFile);
+
+		int fileCount = 100000;
+		String[] filePaths = new String[fileCount];
+
+		for (int i = 0; i < fileCount; i++) {
+			filePaths[i] = "folder" + (i % 100) + "/subfolder" + (i % 7) + "/file" + i + ".txt";
+		}
+
+		// Warm up, then measure compiled matcher
+		for (int i = 0; i < fileCount; i++) {
+			ignoredFiles.isFileIgnored(filePaths[i], "file" + i + ".txt");
+		}
+
+		long startTime = System.currentTimeMillis();
+		int ignoredCount = 0;
+
+		for (int i = 0; i < fileCount; i++) {
+			if (ignoredFiles.isFileIgnored(filePaths[i], "file" + i + ".txt")) {
+				ignoredCount++;
+			}
+		}
+
+		long durationCompiled = System.currentTimeMillis() - startTime;
+
+		// Measure uncompiled regular expressions (String.matches), as used before
+		startTime = System.currentTimeMillis();
+		int ignoredCountUncompiled = 0;
+
+		for (int i = 0; i < fileCount; i++) {
+			for (String regexRule : regexRules) {
+				if (filePaths[i].matches(regexRule)) {
+					ignoredCountUncompiled++;
+					break;
+				}
+			}
+		}
+
+		long durationUncompiled = System.currentTimeMillis() - startTime;
+
+		logger.log(Level.INFO, "Ignored files benchmark, " + fileCount + " files, 60 rules: compiled " + durationCompiled + " ms, uncompiled "
+				+ durationUncompiled + " ms");
+
+		assertEquals(0, ignoredCount);
+		assertEquals(0, ignoredCountUncompiled);
+
+		TestFileUtil.deleteDirectory(tempDir);
+	}
+}
@@ -0,0 +1,133 @@
+/*
+ * Syncany, www.syncany.org
+ * Copyright (C) 2011-2016 Philipp C. Heckel <philipp.heckel@gmail.com> 
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.syncany.tests.unit.database.dao;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import org.syncany.database.ChunkEntry;
+import org.syncany.database.ChunkEntry.ChunkChecksum;
+import org.syncany.database.ObjectId;
+import org.syncany.database.dao.ChunkIndex;
+
+public class ChunkIndexTest {
+	@Test
+	public void testPutGetRemove() {
+		ChunkIndex chunkIndex = new ChunkIndex();
+		
+		ChunkChecksum chunk1 = ChunkChecksum.parseChunkChecksum("615fba8c2281d5bee891eb092a252d235c237457");
+		ChunkChecksum chunk2 = ChunkChecksum.parseChunkChecksum("ab85720d3f31bd08ca1cd25dcd8a490e5f00783b");
+		ChunkChecksum chunkNonExistent = ChunkChecksum.parseChunkChecksum("beefbeefbeefbeefbeefbeefbeefbeefbeefbeef");
+		
+		chunkIndex.put(chunk1, 8387);
+		chunkIndex.put(chunk2, 0);
+		
+		ChunkEntry chunkEntry1 = chunkIndex.get(chunk1);
+		ChunkEntry chunkEntry2 = chunkIndex.get(chunk2);
+		
+		assertNotNull(chunkEntry1);
+		assertEquals(chunk1, chunkEntry1.getChecksum());
+		assertEquals(8387, chunkEntry1.getSize());
+		
+		assertNotNull(chunkEntry2);
+		assertEquals(0, chunkEntry2.getSize());
+		
+		assertNull(chunkIndex.get(chunkNonExistent));
+		assertEquals(2, chunkIndex.size());
+		
+		assertTrue(chunkIndex.remove(chunk1));
+		assertFalse(chunkIndex.remove(chunk1));
+		assertFalse(chunkIndex.remove(chunkNonExistent));
+		
+		assertNull(chunkIndex.get(chunk1));
+		assertNotNull(chunkIndex.get(chunk2));
+		assertEquals(1, chunkIndex.size());
+	}
+	
+	@Test
+	public void testPutOverwritesSize() {
+		ChunkIndex chunkIndex = new ChunkIndex();
+		ChunkChecksum chunk = ChunkChecksum.parseChunkChecksum("615fba8c2281d5bee891eb092a252d235c237457");
+		
+		chunkIndex.put(chunk, 1);
+		chunkIndex.put(chunk, 2);
+		
+		assertEquals(1, chunkIndex.size());
+		assertEquals(2, chunkIndex.get(chunk).getSize());
+	}
+	
+	@Test
+	public void testNonStandardChecksumLength() {
+		ChunkIndex chunkIndex = new ChunkIndex();
+		ChunkChecksum shortChunk = ChunkChecksum.parseChunkChecksum("beef");
+		
+		chunkIndex.put(shortChunk, 123);
+		
+		assertEquals(123, chunkIndex.get(shortChunk).getSize());
+		assertTrue(chunkIndex.remove(shortChunk));
+		assertNull(chunkIndex.get(shortChunk));
+		assertEquals(0, chunkIndex.size());
+	}
+	
+	@Test
+	public void testGrowAndRemoveMany() {
+		ChunkIndex chunkIndex = new ChunkIndex();
+		List<ChunkChecksum> chunks = new ArrayList<ChunkChecksum>();
+		
+		for (int i = 0; i < 50000; i++) {
+			ChunkChecksum chunk = new ChunkChecksum(ObjectId.secureRandomBytes(ChunkIndex.KEY_LENGTH));
+			
+			chunks.add(chunk);
+			chunkIndex.put(chunk, i);
+		}
+		
+		assertEquals(50000, chunkIndex.size());
+		
+		for (int i = 0; i < chunks.size(); i++) {
+			assertEquals(i, chunkIndex.get(chunks.get(i)).getSize());
+		}
+		
+		// Remove and re-add to exercise deleted slots
+		for (int round = 0; round < 3; round++) {
+			for (int i = 0; i < chunks.size(); i += 2) {
+				assertTrue(chunkIndex.remove(chunks.get(i)));
+			}
+			
+			assertEquals(25000, chunkIndex.size());
+			
+			for (int i = 0; i < chunks.size(); i += 2) {
+				assertNull(chunkIndex.get(chunks.get(i)));
+				assertEquals(i + 1, chunkIndex.get(chunks.get(i + 1)).getSize());
+				
+				chunkIndex.put(chunks.get(i), i);
+			}
+			
+			assertEquals(50000, chunkIndex.size());
+		}
+		
+		// Roughly 24 bytes per slot, at a load factor between 0.35 and 0.7
+		assertTrue(chunkIndex.getMemoryUsage() / chunkIndex.size() < 80);
+	}
+}
@@ -0,0 +1,206 @@
+/*
+ * Syncany, www.syncany.org
+ * Copyright (C) 2011-2016 Philipp C. Heckel <philipp.heckel@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.syncany.tests.unit.operations.status;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.DosFileAttributes;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Date;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.syncany.database.FileContent.FileChecksum;
+import org.syncany.database.FileVersion;
+import org.syncany.database.FileVersion.FileStatus;
+import org.syncany.database.FileVersion.FileType;
+import org.syncany.operations.status.StatCache;
+import org.syncany.operations.status.StatCache.FileStat;
+import org.syncany.tests.unit.util.TestFileUtil;
+import org.syncany.util.EnvironmentUtil;
+import org.syncany.util.FileUtil;
+
+public class StatCacheTest {
+	private File tempDir;
+	private File cacheFile;
+
+	@Before
+	public void setUp() throws Exception {
+		tempDir = TestFileUtil.createTempDirectoryInSystemTemp();
+		cacheFile = new File(tempDir, "state/stat-cache.bin");
+	}
+
+	@After
+	public void tearDown() {
+		TestFileUtil.deleteDirectory(tempDir);
+	}
+
+	@Test
+	public void testStatCacheHitAfterSaveAndLoad() throws Exception {
+		File file = createSettledFile("file1");
+		FileVersion expectedFileVersion = createFileVersion(file, "file1", "aaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaa");
+
+		StatCache statCache = StatCache.load(cacheFile);
+		assertFalse(statCache.isUnchanged("file1", readFileStat(file), expectedFileVersion, false));
+
+		statCache.put("file1", readFileStat(file), expectedFileVersion, false);
+		assertTrue(statCache.isUnchanged("file1", readFileStat(file), expectedFileVersion, false));
+
+		statCache.save();
+
+		StatCache loadedStatCache = StatCache.load(cacheFile);
+
+		assertEquals(1, loadedStatCache.size());
+		assertTrue(loadedStatCache.isUnchanged("file1", readFileStat(file), expectedFileVersion, false));
+		assertFalse(loadedStatCache.isUnchanged("file2", readFileStat(file), expectedFileVersion, false));
+	}
+
+	@Test
+	public void testStatCacheMissIfFileOrVersionChanged() throws Exception {
+		File file = createSettledFile("file1");
+		FileVersion expectedFileVersion = createFileVersion(file, "file1", "aaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaa");
+
+		StatCache statCache = StatCache.load(cacheFile);
+		statCache.put("file1", readFileStat(file), expectedFileVersion, false);
+
+		// Other expected version
+		FileVersion otherExpectedFileVersion = createFileVersion(file, "file1", "bbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbb");
+		assertFalse(statCache.isUnchanged("file1", readFileStat(file), otherExpectedFileVersion, false));
+
+		// Forced checksum, but entry not verified
+		assertFalse(statCache.isUnchanged("file1", readFileStat(file), expectedFileVersion, true));
+
+		statCache.put("file1", readFileStat(file), expectedFileVersion, true);
+		assertTrue(statCache.isUnchanged("file1", readFileStat(file), expectedFileVersion, true));
+
+		// Change file
+		TestFileUtil.changeRandomPartOfBinaryFile(file);
+		assertFalse(statCache.isUnchanged("file1", readFileStat(file), expectedFileVersion, false));
+	}
+
+	@Test
+	public void testStatCacheIgnoresRecentlyChangedFiles() throws Exception {
+		File file = new File(tempDir, "file1");
+		TestFileUtil.createRandomFile(file, 1024);
+
+		FileVersion expectedFileVersion = createFileVersion(file, "file1", "aaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaa");
+
+		StatCache statCache = StatCache.load(cacheFile);
+		statCache.put("file1", readFileStat(file), expectedFileVersion, true);
+
+		assertEquals(0, statCache.size());
+		assertFalse(statCache.isUnchanged("file1", readFileStat(file), expectedFileVersion, false));
+	}
+
+	@Test
+	public void testStatCacheRemoveUnusedEntries() throws Exception {
+		File file1 = createSettledFile("file1");
+		File file2 = createSettledFile("file2");
+
+		FileVersion expectedFileVersion1 = createFileVersion(file1, "file1", "aaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaa");
+		FileVersion expectedFileVersion2 = createFileVersion(file2, "file2", "bbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbb");
+
+		StatCache statCache = StatCache.load(cacheFile);
+		statCache.put("file1", readFileStat(file1), expectedFileVersion1, false);
+		statCache.put("file2", readFileStat(file2), expectedFileVersion2, false);
+		statCache.save();
+
+		StatCache loadedStatCache = StatCache.load(cacheFile);
+		assertTrue(loadedStatCache.isUnchanged("file1", readFileStat(file1), expectedFileVersion1, false));
+
+		loadedStatCache.removeUnusedEntries();
+		assertEquals(1, loadedStatCache.size());
+	}
+
+	@Test
+	public void testStatCacheRemoveUnusedEntriesInMemory() throws Exception {
+		File file1 = createSettledFile("file1");
+		File file2 = createSettledFile("file2");
+
+		FileVersion expectedFileVersion1 = createFileVersion(file1, "file1", "aaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaa");
+		FileVersion expectedFileVersion2 = createFileVersion(file2, "file2", "bbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbb");
+
+		StatCache statCache = StatCache.load(cacheFile);
+		statCache.put("file1", readFileStat(file1), expectedFileVersion1, false);
+		statCache.put("file2", readFileStat(file2), expectedFileVersion2, false);
+
+		// First walk: both entries used
+		statCache.removeUnusedEntries();
+		assertEquals(2, statCache.size());
+
+		// Second walk on the same (in-memory) cache: only file1 is looked up
+		assertTrue(statCache.isUnchanged("file1", readFileStat(file1), expectedFileVersion1, false));
+
+		statCache.removeUnusedEntries();
+		assertEquals(1, statCache.size());
+	}
+
+	@Test
+	public void testStatCacheInvalidFile() throws Exception {
+		cacheFile.getParentFile().mkdirs();
+		TestFileUtil.createRandomFile(cacheFile, 100);
+
+		StatCache statCache = StatCache.load(cacheFile);
+		assertEquals(0, statCache.size());
+	}
+
+	private File createSettledFile(String name) throws Exception {
+		File file = new File(tempDir, name);
+
+		TestFileUtil.createRandomFile(file, 1024);
+		file.setLastModified(System.currentTimeMillis() - 60000);
+
+		// The change date cannot be set, so wait for it to be old enough
+		Thread.sleep(2100);
+
+		return file;
+	}
+
+	private FileStat readFileStat(File file) throws Exception {
+		Path path = file.toPath();
+		return StatCache.readFileStat(path, Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS));
+	}
+
+	private FileVersion createFileVersion(File file, String path, String checksum) throws Exception {
+		FileVersion fileVersion = new FileVersion();
+
+		fileVersion.setPath(path);
+		fileVersion.setType(FileType.FILE);
+		fileVersion.setStatus(FileStatus.NEW);
+		fileVersion.setSize(file.length());
+		fileVersion.setLastModified(new Date(file.lastModified()));
+		fileVersion.setChecksum(FileChecksum.parseFileChecksum(checksum));
+
+		if (EnvironmentUtil.isWindows()) {
+			fileVersion.setDosAttributes(FileUtil.dosAttrsToString(Files.readAttributes(file.toPath(), DosFileAttributes.class)));
+		}
+		else if (EnvironmentUtil.isUnixLikeOperatingSystem()) {
+			fileVersion.setPosixPermissions(PosixFilePermissions.toString(Files.getPosixFilePermissions(file.toPath())));
+		}
+
+		return fileVersion;
+	}
+}
@@ -21,6 +21,7 @@ import static org.junit.Assert.*;
 
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Set;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.Test;
@@ -36,7 +37,7 @@ public class RecursiveWatcherTest {
 		
 		RecursiveWatcher watcher = RecursiveWatcher.createRecursiveWatcher(tempDir, new ArrayList<Path>(), 300, new WatchListener() {			
 			@Override
-			public void watchEventsOccurred() {
+			public void watchEventsOccurred(Set<Path> changedPaths) {
 				eventCount.incrementAndGet();
 			}
 		});
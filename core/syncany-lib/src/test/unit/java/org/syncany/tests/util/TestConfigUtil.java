@@ -113,7 +113,7 @@ public class TestConfigUtil {
 		// Create ChunkerTO and MultiChunkerTO
 		MultiChunkerTO multiChunkerTO = createZipMultiChunkerTO();
 		ChunkerTO chunkerTO = createFixedChunkerTO();
-		repoTO.setChunkerTO(chunkerTO); // TODO [low] Chunker not configurable right now. Not used.
+		repoTO.setChunkerTO(chunkerTO);
 		repoTO.setMultiChunker(multiChunkerTO);
 
 		// Create TransformerTO
@@ -38,6 +38,8 @@ import java.text.DecimalFormat;
  * @author Philipp C. Heckel <philipp.heckel@gmail.com>
  */
 public class FileUtil {
+	private static final int CHECKSUM_READ_BUFFER_SIZE = 128 * 1024;
+
 	public static String getRelativePath(File base, File file) {
 		return removeTrailingSlash(base.toURI().relativize(file.toURI()).getPath());
 	}
@@ -79,21 +81,25 @@ public class FileUtil {
 		}
 	}
 
+	/**
+	 * Calculates the checksum of the given file's content using the given digest algorithm.
+	 *
+	 * <p>The file is read in large blocks into a heap buffer. Direct or memory-mapped buffers are
+	 * not used on purpose: {@link MessageDigest} copies their content into a small heap array
+	 * before digesting it, so they would not save a copy, but only add overhead.
+	 */
 	public static byte[] createChecksum(File filename, String digestAlgorithm) throws NoSuchAlgorithmException, IOException {
-		FileInputStream fis = new FileInputStream(filename);
-
-		byte[] buffer = new byte[1024];
 		MessageDigest complete = MessageDigest.getInstance(digestAlgorithm);
-		int numRead;
 
-		do {
-			numRead = fis.read(buffer);
-			if (numRead > 0) {
+		try (FileInputStream fis = new FileInputStream(filename)) {
+			byte[] buffer = new byte[CHECKSUM_READ_BUFFER_SIZE];
+			int numRead;
+
+			while ((numRead = fis.read(buffer)) != -1) {
 				complete.update(buffer, 0, numRead);
 			}
-		} while (numRead != -1);
+		}
 
-		fis.close();
 		return complete.digest();
 	}
 
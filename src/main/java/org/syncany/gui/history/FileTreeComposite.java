@@ -2,6 +2,7 @@ package org.syncany.gui.history;
 
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeSet;
@@ -17,11 +18,14 @@ import org.eclipse.swt.events.MouseAdapter;
 import org.eclipse.swt.events.MouseEvent;
 import org.eclipse.swt.events.TreeAdapter;
 import org.eclipse.swt.events.TreeEvent;
+import org.eclipse.swt.graphics.Image;
 import org.eclipse.swt.graphics.Rectangle;
 import org.eclipse.swt.layout.GridData;
 import org.eclipse.swt.layout.GridLayout;
 import org.eclipse.swt.widgets.Composite;
 import org.eclipse.swt.widgets.Display;
+import org.eclipse.swt.widgets.Event;
+import org.eclipse.swt.widgets.Listener;
 import org.eclipse.swt.widgets.Tree;
 import org.eclipse.swt.widgets.TreeColumn;
 import org.eclipse.swt.widgets.TreeItem;
@@ -58,6 +62,15 @@ import com.google.common.eventbus.Subscribe;
  * expanded paths are reloaded (corresponding {@link LsFolderRequest}s are sent) and 
  * the selected file is selected.
  * 
+ * <p>Folder listings are requested in pages of {@link #LS_PAGE_SIZE} entries. Each
+ * page is rendered as soon as it arrives, and the next page is requested using the 
+ * cursor token of the previous {@link LsFolderResponse}. That way, large folders do
+ * not result in huge response messages.
+ * 
+ * <p>The tree is a virtual tree ({@link SWT#VIRTUAL}): Received pages are only added to
+ * the {@link FolderListing} of the corresponding folder, and tree items are populated
+ * by the {@link SWT#SetData} listener when they first become visible. 
+ * 
  * @author Philipp C. Heckel <philipp.heckel@gmail.com>
  */
 public class FileTreeComposite extends Composite {
@@ -65,8 +78,12 @@ public class FileTreeComposite extends Composite {
 
 	private static final String TREE_ICON_RESOURCE_FORMAT = "/" + FileTreeComposite.class.getPackage().getName().replace('.', '/') + "/%s.png";
 	private static final Object RETRIEVING_LIST_IDENTIFIER = new Object();
+	private static final int LS_PAGE_SIZE = 500;
 	
 	private Tree fileTree;
+	private Image folderImage;
+	private Image fileImage;
+	private PrettyTime prettyTime;
 	
 	private HistoryModel historyModel;
 	private HistoryDialog historyDialog;
@@ -74,8 +91,9 @@ public class FileTreeComposite extends Composite {
 	private Map<Integer, LsFolderRequest> pendingLsFolderRequests;		
 	private GuiEventBus eventBus;	
 	
-	private Map<String, TreeItem> pathTreeItemCache;
-	private Map<FileHistoryId, TreeItem> fileHistoryIdTreeItemCache;
+	private Map<String, FolderListing> folderListings;
+	private Map<FileHistoryId, String> fileHistoryIdPathCache;
+	private int listingGeneration;
 	
 	private TreeSet<String> expandedFilePaths;
 	
@@ -83,6 +101,9 @@ public class FileTreeComposite extends Composite {
 		super(parent, style);
 		
 		this.fileTree = null;
+		this.folderImage = SWTResourceManager.getImage(String.format(TREE_ICON_RESOURCE_FORMAT, "folder"));
+		this.fileImage = SWTResourceManager.getImage(String.format(TREE_ICON_RESOURCE_FORMAT, "file"));
+		this.prettyTime = new PrettyTime();
 		
 		this.historyModel = historyModel;
 		this.historyDialog = historyDialog;
@@ -90,8 +111,9 @@ public class FileTreeComposite extends Composite {
 		this.pendingLsFolderRequests = Maps.newConcurrentMap();
 		this.eventBus = GuiEventBus.getAndRegister(this);
 		
-		this.pathTreeItemCache = Maps.newConcurrentMap();
-		this.fileHistoryIdTreeItemCache = Maps.newConcurrentMap();
+		this.folderListings = Maps.newConcurrentMap();
+		this.fileHistoryIdPathCache = Maps.newConcurrentMap();
+		this.listingGeneration = 0;
 		
 		this.expandedFilePaths = Sets.newTreeSet();	
 		
@@ -123,7 +145,7 @@ public class FileTreeComposite extends Composite {
 	private void createFileTree() {
 		logger.log(Level.INFO, "Tree: Creating tree ...");
 		
-		fileTree = new Tree(this, SWT.BORDER | SWT.V_SCROLL | SWT.H_SCROLL | SWT.DOUBLE_BUFFERED | SWT.SINGLE | SWT.FULL_SELECTION);
+		fileTree = new Tree(this, SWT.VIRTUAL | SWT.BORDER | SWT.V_SCROLL | SWT.H_SCROLL | SWT.DOUBLE_BUFFERED | SWT.SINGLE | SWT.FULL_SELECTION);
 
 		fileTree.setLayoutData(new GridData(SWT.FILL, SWT.FILL, true, true, 1, 1));
 		fileTree.setEnabled(false);							
@@ -132,6 +154,13 @@ public class FileTreeComposite extends Composite {
 	private void createFileTreeListeners() {	
 		logger.log(Level.INFO, "Tree: Creating tree listeners ...");
 		
+		fileTree.addListener(SWT.SetData, new Listener() {
+			@Override
+			public void handleEvent(Event event) {
+				populateItem((TreeItem) event.item, event.index);
+			}
+		});
+		
 		fileTree.addMouseListener(new MouseAdapter() {	
 			@Override
 			public void mouseUp(MouseEvent e) {
@@ -196,6 +225,11 @@ public class FileTreeComposite extends Composite {
 			@Override
 			public void run() {	
 				logger.log(Level.INFO, "Tree: Reset: Remove all tree items; and resending LsRequest ...");
+				
+				pendingLsFolderRequests.clear(); // Ignore remaining pages of old requests
+				fileHistoryIdPathCache.clear();
+				listingGeneration++;
+				
 				sendLsRequest("");		
 
 				for (String expandedPath : expandedFilePaths) {
@@ -206,9 +240,11 @@ public class FileTreeComposite extends Composite {
 	}
 
 	private void sendLsRequest(String pathExpression) {
-		// Date
 		Date browseDate = (historyModel.getSelectedDate() != null) ? historyModel.getSelectedDate() : new Date();
-		
+		sendLsRequest(pathExpression, browseDate, null);
+	}
+	
+	private void sendLsRequest(String pathExpression, Date browseDate, String cursor) {
 		// Create list request
 		LsOperationOptions lsOptions = new LsOperationOptions();
 		
@@ -217,6 +253,8 @@ public class FileTreeComposite extends Composite {
 		lsOptions.setRecursive(false);
 		lsOptions.setFetchHistories(false);
 		lsOptions.setFileTypes(Sets.newHashSet(FileType.FILE, FileType.FOLDER, FileType.SYMLINK));
+		lsOptions.setPageSize(LS_PAGE_SIZE);
+		lsOptions.setCursor(cursor);
 		
 		LsFolderRequest lsRequest = new LsFolderRequest();
 		
@@ -225,7 +263,7 @@ public class FileTreeComposite extends Composite {
 
 		logger.log(Level.INFO, "Tree: Sending LsRequest #" + lsRequest.getId() + ", date: " + browseDate + ", root: "
 				+ historyModel.getSelectedRoot() + ", path: "
-				+ pathExpression + " ...");
+				+ pathExpression + ", cursor: " + cursor + " ...");
 
 		// Send request
 		pendingLsFolderRequests.put(lsRequest.getId(), lsRequest);
@@ -259,12 +297,7 @@ public class FileTreeComposite extends Composite {
 		List<String> notLoadedPaths = new ArrayList<>();
 		
 		for (String path : allPaths) {			
-			TreeItem treeItem = findItemByPath(path);
-			
-			boolean noTreeItem = treeItem == null;
-			boolean treeItemWithRetrievingChild = treeItem != null && hasRetrievingChildItem(treeItem);
-			
-			if (noTreeItem || treeItemWithRetrievingChild) {
+			if (!folderListings.containsKey(path)) {
 				notLoadedPaths.add(path);
 				logger.log(Level.INFO, "- Item '" + path + "' has not been loaded.");					
 			}
@@ -275,57 +308,119 @@ public class FileTreeComposite extends Composite {
 
 	@Subscribe
 	public void onLsFolderResponse(final LsFolderResponse lsResponse) {
-		Display.getDefault().syncExec(new Runnable() {
-			@Override
-			public void run() {
-				fileTree.setEnabled(true);
-				
-				LsFolderRequest lsRequest = pendingLsFolderRequests.remove(lsResponse.getRequestId());
-				
-				if (lsRequest != null) {
-					logger.log(Level.INFO, "Tree: Received LsResponse for request #" + lsResponse.getRequestId() + "; updating tree at path " + lsRequest.getOptions().getPathExpression() + " ...");					
-					createTreeItems(lsRequest, lsResponse);
+		final LsFolderRequest lsRequest = pendingLsFolderRequests.remove(lsResponse.getRequestId());
+		
+		if (lsRequest != null) {
+			logger.log(Level.INFO, "Tree: Received LsResponse for request #" + lsResponse.getRequestId() + "; updating tree at path " + lsRequest.getOptions().getPathExpression() + " ...");					
+			
+			// Prepare page outside of the UI thread
+			final List<FileVersion> folderVersions = new ArrayList<>();
+			final List<FileVersion> fileVersions = new ArrayList<>();
+			
+			for (FileVersion fileVersion : lsResponse.getResult().getFileList()) {
+				if (fileVersion.getType() == FileType.FOLDER) {
+					folderVersions.add(fileVersion);
 				}
+				else {
+					fileVersions.add(fileVersion);
+				}
+				
+				fileHistoryIdPathCache.put(fileVersion.getFileHistoryId(), fileVersion.getPath());
 			}
-		});		
+			
+			final String nextCursor = lsResponse.getResult().getNextCursor();
+			
+			Display.getDefault().syncExec(new Runnable() {
+				@Override
+				public void run() {
+					fileTree.setEnabled(true);
+					
+					boolean pageAdded = updateTree(lsRequest, folderVersions, fileVersions, nextCursor);
+					
+					// Request next page (using same date, to get a consistent listing)
+					if (pageAdded && nextCursor != null) {
+						sendLsRequest(lsRequest.getOptions().getPathExpression(), lsRequest.getOptions().getDate(), nextCursor);
+					}
+				}
+			});		
+		}
 	}	
 
-	private void createTreeItems(LsFolderRequest lsRequest, LsFolderResponse lsResponse) {
-		logger.log(Level.INFO, "Tree: Updating with LsResponse " + lsResponse.getResult().getFileList().size() + " versions ...");
-
-		List<FileVersion> fileVersions = lsResponse.getResult().getFileList();
+	private boolean updateTree(LsFolderRequest lsRequest, List<FileVersion> folderVersions, List<FileVersion> fileVersions, String nextCursor) {
+		logger.log(Level.INFO, "Tree: Updating with LsResponse " + (folderVersions.size() + fileVersions.size()) + " versions ...");
 		
-		// Clear entire tree if '/' request
 		String pathExpression = lsRequest.getOptions().getPathExpression();
-		boolean isRootRefresh = "".equals(pathExpression);
+		String folderPath = (pathExpression.endsWith("/")) ? pathExpression.substring(0, pathExpression.length() - 1) : pathExpression;
 		
-		if (isRootRefresh) {
-			fileTree.removeAll();	
-			
-			pathTreeItemCache.clear();
-			fileHistoryIdTreeItemCache.clear();
-		}
+		String cursor = lsRequest.getOptions().getCursor();
+		boolean isFirstPage = cursor == null;
+		boolean isRoot = "".equals(folderPath);
 		
-		// Find parent path (where to attach new items)
-		TreeItem parentTreeItem = findItemByPath(pathExpression);
+		// Find or create folder listing; pages are only added if they 
+		// continue the listing (and not an older listing of the same folder)
+		FolderListing folderListing = null;
 		
-		if (parentTreeItem != null) {
-			parentTreeItem.removeAll(); // removes 'Retrieving ...'
+		if (isFirstPage) {
+			folderListing = new FolderListing(listingGeneration);
+			folderListings.put(folderPath, folderListing);
+			
+			if (isRoot) {
+				removeOutdatedFolderListings();
+			}
+		}
+		else {
+			folderListing = folderListings.get(folderPath);
+			
+			if (folderListing == null || !cursor.equals(folderListing.getNextCursor())) {
+				logger.log(Level.INFO, "Tree: Ignoring outdated page for " + folderPath + ".");
+				return false;
+			}
 		}
 		
-		// Create new items
-		createFolderItems(parentTreeItem, fileVersions);
-		createFileItems(parentTreeItem, fileVersions);				
+		int previousFileCount = folderListing.getFileCount();
+		folderListing.addPage(folderVersions, fileVersions, nextCursor);
 		
-		// Expand parent path
-		if (parentTreeItem != null) {
-			parentTreeItem.setExpanded(true);			
+		// Update item count; items are populated on demand (SetData listener)
+		if (isRoot) {
+			if (isFirstPage) {
+				fileTree.removeAll();
+			}
+			
+			fileTree.setItemCount(folderListing.size());
+			
+			if (!isFirstPage && !folderVersions.isEmpty() && previousFileCount > 0) {
+				fileTree.clearAll(false); // Folders are inserted before files; file items moved
+			}
 		}
+		else {
+			TreeItem parentTreeItem = findItemByPath(folderPath);
+			
+			if (parentTreeItem != null) {
+				parentTreeItem.setItemCount(folderListing.size());
 				
-		addToExpandedPathsIncludingChildPaths(pathExpression);		
+				if (isFirstPage || (!folderVersions.isEmpty() && previousFileCount > 0)) {
+					parentTreeItem.clearAll(false); // Replaces 'Retrieving ...', or moved file items
+				}
+				
+				parentTreeItem.setExpanded(true);
+			}
+		}
+		
+		addToExpandedPathsIncludingChildPaths(folderPath);		
 		
 		// Select item
 		selectItemIfSelectedPathOrFileVersion();		
+		
+		return true;
+	}
+
+	private void removeOutdatedFolderListings() {
+		Iterables.removeIf(folderListings.values(), new Predicate<FolderListing>() {
+			@Override
+			public boolean apply(FolderListing folderListing) {				
+				return folderListing.getGeneration() != listingGeneration;
+			}			
+		});		
 	}
 
 	private void addToExpandedPathsIncludingChildPaths(String pathExpression) {
@@ -344,40 +439,50 @@ public class FileTreeComposite extends Composite {
 		logExpandedPaths();		
 	}
 
-	private void createFolderItems(TreeItem parentTreeItem, List<FileVersion> fileVersions) {
-		for (FileVersion fileVersion : fileVersions) {
-			if (fileVersion.getType() == FileType.FOLDER) {
-				TreeItem treeItem = createItem(parentTreeItem);
-				treeItem.setData(fileVersion);
-				treeItem.setText(fileVersion.getName());	
-				treeItem.setImage(SWTResourceManager.getImage(String.format(TREE_ICON_RESOURCE_FORMAT, "folder")));
-				
-				TreeItem retrieveListTreeItem = new TreeItem(treeItem, 0);
-				retrieveListTreeItem.setData(RETRIEVING_LIST_IDENTIFIER);
-				retrieveListTreeItem.setText(I18n.getText("org.syncany.gui.history.HistoryDialog.retrievingList"));
-				
-				if (expandedFilePaths.contains(fileVersion.getPath())) {
-					treeItem.setExpanded(true);
-				}
-				
-				pathTreeItemCache.put(fileVersion.getPath(), treeItem);
-				fileHistoryIdTreeItemCache.put(fileVersion.getFileHistoryId(), treeItem);
-			}
+	/**
+	 * Populates a tree item from the folder listing of its parent. This is called by 
+	 * the {@link SWT#SetData} listener when the item becomes visible, and when an item
+	 * is looked up by its path. If the parent folder has not been loaded yet, the item
+	 * is a 'Retrieving ...' item.
+	 */
+	private void populateItem(TreeItem treeItem, int index) {
+		TreeItem parentTreeItem = treeItem.getParentItem();
+		FolderListing parentFolderListing = null;
+		
+		if (parentTreeItem == null) {
+			parentFolderListing = folderListings.get("");
+		}
+		else if (parentTreeItem.getData() instanceof FileVersion) {
+			parentFolderListing = folderListings.get(((FileVersion) parentTreeItem.getData()).getPath());
+		}
+		
+		if (parentFolderListing != null && index < parentFolderListing.size()) {
+			populateItem(treeItem, parentFolderListing.get(index));
+		}
+		else {
+			treeItem.setData(RETRIEVING_LIST_IDENTIFIER);
+			treeItem.setText(I18n.getText("org.syncany.gui.history.HistoryDialog.retrievingList"));
 		}
 	}
-	
-	private void createFileItems(TreeItem parentTreeItem, List<FileVersion> fileVersions) {
-		for (FileVersion fileVersion : fileVersions) {
-			if (fileVersion.getType() != FileType.FOLDER) {
-				TreeItem treeItem = createItem(parentTreeItem);
-				treeItem.setData(fileVersion);
-				treeItem.setText(new String[] { fileVersion.getName(), new PrettyTime().format(fileVersion.getLastModified())});			
-				treeItem.setImage(SWTResourceManager.getImage(String.format(TREE_ICON_RESOURCE_FORMAT, "file")));
-				
-				pathTreeItemCache.put(fileVersion.getPath(), treeItem);
-				fileHistoryIdTreeItemCache.put(fileVersion.getFileHistoryId(), treeItem);
+
+	private void populateItem(TreeItem treeItem, FileVersion fileVersion) {
+		treeItem.setData(fileVersion);
+
+		if (fileVersion.getType() == FileType.FOLDER) {
+			FolderListing folderListing = folderListings.get(fileVersion.getPath());
+			
+			treeItem.setText(fileVersion.getName());	
+			treeItem.setImage(folderImage);
+			treeItem.setItemCount((folderListing != null) ? folderListing.size() : 1); // 1 = 'Retrieving ...'
+
+			if (expandedFilePaths.contains(fileVersion.getPath())) {
+				treeItem.setExpanded(true);
 			}
 		}
+		else {
+			treeItem.setText(new String[] { fileVersion.getName(), prettyTime.format(fileVersion.getLastModified())});			
+			treeItem.setImage(fileImage);
+		}
 	}		
 
 	private List<String> getPaths(String pathExpression) {
@@ -443,22 +548,30 @@ public class FileTreeComposite extends Composite {
 	}
 
 	private void expandTreeItem(TreeItem treeItem) {
+		if (isRetrievingItem(treeItem)) {
+			return;
+		}
+		
 		FileVersion fileVersion = (FileVersion) treeItem.getData();
 		
 		// Add to expanded paths
 		addToExpandedPathsIncludingChildPaths(fileVersion.getPath());
 
 		// Send 'load' request (or not)
-		if (hasRetrievingChildItem(treeItem)) {
+		if (!folderListings.containsKey(fileVersion.getPath())) {
 			logger.log(Level.INFO, "Tree: Expand item; Sending LsRequest for path " + fileVersion.getPath() + " ...");							
 			sendLsRequest(fileVersion.getPath() + "/");
 		}
 		else {
-			logger.log(Level.INFO, "Tree: Expand item; Not loading item, because no 'retrieving ..' child: " + treeItem.getText());
+			logger.log(Level.INFO, "Tree: Expand item; Not loading item, because already loaded: " + treeItem.getText());
 		}
 	}
 	
 	private void collapseTreeItem(TreeItem treeItem) {
+		if (isRetrievingItem(treeItem)) {
+			return;
+		}
+		
 		final FileVersion fileVersion = (FileVersion) treeItem.getData();
 		logger.log(Level.INFO, "Tree: Collapsing item with history ID #" + fileVersion.getFileHistoryId() + ", with text " + treeItem.getText());							
 		
@@ -490,7 +603,8 @@ public class FileTreeComposite extends Composite {
 		Display.getDefault().asyncExec(new Runnable() {
 			@Override
 			public void run() {	
-				TreeItem treeItem = fileHistoryIdTreeItemCache.get(fileHistoryId);
+				String path = fileHistoryIdPathCache.get(fileHistoryId);
+				TreeItem treeItem = (path != null) ? findItemByPath(path) : null;
 				
 				if (treeItem != null) {
 					logger.log(Level.INFO, "Tree: Selecting file by file history ID #" + fileHistoryId + "; tree item " + treeItem);
@@ -520,34 +634,43 @@ public class FileTreeComposite extends Composite {
 		});
 	}
 
-	private TreeItem createItem(TreeItem parentItem) {
-		if (parentItem != null) {
-			return new TreeItem(parentItem, SWT.NONE);
-		}
-		else {
-			return new TreeItem(fileTree, SWT.NONE);
-		}
-	}
-
+	/**
+	 * Finds the tree item for the given path by walking down the folder listings, 
+	 * starting at the root. Items on the way are populated (if they have not been 
+	 * populated by the tree yet). Returns <tt>null</tt> if any of the parent folders
+	 * has not been loaded yet.
+	 */
 	private TreeItem findItemByPath(String searchPath) {				
 		if (searchPath == null || "".equals(searchPath)) {
 			return null;
 		}
-		else {
-			if (searchPath.endsWith("/")) {
-				searchPath = searchPath.substring(0, searchPath.length() - 1);
+		
+		if (searchPath.endsWith("/")) {
+			searchPath = searchPath.substring(0, searchPath.length() - 1);
+		}
+
+		TreeItem treeItem = null;
+		String parentPath = "";
+		
+		for (String path : getPaths(searchPath + "/")) {
+			FolderListing parentFolderListing = folderListings.get(parentPath);
+			int index = (parentFolderListing != null) ? parentFolderListing.indexOf(path) : -1;
+			
+			if (index < 0) {
+				return null;
 			}
 			
-			return pathTreeItemCache.get(searchPath);		
-		}		
+			treeItem = (treeItem == null) ? fileTree.getItem(index) : treeItem.getItem(index);
+			populateItem(treeItem, parentFolderListing.get(index));
+			
+			parentPath = path;
+		}
+		
+		return treeItem;
 	}
 
 	private boolean isRetrievingItem(TreeItem treeItem) {
-		return RETRIEVING_LIST_IDENTIFIER.equals(treeItem.getData());		
-	}
-	
-	private boolean hasRetrievingChildItem(TreeItem treeItem) {
-		return treeItem.getItemCount() == 1 && isRetrievingItem(treeItem.getItems()[0]);
+		return !(treeItem.getData() instanceof FileVersion); // 'Retrieving ...' item, or not yet populated		
 	}
 	
 	@Subscribe
@@ -577,4 +700,75 @@ public class FileTreeComposite extends Composite {
 			}
 		}
 	}
+
+	/**
+	 * A folder listing holds the file versions of a folder, as received by one or
+	 * many {@link LsFolderResponse}s. Folders are listed before files, each in the
+	 * order they were received in. The position of each path within its list is
+	 * indexed, so that looking up an item does not scan the listing.
+	 */
+	private static class FolderListing {
+		private int generation;
+		private List<FileVersion> folderVersions;
+		private List<FileVersion> fileVersions;
+		private Map<String, Integer> folderIndexes;
+		private Map<String, Integer> fileIndexes;
+		private String nextCursor;
+
+		public FolderListing(int generation) {
+			this.generation = generation;
+			this.folderVersions = new ArrayList<>();
+			this.fileVersions = new ArrayList<>();
+			this.folderIndexes = new HashMap<>();
+			this.fileIndexes = new HashMap<>();
+			this.nextCursor = null;
+		}
+
+		public void addPage(List<FileVersion> newFolderVersions, List<FileVersion> newFileVersions, String newNextCursor) {
+			addVersions(newFolderVersions, folderVersions, folderIndexes);
+			addVersions(newFileVersions, fileVersions, fileIndexes);
+			nextCursor = newNextCursor;
+		}
+
+		private void addVersions(List<FileVersion> newVersions, List<FileVersion> versions, Map<String, Integer> indexes) {
+			for (FileVersion newVersion : newVersions) {
+				if (!indexes.containsKey(newVersion.getPath())) {
+					indexes.put(newVersion.getPath(), versions.size());
+				}
+
+				versions.add(newVersion);
+			}
+		}
+
+		public FileVersion get(int index) {
+			return (index < folderVersions.size()) ? folderVersions.get(index) : fileVersions.get(index - folderVersions.size());
+		}
+
+		public int indexOf(String path) {
+			Integer folderIndex = folderIndexes.get(path);
+
+			if (folderIndex != null) {
+				return folderIndex;
+			}
+
+			Integer fileIndex = fileIndexes.get(path);
+			return (fileIndex != null) ? folderVersions.size() + fileIndex : -1;
+		}
+
+		public int size() {
+			return folderVersions.size() + fileVersions.size();
+		}
+
+		public int getFileCount() {
+			return fileVersions.size();
+		}
+
+		public int getGeneration() {
+			return generation;
+		}
+
+		public String getNextCursor() {
+			return nextCursor;
+		}
+	}
 }
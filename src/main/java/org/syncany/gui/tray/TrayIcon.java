@@ -109,7 +109,6 @@ public abstract class TrayIcon {
 	protected Thread animationThread;
 	protected AtomicBoolean syncing;
 	protected Map<String, Boolean> clientSyncStatus;
-	protected Map<String, Long> clientUploadFileSize;
 	protected RecentFileChanges recentFileChanges;
 
 	public TrayIcon(Shell shell, TrayIconTheme theme) {
@@ -123,7 +122,6 @@ public abstract class TrayIcon {
 
 		this.syncing = new AtomicBoolean(false);
 		this.clientSyncStatus = Maps.newConcurrentMap();
-		this.clientUploadFileSize = Maps.newConcurrentMap();
 		this.recentFileChanges = new RecentFileChanges(this);
 		
 		initUpdateChecker();
@@ -342,21 +340,15 @@ public abstract class TrayIcon {
 
 	@Subscribe
 	public void onUploadFileInTransactionEventReceived(UpUploadFileInTransactionSyncExternalEvent syncEvent) {
-		Long currentClientUploadFileSize = clientUploadFileSize.get(syncEvent.getRoot());
+		// Uploads might run in parallel, so the aggregate size is reported by the event
+		long uploadedFileSize = syncEvent.getUploadedFileSize();
 
-		if (currentClientUploadFileSize == null || syncEvent.getCurrentFileIndex() <= 1) {
-			currentClientUploadFileSize = 0L;
-		}
-
-		String uploadedTotalStr = FileUtil.formatFileSize(currentClientUploadFileSize);
-		int uploadedPercent = (int) Math.round((double) currentClientUploadFileSize / syncEvent.getTotalFileSize() * 100);
+		String uploadedTotalStr = FileUtil.formatFileSize(uploadedFileSize);
+		int uploadedPercent = (int) Math.round((double) uploadedFileSize / syncEvent.getTotalFileSize() * 100);
 
 		String statusText = I18n.getText("org.syncany.gui.tray.TrayIcon.up.uploadFileInTransaction", syncEvent.getCurrentFileIndex(),
 				syncEvent.getTotalFileCount(), uploadedTotalStr, uploadedPercent);
 		setStatusText(syncEvent.getRoot(), statusText);
-
-		currentClientUploadFileSize += syncEvent.getCurrentFileSize();
-		clientUploadFileSize.put(syncEvent.getRoot(), currentClientUploadFileSize);
 	}
 
 	@Subscribe
@@ -39,7 +39,7 @@ import com.google.common.eventbus.Subscribe;
  *     GUI class -> GuiEventBus -> GuiBusListener -> LocalEventBus -> Daemon/Core class
  * 
  *   Response/Event:
- *     Daemon/Core class -> LocalEventBus -> LocalBusListener -> GuiEventBus -> GUI class
+ *     Daemon/Core class -> LocalEventBus -> LocalBusListener -> GuiEventCoalescer -> GuiEventBus -> GUI class
  * </pre>
  * 
  * @author Philipp C. Heckel <philipp.heckel@gmail.com>
@@ -50,6 +50,7 @@ public class GuiEventBridge {
 
 	private GuiEventBus guiEventBus;
 	private LocalEventBus localEventBus;
+	private GuiEventCoalescer eventCoalescer;
 	
 	private GuiBusListener guiListener;
 	private LocalBusListener localListener;
@@ -57,13 +58,23 @@ public class GuiEventBridge {
 	public GuiEventBridge() {	
 		this.localEventBus = LocalEventBus.getInstance();
 		this.guiEventBus = GuiEventBus.getInstance();		
+		this.eventCoalescer = new GuiEventCoalescer();
 	}
 
 	public void start() {
+		this.eventCoalescer.start();
+		
 		this.localListener = new LocalBusListener();
 		this.guiListener = new GuiBusListener();		
 	}
 	
+	public void stop() {
+		localEventBus.unregister(localListener);
+		guiEventBus.unregister(guiListener);
+		
+		eventCoalescer.stop();
+	}
+	
 	private class GuiBusListener {		
 		public GuiBusListener() {
 			guiEventBus.register(this);
@@ -87,12 +98,12 @@ public class GuiEventBridge {
 		
 		@Subscribe 
 		public void onResponse(Response response) {
-			guiEventBus.post(response);
+			eventCoalescer.post(response);
 		}
 		
 		@Subscribe 
 		public void onEvent(ExternalEvent event) {
-			guiEventBus.post(event);
+			eventCoalescer.post(event);
 		}
 	}
 }
@@ -0,0 +1,208 @@
+/*
+ * Syncany, www.syncany.org
+ * Copyright (C) 2011-2015 Philipp C. Heckel <philipp.heckel@gmail.com> 
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.syncany.operations.gui;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.syncany.config.GuiEventBus;
+import org.syncany.operations.daemon.messages.DownDownloadFileSyncExternalEvent;
+import org.syncany.operations.daemon.messages.SyncExternalEvent;
+import org.syncany.operations.daemon.messages.UpIndexMidSyncExternalEvent;
+import org.syncany.operations.daemon.messages.UpUploadFileInTransactionSyncExternalEvent;
+import org.syncany.operations.daemon.messages.UpUploadFileSyncExternalEvent;
+import org.syncany.operations.daemon.messages.api.Message;
+
+/**
+ * The event coalescer sits between the daemon connection ({@link GuiEventBridge} or
+ * {@link GuiWebSocketClient}) and the {@link GuiEventBus}. It throttles the high-frequency
+ * progress events (e.g. one event per uploaded file) that are only used to update the
+ * status text of the tray icon.
+ *
+ * <p>For each root folder, only the latest progress event is kept. Pending progress events
+ * are posted to the GUI event bus once per {@link #FLUSH_INTERVAL_MS}, so that uploading
+ * thousands of files results in a few status updates per second instead of thousands.
+ *
+ * <p>All other messages (responses, start/end events, ...) are posted immediately. Before
+ * a sync event is posted, the pending progress event of the same root is flushed, so that
+ * the GUI never sees a stale progress event after e.g. a {@code WatchEndSyncExternalEvent}.
+ *
+ * <p>While the coalescer is started, all messages are posted by its single flush thread, in
+ * the order in which they were passed to {@link #post(Message)}. No lock is held while a
+ * message is posted: Subscribers may block on the SWT thread (e.g. via {@code Display.syncExec()}),
+ * and the SWT thread must never have to wait for the coalescer.
+ *
+ * @author Philipp C. Heckel <philipp.heckel@gmail.com>
+ */
+public class GuiEventCoalescer {
+	private static final Logger logger = Logger.getLogger(GuiEventCoalescer.class.getSimpleName());
+	private static final long FLUSH_INTERVAL_MS = 250;
+
+	private GuiEventBus eventBus;
+	private volatile ScheduledExecutorService flushExecutor;
+
+	private final Object postLock;
+	private Map<String, SyncExternalEvent> pendingProgressEvents;
+
+	public GuiEventCoalescer() {
+		this.eventBus = GuiEventBus.getInstance();
+		this.flushExecutor = null;
+
+		this.postLock = new Object();
+		this.pendingProgressEvents = new LinkedHashMap<String, SyncExternalEvent>();
+	}
+
+	public void start() {
+		flushExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "GuiEventFlush");
+				thread.setDaemon(true);
+
+				return thread;
+			}
+		});
+
+		flushExecutor.scheduleWithFixedDelay(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					flush();
+				}
+				catch (Exception e) {
+					logger.log(Level.WARNING, "Unable to flush pending GUI events.", e);
+				}
+			}
+		}, FLUSH_INTERVAL_MS, FLUSH_INTERVAL_MS, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Stops the flush thread and posts all messages that have not been
+	 * posted yet (including pending progress events) on the calling thread.
+	 */
+	public void stop() {
+		if (flushExecutor != null) {
+			List<Runnable> remainingDispatches = flushExecutor.shutdownNow();
+			flushExecutor = null;
+
+			for (Runnable remainingDispatch : remainingDispatches) {
+				remainingDispatch.run();
+			}
+		}
+
+		flush();
+	}
+
+	/**
+	 * Posts the given message to the GUI event bus, either immediately or --
+	 * if it is a progress event -- with the next flush.
+	 */
+	public void post(Message message) {
+		if (isProgressEvent(message)) {
+			SyncExternalEvent progressEvent = (SyncExternalEvent) message;
+
+			synchronized (postLock) {
+				pendingProgressEvents.put(progressEvent.getRoot(), progressEvent);
+			}
+		}
+		else {
+			final List<Message> messages = new ArrayList<Message>();
+
+			synchronized (postLock) {
+				if (message instanceof SyncExternalEvent) {
+					SyncExternalEvent pendingProgressEvent = pendingProgressEvents.remove(((SyncExternalEvent) message).getRoot());
+
+					if (pendingProgressEvent != null) {
+						messages.add(pendingProgressEvent);
+					}
+				}
+
+				messages.add(message);
+			}
+
+			dispatch(messages);
+		}
+	}
+
+	/**
+	 * Posts all pending progress events to the GUI event bus.
+	 */
+	public void flush() {
+		List<Message> progressEvents;
+
+		synchronized (postLock) {
+			if (pendingProgressEvents.isEmpty()) {
+				return;
+			}
+
+			progressEvents = new ArrayList<Message>(pendingProgressEvents.values());
+			pendingProgressEvents.clear();
+		}
+
+		postAll(progressEvents);
+	}
+
+	/**
+	 * Hands the given messages to the flush thread, so that they are posted in order
+	 * with the flushed progress events. If the coalescer is not started, the messages
+	 * are posted on the calling thread.
+	 */
+	private void dispatch(final List<Message> messages) {
+		ScheduledExecutorService currentFlushExecutor = flushExecutor;
+
+		if (currentFlushExecutor != null) {
+			try {
+				currentFlushExecutor.execute(new Runnable() {
+					@Override
+					public void run() {
+						postAll(messages);
+					}
+				});
+
+				return;
+			}
+			catch (RejectedExecutionException e) {
+				// Coalescer was stopped in the meantime; post directly
+			}
+		}
+
+		postAll(messages);
+	}
+
+	private void postAll(List<Message> messages) {
+		for (Message message : messages) {
+			eventBus.post(message);
+		}
+	}
+
+	private boolean isProgressEvent(Message message) {
+		return message instanceof UpIndexMidSyncExternalEvent
+				|| message instanceof UpUploadFileSyncExternalEvent
+				|| message instanceof UpUploadFileInTransactionSyncExternalEvent
+				|| message instanceof DownDownloadFileSyncExternalEvent;
+	}
+}
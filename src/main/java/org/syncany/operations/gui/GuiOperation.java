@@ -208,6 +208,16 @@ public class GuiOperation extends Operation {
 		}
 	}
 
+	private void stopDaemonClient() {
+		if (eventBridge != null) {
+			eventBridge.stop();
+		}
+		
+		if (webSocketClient != null) {
+			webSocketClient.stop();
+		}
+	}
+
 	public void startEventDispatchLoop() {
 		Display display = Display.getDefault();
 
@@ -247,6 +257,7 @@ public class GuiOperation extends Operation {
 			logger.warning("Unable to stop daemon: " + e);
 		}
 
+		stopDaemonClient();
 		disposeShell();
 		System.exit(0);
 	}
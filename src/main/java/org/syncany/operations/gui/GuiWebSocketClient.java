@@ -76,6 +76,7 @@ public class GuiWebSocketClient {
 	private final static String ENDPOINT = WebServer.API_ENDPOINT_WS_XML;
 
 	private GuiEventBus eventBus;
+	private GuiEventCoalescer eventCoalescer;
 	private WebSocketChannel webSocketChannel;
 
 	private Thread clientThread;
@@ -87,6 +88,7 @@ public class GuiWebSocketClient {
 		this.eventBus = GuiEventBus.getInstance();
 		this.eventBus.register(this);
 		
+		this.eventCoalescer = new GuiEventCoalescer();
 		this.failedOutgoingMessages = new LinkedList<>();
 		
 		initClientThread();
@@ -122,12 +124,16 @@ public class GuiWebSocketClient {
 	
 	public void start() {
 		clientThreadRunning = new AtomicBoolean(true);
+		
+		eventCoalescer.start();
 		clientThread.start();
 	}
 	
 	public void stop() {
 		clientThreadRunning.set(false);
 		clientThread.interrupt();
+		
+		eventCoalescer.stop();
 	}
 	
 	public void connectAndWait() throws Exception {
@@ -219,7 +225,7 @@ public class GuiWebSocketClient {
 					logger.log(Level.FINEST, "GUI received message: " + messageStr);
 					
 					message = XmlMessageFactory.toMessage(messageStr);
-					eventBus.post(message);
+					eventCoalescer.post(message);
 				}
 				catch (Exception e) {
 					logger.log(Level.WARNING, "Unable to parse message: " + e);